@@ -6,7 +6,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.samet.music.controller.UserController;
+import com.samet.music.dao.PlayCountBuffer;
+import com.samet.music.dao.PlayRollupDAO;
+import com.samet.music.dao.PlaylistDAO;
+import com.samet.music.dao.SongSearchIndex;
 import com.samet.music.util.DatabaseUtil;
+import com.samet.music.service.SongSimilarityIndex;
 import com.samet.music.view.LoginMenuView;
 import com.samet.music.view.MenuView;
 import com.samet.music.gui.MusicLibraryGUI;
@@ -24,6 +29,24 @@ public class MusicApp {
         DatabaseUtil.initializeDatabase();
         logger.info("Database initialized");
         
+        // Typo-tolerant song search becomes available once this finishes
+        SongSearchIndex.getInstance().buildAsync();
+        
+        // First plays extend the similarity index once the buffered play is written
+        PlayCountBuffer.getInstance().setFirstPlayListener(new SongSimilarityIndex()::recordFirstPlay);
+        
+        // Recount the listening rollups if they no longer match the play history,
+        // and space out playlists left with little room between their songs
+        Thread maintenance = new Thread(() -> {
+            new PlayRollupDAO().rebuildIfStale();
+            new PlaylistDAO().rebalanceCrowded();
+        }, "startup-maintenance");
+        maintenance.setDaemon(true);
+        maintenance.start();
+        
+        // Drain buffered writes and close the pool however the JVM exits
+        Runtime.getRuntime().addShutdownHook(new Thread(DatabaseUtil::closeConnection, "database-shutdown"));
+        
         // Launch the GUI instead of the console version
         if (args.length > 0 && args[0].equals("--console")) {
             runConsoleApp();
@@ -4,10 +4,12 @@ import com.samet.music.dao.SongDAO;
 import com.samet.music.dao.AlbumDAO;
 import com.samet.music.dao.ArtistDAO;
 import com.samet.music.model.Artist;
+import com.samet.music.model.ArtistSummary;
 import com.samet.music.model.Song;
 import com.samet.music.model.Album;
 import com.samet.music.model.User;
 
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -76,6 +78,31 @@ public class ArtistController {
         return artistDAO.getArtistAlbumCount(artistName);
     }
     
+    /**
+     * Get the artists of the current user's songs, with the user's song count, album count and total duration
+     * @return the user's artist catalogue, ordered by name; empty if no user is logged in
+     */
+    public List<ArtistSummary> getUserArtistCatalogue() {
+        User currentUser = userController.getCurrentUser();
+        if (currentUser == null) {
+            return new ArrayList<>();
+        }
+        return artistDAO.getUserArtistCatalogue(currentUser.getId());
+    }
+    
+    /**
+     * Get one page of the artist catalogue
+     * @param page the page number, starting at 0
+     * @param pageSize the number of artists per page
+     * @return the artists on the page, ordered by name
+     */
+    public List<ArtistSummary> getArtistCatalogue(int page, int pageSize) {
+        if (page < 0 || pageSize <= 0) {
+            return new ArrayList<>();
+        }
+        return artistDAO.getArtistCatalogue(page * pageSize, pageSize);
+    }
+    
     /**
      * Add a new artist
      * @param name the artist name
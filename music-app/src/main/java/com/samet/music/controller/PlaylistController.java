@@ -1,11 +1,19 @@
 package com.samet.music.controller;
 
 import com.samet.music.dao.PlaylistDAO;
+import com.samet.music.dao.SmartPlaylistDAO;
+import com.samet.music.dao.SmartRule;
 import com.samet.music.dao.SongDAO;
 import com.samet.music.model.Playlist;
+import com.samet.music.model.PlaylistAddResult;
 import com.samet.music.model.Song;
 import com.samet.music.model.User;
+import com.samet.music.service.PlaylistExporter;
+import com.samet.music.service.PlaylistImporter;
+import com.samet.music.service.SongSimilarityIndex;
 
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
@@ -20,7 +28,11 @@ public class PlaylistController {
     private static final Logger logger = LoggerFactory.getLogger(PlaylistController.class);
     private final PlaylistDAO playlistDAO;
     private final SongDAO songDAO;
+    private final SmartPlaylistDAO smartPlaylistDAO;
     private final UserController userController;
+    private final SongSimilarityIndex songSimilarityIndex;
+    private final PlaylistImporter playlistImporter;
+    private final PlaylistExporter playlistExporter;
 
     /**
      * Constructor
@@ -29,7 +41,11 @@ public class PlaylistController {
     public PlaylistController(UserController userController) {
         this.songDAO = new SongDAO();
         this.playlistDAO = new PlaylistDAO(this.songDAO);
+        this.smartPlaylistDAO = new SmartPlaylistDAO(this.playlistDAO);
         this.userController = userController;
+        this.songSimilarityIndex = new SongSimilarityIndex();
+        this.playlistImporter = new PlaylistImporter(this.playlistDAO, this.songDAO);
+        this.playlistExporter = new PlaylistExporter(this.playlistDAO);
     }
     
     /**
@@ -163,6 +179,152 @@ public class PlaylistController {
         return deleted;
     }
 
+    /**
+     * Create a smart playlist holding the current user's songs that match a rule
+     * @param name the playlist name
+     * @param description the playlist description
+     * @param rule the rule, e.g. "genre = Rock AND year >= 2000 AND play_count > 5"
+     * @return the created Playlist with its songs, or null if the rule is invalid or creation failed
+     */
+    public Playlist createSmartPlaylist(String name, String description, String rule) {
+        User currentUser = userController.getCurrentUser();
+
+        if (currentUser == null) {
+            logger.warn("Cannot create smart playlist: no user is logged in");
+            return null;
+        }
+
+        SmartRule smartRule;
+        try {
+            smartRule = SmartRule.parse(rule);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Cannot create smart playlist: invalid rule '{}': {}", rule, e.getMessage());
+            return null;
+        }
+
+        Playlist playlist = new Playlist(name, description, currentUser.getId());
+        Playlist createdPlaylist = smartPlaylistDAO.create(playlist, smartRule);
+
+        if (createdPlaylist != null) {
+            logger.info("Smart playlist created: {} (ID: {}) with {} songs",
+                    name, createdPlaylist.getId(), createdPlaylist.getSongCount());
+        } else {
+            logger.warn("Failed to create smart playlist: {}", name);
+        }
+
+        return createdPlaylist;
+    }
+
+    /**
+     * Change the rule of a playlist; its songs are replaced by the ones matching the new rule
+     * @param playlistId the playlist ID
+     * @param rule the new rule, or null to make it a regular playlist keeping its songs
+     * @return true if the rule was changed, false otherwise
+     */
+    public boolean updatePlaylistRule(int playlistId, String rule) {
+        User currentUser = userController.getCurrentUser();
+
+        if (currentUser == null) {
+            logger.warn("Cannot update playlist rule: no user is logged in");
+            return false;
+        }
+
+        SmartRule smartRule = null;
+        if (rule != null) {
+            try {
+                smartRule = SmartRule.parse(rule);
+            } catch (IllegalArgumentException e) {
+                logger.warn("Cannot update playlist rule: invalid rule '{}': {}", rule, e.getMessage());
+                return false;
+            }
+        }
+
+        int ownerId = playlistDAO.getOwnerId(playlistId);
+        if (ownerId == 0) {
+            logger.warn("Cannot update playlist rule: playlist with ID {} not found", playlistId);
+            return false;
+        }
+        if (ownerId != currentUser.getId()) {
+            logger.warn("Cannot update playlist rule: user does not own playlist with ID {}", playlistId);
+            return false;
+        }
+
+        boolean updated = smartPlaylistDAO.setRule(playlistId, smartRule);
+
+        if (updated) {
+            logger.info("Playlist rule updated: ID {}, {}", playlistId, smartRule);
+        } else {
+            logger.warn("Failed to update playlist rule: ID {}", playlistId);
+        }
+
+        return updated;
+    }
+
+    /**
+     * Import the songs of an M3U, PLS or CSV file into a playlist
+     * @param playlistId the playlist ID
+     * @param fileName the playlist file; its extension gives the format
+     * @return what was imported, or null if the import failed
+     */
+    public PlaylistImporter.Result importPlaylist(int playlistId, String fileName) {
+        if (!checkOwnership(playlistId, "import playlist")) {
+            return null;
+        }
+
+        try {
+            PlaylistImporter.Result result = playlistImporter.importFile(playlistId, Paths.get(fileName));
+            logger.info("Playlist imported: {} into playlist {}: {}", fileName, playlistId, result);
+            return result;
+        } catch (IOException | IllegalArgumentException e) {
+            logger.warn("Failed to import playlist: {} into playlist {}: {}", fileName, playlistId, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Export a playlist as an M3U, PLS or CSV file
+     * @param playlistId the playlist ID
+     * @param fileName the file to write; its extension gives the format
+     * @return the number of songs written, or -1 if the export failed
+     */
+    public int exportPlaylist(int playlistId, String fileName) {
+        if (!checkOwnership(playlistId, "export playlist")) {
+            return -1;
+        }
+
+        try {
+            int count = playlistExporter.exportFile(playlistId, Paths.get(fileName));
+            logger.info("Playlist exported: {} songs of playlist {} to {}", count, playlistId, fileName);
+            return count;
+        } catch (IOException | IllegalArgumentException e) {
+            logger.warn("Failed to export playlist: {} to {}: {}", playlistId, fileName, e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * Check that a user is logged in and owns a playlist, logging why not
+     */
+    private boolean checkOwnership(int playlistId, String action) {
+        User currentUser = userController.getCurrentUser();
+
+        if (currentUser == null) {
+            logger.warn("Cannot {}: no user is logged in", action);
+            return false;
+        }
+
+        int ownerId = playlistDAO.getOwnerId(playlistId);
+        if (ownerId == 0) {
+            logger.warn("Cannot {}: playlist with ID {} not found", action, playlistId);
+            return false;
+        }
+        if (ownerId != currentUser.getId()) {
+            logger.warn("Cannot {}: user does not own playlist with ID {}", action, playlistId);
+            return false;
+        }
+        return true;
+    }
+
     /**
      * Add a song to a playlist
      * @param playlistId the playlist ID
@@ -202,6 +364,7 @@ public class PlaylistController {
         boolean added = addSingleSongToPlaylist(playlistId, songId);
         
         if (added) {
+            songSimilarityIndex.recordPlaylistAdd(playlistId, songId);
             logger.info("Song added to playlist: song {} added to playlist {}", song.getTitle(), playlist.getName());
         } else {
             logger.warn("Failed to add song to playlist: song {} to playlist {}", song.getTitle(), playlist.getName());
@@ -210,6 +373,45 @@ public class PlaylistController {
         return added;
     }
 
+    /**
+     * Add several songs to the end of a playlist at once.
+     * Ownership and the songs are checked with one query each, and the songs are written
+     * in one transaction, so adding N songs costs the same few statements as adding one.
+     * @param playlistId the playlist ID
+     * @param songIds the song IDs, in the order they should be added
+     * @return the outcome for every requested song; empty if the playlist cannot be changed
+     */
+    public PlaylistAddResult addSongsToPlaylist(int playlistId, List<Integer> songIds) {
+        User currentUser = userController.getCurrentUser();
+        
+        if (currentUser == null) {
+            logger.warn("Cannot add songs to playlist: no user is logged in");
+            return new PlaylistAddResult();
+        }
+        
+        int ownerId = playlistDAO.getOwnerId(playlistId);
+        
+        if (ownerId == 0) {
+            logger.warn("Cannot add songs to playlist: playlist with ID {} not found", playlistId);
+            return new PlaylistAddResult();
+        }
+        
+        // Ensure user owns this playlist
+        if (ownerId != currentUser.getId()) {
+            logger.warn("Cannot add songs to playlist: user does not own playlist with ID {}", playlistId);
+            return new PlaylistAddResult();
+        }
+        
+        PlaylistAddResult result = playlistDAO.appendSongs(playlistId, songIds);
+        
+        for (Integer songId : result.getSongIds(PlaylistAddResult.Outcome.ADDED)) {
+            songSimilarityIndex.recordPlaylistAdd(playlistId, songId);
+        }
+        logger.info("Songs added to playlist {}: {}", playlistId, result);
+        
+        return result;
+    }
+
     /**
      * Helper method to add a single song to a playlist
      */
@@ -256,6 +458,7 @@ public class PlaylistController {
         boolean removed = removeSingleSongFromPlaylist(playlistId, songId);
         
         if (removed) {
+            songSimilarityIndex.recordPlaylistRemove(playlistId, songId);
             logger.info("Song removed from playlist: song ID {} removed from playlist {}", songId, playlist.getName());
         } else {
             logger.warn("Failed to remove song from playlist: song ID {} from playlist {}", songId, playlist.getName());
@@ -268,20 +471,49 @@ public class PlaylistController {
      * Helper method to remove a single song from a playlist
      */
     private boolean removeSingleSongFromPlaylist(int playlistId, int songId) {
-        // Get current songs, remove the specified one, then update
+        // Deletes the song's own row; the other songs keep their positions
+        return playlistDAO.removeSong(playlistId, songId);
+    }
+
+    /**
+     * Move a song to another place in a playlist
+     * @param playlistId the playlist ID
+     * @param songId the song ID
+     * @param toIndex where the song goes among the other songs: 0 for first, past the end for last
+     * @return true if the move was successful, false otherwise
+     */
+    public boolean moveSongInPlaylist(int playlistId, int songId, int toIndex) {
+        User currentUser = userController.getCurrentUser();
+        
+        if (currentUser == null) {
+            logger.warn("Cannot move song in playlist: no user is logged in");
+            return false;
+        }
+        
         Optional<Playlist> playlistOpt = playlistDAO.findById(playlistId);
+        
         if (!playlistOpt.isPresent()) {
+            logger.warn("Cannot move song in playlist: playlist with ID {} not found", playlistId);
             return false;
         }
         
         Playlist playlist = playlistOpt.get();
-        boolean songRemoved = playlist.removeSongById(songId);
         
-        if (songRemoved) {
-            return playlistDAO.update(playlist);
+        // Ensure user owns this playlist
+        if (playlist.getUserId() != currentUser.getId()) {
+            logger.warn("Cannot move song in playlist: user does not own playlist with ID {}", playlistId);
+            return false;
+        }
+        
+        boolean moved = playlistDAO.moveSong(playlistId, songId, toIndex);
+        
+        if (moved) {
+            logger.info("Song moved in playlist: song ID {} moved to {} in playlist {}", songId, toIndex, playlist.getName());
+        } else {
+            logger.warn("Failed to move song in playlist: song ID {} in playlist {}", songId, playlist.getName());
         }
         
-        return false;
+        return moved;
     }
 
     /**
@@ -1,6 +1,8 @@
 package com.samet.music.controller;
 
+import com.samet.music.dao.CompletionIndex;
 import com.samet.music.dao.SongDAO;
+import com.samet.music.dao.SongSearchIndex;
 import com.samet.music.dao.UserSongStatisticsDAO;
 import com.samet.music.model.Song;
 import com.samet.music.model.User;
@@ -23,10 +25,18 @@ import org.slf4j.LoggerFactory;
  */
 public class SongController {
     private static final Logger logger = LoggerFactory.getLogger(SongController.class);
+    
+    /**
+     * Maximum number of songs one search returns
+     */
+    private static final int SEARCH_RESULT_LIMIT = 200;
+    
     private SongDAO songDAO;
     private final UserController userController;
     private final UserSongStatisticsDAO userSongStatisticsDAO;
     private final RecommendationService recommendationService;
+    private final SongSearchIndex songSearchIndex;
+    private final CompletionIndex completionIndex;
 
     /**
      * Constructor
@@ -37,6 +47,8 @@ public class SongController {
         this.userController = userController;
         this.userSongStatisticsDAO = new UserSongStatisticsDAO();
         this.recommendationService = new RecommendationService();
+        this.songSearchIndex = SongSearchIndex.getInstance();
+        this.completionIndex = CompletionIndex.getInstance();
     }
     
     /**
@@ -220,9 +232,11 @@ public class SongController {
     }
 
     /**
-     * Search for songs by title, artist, album or genre
+     * Search for songs by title, artist, album or genre.
+     * Every word must match the start of a word in one of those fields; if no song does,
+     * words may match anywhere in the title, artist or album, with small typos allowed.
      * @param query the search query
-     * @return a list of matching songs
+     * @return a list of matching songs, best matches first
      */
     public List<Song> searchSongs(String query) {
         User currentUser = userController.getCurrentUser();
@@ -232,19 +246,38 @@ public class SongController {
             return new ArrayList<>();
         }
         
-        // Search in all fields
-        List<Song> songs = songDAO.search(query, query, query, query);
+        // Ranked full-text search over the user's songs only
+        List<Song> userSongs = songDAO.searchFullText(query, currentUser.getId(), SEARCH_RESULT_LIMIT);
         
-        // Filter songs to only show user's songs
-        List<Song> userSongs = songs.stream()
-                .filter(song -> song.getUserId() == currentUser.getId())
-                .collect(Collectors.toList());
+        // Nothing starts with those words: look for substrings and typos in memory
+        if (userSongs.isEmpty() && songSearchIndex.isReady()) {
+            List<Integer> songIds = songSearchIndex.search(currentUser.getId(), query, SEARCH_RESULT_LIMIT);
+            Map<Integer, Song> songsById = songDAO.findByIds(songIds);
+            userSongs = new ArrayList<>();
+            for (Integer songId : songIds) {
+                Song song = songsById.get(songId);
+                if (song != null) {
+                    userSongs.add(song);
+                }
+            }
+        }
         
         logger.info("Search for '{}' returned {} user songs", query, userSongs.size());
         
         return userSongs;
     }
 
+    /**
+     * Suggest known artist, album or genre names for what was typed, so the same name
+     * is not entered with a different spelling
+     * @param field the field being entered
+     * @param prefix what was typed so far
+     * @return known names starting with the prefix, most used first
+     */
+    public List<String> getCompletions(CompletionIndex.Field field, String prefix) {
+        return completionIndex.complete(field, prefix, CompletionIndex.MAX_COMPLETIONS);
+    }
+
     /**
      * Get recommendations based on user's music preferences
      * @return a list of recommended songs
@@ -328,14 +361,9 @@ public class SongController {
         
         Song song = songOpt.get();
         
-        // Increment play count
-        boolean tracked = userSongStatisticsDAO.incrementPlayCount(currentUser.getId(), songId);
-        
-        if (tracked) {
-            logger.info("Song played: ID {}, {} by {}", songId, song.getTitle(), song.getArtist());
-        } else {
-            logger.warn("Failed to track play count for song: ID {}", songId);
-        }
+        // Count the play; it is written to the database in the background
+        userSongStatisticsDAO.recordPlay(currentUser.getId(), songId);
+        logger.info("Song played: ID {}, {} by {}", songId, song.getTitle(), song.getArtist());
         
         return song;
     }
@@ -8,45 +8,18 @@ import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class AlbumDAO {
     private final SongDAO songDAO;
+    private final ArtistRegistry artistRegistry = ArtistRegistry.getInstance();
+    private final CompletionIndex completionIndex = CompletionIndex.getInstance();
+    private final NameDictionary names = NameDictionary.getInstance();
     private Connection connection;
 
     public AlbumDAO() {
         this.songDAO = new SongDAO();
-        
-        System.out.println("AlbumDAO initializing");
-        
-        try (Connection conn = DatabaseUtil.getConnection()) {
-            System.out.println("Database connection established for AlbumDAO");
-            
-            String sql = "CREATE TABLE IF NOT EXISTS albums (" +
-                    "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                    "title TEXT NOT NULL," +
-                    "artist TEXT NOT NULL," +
-                    "year INTEGER," +
-                    "genre TEXT," +
-                    "user_id INTEGER," +
-                    "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
-                    ")";
-            conn.createStatement().execute(sql);
-            System.out.println("AlbumDAO: albums table check/creation completed");
-            
-            // Create album_songs table to map songs to albums
-            sql = "CREATE TABLE IF NOT EXISTS album_songs (" +
-                    "album_id INTEGER," +
-                    "song_id INTEGER," +
-                    "PRIMARY KEY (album_id, song_id)," +
-                    "FOREIGN KEY (album_id) REFERENCES albums(id)," +
-                    "FOREIGN KEY (song_id) REFERENCES songs(id)" +
-                    ")";
-            conn.createStatement().execute(sql);
-            System.out.println("AlbumDAO: album_songs table check/creation completed");
-        } catch (SQLException e) {
-            System.err.println("Error initializing album database: " + e.getMessage());
-            e.printStackTrace();
-        }
     }
 
     /**
@@ -69,7 +42,8 @@ public class AlbumDAO {
      * @return true if added successfully
      */
     public boolean addAlbum(String title, String artist, String year, String genre, int userId) {
-        String sql = "INSERT INTO albums (title, artist, year, genre, user_id) VALUES (?, ?, ?, ?, ?)";
+        String sql = "INSERT INTO albums (title, artist, year, genre, user_id, artist_id, genre_id) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?)";
         try (Connection conn = DatabaseUtil.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, title);
@@ -77,10 +51,15 @@ public class AlbumDAO {
             pstmt.setInt(3, Integer.parseInt(year));
             pstmt.setString(4, genre);
             pstmt.setInt(5, userId);
+            setNameKeys(conn, pstmt, 6, artist, genre);
             int affectedRows = pstmt.executeUpdate();
             if (conn != null && !conn.getAutoCommit()) {
                 conn.commit();
             }
+            if (affectedRows > 0) {
+                artistRegistry.register(artist);
+                completionIndex.register(artist, title, genre);
+            }
             return affectedRows > 0;
         } catch (SQLException e) {
             e.printStackTrace();
@@ -108,17 +87,19 @@ public class AlbumDAO {
      */
     public boolean updateAlbum(String oldTitle, String oldArtist, 
                             String newTitle, String newArtist, String newYear, String newGenre) {
-        String sql = "UPDATE albums SET title = ?, artist = ?, year = ?, genre = ? " +
+        String sql = "UPDATE albums SET title = ?, artist = ?, year = ?, genre = ?, artist_id = ?, genre_id = ? " +
                     "WHERE title = ? AND artist = ?";
         try (Connection conn = DatabaseUtil.getConnection();
             PreparedStatement pstmt = conn.prepareStatement(sql)) {
             
+            List<Album> before = findAlbums(conn, "title = ? AND artist = ?", oldTitle, oldArtist);
             pstmt.setString(1, newTitle);
             pstmt.setString(2, newArtist);
             pstmt.setInt(3, Integer.parseInt(newYear));
             pstmt.setString(4, newGenre);
-            pstmt.setString(5, oldTitle);
-            pstmt.setString(6, oldArtist);
+            setNameKeys(conn, pstmt, 5, newArtist, newGenre);
+            pstmt.setString(7, oldTitle);
+            pstmt.setString(8, oldArtist);
             
             int affectedRows = pstmt.executeUpdate();
             
@@ -126,6 +107,12 @@ public class AlbumDAO {
             if (conn != null && !conn.getAutoCommit()) {
                 conn.commit();
             }
+            if (affectedRows > 0) {
+                artistRegistry.rename(conn, oldArtist, newArtist);
+                for (Album old : before) {
+                    completionIndex.update(old.getArtist(), old.getTitle(), old.getGenre(), newArtist, newTitle, newGenre);
+                }
+            }
             
             return affectedRows > 0;
         } catch (SQLException e) {
@@ -145,6 +132,7 @@ public class AlbumDAO {
         try (Connection conn = DatabaseUtil.getConnection();
             PreparedStatement pstmt = conn.prepareStatement(sql)) {
             
+            List<Album> deleted = findAlbums(conn, "title = ? AND artist = ?", title, artist);
             pstmt.setString(1, title);
             pstmt.setString(2, artist);
             
@@ -154,6 +142,12 @@ public class AlbumDAO {
             if (conn != null && !conn.getAutoCommit()) {
                 conn.commit();
             }
+            if (affectedRows > 0) {
+                artistRegistry.unregister(conn, artist);
+                for (Album old : deleted) {
+                    completionIndex.unregister(old.getArtist(), old.getTitle(), old.getGenre());
+                }
+            }
             
             return affectedRows > 0;
         } catch (SQLException e) {
@@ -187,8 +181,24 @@ public class AlbumDAO {
         return albums;
     }
 
+    /**
+     * Stream the rows of getAllAlbums over an open cursor, so a table can show them as they are read.
+     * The stream holds a pooled connection until it is closed, so use it in try-with-resources.
+     * @return a lazily-read stream of title, artist, year and genre rows, in id order
+     */
+    public Stream<String[]> streamAllAlbums() {
+        return CursorStream.query(DatabaseUtil.getConnection(), "SELECT title, artist, year, genre FROM albums ORDER BY id",
+                rs -> new String[] {
+                        rs.getString("title"),
+                        rs.getString("artist"),
+                        String.valueOf(rs.getInt("year")),
+                        rs.getString("genre")
+                });
+    }
+
     public boolean create(Album album) {
-        String sql = "INSERT INTO albums (title, artist, year, genre, user_id) VALUES (?, ?, ?, ?, ?)";
+        String sql = "INSERT INTO albums (title, artist, year, genre, user_id, artist_id, genre_id) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?)";
         Connection conn = null;
         PreparedStatement pstmt = null;
         boolean previousAutoCommit = true;
@@ -207,6 +217,7 @@ public class AlbumDAO {
             pstmt.setInt(3, album.getYear());
             pstmt.setString(4, album.getGenre());
             pstmt.setInt(5, album.getUserId());
+            setNameKeys(conn, pstmt, 6, album.getArtist(), album.getGenre());
                 
             int affectedRows = pstmt.executeUpdate();
                 
@@ -229,6 +240,8 @@ public class AlbumDAO {
                     }
                         
                     conn.commit();
+                    artistRegistry.register(album.getArtist());
+                    completionIndex.register(album.getArtist(), album.getTitle(), album.getGenre());
                     return true;
                 } else {
                     conn.rollback();
@@ -251,6 +264,7 @@ public class AlbumDAO {
                 try {
                     conn.setAutoCommit(previousAutoCommit);
                     if (pstmt != null) pstmt.close();
+                    conn.close();
                 } catch (SQLException e) {
                     e.printStackTrace();
                 }
@@ -296,6 +310,34 @@ public class AlbumDAO {
         return albums;
     }
 
+    /**
+     * Get the next page of albums in id order, for keyset pagination.
+     * Like findAll, the albums' songs are not loaded.
+     * @param afterId id of the last album of the previous page, 0 for the first page
+     * @param pageSize maximum number of albums to return
+     * @return the albums with an id above afterId, empty if pageSize is not positive
+     */
+    public List<Album> findAllAfter(int afterId, int pageSize) {
+        if (pageSize <= 0) {
+            return new ArrayList<>();
+        }
+        String sql = "SELECT * FROM albums WHERE id > ? ORDER BY id LIMIT ?";
+        try (Stream<Album> albums = CursorStream.query(DatabaseUtil.getConnection(), sql,
+                this::mapResultSetToAlbum, afterId, pageSize)) {
+            return albums.collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Stream all albums in id order over an open cursor, without their songs.
+     * The stream holds a pooled connection until it is closed, so use it in try-with-resources.
+     * @return a lazily-read stream of albums
+     */
+    public Stream<Album> streamAll() {
+        return CursorStream.query(DatabaseUtil.getConnection(), "SELECT * FROM albums ORDER BY id",
+                this::mapResultSetToAlbum);
+    }
+
     public List<Album> findByUserId(int userId) {
         List<Album> albums = new ArrayList<>();
         String sql = "SELECT * FROM albums WHERE user_id = ? ORDER BY created_at DESC";
@@ -339,17 +381,20 @@ public class AlbumDAO {
     }
 
     public boolean update(Album album) {
-        String sql = "UPDATE albums SET title = ?, artist = ?, year = ?, genre = ? WHERE id = ?";
+        String sql = "UPDATE albums SET title = ?, artist = ?, year = ?, genre = ?, artist_id = ?, genre_id = ? " +
+                "WHERE id = ?";
         try (Connection conn = DatabaseUtil.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             
             conn.setAutoCommit(false);
+            List<Album> before = findAlbums(conn, "id = ?", album.getId());
             
             pstmt.setString(1, album.getTitle());
             pstmt.setString(2, album.getArtist());
             pstmt.setInt(3, album.getYear());
             pstmt.setString(4, album.getGenre());
-            pstmt.setInt(5, album.getId());
+            setNameKeys(conn, pstmt, 5, album.getArtist(), album.getGenre());
+            pstmt.setInt(7, album.getId());
             
             int affectedRows = pstmt.executeUpdate();
             
@@ -367,6 +412,11 @@ public class AlbumDAO {
                 }
                 
                 conn.commit();
+                for (Album old : before) {
+                    artistRegistry.rename(conn, old.getArtist(), album.getArtist());
+                    completionIndex.update(old.getArtist(), old.getTitle(), old.getGenre(),
+                            album.getArtist(), album.getTitle(), album.getGenre());
+                }
                 return true;
             } else {
                 conn.rollback();
@@ -381,6 +431,7 @@ public class AlbumDAO {
     public boolean delete(int id) {
         try (Connection conn = DatabaseUtil.getConnection()) {
             conn.setAutoCommit(false);
+            List<Album> deleted = findAlbums(conn, "id = ?", id);
             
             // First remove song associations
             removeSongsFromAlbum(conn, id);
@@ -393,6 +444,10 @@ public class AlbumDAO {
                 
                 if (affectedRows > 0) {
                     conn.commit();
+                    for (Album old : deleted) {
+                        artistRegistry.unregister(conn, old.getArtist());
+                        completionIndex.unregister(old.getArtist(), old.getTitle(), old.getGenre());
+                    }
                     return true;
                 } else {
                     conn.rollback();
@@ -510,6 +565,31 @@ public class AlbumDAO {
         return songs;
     }
 
+    /**
+     * Read the albums an update or delete is about to change, on its connection, so the
+     * in-memory indexes can be told which names went away
+     * @param where condition choosing the albums
+     * @param params the condition's parameters, integers or strings
+     */
+    private List<Album> findAlbums(Connection conn, String where, Object... params) throws SQLException {
+        List<Album> albums = new ArrayList<>();
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT * FROM albums WHERE " + where)) {
+            for (int i = 0; i < params.length; i++) {
+                if (params[i] instanceof Integer) {
+                    pstmt.setInt(i + 1, (Integer) params[i]);
+                } else {
+                    pstmt.setString(i + 1, (String) params[i]);
+                }
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    albums.add(mapResultSetToAlbum(rs));
+                }
+            }
+        }
+        return albums;
+    }
+
     private Album mapResultSetToAlbum(ResultSet rs) throws SQLException {
         Album album = new Album();
         album.setId(rs.getInt("id"));
@@ -528,4 +608,13 @@ public class AlbumDAO {
         
         return album;
     }
-} 
\ No newline at end of file
+
+    /**
+     * Bind the artist and genre keys of an album, written with its names so the row is written once
+     */
+    private void setNameKeys(Connection conn, PreparedStatement pstmt, int firstIndex,
+                             String artist, String genre) throws SQLException {
+        pstmt.setObject(firstIndex, names.resolve(conn, NameDictionary.Kind.ARTIST, artist));
+        pstmt.setObject(firstIndex + 1, names.resolve(conn, NameDictionary.Kind.GENRE, genre));
+    }
+}
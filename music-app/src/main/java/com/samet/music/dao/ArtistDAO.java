@@ -1,6 +1,7 @@
 package com.samet.music.dao;
 
 import com.samet.music.model.Artist;
+import com.samet.music.model.ArtistSummary;
 import com.samet.music.model.Album;
 import com.samet.music.model.Song;
 import com.samet.music.util.DatabaseUtil;
@@ -8,9 +9,9 @@ import com.samet.music.util.DatabaseUtil;
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.stream.Stream;
 
 /**
  * Data Access Object for Artist entities
@@ -18,27 +19,14 @@ import java.util.Set;
 public class ArtistDAO {
     private final SongDAO songDAO;
     private final AlbumDAO albumDAO;
+    private final ArtistRegistry artistRegistry;
+    private final CompletionIndex completionIndex;
 
     public ArtistDAO() {
         this.songDAO = new SongDAO();
         this.albumDAO = new AlbumDAO();
-        
-        try (Connection conn = DatabaseUtil.getConnection()) {
-            // Create artists table
-            String sql = "CREATE TABLE IF NOT EXISTS artists (" +
-                    "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                    "name TEXT NOT NULL," +
-                    "bio TEXT," +
-                    "country TEXT," +
-                    "genre TEXT," +
-                    "user_id INTEGER," +
-                    "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
-                    ")";
-            conn.createStatement().execute(sql);
-            System.out.println("ArtistDAO: artists table check/creation completed");
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        this.artistRegistry = ArtistRegistry.getInstance();
+        this.completionIndex = CompletionIndex.getInstance();
     }
     
     /**
@@ -80,6 +68,8 @@ public class ArtistDAO {
             
             if (affectedRows > 0) {
                 conn.commit();
+                artistRegistry.register(name);
+                completionIndex.register(name, null, genre);
                 success = true;
             } else {
                 conn.rollback();
@@ -108,6 +98,9 @@ public class ArtistDAO {
                 if (conn != null && conn.getAutoCommit() == false) {
                     conn.setAutoCommit(true);
                 }
+                if (conn != null) {
+                    conn.close();
+                }
             } catch (SQLException e) {
                 e.printStackTrace();
             }
@@ -143,6 +136,7 @@ public class ArtistDAO {
                 conn.setAutoCommit(false);
             }
             
+            List<String[]> before = findNames(conn, "name = ?", oldName);
             pstmt = conn.prepareStatement(sql);
             pstmt.setString(1, newName);
             pstmt.setString(2, newCountry != null ? newCountry : "");
@@ -153,6 +147,10 @@ public class ArtistDAO {
             
             if (affectedRows > 0) {
                 conn.commit();
+                artistRegistry.rename(conn, oldName, newName);
+                for (String[] old : before) {
+                    completionIndex.update(old[0], null, old[1], newName, null, newGenre);
+                }
                 success = true;
             } else {
                 conn.rollback();
@@ -181,6 +179,9 @@ public class ArtistDAO {
                 if (conn != null && conn.getAutoCommit() == false) {
                     conn.setAutoCommit(true);
                 }
+                if (conn != null) {
+                    conn.close();
+                }
             } catch (SQLException e) {
                 e.printStackTrace();
             }
@@ -213,6 +214,7 @@ public class ArtistDAO {
                 conn.setAutoCommit(false);
             }
             
+            List<String[]> deleted = findNames(conn, "name = ?", name);
             pstmt = conn.prepareStatement(sql);
             pstmt.setString(1, name);
             
@@ -220,6 +222,10 @@ public class ArtistDAO {
             
             if (affectedRows > 0) {
                 conn.commit();
+                artistRegistry.unregister(conn, name);
+                for (String[] old : deleted) {
+                    completionIndex.unregister(old[0], null, old[1]);
+                }
                 success = true;
             } else {
                 conn.rollback();
@@ -248,6 +254,9 @@ public class ArtistDAO {
                 if (conn != null && conn.getAutoCommit() == false) {
                     conn.setAutoCommit(true);
                 }
+                if (conn != null) {
+                    conn.close();
+                }
             } catch (SQLException e) {
                 e.printStackTrace();
             }
@@ -278,6 +287,16 @@ public class ArtistDAO {
         return artists;
     }
 
+    /**
+     * Stream the rows of getAllArtists over an open cursor, so a table can show them as they are read.
+     * The stream holds a pooled connection until it is closed, so use it in try-with-resources.
+     * @return a lazily-read stream of name, country and genre rows, in id order
+     */
+    public Stream<String[]> streamAllArtists() {
+        return CursorStream.query(DatabaseUtil.getConnection(), "SELECT name, country, genre FROM artists ORDER BY id",
+                rs -> new String[] {rs.getString("name"), rs.getString("country"), rs.getString("genre")});
+    }
+
     /**
      * Create a new artist in the database
      * @param artist the artist to create
@@ -317,6 +336,8 @@ public class ArtistDAO {
                 if (generatedKeys.next()) {
                     artist.setId(generatedKeys.getInt(1));
                     conn.commit();
+                    artistRegistry.register(artist.getName());
+                    completionIndex.register(artist.getName(), null, null);
                     return artist;
                 }
             }
@@ -349,6 +370,9 @@ public class ArtistDAO {
                         conn.setAutoCommit(true);
                     }
                 }
+                if (conn != null) {
+                    conn.close();
+                }
             } catch (SQLException e) {
                 e.printStackTrace();
             }
@@ -398,6 +422,9 @@ public class ArtistDAO {
                 if (pstmt != null) {
                     pstmt.close();
                 }
+                if (conn != null) {
+                    conn.close();
+                }
             } catch (SQLException e) {
                 e.printStackTrace();
             }
@@ -447,6 +474,9 @@ public class ArtistDAO {
                 if (pstmt != null) {
                     pstmt.close();
                 }
+                if (conn != null) {
+                    conn.close();
+                }
             } catch (SQLException e) {
                 e.printStackTrace();
             }
@@ -489,6 +519,9 @@ public class ArtistDAO {
                 if (stmt != null) {
                     stmt.close();
                 }
+                if (conn != null) {
+                    conn.close();
+                }
             } catch (SQLException e) {
                 e.printStackTrace();
             }
@@ -540,6 +573,9 @@ public class ArtistDAO {
                 if (pstmt != null) {
                     pstmt.close();
                 }
+                if (conn != null) {
+                    conn.close();
+                }
             } catch (SQLException e) {
                 e.printStackTrace();
             }
@@ -573,6 +609,7 @@ public class ArtistDAO {
                 conn.setAutoCommit(false);
             }
             
+            List<String[]> before = findNames(conn, "id = ?", artist.getId());
             pstmt = conn.prepareStatement(sql);
             pstmt.setString(1, artist.getName());
             pstmt.setString(2, artist.getBio() != null ? artist.getBio() : "");
@@ -584,6 +621,10 @@ public class ArtistDAO {
                 if (!autoCommit) {
                     conn.commit();
                 }
+                for (String[] old : before) {
+                    artistRegistry.rename(conn, old[0], artist.getName());
+                    completionIndex.update(old[0], null, null, artist.getName(), null, null);
+                }
                 return true;
             } else {
                 if (!autoCommit) {
@@ -606,6 +647,9 @@ public class ArtistDAO {
                 if (pstmt != null) {
                     pstmt.close();
                 }
+                if (conn != null) {
+                    conn.close();
+                }
             } catch (SQLException e) {
                 e.printStackTrace();
             }
@@ -638,6 +682,7 @@ public class ArtistDAO {
                 conn.setAutoCommit(false);
             }
             
+            List<String[]> deleted = findNames(conn, "id = ?", id);
             pstmt = conn.prepareStatement(sql);
             pstmt.setInt(1, id);
             
@@ -645,6 +690,10 @@ public class ArtistDAO {
             
             if (affectedRows > 0) {
                 conn.commit();
+                for (String[] old : deleted) {
+                    artistRegistry.unregister(conn, old[0]);
+                    completionIndex.unregister(old[0], null, old[1]);
+                }
                 success = true;
             } else {
                 conn.rollback();
@@ -673,6 +722,9 @@ public class ArtistDAO {
                 if (conn != null && conn.getAutoCommit() == false) {
                     conn.setAutoCommit(true);
                 }
+                if (conn != null) {
+                    conn.close();
+                }
             } catch (SQLException e) {
                 e.printStackTrace();
             }
@@ -680,67 +732,100 @@ public class ArtistDAO {
     }
 
     /**
-     * Get all available artist names
+     * Get all available artist names, from the artists table, songs and albums
      * @return a set of artist names
      */
     public Set<String> getAllArtistNames() {
-        Set<String> artists = new HashSet<>();
-        
-        // Add artists from the artists table
-        String sql = "SELECT DISTINCT name FROM artists";
-        
+        return artistRegistry.getNames();
+    }
+
+    /**
+     * Check if an artist exists, ignoring case
+     * @param name the artist name
+     * @return true if the artist exists, false otherwise
+     */
+    public boolean artistExists(String name) {
+        return artistRegistry.contains(name);
+    }
+
+    /**
+     * Get artist names with their song count, album count and total song duration.
+     * Songs and albums are counted by one grouped query each, joined onto the artist registry,
+     * all in a single statement.
+     * @param offset number of artists to skip, in name order
+     * @param limit maximum number of artists to return, or 0 for all
+     * @return the artists, ordered by name ignoring case
+     */
+    public List<ArtistSummary> getArtistCatalogue(int offset, int limit) {
+        List<ArtistSummary> catalogue = new ArrayList<>();
+        String sql = "SELECT r.name, COALESCE(s.songs, 0) AS songs, COALESCE(a.albums, 0) AS albums, " +
+                "COALESCE(s.duration, 0) AS duration FROM artist_registry r " +
+                "LEFT JOIN artist_names n ON n.name = r.name " +
+                "LEFT JOIN (SELECT artist_id, COUNT(*) AS songs, SUM(duration) AS duration " +
+                "FROM songs WHERE artist_id IS NOT NULL GROUP BY artist_id) s ON s.artist_id = n.id " +
+                "LEFT JOIN (SELECT artist_id, COUNT(*) AS albums " +
+                "FROM albums WHERE artist_id IS NOT NULL GROUP BY artist_id) a ON a.artist_id = n.id " +
+                "ORDER BY r.name COLLATE NOCASE, r.name LIMIT ? OFFSET ?";
+
         try (Connection conn = DatabaseUtil.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            
-            if (rs != null) {
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, limit > 0 ? limit : -1);
+            pstmt.setInt(2, Math.max(offset, 0));
+
+            try (ResultSet rs = pstmt.executeQuery()) {
                 while (rs.next()) {
-                    String name = rs.getString("name");
-                    if (name != null && !name.isEmpty()) {
-                        artists.add(name);
-                    }
+                    catalogue.add(new ArtistSummary(
+                            rs.getString("name"),
+                            rs.getInt("songs"),
+                            rs.getInt("albums"),
+                            rs.getInt("duration")));
                 }
             }
         } catch (SQLException e) {
             e.printStackTrace();
         }
-        
-        // Also get artists from songs and albums (they might not be in the artists table)
-        try {
-            if (songDAO != null) {
-                for (Song song : songDAO.findAll()) {
-                    if (song != null && song.getArtist() != null && !song.getArtist().isEmpty()) {
-                        artists.add(song.getArtist());
-                    }
-                }
-            }
-            
-            if (albumDAO != null) {
-                for (Album album : albumDAO.findAll()) {
-                    if (album != null && album.getArtist() != null && !album.getArtist().isEmpty()) {
-                        artists.add(album.getArtist());
-                    }
-                }
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        
-        return artists;
+
+        return catalogue;
     }
 
     /**
-     * Check if an artist exists
-     * @param name the artist name
-     * @return true if the artist exists, false otherwise
+     * Get the artists of a user's songs with the user's song count, album count and total song
+     * duration. Only the user's slice of songs and albums is grouped, so the cost follows the
+     * size of the user's library rather than the whole catalogue.
+     * @param userId the user ID
+     * @return the artists, ordered by name ignoring case
      */
-    public boolean artistExists(String name) {
-        if (name == null || name.trim().isEmpty()) {
-            return false;
+    public List<ArtistSummary> getUserArtistCatalogue(int userId) {
+        List<ArtistSummary> catalogue = new ArrayList<>();
+        String sql = "SELECT n.name, s.songs, COALESCE(a.albums, 0) AS albums, COALESCE(s.duration, 0) AS duration " +
+                "FROM (SELECT artist_id, COUNT(*) AS songs, SUM(duration) AS duration " +
+                "FROM songs WHERE user_id = ? AND artist_id IS NOT NULL GROUP BY artist_id) s " +
+                "JOIN artist_names n ON n.id = s.artist_id " +
+                "LEFT JOIN (SELECT artist_id, COUNT(*) AS albums " +
+                "FROM albums WHERE user_id = ? AND artist_id IS NOT NULL GROUP BY artist_id) a ON a.artist_id = s.artist_id " +
+                "ORDER BY n.name COLLATE NOCASE, n.name";
+
+        try (Connection conn = DatabaseUtil.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, userId);
+            pstmt.setInt(2, userId);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    catalogue.add(new ArtistSummary(
+                            rs.getString("name"),
+                            rs.getInt("songs"),
+                            rs.getInt("albums"),
+                            rs.getInt("duration")));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
         }
-        
-        return getAllArtistNames().stream()
-                .anyMatch(artist -> artist.equalsIgnoreCase(name.trim()));
+
+        return catalogue;
     }
 
     /**
@@ -749,12 +834,7 @@ public class ArtistDAO {
      * @return the number of songs
      */
     public int getArtistSongCount(String artistName) {
-        if (artistName == null || artistName.trim().isEmpty()) {
-            return 0;
-        }
-        
-        List<Song> songs = songDAO.findByArtist(artistName);
-        return songs.size();
+        return countByArtist("songs", artistName);
     }
 
     /**
@@ -763,12 +843,57 @@ public class ArtistDAO {
      * @return the number of albums
      */
     public int getArtistAlbumCount(String artistName) {
+        return countByArtist("albums", artistName);
+    }
+
+    /**
+     * Count the rows of a table keyed by an artist, on the table's artist_id index
+     * @param table songs or albums
+     * @param artistName the artist name; surrounding spaces are ignored, case is not
+     * @return the number of rows
+     */
+    private int countByArtist(String table, String artistName) {
         if (artistName == null || artistName.trim().isEmpty()) {
             return 0;
         }
-        
-        List<Album> albums = albumDAO.findByArtist(artistName);
-        return albums.size();
+
+        String sql = "SELECT COUNT(*) FROM " + table + " WHERE artist_id = " +
+                "(SELECT id FROM artist_names WHERE name = trim(?))";
+        try (Connection conn = DatabaseUtil.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, artistName);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return 0;
+        }
+    }
+
+    /**
+     * Read the names and genres of the artists an update or delete is about to change, on its
+     * connection, so the in-memory indexes can be told which names went away
+     * @param where condition choosing the artists
+     * @param key the condition's parameter, an ID or a name
+     * @return one {name, genre} pair per artist
+     */
+    private List<String[]> findNames(Connection conn, String where, Object key) throws SQLException {
+        List<String[]> names = new ArrayList<>();
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT name, genre FROM artists WHERE " + where)) {
+            if (key instanceof Integer) {
+                pstmt.setInt(1, (Integer) key);
+            } else {
+                pstmt.setString(1, (String) key);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    names.add(new String[] {rs.getString("name"), rs.getString("genre")});
+                }
+            }
+        }
+        return names;
     }
 
     /**
@@ -0,0 +1,173 @@
+package com.samet.music.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.samet.music.util.DatabaseUtil;
+
+/**
+ * In-memory registry of every artist name used by songs, albums and the artists table.
+ * Names are indexed by their case-folded form, so lookups are a single hash probe.
+ * The backing artist_registry table is kept up to date by triggers on those three tables;
+ * this class loads it once and is told about writes by the DAOs: new names are added
+ * directly, and a name renamed or deleted away is dropped once a point lookup in
+ * artist_registry shows no other row uses it, so the index is never read in full again.
+ */
+public class ArtistRegistry {
+
+    private static ArtistRegistry instance;
+
+    // Case-folded name to every spelling stored for it, or null until loaded
+    private Map<String, TreeSet<String>> names;
+
+    /**
+     * Get the shared registry, which is dropped whenever the connection pool is closed
+     * @return the registry
+     */
+    public static synchronized ArtistRegistry getInstance() {
+        if (instance == null) {
+            instance = new ArtistRegistry();
+            DatabaseUtil.addCloseListener(instance::invalidate);
+        }
+        return instance;
+    }
+
+    /**
+     * Constructor
+     */
+    ArtistRegistry() {
+    }
+
+    /**
+     * Get all artist names
+     * @return a set of artist names, one per case-folded name
+     */
+    public synchronized Set<String> getNames() {
+        Set<String> first = new HashSet<>();
+        for (TreeSet<String> spellings : load().values()) {
+            first.add(spellings.first());
+        }
+        return first;
+    }
+
+    /**
+     * Check if an artist name is in use, ignoring case and surrounding spaces
+     * @param name the artist name
+     * @return true if the artist exists, false otherwise
+     */
+    public synchronized boolean contains(String name) {
+        if (name == null || name.trim().isEmpty()) {
+            return false;
+        }
+        return load().containsKey(fold(name));
+    }
+
+    /**
+     * Add a name written by an insert
+     * @param name the artist name
+     */
+    public synchronized void register(String name) {
+        if (names != null && name != null && !name.trim().isEmpty()) {
+            names.computeIfAbsent(fold(name), key -> new TreeSet<>()).add(name.trim());
+        }
+    }
+
+    /**
+     * Move a name changed by an update; nothing happens if the name stayed the same
+     * @param conn the connection the update was committed on
+     * @param oldName the name before the update
+     * @param newName the name after the update
+     */
+    public synchronized void rename(Connection conn, String oldName, String newName) {
+        if (trim(oldName).equals(trim(newName))) {
+            return;
+        }
+        register(newName);
+        unregister(conn, oldName);
+    }
+
+    /**
+     * Drop a name removed by a delete or rename, unless artist_registry shows it is still used
+     * @param conn the connection the write was committed on
+     * @param name the name that was removed
+     */
+    public synchronized void unregister(Connection conn, String name) {
+        if (names == null || name == null || name.trim().isEmpty()) {
+            return;
+        }
+
+        String trimmed = name.trim();
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT 1 FROM artist_registry WHERE name = ?")) {
+            pstmt.setString(1, trimmed);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    // Another song, album or artist still uses it
+                    return;
+                }
+            }
+        } catch (SQLException e) {
+            // Not known whether it is still used, so read every name again on next use
+            e.printStackTrace();
+            names = null;
+            return;
+        }
+
+        String key = fold(trimmed);
+        TreeSet<String> spellings = names.get(key);
+        if (spellings != null && spellings.remove(trimmed) && spellings.isEmpty()) {
+            names.remove(key);
+        }
+    }
+
+    /**
+     * Drop the index when the connection pool closes; it is read again on next use
+     */
+    public synchronized void invalidate() {
+        names = null;
+    }
+
+    private Map<String, TreeSet<String>> load() {
+        if (names != null) {
+            return names;
+        }
+
+        Map<String, TreeSet<String>> loaded = new HashMap<>();
+        String sql = "SELECT name FROM artist_registry ORDER BY name";
+
+        try (Connection conn = DatabaseUtil.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+
+            while (rs.next()) {
+                String name = rs.getString("name");
+                if (name != null && !name.isEmpty()) {
+                    loaded.computeIfAbsent(fold(name), key -> new TreeSet<>()).add(name);
+                }
+            }
+        } catch (SQLException e) {
+            // Not cached, so the next call tries again
+            e.printStackTrace();
+            return loaded;
+        }
+
+        names = loaded;
+        return names;
+    }
+
+    private static String trim(String name) {
+        return name != null ? name.trim() : "";
+    }
+
+    private static String fold(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,202 @@
+package com.samet.music.dao;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import com.samet.music.util.DatabaseUtil;
+
+/**
+ * In-memory autocomplete for artist, album and genre names, ranked by how many songs,
+ * albums and artists use each name. Every field has its own prefix trie, loaded with one
+ * aggregate query per field on first use. Like ArtistRegistry, it is told about writes by
+ * the DAOs, with the names each row had before and after: inserts count the new names,
+ * deletes take back the old ones and updates do both for the fields that changed. The
+ * tries are only read in full again after the connection pool closes, so completions never
+ * touch the database once loaded.
+ */
+public class CompletionIndex {
+
+    /**
+     * Fields that can be completed
+     */
+    public enum Field {
+        ARTIST("SELECT artist AS name FROM songs UNION ALL SELECT artist FROM albums " +
+                "UNION ALL SELECT name FROM artists"),
+        ALBUM("SELECT album AS name FROM songs UNION ALL SELECT title FROM albums"),
+        GENRE("SELECT genre AS name FROM songs UNION ALL SELECT genre FROM albums " +
+                "UNION ALL SELECT genre FROM artists");
+
+        private final String names;
+
+        Field(String names) {
+            this.names = names;
+        }
+    }
+
+    /**
+     * Most completions returned for one prefix
+     */
+    public static final int MAX_COMPLETIONS = 10;
+
+    private static CompletionIndex instance;
+
+    // One trie per field, or null until loaded
+    private Map<Field, PrefixTrie> tries;
+
+    /**
+     * Get the shared index, which is dropped whenever the connection pool is closed
+     * @return the index
+     */
+    public static synchronized CompletionIndex getInstance() {
+        if (instance == null) {
+            instance = new CompletionIndex();
+            DatabaseUtil.addCloseListener(instance::clear);
+        }
+        return instance;
+    }
+
+    /**
+     * Constructor
+     */
+    CompletionIndex() {
+    }
+
+    /**
+     * Get the most used names starting with a prefix, ignoring case
+     * @param field the field to complete
+     * @param prefix what was typed so far
+     * @param limit maximum number of names, at most MAX_COMPLETIONS
+     * @return the names, most used first
+     */
+    public synchronized List<String> complete(Field field, String prefix, int limit) {
+        if (limit <= 0) {
+            return new ArrayList<>();
+        }
+        return load().get(field).complete(prefix, limit);
+    }
+
+    /**
+     * Read the names from the database now, so later completions do not have to wait
+     */
+    public synchronized void preload() {
+        load();
+    }
+
+    /**
+     * Count the names written by an insert
+     * @param artist artist name, may be null
+     * @param album album title, may be null
+     * @param genre genre, may be null
+     */
+    public synchronized void register(String artist, String album, String genre) {
+        if (tries == null) {
+            return;
+        }
+        tries.get(Field.ARTIST).add(artist, 1);
+        tries.get(Field.ALBUM).add(album, 1);
+        tries.get(Field.GENRE).add(genre, 1);
+    }
+
+    /**
+     * Take back the names of a row removed by a delete
+     * @param artist artist name, may be null
+     * @param album album title, may be null
+     * @param genre genre, may be null
+     */
+    public synchronized void unregister(String artist, String album, String genre) {
+        if (tries == null) {
+            return;
+        }
+        tries.get(Field.ARTIST).remove(artist, 1);
+        tries.get(Field.ALBUM).remove(album, 1);
+        tries.get(Field.GENRE).remove(genre, 1);
+    }
+
+    /**
+     * Move the names of a row changed by an update; fields left as they were are not touched
+     * @param oldArtist artist name before the update, may be null
+     * @param oldAlbum album title before the update, may be null
+     * @param oldGenre genre before the update, may be null
+     * @param artist artist name after the update, may be null
+     * @param album album title after the update, may be null
+     * @param genre genre after the update, may be null
+     */
+    public synchronized void update(String oldArtist, String oldAlbum, String oldGenre,
+                                    String artist, String album, String genre) {
+        if (tries == null) {
+            return;
+        }
+        move(Field.ARTIST, oldArtist, artist);
+        move(Field.ALBUM, oldAlbum, album);
+        move(Field.GENRE, oldGenre, genre);
+    }
+
+    /**
+     * Drop the names when the connection pool closes, so they are read again on next use
+     */
+    public synchronized void clear() {
+        tries = null;
+    }
+
+    private void move(Field field, String oldName, String name) {
+        String before = oldName != null ? oldName.trim() : "";
+        String after = name != null ? name.trim() : "";
+        if (before.equals(after)) {
+            return;
+        }
+        tries.get(field).remove(oldName, 1);
+        tries.get(field).add(name, 1);
+    }
+
+    private Map<Field, PrefixTrie> load() {
+        if (tries != null) {
+            return tries;
+        }
+
+        Map<Field, PrefixTrie> loaded = read();
+        if (loaded == null) {
+            // Not cached, so the next call tries again
+            loaded = new EnumMap<>(Field.class);
+            for (Field field : Field.values()) {
+                loaded.put(field, new PrefixTrie(MAX_COMPLETIONS));
+            }
+            return loaded;
+        }
+
+        tries = loaded;
+        return tries;
+    }
+
+    /**
+     * @return the names of every field read from the database, or null if reading failed
+     */
+    private Map<Field, PrefixTrie> read() {
+        Map<Field, PrefixTrie> loaded = new EnumMap<>(Field.class);
+        try (Connection conn = DatabaseUtil.getConnection();
+             Statement stmt = conn.createStatement()) {
+
+            for (Field field : Field.values()) {
+                PrefixTrie trie = new PrefixTrie(MAX_COMPLETIONS);
+                // Most used spelling first, so it is the one a folded name is shown as
+                String sql = "SELECT name, COUNT(*) AS uses FROM (" + field.names + ") " +
+                        "WHERE name IS NOT NULL GROUP BY name ORDER BY uses DESC, name";
+                try (ResultSet rs = stmt.executeQuery(sql)) {
+                    while (rs.next()) {
+                        trie.add(rs.getString("name"), rs.getInt("uses"));
+                    }
+                }
+                loaded.put(field, trie);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        }
+        return loaded;
+    }
+}
@@ -0,0 +1,119 @@
+package com.samet.music.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Turns an open query cursor into a lazily-consumed stream.
+ * Rows are mapped one at a time as the stream is consumed; the result set, statement
+ * and connection stay open until the stream is closed, so callers must use the stream
+ * in a try-with-resources block.
+ */
+final class CursorStream {
+
+    /**
+     * Number of rows the driver is asked to fetch per round trip
+     */
+    static final int FETCH_SIZE = 500;
+
+    /**
+     * Maps the current row of a result set
+     * @param <T> the mapped type
+     */
+    @FunctionalInterface
+    interface RowMapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    private CursorStream() {
+    }
+
+    /**
+     * Run a query and stream its rows.
+     * The connection is taken over by the stream and closed with it, also when the query fails.
+     * @param conn the connection to run the query on, may be null
+     * @param sql the query
+     * @param mapper maps one row
+     * @param params values bound to the query's parameters, in order
+     * @param <T> the mapped type
+     * @return a stream over the rows, empty if the query could not be run
+     */
+    static <T> Stream<T> query(Connection conn, String sql, RowMapper<T> mapper, Object... params) {
+        if (conn == null) {
+            return Stream.empty();
+        }
+
+        PreparedStatement pstmt = null;
+        try {
+            pstmt = conn.prepareStatement(sql);
+            pstmt.setFetchSize(FETCH_SIZE);
+            for (int i = 0; i < params.length; i++) {
+                pstmt.setObject(i + 1, params[i]);
+            }
+            ResultSet rs = pstmt.executeQuery();
+            return StreamSupport.stream(new RowSpliterator<>(rs, mapper), false)
+                    .onClose(closer(conn, pstmt, rs));
+        } catch (SQLException e) {
+            e.printStackTrace();
+            closer(conn, pstmt, null).run();
+            return Stream.empty();
+        }
+    }
+
+    private static Runnable closer(Connection conn, PreparedStatement pstmt, ResultSet rs) {
+        return () -> {
+            try {
+                if (rs != null) {
+                    rs.close();
+                }
+                if (pstmt != null) {
+                    pstmt.close();
+                }
+                conn.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        };
+    }
+
+    /**
+     * Advances the cursor one row per element; a read error ends the stream
+     */
+    private static final class RowSpliterator<T> extends Spliterators.AbstractSpliterator<T> {
+        private final ResultSet rs;
+        private final RowMapper<T> mapper;
+        private boolean done;
+
+        RowSpliterator(ResultSet rs, RowMapper<T> mapper) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.rs = rs;
+            this.mapper = mapper;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (done) {
+                return false;
+            }
+            try {
+                if (!rs.next()) {
+                    done = true;
+                    return false;
+                }
+                action.accept(mapper.map(rs));
+                return true;
+            } catch (SQLException e) {
+                e.printStackTrace();
+                done = true;
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.samet.music.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.samet.music.util.DatabaseUtil;
+
+/**
+ * Write-side key resolver for the artist_names, album_names and genre_names dictionaries,
+ * which give every distinct artist, album and genre name an integer key. Songs and albums
+ * carry those keys next to the names themselves, bound by the DAOs in the statement that
+ * writes the names (triggers fill them in for rows written any other way), so queries can
+ * filter, join and group on integers while the names are still read from the rows.
+ * A key never changes its name, so committed keys are cached by name until the connection
+ * pool is closed; a miss reads a single row, and inserts it if the name is new.
+ */
+public class NameDictionary {
+
+    /**
+     * Kinds of names with their own dictionary
+     */
+    public enum Kind {
+        ARTIST("artist_names"),
+        ALBUM("album_names"),
+        GENRE("genre_names");
+
+        private final String table;
+
+        Kind(String table) {
+            this.table = table;
+        }
+    }
+
+    private static NameDictionary instance;
+
+    private final Map<Kind, Map<String, Integer>> idsByName = new EnumMap<>(Kind.class);
+
+    /**
+     * Get the shared dictionary, which is cleared whenever the connection pool is closed
+     * @return the dictionary
+     */
+    public static synchronized NameDictionary getInstance() {
+        if (instance == null) {
+            instance = new NameDictionary();
+            DatabaseUtil.addCloseListener(instance::clear);
+        }
+        return instance;
+    }
+
+    /**
+     * Constructor
+     */
+    NameDictionary() {
+        for (Kind kind : Kind.values()) {
+            idsByName.put(kind, new HashMap<>());
+        }
+    }
+
+    /**
+     * Get the key for a name about to be written, adding the name to its dictionary if it is new.
+     * The name is added on the writer's connection, so it is rolled back with the writer's transaction.
+     * @param conn the connection the name is written on, possibly in a transaction
+     * @param kind the kind of name
+     * @param name the name
+     * @return the key, or null for a blank name
+     * @throws SQLException if a database access error occurs
+     */
+    public synchronized Integer resolve(Connection conn, Kind kind, String name) throws SQLException {
+        if (name == null || name.trim().isEmpty()) {
+            return null;
+        }
+        String trimmed = name.trim();
+        Integer id = idsByName.get(kind).get(trimmed);
+        if (id != null) {
+            return id;
+        }
+
+        id = select(conn, kind, trimmed);
+        if (id == null) {
+            try (PreparedStatement pstmt = conn.prepareStatement("INSERT INTO " + kind.table + " (name) VALUES (?)")) {
+                pstmt.setString(1, trimmed);
+                pstmt.executeUpdate();
+            }
+            id = select(conn, kind, trimmed);
+        }
+        // A key read in a transaction may yet be rolled back, so only committed keys are cached
+        if (id != null && conn.getAutoCommit()) {
+            idsByName.get(kind).put(trimmed, id);
+        }
+        return id;
+    }
+
+    /**
+     * Forget all cached keys
+     */
+    public synchronized void clear() {
+        for (Kind kind : Kind.values()) {
+            idsByName.get(kind).clear();
+        }
+    }
+
+    private Integer select(Connection conn, Kind kind, String name) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT id FROM " + kind.table + " WHERE name = ?")) {
+            pstmt.setString(1, name);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : null;
+            }
+        }
+    }
+}
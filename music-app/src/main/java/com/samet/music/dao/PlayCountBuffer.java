@@ -0,0 +1,357 @@
+package com.samet.music.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.samet.music.util.DatabaseUtil;
+
+/**
+ * Write-behind buffer for play counts in user_song_statistics and the play_events history.
+ * Plays are coalesced in memory per (user, song) in lock-striped maps, so recording a
+ * play never waits for the disk. Pending plays are written in one batched transaction
+ * (one counter increment per pair, one history row per play and the matching listening
+ * rollup increments) when enough pairs are pending or the flush interval has passed,
+ * and are drained before the connection pool is closed.
+ */
+public class PlayCountBuffer {
+    private static final Logger logger = LoggerFactory.getLogger(PlayCountBuffer.class);
+
+    // Overridable with -Dmusic.plays.maxPending=... and -Dmusic.plays.flushIntervalMs=...
+    private static final int DEFAULT_MAX_PENDING = Integer.getInteger("music.plays.maxPending", 500);
+    private static final long DEFAULT_FLUSH_INTERVAL_MS = Long.getLong("music.plays.flushIntervalMs", 1000L);
+
+    private static final int STRIPE_COUNT = 16;
+
+    private static final String UPSERT_SQL =
+            "INSERT INTO user_song_statistics (user_id, song_id, play_count, last_played) " +
+            "VALUES (?, ?, ?, datetime(?, 'unixepoch')) " +
+            "ON CONFLICT(user_id, song_id) DO UPDATE SET " +
+            "play_count = play_count + excluded.play_count, " +
+            "last_played = excluded.last_played";
+    private static final String EVENT_SQL =
+            "INSERT INTO play_events (user_id, song_id, played_at) VALUES (?, ?, ?)";
+    private static final String PLAY_COUNT_SQL =
+            "SELECT play_count FROM user_song_statistics WHERE user_id = ? AND song_id = ?";
+
+    private static PlayCountBuffer instance;
+
+    private final int maxPending;
+    private final long flushIntervalMillis;
+    private final Stripe[] stripes = new Stripe[STRIPE_COUNT];
+    private final AtomicInteger pendingPairs = new AtomicInteger();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final Object flushLock = new Object();
+    private final PlayRollupDAO rollupDAO = new PlayRollupDAO();
+
+    private ScheduledExecutorService flusher;
+    private volatile FirstPlayListener firstPlayListener;
+
+    /**
+     * Get the shared buffer, which is drained whenever the connection pool is closed
+     * @return the buffer
+     */
+    public static synchronized PlayCountBuffer getInstance() {
+        if (instance == null) {
+            instance = new PlayCountBuffer(DEFAULT_MAX_PENDING, DEFAULT_FLUSH_INTERVAL_MS);
+            DatabaseUtil.addCloseListener(instance::close);
+        }
+        return instance;
+    }
+
+    /**
+     * Constructor
+     * @param maxPending number of pending (user, song) pairs that triggers a flush
+     * @param flushIntervalMillis longest time a play stays in memory
+     */
+    PlayCountBuffer(int maxPending, long flushIntervalMillis) {
+        this.maxPending = maxPending;
+        this.flushIntervalMillis = flushIntervalMillis;
+        for (int i = 0; i < STRIPE_COUNT; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Set the listener told about songs a user played for the first time, after they are written
+     * @param listener the listener, or null for none
+     */
+    public void setFirstPlayListener(FirstPlayListener listener) {
+        this.firstPlayListener = listener;
+    }
+
+    /**
+     * Record one play of a song by a user
+     * @param userId user ID
+     * @param songId song ID
+     */
+    public void record(int userId, int songId) {
+        long key = key(userId, songId);
+        long now = System.currentTimeMillis();
+        Stripe stripe = stripeOf(key);
+        int pairs = -1;
+        synchronized (stripe) {
+            Pending pending = stripe.pending.get(key);
+            if (pending == null) {
+                pending = new Pending();
+                stripe.pending.put(key, pending);
+                pairs = pendingPairs.incrementAndGet();
+            }
+            pending.add(now);
+        }
+
+        ScheduledExecutorService executor = ensureFlusher();
+        if (pairs >= maxPending && flushRequested.compareAndSet(false, true)) {
+            executor.execute(this::flush);
+        }
+    }
+
+    /**
+     * Get the plays of a user/song pair that have not been written yet
+     * @param userId user ID
+     * @param songId song ID
+     * @return number of pending plays
+     */
+    public int getPendingPlays(int userId, int songId) {
+        long key = key(userId, songId);
+        Stripe stripe = stripeOf(key);
+        synchronized (stripe) {
+            Pending pending = stripe.pending.get(key);
+            return pending == null ? 0 : pending.plays;
+        }
+    }
+
+    /**
+     * @return number of (user, song) pairs waiting to be written
+     */
+    public int getPendingCount() {
+        return pendingPairs.get();
+    }
+
+    /**
+     * Write all pending plays in one transaction.
+     * If the write fails the plays are put back and retried on the next flush.
+     * @return true if everything pending was written, false otherwise
+     */
+    public boolean flush() {
+        synchronized (flushLock) {
+            flushRequested.set(false);
+            Map<Long, Pending> drained = drain();
+            if (drained.isEmpty()) {
+                return true;
+            }
+
+            FirstPlayListener listener = firstPlayListener;
+            List<Long> firstPlays = new ArrayList<>();
+            Connection conn = null;
+            try {
+                conn = DatabaseUtil.getConnection();
+                conn.setAutoCommit(false);
+
+                if (listener != null) {
+                    try (PreparedStatement select = conn.prepareStatement(PLAY_COUNT_SQL)) {
+                        for (Long key : drained.keySet()) {
+                            select.setInt(1, userIdOf(key));
+                            select.setInt(2, songIdOf(key));
+                            try (ResultSet rs = select.executeQuery()) {
+                                if (!rs.next() || rs.getInt("play_count") == 0) {
+                                    firstPlays.add(key);
+                                }
+                            }
+                        }
+                    }
+                }
+
+                try (PreparedStatement upsert = conn.prepareStatement(UPSERT_SQL)) {
+                    for (Map.Entry<Long, Pending> entry : drained.entrySet()) {
+                        upsert.setInt(1, userIdOf(entry.getKey()));
+                        upsert.setInt(2, songIdOf(entry.getKey()));
+                        upsert.setInt(3, entry.getValue().plays);
+                        upsert.setLong(4, entry.getValue().lastPlayed / 1000);
+                        upsert.addBatch();
+                    }
+                    upsert.executeBatch();
+                }
+
+                try (PreparedStatement insert = conn.prepareStatement(EVENT_SQL)) {
+                    for (Map.Entry<Long, Pending> entry : drained.entrySet()) {
+                        Pending pending = entry.getValue();
+                        for (int i = 0; i < pending.plays; i++) {
+                            insert.setInt(1, userIdOf(entry.getKey()));
+                            insert.setInt(2, songIdOf(entry.getKey()));
+                            insert.setLong(3, pending.playedAt[i] / 1000);
+                            insert.addBatch();
+                        }
+                    }
+                    insert.executeBatch();
+                }
+
+                // Count the new events in the listening rollups before they become visible
+                rollupDAO.catchUp(conn);
+
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                if (conn != null) {
+                    try {
+                        conn.rollback();
+                    } catch (SQLException ex) {
+                        ex.printStackTrace();
+                    }
+                }
+                logger.error("Error writing {} buffered play counts, keeping them for the next flush",
+                        drained.size(), e);
+                restore(drained);
+                return false;
+            } finally {
+                if (conn != null) {
+                    try {
+                        conn.setAutoCommit(true);
+                        conn.close();
+                    } catch (SQLException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+
+            for (Long key : firstPlays) {
+                try {
+                    listener.firstPlay(userIdOf(key), songIdOf(key));
+                } catch (RuntimeException e) {
+                    logger.error("First play listener failed", e);
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Stop the periodic flush and write everything still pending
+     */
+    public void close() {
+        ScheduledExecutorService executor;
+        synchronized (this) {
+            executor = flusher;
+            flusher = null;
+        }
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (flush()) {
+            logger.info("Play count buffer drained");
+        }
+    }
+
+    private synchronized ScheduledExecutorService ensureFlusher() {
+        if (flusher == null) {
+            flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "play-count-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+        return flusher;
+    }
+
+    private Map<Long, Pending> drain() {
+        Map<Long, Pending> drained = new HashMap<>();
+        for (Stripe stripe : stripes) {
+            Map<Long, Pending> taken;
+            synchronized (stripe) {
+                if (stripe.pending.isEmpty()) {
+                    continue;
+                }
+                taken = stripe.pending;
+                stripe.pending = new HashMap<>();
+                pendingPairs.addAndGet(-taken.size());
+            }
+            drained.putAll(taken);
+        }
+        return drained;
+    }
+
+    private void restore(Map<Long, Pending> drained) {
+        for (Map.Entry<Long, Pending> entry : drained.entrySet()) {
+            Stripe stripe = stripeOf(entry.getKey());
+            synchronized (stripe) {
+                Pending pending = stripe.pending.get(entry.getKey());
+                if (pending == null) {
+                    stripe.pending.put(entry.getKey(), entry.getValue());
+                    pendingPairs.incrementAndGet();
+                } else {
+                    Pending failed = entry.getValue();
+                    for (int i = 0; i < failed.plays; i++) {
+                        pending.add(failed.playedAt[i]);
+                    }
+                }
+            }
+        }
+    }
+
+    private Stripe stripeOf(long key) {
+        int hash = Long.hashCode(key);
+        hash ^= hash >>> 16;
+        return stripes[hash & (STRIPE_COUNT - 1)];
+    }
+
+    private static long key(int userId, int songId) {
+        return ((long) userId << 32) | (songId & 0xFFFFFFFFL);
+    }
+
+    private static int userIdOf(long key) {
+        return (int) (key >>> 32);
+    }
+
+    private static int songIdOf(long key) {
+        return (int) key;
+    }
+
+    /**
+     * Callback for plays of songs the user had never played before
+     */
+    public interface FirstPlayListener {
+        /**
+         * @param userId user ID
+         * @param songId song ID
+         */
+        void firstPlay(int userId, int songId);
+    }
+
+    private static final class Stripe {
+        private Map<Long, Pending> pending = new HashMap<>();
+    }
+
+    private static final class Pending {
+        private int plays;
+        private long lastPlayed;
+        private long[] playedAt = new long[2];
+
+        void add(long timeMillis) {
+            if (plays == playedAt.length) {
+                playedAt = Arrays.copyOf(playedAt, plays * 2);
+            }
+            playedAt[plays++] = timeMillis;
+            lastPlayed = Math.max(lastPlayed, timeMillis);
+        }
+    }
+}
@@ -0,0 +1,354 @@
+package com.samet.music.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.samet.music.util.DatabaseUtil;
+
+/**
+ * Data Access Object for the listening rollups: per-user play counters by hour of day,
+ * day of week, day and genre per day, kept in local time.
+ * The rollups are derived from play_events. play_rollup_state remembers the last event
+ * already counted, so catching up only reads the events written since then; the play
+ * count buffer catches up in the same transaction that appends new events.
+ */
+public class PlayRollupDAO {
+
+    /**
+     * Number of events read per step while catching up
+     */
+    static final int CATCH_UP_BATCH_SIZE = 10000;
+
+    private static final String[] ROLLUP_TABLES = {
+            "play_rollup_hour", "play_rollup_weekday", "play_rollup_day", "play_rollup_genre"};
+
+    // Catch-ups read and move the shared watermark, so they never run concurrently
+    private static final Object CATCH_UP_LOCK = new Object();
+
+    private final ZoneId zone;
+
+    /**
+     * Constructor, using the system time zone
+     */
+    public PlayRollupDAO() {
+        this(ZoneId.systemDefault());
+    }
+
+    /**
+     * Constructor
+     * @param zone time zone that decides the local hour, weekday and day of a play
+     */
+    public PlayRollupDAO(ZoneId zone) {
+        this.zone = zone;
+    }
+
+    /**
+     * Count all play events not yet in the rollups, in a transaction of its own
+     * @return true if successful, false otherwise
+     */
+    public boolean catchUp() {
+        return inTransaction(false);
+    }
+
+    /**
+     * Throw the rollups away and recount them from the whole play history
+     * @return true if successful, false otherwise
+     */
+    public boolean rebuild() {
+        return inTransaction(true);
+    }
+
+    /**
+     * Check the watermark against the play history and rebuild the rollups if they do not match:
+     * the watermark is past the last event, or the events up to it do not add up to the plays
+     * counted, e.g. after the database was restored from an older copy or the rollups were
+     * edited by hand. Otherwise only the events after the watermark are counted.
+     * @return true if the rollups were rebuilt
+     */
+    public boolean rebuildIfStale() {
+        String sql = "SELECT st.last_event_id AS watermark, " +
+                "(SELECT COALESCE(MAX(id), 0) FROM play_events) AS last_event_id, " +
+                "(SELECT COUNT(*) FROM play_events WHERE id <= st.last_event_id) AS events, " +
+                "(SELECT COALESCE(SUM(plays), 0) FROM play_rollup_day) AS plays " +
+                "FROM play_rollup_state st WHERE st.id = 1";
+        boolean stale = false;
+
+        try (Connection conn = DatabaseUtil.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            stale = !rs.next()
+                    || rs.getLong("watermark") > rs.getLong("last_event_id")
+                    || rs.getLong("events") != rs.getLong("plays");
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+
+        if (stale) {
+            return rebuild();
+        }
+        catchUp();
+        return false;
+    }
+
+    /**
+     * Count all play events not yet in the rollups, inside the caller's transaction
+     * @param conn connection with auto-commit disabled
+     * @return number of events counted
+     * @throws SQLException if the rollups could not be updated
+     */
+    public int catchUp(Connection conn) throws SQLException {
+        synchronized (CATCH_UP_LOCK) {
+            long lastEventId;
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT last_event_id FROM play_rollup_state WHERE id = 1")) {
+                lastEventId = rs.next() ? rs.getLong("last_event_id") : 0;
+            }
+
+            String sql = "SELECT e.id, e.user_id, e.played_at, COALESCE(NULLIF(s.genre, ''), 'Unknown') AS genre " +
+                    "FROM play_events e LEFT JOIN songs s ON s.id = e.song_id " +
+                    "WHERE e.id > ? ORDER BY e.id LIMIT " + CATCH_UP_BATCH_SIZE;
+            int counted = 0;
+            int read;
+            do {
+                Counters counters = new Counters();
+                read = 0;
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setLong(1, lastEventId);
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            lastEventId = rs.getLong("id");
+                            counters.add(rs.getInt("user_id"), rs.getLong("played_at"), rs.getString("genre"));
+                            read++;
+                        }
+                    }
+                }
+                counters.write(conn);
+                counted += read;
+            } while (read == CATCH_UP_BATCH_SIZE);
+
+            if (counted > 0) {
+                try (PreparedStatement pstmt = conn.prepareStatement(
+                        "UPDATE play_rollup_state SET last_event_id = ? WHERE id = 1")) {
+                    pstmt.setLong(1, lastEventId);
+                    pstmt.executeUpdate();
+                }
+            }
+            return counted;
+        }
+    }
+
+    /**
+     * Get a user's plays per day
+     * @param userId user ID
+     * @param fromEpochDay first day (inclusive), as days since 1970-01-01
+     * @param toEpochDay last day (inclusive), as days since 1970-01-01
+     * @return day to play count, in date order; days without plays are omitted
+     */
+    public Map<Long, Integer> getDailyPlayCounts(int userId, long fromEpochDay, long toEpochDay) {
+        Map<Long, Integer> counts = new LinkedHashMap<>();
+        String sql = "SELECT day, plays FROM play_rollup_day WHERE user_id = ? AND day BETWEEN ? AND ? ORDER BY day";
+
+        try (Connection conn = DatabaseUtil.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, userId);
+            pstmt.setLong(2, fromEpochDay);
+            pstmt.setLong(3, toEpochDay);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    counts.put(rs.getLong("day"), rs.getInt("plays"));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        return counts;
+    }
+
+    /**
+     * Get a user's plays per genre
+     * @param userId user ID
+     * @param fromEpochDay first day (inclusive), as days since 1970-01-01
+     * @param toEpochDay last day (inclusive), as days since 1970-01-01
+     * @return genre to play count, most played first
+     */
+    public Map<String, Integer> getGenrePlayCounts(int userId, long fromEpochDay, long toEpochDay) {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        String sql = "SELECT genre, SUM(plays) AS total FROM play_rollup_genre " +
+                "WHERE user_id = ? AND day BETWEEN ? AND ? GROUP BY genre ORDER BY total DESC, genre";
+
+        try (Connection conn = DatabaseUtil.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, userId);
+            pstmt.setLong(2, fromEpochDay);
+            pstmt.setLong(3, toEpochDay);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    counts.put(rs.getString("genre"), rs.getInt("total"));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        return counts;
+    }
+
+    /**
+     * Get a user's plays per hour of the day over the whole history
+     * @param userId user ID
+     * @return 24 counters, index 0 for midnight to 1 AM
+     */
+    public int[] getHourOfDayPlayCounts(int userId) {
+        return getCounters("SELECT hour AS slot, plays FROM play_rollup_hour WHERE user_id = ?", userId, 24, 0);
+    }
+
+    /**
+     * Get a user's plays per day of the week over the whole history
+     * @param userId user ID
+     * @return 7 counters, index 0 for Monday
+     */
+    public int[] getWeekdayPlayCounts(int userId) {
+        return getCounters("SELECT weekday AS slot, plays FROM play_rollup_weekday WHERE user_id = ?", userId, 7, 1);
+    }
+
+    private int[] getCounters(String sql, int userId, int size, int firstSlot) {
+        int[] counts = new int[size];
+
+        try (Connection conn = DatabaseUtil.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, userId);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    int slot = rs.getInt("slot") - firstSlot;
+                    if (slot >= 0 && slot < size) {
+                        counts[slot] = rs.getInt("plays");
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        return counts;
+    }
+
+    private boolean inTransaction(boolean clearFirst) {
+        Connection conn = null;
+        try {
+            conn = DatabaseUtil.getConnection();
+            conn.setAutoCommit(false);
+
+            if (clearFirst) {
+                try (Statement stmt = conn.createStatement()) {
+                    for (String table : ROLLUP_TABLES) {
+                        stmt.executeUpdate("DELETE FROM " + table);
+                    }
+                    stmt.executeUpdate("UPDATE play_rollup_state SET last_event_id = 0 WHERE id = 1");
+                }
+            }
+            catchUp(conn);
+
+            conn.commit();
+            return true;
+        } catch (SQLException e) {
+            if (conn != null) {
+                try {
+                    conn.rollback();
+                } catch (SQLException ex) {
+                    ex.printStackTrace();
+                }
+            }
+            e.printStackTrace();
+            return false;
+        } finally {
+            if (conn != null) {
+                try {
+                    conn.setAutoCommit(true);
+                    conn.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Rollup increments collected from one batch of events
+     */
+    private final class Counters {
+        // Keys pack the user ID in the high 32 bits and the hour, weekday or day in the low bits
+        private final Map<Long, Integer> hours = new HashMap<>();
+        private final Map<Long, Integer> weekdays = new HashMap<>();
+        private final Map<Long, Integer> days = new HashMap<>();
+        private final Map<Long, Map<String, Integer>> genres = new HashMap<>();
+
+        void add(int userId, long playedAt, String genre) {
+            ZonedDateTime time = Instant.ofEpochSecond(playedAt).atZone(zone);
+            long user = (long) userId << 32;
+            long day = user | (time.toLocalDate().toEpochDay() & 0xFFFFFFFFL);
+            hours.merge(user | time.getHour(), 1, Integer::sum);
+            weekdays.merge(user | time.getDayOfWeek().getValue(), 1, Integer::sum);
+            days.merge(day, 1, Integer::sum);
+            genres.computeIfAbsent(day, d -> new HashMap<>()).merge(genre, 1, Integer::sum);
+        }
+
+        void write(Connection conn) throws SQLException {
+            upsert(conn, "INSERT INTO play_rollup_hour (user_id, hour, plays) VALUES (?, ?, ?) " +
+                    "ON CONFLICT(user_id, hour) DO UPDATE SET plays = plays + excluded.plays", hours);
+            upsert(conn, "INSERT INTO play_rollup_weekday (user_id, weekday, plays) VALUES (?, ?, ?) " +
+                    "ON CONFLICT(user_id, weekday) DO UPDATE SET plays = plays + excluded.plays", weekdays);
+            upsert(conn, "INSERT INTO play_rollup_day (user_id, day, plays) VALUES (?, ?, ?) " +
+                    "ON CONFLICT(user_id, day) DO UPDATE SET plays = plays + excluded.plays", days);
+
+            if (genres.isEmpty()) {
+                return;
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "INSERT INTO play_rollup_genre (user_id, day, genre, plays) VALUES (?, ?, ?, ?) " +
+                    "ON CONFLICT(user_id, day, genre) DO UPDATE SET plays = plays + excluded.plays")) {
+                for (Map.Entry<Long, Map<String, Integer>> day : genres.entrySet()) {
+                    for (Map.Entry<String, Integer> genre : day.getValue().entrySet()) {
+                        pstmt.setInt(1, (int) (day.getKey() >>> 32));
+                        pstmt.setLong(2, (int) (long) day.getKey());
+                        pstmt.setString(3, genre.getKey());
+                        pstmt.setInt(4, genre.getValue());
+                        pstmt.addBatch();
+                    }
+                }
+                pstmt.executeBatch();
+            }
+        }
+
+        private void upsert(Connection conn, String sql, Map<Long, Integer> counters) throws SQLException {
+            if (counters.isEmpty()) {
+                return;
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                for (Map.Entry<Long, Integer> counter : counters.entrySet()) {
+                    pstmt.setInt(1, (int) (counter.getKey() >>> 32));
+                    pstmt.setLong(2, (int) (long) counter.getKey());
+                    pstmt.setInt(3, counter.getValue());
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+            }
+        }
+    }
+}
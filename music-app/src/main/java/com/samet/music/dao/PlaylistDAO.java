@@ -1,78 +1,54 @@
 package com.samet.music.dao;
 
 import com.samet.music.model.Playlist;
+import com.samet.music.model.PlaylistAddResult;
+import com.samet.music.model.PlaylistAddResult.Outcome;
 import com.samet.music.model.Song;
 import com.samet.music.util.DatabaseUtil;
 
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Data Access Object for Playlist entities
  */
 public class PlaylistDAO {
+
+    /**
+     * Spacing between the positions of neighbouring songs in a playlist.
+     * A song inserted or moved between two others takes the position halfway between
+     * theirs, so only its own row is written; the playlist is renumbered only once two
+     * neighbours have no free position left between them.
+     */
+    public static final long POSITION_GAP = 1024;
+
+    /**
+     * Gap between neighbouring songs below which {@link #rebalanceCrowded()} renumbers a playlist,
+     * leaving room for five more inserts in the same place before an edit has to do it
+     */
+    static final long MIN_GAP = POSITION_GAP / 32;
+
+    /**
+     * Maximum number of rows written by a single multi-row INSERT, three bound values each
+     */
+    static final int INSERT_CHUNK_SIZE = 300;
+
     private final SongDAO songDAO;
 
     public PlaylistDAO() {
         this.songDAO = new SongDAO();
-        
-        try (Connection conn = DatabaseUtil.getConnection()) {
-            // Create playlists table
-            String sql = "CREATE TABLE IF NOT EXISTS playlists (" +
-                    "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                    "name TEXT NOT NULL," +
-                    "description TEXT," +
-                    "user_id INTEGER," +
-                    "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
-                    ")";
-            conn.createStatement().execute(sql);
-            
-            // Create playlist_songs table to map songs to playlists
-            sql = "CREATE TABLE IF NOT EXISTS playlist_songs (" +
-                    "playlist_id INTEGER," +
-                    "song_id INTEGER," +
-                    "position INTEGER," +
-                    "PRIMARY KEY (playlist_id, song_id)," +
-                    "FOREIGN KEY (playlist_id) REFERENCES playlists(id)," +
-                    "FOREIGN KEY (song_id) REFERENCES songs(id)" +
-                    ")";
-            conn.createStatement().execute(sql);
-            System.out.println("PlaylistDAO: playlists tables check/creation completed");
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
     }
     
     public PlaylistDAO(SongDAO songDAO) {
         this.songDAO = songDAO;
-        
-        try (Connection conn = DatabaseUtil.getConnection()) {
-            // Create playlists table
-            String sql = "CREATE TABLE IF NOT EXISTS playlists (" +
-                    "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                    "name TEXT NOT NULL," +
-                    "description TEXT," +
-                    "user_id INTEGER," +
-                    "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
-                    ")";
-            conn.createStatement().execute(sql);
-            
-            // Create playlist_songs table to map songs to playlists
-            sql = "CREATE TABLE IF NOT EXISTS playlist_songs (" +
-                    "playlist_id INTEGER," +
-                    "song_id INTEGER," +
-                    "position INTEGER," +
-                    "PRIMARY KEY (playlist_id, song_id)," +
-                    "FOREIGN KEY (playlist_id) REFERENCES playlists(id)," +
-                    "FOREIGN KEY (song_id) REFERENCES songs(id)" +
-                    ")";
-            conn.createStatement().execute(sql);
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
     }
     
     /**
@@ -140,6 +116,9 @@ public class PlaylistDAO {
                 if (conn != null && conn.getAutoCommit() == false) {
                     conn.setAutoCommit(true);
                 }
+                if (conn != null) {
+                    conn.close();
+                }
             } catch (SQLException e) {
                 e.printStackTrace();
             }
@@ -218,6 +197,9 @@ public class PlaylistDAO {
                 if (conn != null && conn.getAutoCommit() == false) {
                     conn.setAutoCommit(true);
                 }
+                if (conn != null) {
+                    conn.close();
+                }
             } catch (SQLException e) {
                 e.printStackTrace();
             }
@@ -250,6 +232,21 @@ public class PlaylistDAO {
                 conn.setAutoCommit(false);
             }
             
+            // Clear the playlists with that name like delete(int) does, smart playlist triggers included
+            List<Integer> ids = new ArrayList<>();
+            try (PreparedStatement select = conn.prepareStatement("SELECT id FROM playlists WHERE name = ?")) {
+                select.setString(1, name);
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        ids.add(rs.getInt("id"));
+                    }
+                }
+            }
+            for (Integer id : ids) {
+                removeSongsFromPlaylist(conn, id);
+                SmartPlaylistDAO.dropTriggers(conn, id);
+            }
+            
             pstmt = conn.prepareStatement(sql);
             pstmt.setString(1, name);
             
@@ -285,6 +282,9 @@ public class PlaylistDAO {
                 if (conn != null && conn.getAutoCommit() == false) {
                     conn.setAutoCommit(true);
                 }
+                if (conn != null) {
+                    conn.close();
+                }
             } catch (SQLException e) {
                 e.printStackTrace();
             }
@@ -292,15 +292,13 @@ public class PlaylistDAO {
     }
     
     /**
-     * Get all playlists as string arrays for display
+     * Get all playlists as string arrays for display.
+     * Song counts are read from the playlist rows, which triggers keep up to date.
      * @return List of string arrays containing [name, songCount, created]
      */
     public List<String[]> getAllPlaylists() {
         List<String[]> playlists = new ArrayList<>();
-        String sql = "SELECT p.name, COUNT(ps.song_id) as song_count, p.created_at " +
-                    "FROM playlists p " +
-                    "LEFT JOIN playlist_songs ps ON p.id = ps.playlist_id " +
-                    "GROUP BY p.id, p.name, p.created_at";
+        String sql = "SELECT name, track_count AS song_count, created_at FROM playlists ORDER BY id";
         try (Connection conn = DatabaseUtil.getConnection();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
@@ -318,6 +316,21 @@ public class PlaylistDAO {
         return playlists;
     }
 
+    /**
+     * Stream the rows of getAllPlaylists over an open cursor, so a table can show them as they are read.
+     * The stream holds a pooled connection until it is closed, so use it in try-with-resources.
+     * @return a lazily-read stream of name, song count and creation time rows, in id order
+     */
+    public Stream<String[]> streamAllPlaylists() {
+        return CursorStream.query(DatabaseUtil.getConnection(),
+                "SELECT name, track_count AS song_count, created_at FROM playlists ORDER BY id",
+                rs -> new String[] {
+                        rs.getString("name"),
+                        String.valueOf(rs.getInt("song_count")),
+                        rs.getString("created_at")
+                });
+    }
+
     /**
      * Create a new playlist in the database
      * @param playlist the playlist to create
@@ -383,6 +396,7 @@ public class PlaylistDAO {
                 try {
                     conn.setAutoCommit(previousAutoCommit);
                     if (pstmt != null) pstmt.close();
+                    conn.close();
                 } catch (SQLException e) {
                     e.printStackTrace();
                 }
@@ -435,6 +449,9 @@ public class PlaylistDAO {
                 if (pstmt != null) {
                     pstmt.close();
                 }
+                if (conn != null) {
+                    conn.close();
+                }
             } catch (SQLException e) {
                 e.printStackTrace();
             }
@@ -444,7 +461,7 @@ public class PlaylistDAO {
     }
 
     /**
-     * Get all playlists by user id
+     * Get all playlists by user id, as headers: songs are loaded when a playlist is opened with findById
      * @param userId the user id
      * @return a list of all playlists for the specified user
      */
@@ -459,13 +476,7 @@ public class PlaylistDAO {
             
             try (ResultSet rs = pstmt.executeQuery()) {
                 while (rs.next()) {
-                        Playlist playlist = mapResultSetToPlaylist(rs);
-                        
-                    // Get songs for this playlist
-                    List<Song> songs = getSongsByPlaylistId(playlist.getId());
-                        playlist.setSongs(songs);
-                        
-                        playlists.add(playlist);
+                    playlists.add(mapResultSetToHeader(rs));
                 }
             }
         } catch (SQLException e) {
@@ -476,7 +487,7 @@ public class PlaylistDAO {
     }
 
     /**
-     * Get all playlists
+     * Get all playlists, as headers without their songs
      * @return a list of all playlists
      */
     public List<Playlist> findAll() {
@@ -488,13 +499,7 @@ public class PlaylistDAO {
              ResultSet rs = stmt.executeQuery(sql)) {
             
             while (rs.next()) {
-                Playlist playlist = mapResultSetToPlaylist(rs);
-                
-                // Get songs for this playlist
-                List<Song> songs = getSongsByPlaylistId(playlist.getId());
-                playlist.setSongs(songs);
-                
-                playlists.add(playlist);
+                playlists.add(mapResultSetToHeader(rs));
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -503,6 +508,49 @@ public class PlaylistDAO {
         return playlists;
     }
 
+    /**
+     * Get the next page of playlists in id order, for keyset pagination.
+     * Like findAll, the playlists are headers without their songs.
+     * @param afterId id of the last playlist of the previous page, 0 for the first page
+     * @param pageSize maximum number of playlists to return
+     * @return the playlists with an id above afterId, empty if pageSize is not positive
+     */
+    public List<Playlist> findAllAfter(int afterId, int pageSize) {
+        if (pageSize <= 0) {
+            return new ArrayList<>();
+        }
+        String sql = "SELECT * FROM playlists WHERE id > ? ORDER BY id LIMIT ?";
+        try (Stream<Playlist> rows = CursorStream.query(DatabaseUtil.getConnection(), sql,
+                this::mapResultSetToHeader, afterId, pageSize)) {
+            return rows.collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Stream all playlists in id order over an open cursor.
+     * Like findAll the playlists are headers without their songs, so memory stays constant.
+     * The stream holds a pooled connection until it is closed, so use it in try-with-resources.
+     * @return a lazily-read stream of playlists
+     */
+    public Stream<Playlist> streamAll() {
+        return CursorStream.query(DatabaseUtil.getConnection(), "SELECT * FROM playlists ORDER BY id",
+                this::mapResultSetToHeader);
+    }
+
+    /**
+     * Stream the songs of a playlist in playlist order over an open cursor, so exporting
+     * a long playlist does not hold all of its songs in memory.
+     * The stream holds a pooled connection until it is closed, so use it in try-with-resources.
+     * @param playlistId the playlist id
+     * @return a lazily-read stream of the playlist's songs
+     */
+    public Stream<Song> streamSongs(int playlistId) {
+        return CursorStream.query(DatabaseUtil.getConnection(),
+                "SELECT s.* FROM songs s JOIN playlist_songs ps ON s.id = ps.song_id " +
+                "WHERE ps.playlist_id = ? ORDER BY ps.position, ps.rowid",
+                songDAO::mapResultSetToSong, playlistId);
+    }
+
     /**
      * Update a playlist in the database
      * @param playlist the playlist to update
@@ -534,8 +582,8 @@ public class PlaylistDAO {
             int affectedRows = pstmt.executeUpdate();
             
             if (affectedRows > 0) {
-                // Update the songs in the playlist
-                if (playlist.getSongs() != null) {
+                // Update the songs in the playlist; a header's songs were never read, so they are left alone
+                if (playlist.getSongs() != null && playlist.isSongsLoaded()) {
                     // First remove all existing songs
                     if (!removeSongsFromPlaylist(conn, playlist.getId())) {
                         conn.rollback();
@@ -574,6 +622,9 @@ public class PlaylistDAO {
                 if (conn != null) {
                     conn.setAutoCommit(true);
                 }
+                if (conn != null) {
+                    conn.close();
+                }
             } catch (SQLException e) {
                 e.printStackTrace();
             }
@@ -607,6 +658,9 @@ public class PlaylistDAO {
                 return false;
             }
         
+            // A smart playlist's triggers would otherwise keep adding songs to it
+            SmartPlaylistDAO.dropTriggers(conn, id);
+
             // Then delete the playlist
             String sql = "DELETE FROM playlists WHERE id = ?";
             
@@ -640,6 +694,9 @@ public class PlaylistDAO {
                 if (conn != null) {
                     conn.setAutoCommit(true);
                 }
+                if (conn != null) {
+                    conn.close();
+                }
             } catch (SQLException e) {
                 e.printStackTrace();
             }
@@ -698,6 +755,9 @@ public class PlaylistDAO {
                 if (conn != null && conn.getAutoCommit() == false) {
                     conn.setAutoCommit(true);
                 }
+                if (conn != null) {
+                    conn.close();
+                }
             } catch (SQLException e) {
                 e.printStackTrace();
             }
@@ -711,12 +771,15 @@ public class PlaylistDAO {
         String sql = "INSERT INTO playlist_songs (playlist_id, song_id, position) VALUES (?, ?, ?)";
         
         try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            int position = 0;
+            // Append after the songs already in the playlist
+            Long last = lastPosition(conn, playlistId, 0);
+            long position = last != null ? last : 0;
             
             for (Song song : songs) {
+                position += POSITION_GAP;
                 pstmt.setInt(1, playlistId);
                 pstmt.setInt(2, song.getId());
-                pstmt.setInt(3, position++);
+                pstmt.setLong(3, position);
                 
                 pstmt.addBatch();
             }
@@ -771,16 +834,424 @@ public class PlaylistDAO {
         }
     }
 
+    /**
+     * Get the owner of a playlist without reading its songs
+     * @param playlistId the playlist id
+     * @return the owner's user id, or 0 if the playlist does not exist
+     */
+    public int getOwnerId(int playlistId) {
+        if (playlistId <= 0) {
+            return 0;
+        }
+
+        String sql = "SELECT user_id FROM playlists WHERE id = ?";
+        try (Connection conn = DatabaseUtil.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, playlistId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getInt("user_id");
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        return 0;
+    }
+
+    /**
+     * Append songs to the end of a playlist in one transaction.
+     * Which songs exist and which are already in the playlist is read with one query each,
+     * and the new rows are written with a single multi-row insert (per INSERT_CHUNK_SIZE songs).
+     * Songs that are missing or already in the playlist are skipped, the rest are added in
+     * the order given; if writing fails, none of them are added.
+     * @param playlistId the playlist id
+     * @param songIds the songs to add; repeated ids are added once
+     * @return the outcome for every requested song
+     */
+    public PlaylistAddResult appendSongs(int playlistId, List<Integer> songIds) {
+        PlaylistAddResult result = new PlaylistAddResult();
+        if (playlistId <= 0 || songIds == null) {
+            return result;
+        }
+        List<Integer> requested = new ArrayList<>(new LinkedHashSet<>(songIds));
+        requested.remove(null);
+        if (requested.isEmpty()) {
+            return result;
+        }
+
+        try (Connection conn = DatabaseUtil.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                Set<Integer> existing = selectIds(conn,
+                        "SELECT id FROM songs WHERE id IN ", 0, requested);
+                Set<Integer> members = selectIds(conn,
+                        "SELECT song_id FROM playlist_songs WHERE playlist_id = ? AND song_id IN ", playlistId, requested);
+
+                List<Integer> toAdd = new ArrayList<>();
+                for (Integer songId : requested) {
+                    if (!existing.contains(songId)) {
+                        result.put(songId, Outcome.SONG_NOT_FOUND);
+                    } else if (members.contains(songId)) {
+                        result.put(songId, Outcome.ALREADY_IN_PLAYLIST);
+                    } else {
+                        result.put(songId, Outcome.ADDED);
+                        toAdd.add(songId);
+                    }
+                }
+
+                insertRows(conn, playlistId, toAdd);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            for (Integer songId : result.getSongIds(Outcome.ADDED)) {
+                result.replace(songId, Outcome.FAILED);
+            }
+            for (Integer songId : requested) {
+                result.put(songId, Outcome.FAILED);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Read which of the given ids a query returns, binding them into IN (...) lists
+     * @param sqlPrefix the query up to the IN list, with at most one parameter before it
+     * @param firstParameter value bound to that parameter, or 0 if there is none
+     */
+    private Set<Integer> selectIds(Connection conn, String sqlPrefix, int firstParameter,
+                                   List<Integer> ids) throws SQLException {
+        Set<Integer> found = new HashSet<>();
+        int offset = firstParameter > 0 ? 1 : 0;
+
+        for (int from = 0; from < ids.size(); from += SongDAO.ID_CHUNK_SIZE) {
+            List<Integer> chunk = ids.subList(from, Math.min(from + SongDAO.ID_CHUNK_SIZE, ids.size()));
+
+            StringBuilder sql = new StringBuilder(sqlPrefix).append("(");
+            for (int i = 0; i < chunk.size(); i++) {
+                sql.append(i == 0 ? "?" : ", ?");
+            }
+            sql.append(")");
+
+            try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+                if (offset > 0) {
+                    pstmt.setInt(1, firstParameter);
+                }
+                for (int i = 0; i < chunk.size(); i++) {
+                    pstmt.setInt(offset + i + 1, chunk.get(i));
+                }
+
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        found.add(rs.getInt(1));
+                    }
+                }
+            }
+        }
+
+        return found;
+    }
+
+    /**
+     * Append rows after the last song of a playlist with multi-row inserts
+     */
+    void insertRows(Connection conn, int playlistId, List<Integer> songIds) throws SQLException {
+        Long last = lastPosition(conn, playlistId, 0);
+        long position = last != null ? last : 0;
+
+        for (int from = 0; from < songIds.size(); from += INSERT_CHUNK_SIZE) {
+            List<Integer> chunk = songIds.subList(from, Math.min(from + INSERT_CHUNK_SIZE, songIds.size()));
+
+            StringBuilder sql = new StringBuilder("INSERT INTO playlist_songs (playlist_id, song_id, position) VALUES ");
+            for (int i = 0; i < chunk.size(); i++) {
+                sql.append(i == 0 ? "(?, ?, ?)" : ", (?, ?, ?)");
+            }
+
+            try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+                int parameter = 1;
+                for (Integer songId : chunk) {
+                    position += POSITION_GAP;
+                    pstmt.setInt(parameter++, playlistId);
+                    pstmt.setInt(parameter++, songId);
+                    pstmt.setLong(parameter++, position);
+                }
+                pstmt.executeUpdate();
+            }
+        }
+    }
+
+    /**
+     * Insert a song into a playlist, writing only its own row
+     * @param playlistId the playlist id
+     * @param songId the song id
+     * @param index where the song goes: 0 for first, past the end to append
+     * @return true if the song was inserted, false if it failed or the song is already in the playlist
+     */
+    public boolean insertSongAt(int playlistId, int songId, int index) {
+        return placeSong(playlistId, songId, index, false);
+    }
+
+    /**
+     * Move a song to another place in a playlist, writing only its own row
+     * @param playlistId the playlist id
+     * @param songId the song id
+     * @param toIndex where the song goes among the other songs: 0 for first, past the end for last
+     * @return true if the song was moved, false if it failed or the song is not in the playlist
+     */
+    public boolean moveSong(int playlistId, int songId, int toIndex) {
+        return placeSong(playlistId, songId, toIndex, true);
+    }
+
+    /**
+     * Remove one song from a playlist; the other songs keep their positions
+     * @param playlistId the playlist id
+     * @param songId the song id
+     * @return true if the song was removed, false if it failed or the song is not in the playlist
+     */
+    public boolean removeSong(int playlistId, int songId) {
+        if (playlistId <= 0 || songId <= 0) {
+            return false;
+        }
+
+        String sql = "DELETE FROM playlist_songs WHERE playlist_id = ? AND song_id = ?";
+        try (Connection conn = DatabaseUtil.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, playlistId);
+            pstmt.setInt(2, songId);
+            return pstmt.executeUpdate() > 0;
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        return false;
+    }
+
+    /**
+     * Space the songs of a playlist POSITION_GAP apart again, keeping their order.
+     * Inserts and moves do this by themselves when they run out of room, so it is only
+     * needed to tidy up a playlist ahead of many edits in one place.
+     * @param playlistId the playlist id
+     * @return the number of songs renumbered, or -1 if it failed
+     */
+    public int rebalance(int playlistId) {
+        if (playlistId <= 0) {
+            return -1;
+        }
+
+        try (Connection conn = DatabaseUtil.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                int renumbered = rebalance(conn, playlistId);
+                conn.commit();
+                return renumbered;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        return -1;
+    }
+
+    /**
+     * Renumber every playlist with neighbouring songs less than MIN_GAP apart, e.g. ones
+     * written before positions were spaced out or after many edits in one place, so later
+     * inserts and moves find room without renumbering the playlist themselves.
+     * Reads every playlist row once; meant to run in the background at startup.
+     * @return the number of playlists renumbered, or -1 if it failed
+     */
+    public int rebalanceCrowded() {
+        String sql = "SELECT DISTINCT playlist_id FROM (" +
+                "SELECT playlist_id, position - LAG(position) OVER (" +
+                "PARTITION BY playlist_id ORDER BY position, rowid) AS gap FROM playlist_songs) " +
+                "WHERE gap < ?";
+        List<Integer> playlistIds = new ArrayList<>();
+
+        try (Connection conn = DatabaseUtil.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setLong(1, MIN_GAP);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    playlistIds.add(rs.getInt("playlist_id"));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return -1;
+        }
+
+        int rebalanced = 0;
+        for (Integer playlistId : playlistIds) {
+            if (rebalance(playlistId) >= 0) {
+                rebalanced++;
+            }
+        }
+        return rebalanced;
+    }
+
+    private boolean placeSong(int playlistId, int songId, int index, boolean move) {
+        if (playlistId <= 0 || songId <= 0) {
+            return false;
+        }
+
+        String sql = move
+                ? "UPDATE playlist_songs SET position = ? WHERE playlist_id = ? AND song_id = ?"
+                : "INSERT INTO playlist_songs (position, playlist_id, song_id) VALUES (?, ?, ?)";
+
+        try (Connection conn = DatabaseUtil.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                Long position = freePosition(conn, playlistId, songId, index);
+                if (position == null) {
+                    // The neighbours are next to each other: make room once, then place the song
+                    rebalance(conn, playlistId);
+                    position = freePosition(conn, playlistId, songId, index);
+                }
+
+                pstmt.setLong(1, position);
+                pstmt.setInt(2, playlistId);
+                pstmt.setInt(3, songId);
+                if (pstmt.executeUpdate() > 0) {
+                    conn.commit();
+                    return true;
+                }
+                conn.rollback();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        return false;
+    }
+
+    /**
+     * Find a free position for a song at an index among the other songs of a playlist.
+     * Two neighbours are returned, but reaching them walks the first index - 1 entries of the
+     * (playlist_id, position) index, so the cost grows with how far down the song goes.
+     * @return the position, or null if the neighbours leave no room between them
+     */
+    private Long freePosition(Connection conn, int playlistId, int songId, int index) throws SQLException {
+        String sql = "SELECT position FROM playlist_songs WHERE playlist_id = ? AND song_id <> ? " +
+                "ORDER BY position, rowid LIMIT 2 OFFSET ?";
+        List<Long> neighbours = new ArrayList<>();
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, playlistId);
+            pstmt.setInt(2, songId);
+            pstmt.setInt(3, Math.max(index - 1, 0));
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    neighbours.add(rs.getLong("position"));
+                }
+            }
+        }
+
+        if (index <= 0) {
+            return positionBetween(null, neighbours.isEmpty() ? null : neighbours.get(0));
+        }
+        if (neighbours.isEmpty()) {
+            // Past the end
+            return positionBetween(lastPosition(conn, playlistId, songId), null);
+        }
+        return positionBetween(neighbours.get(0), neighbours.size() > 1 ? neighbours.get(1) : null);
+    }
+
+    /**
+     * Get the position of the last song in a playlist
+     * @return the position, or null if the playlist has no other songs
+     */
+    private Long lastPosition(Connection conn, int playlistId, int exceptSongId) throws SQLException {
+        String sql = "SELECT position FROM playlist_songs WHERE playlist_id = ? AND song_id <> ? " +
+                "ORDER BY position DESC, rowid DESC LIMIT 1";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, playlistId);
+            pstmt.setInt(2, exceptSongId);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getLong("position") : null;
+            }
+        }
+    }
+
+    /**
+     * Pick the position between two neighbours
+     * @param before position of the song before, or null at the start
+     * @param after position of the song after, or null at the end
+     * @return the position, or null if there is no free position between them
+     */
+    static Long positionBetween(Long before, Long after) {
+        if (before == null && after == null) {
+            return POSITION_GAP;
+        }
+        if (before == null) {
+            return after - POSITION_GAP;
+        }
+        if (after == null) {
+            return before + POSITION_GAP;
+        }
+        return after - before > 1 ? before + (after - before) / 2 : null;
+    }
+
+    private int rebalance(Connection conn, int playlistId) throws SQLException {
+        List<Integer> songIds = new ArrayList<>();
+        String select = "SELECT song_id FROM playlist_songs WHERE playlist_id = ? ORDER BY position, rowid";
+        try (PreparedStatement pstmt = conn.prepareStatement(select)) {
+            pstmt.setInt(1, playlistId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    songIds.add(rs.getInt("song_id"));
+                }
+            }
+        }
+
+        String update = "UPDATE playlist_songs SET position = ? WHERE playlist_id = ? AND song_id = ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(update)) {
+            long position = 0;
+            for (Integer songId : songIds) {
+                position += POSITION_GAP;
+                pstmt.setLong(1, position);
+                pstmt.setInt(2, playlistId);
+                pstmt.setInt(3, songId);
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+        return songIds.size();
+    }
+
     /**
      * Get songs by playlist id
      * @param playlistId the playlist id
      * @return a list of songs in the playlist
      */
     private List<Song> getSongsByPlaylistId(int playlistId) {
+        // Rows added before positions were spaced out may share a position; keep them in insertion order
         String sql = "SELECT s.* FROM songs s " +
                     "JOIN playlist_songs ps ON s.id = ps.song_id " +
                     "WHERE ps.playlist_id = ? " +
-                    "ORDER BY ps.position";
+                    "ORDER BY ps.position, ps.rowid";
         List<Song> songs = new ArrayList<>();
         
         try (Connection conn = DatabaseUtil.getConnection();
@@ -816,6 +1287,20 @@ public class PlaylistDAO {
         Timestamp timestamp = rs.getTimestamp("created_at");
         LocalDateTime createdAt = timestamp != null ? timestamp.toLocalDateTime() : LocalDateTime.now();
         
-        return new Playlist(id, name, description, userId, createdAt);
+        Playlist playlist = new Playlist(id, name, description, userId, createdAt);
+        playlist.setRule(rs.getString("rule"));
+        return playlist;
+    }
+
+    /**
+     * Map a ResultSet to a Playlist header carrying its stored totals instead of its songs
+     * @param rs the ResultSet
+     * @return the Playlist object
+     * @throws SQLException if a database access error occurs
+     */
+    private Playlist mapResultSetToHeader(ResultSet rs) throws SQLException {
+        Playlist playlist = mapResultSetToPlaylist(rs);
+        playlist.setSummary(rs.getInt("track_count"), rs.getInt("total_duration"));
+        return playlist;
     }
 } 
\ No newline at end of file
@@ -0,0 +1,241 @@
+package com.samet.music.dao;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Prefix trie of strings counted by how often they are used, answering "the most used
+ * values starting with this prefix" by walking the prefix alone.
+ * Keys are case-folded; the first spelling added for a key is the one returned.
+ * Children are kept in sorted parallel arrays rather than maps, and every node caches the
+ * best values below it, so a lookup never visits the subtree. A growing count can only move
+ * its value up those caches; a shrinking one rebuilds the caches along its key from the
+ * children's, which already hold the best of each subtree.
+ * Not thread-safe.
+ */
+final class PrefixTrie {
+
+    private static final char[] NO_LABELS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+    private static final Entry[] NO_ENTRIES = new Entry[0];
+
+    private final int maxCompletions;
+    private final Node root = new Node();
+    private int size;
+
+    /**
+     * Constructor
+     * @param maxCompletions number of values cached per prefix, the most a lookup can return
+     */
+    PrefixTrie(int maxCompletions) {
+        this.maxCompletions = Math.max(1, maxCompletions);
+    }
+
+    /**
+     * Count uses of a value
+     * @param value the value; blank values are ignored
+     * @param uses number of uses to add
+     */
+    void add(String value, int uses) {
+        if (value == null || value.trim().isEmpty() || uses <= 0) {
+            return;
+        }
+        String key = fold(value);
+        Node[] path = new Node[key.length() + 1];
+        Node node = root;
+        path[0] = node;
+        for (int i = 0; i < key.length(); i++) {
+            node = node.childOrCreate(key.charAt(i));
+            path[i + 1] = node;
+        }
+
+        Entry entry = node.entry;
+        if (entry == null) {
+            entry = new Entry(key, value.trim());
+            node.entry = entry;
+            size++;
+        }
+        entry.count += uses;
+        for (Node onPath : path) {
+            onPath.offer(entry, maxCompletions);
+        }
+    }
+
+    /**
+     * Take back uses of a value, dropping it once none are left
+     * @param value the value; blank and unknown values are ignored
+     * @param uses number of uses to take back
+     */
+    void remove(String value, int uses) {
+        if (value == null || value.trim().isEmpty() || uses <= 0) {
+            return;
+        }
+        String key = fold(value);
+        Node[] path = new Node[key.length() + 1];
+        Node node = root;
+        path[0] = node;
+        for (int i = 0; i < key.length(); i++) {
+            node = node.child(key.charAt(i));
+            if (node == null) {
+                return;
+            }
+            path[i + 1] = node;
+        }
+
+        Entry entry = node.entry;
+        if (entry == null) {
+            return;
+        }
+        entry.count -= uses;
+        if (entry.count <= 0) {
+            node.entry = null;
+            size--;
+        }
+        for (int i = key.length(); i >= 0; i--) {
+            path[i].rebuild(maxCompletions);
+            if (i > 0 && path[i].entry == null && path[i].labels.length == 0) {
+                path[i - 1].removeChild(key.charAt(i - 1));
+            }
+        }
+    }
+
+    /**
+     * Get the most used values starting with a prefix, ignoring case
+     * @param prefix the prefix; an empty prefix matches every value
+     * @param limit maximum number of values, at most the number cached per prefix
+     * @return the values, most used first, ties in alphabetical order
+     */
+    List<String> complete(String prefix, int limit) {
+        List<String> values = new ArrayList<>();
+        Node node = root;
+        String key = prefix != null ? fold(prefix) : "";
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.child(key.charAt(i));
+        }
+        if (node == null) {
+            return values;
+        }
+        for (int i = 0; i < node.top.length && i < limit; i++) {
+            values.add(node.top[i].value);
+        }
+        return values;
+    }
+
+    /**
+     * @return the number of distinct values
+     */
+    int size() {
+        return size;
+    }
+
+    static String fold(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static final class Entry {
+        final String key;
+        final String value;
+        int count;
+
+        Entry(String key, String value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        boolean ranksAbove(Entry other) {
+            return count != other.count ? count > other.count : key.compareTo(other.key) < 0;
+        }
+    }
+
+    private static final class Node {
+        char[] labels = NO_LABELS;
+        Node[] children = NO_CHILDREN;
+        Entry entry;
+        // Best values in this subtree, best first
+        Entry[] top = NO_ENTRIES;
+
+        Node child(char label) {
+            int index = Arrays.binarySearch(labels, label);
+            return index >= 0 ? children[index] : null;
+        }
+
+        Node childOrCreate(char label) {
+            int index = Arrays.binarySearch(labels, label);
+            if (index >= 0) {
+                return children[index];
+            }
+            index = -index - 1;
+            Node child = new Node();
+            char[] newLabels = new char[labels.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(labels, 0, newLabels, 0, index);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            newLabels[index] = label;
+            newChildren[index] = child;
+            System.arraycopy(labels, index, newLabels, index + 1, labels.length - index);
+            System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+            labels = newLabels;
+            children = newChildren;
+            return child;
+        }
+
+        void removeChild(char label) {
+            int index = Arrays.binarySearch(labels, label);
+            if (index < 0) {
+                return;
+            }
+            char[] newLabels = new char[labels.length - 1];
+            Node[] newChildren = new Node[children.length - 1];
+            System.arraycopy(labels, 0, newLabels, 0, index);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            System.arraycopy(labels, index + 1, newLabels, index, labels.length - index - 1);
+            System.arraycopy(children, index + 1, newChildren, index, children.length - index - 1);
+            labels = newLabels;
+            children = newChildren;
+        }
+
+        /**
+         * Recompute the cached best values from this node's entry and its children's, after a
+         * count below it shrank
+         */
+        void rebuild(int max) {
+            List<Entry> candidates = new ArrayList<>();
+            if (entry != null) {
+                candidates.add(entry);
+            }
+            for (Node child : children) {
+                candidates.addAll(Arrays.asList(child.top));
+            }
+            candidates.sort((a, b) -> a == b ? 0 : a.ranksAbove(b) ? -1 : 1);
+            top = candidates.subList(0, Math.min(candidates.size(), max)).toArray(NO_ENTRIES);
+        }
+
+        /**
+         * Move an entry whose count just grew to its place in the cached best values
+         */
+        void offer(Entry entry, int max) {
+            int at = top.length;
+            for (int i = 0; i < top.length; i++) {
+                if (top[i] == entry) {
+                    at = i;
+                    break;
+                }
+            }
+            if (at == top.length) {
+                if (top.length == max && !entry.ranksAbove(top[max - 1])) {
+                    return;
+                }
+                // Not cached yet: take the last place, dropping the worst if full
+                top = Arrays.copyOf(top, Math.min(top.length + 1, max));
+                at = top.length - 1;
+            }
+            while (at > 0 && entry.ranksAbove(top[at - 1])) {
+                top[at] = top[at - 1];
+                at--;
+            }
+            top[at] = entry;
+        }
+    }
+}
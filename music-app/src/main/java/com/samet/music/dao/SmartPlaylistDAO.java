@@ -0,0 +1,258 @@
+package com.samet.music.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import com.samet.music.model.Playlist;
+import com.samet.music.util.DatabaseUtil;
+
+/**
+ * Data Access Object for smart playlists, whose songs are the ones matching a SmartRule.
+ * Matches are stored in playlist_songs like the songs of any playlist, so a smart playlist
+ * is opened, listed and counted exactly like a regular one. Only the owner's songs can match.
+ * The rule is evaluated against the owner's library once, when it is set; after that every
+ * smart playlist has its own triggers on the owner's songs and user_song_statistics, which
+ * check just the written song against the rule and add or drop it. That keeps the matches
+ * current on every write, whichever DAO or buffer makes it, at the cost of two point queries
+ * per smart playlist of the song's owner.
+ */
+public class SmartPlaylistDAO {
+
+    // Trigger names are suffixed to "trg_smart_<playlist id>_"
+    private static final String[] TRIGGERS = {
+            "songs_insert", "songs_update", "statistics_insert", "statistics_update"
+    };
+
+    private final PlaylistDAO playlistDAO;
+
+    /**
+     * Constructor
+     */
+    public SmartPlaylistDAO() {
+        this(new PlaylistDAO());
+    }
+
+    /**
+     * Constructor
+     * @param playlistDAO playlist data access object, used to write and read the matches
+     */
+    public SmartPlaylistDAO(PlaylistDAO playlistDAO) {
+        this.playlistDAO = playlistDAO;
+    }
+
+    /**
+     * Create a smart playlist and fill it with the songs matching its rule
+     * @param playlist the playlist to create; its songs are ignored
+     * @param rule the rule choosing its songs
+     * @return the created playlist with its songs, or null if creation failed
+     */
+    public Playlist create(Playlist playlist, SmartRule rule) {
+        String sql = "INSERT INTO playlists (name, description, user_id, rule) VALUES (?, ?, ?, ?)";
+        int playlistId = 0;
+
+        try (Connection conn = DatabaseUtil.getConnection()) {
+            boolean previousAutoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql);
+                 Statement stmt = conn.createStatement()) {
+                pstmt.setString(1, playlist.getName());
+                pstmt.setString(2, playlist.getDescription());
+                pstmt.setInt(3, playlist.getUserId());
+                pstmt.setString(4, rule.toString());
+                pstmt.executeUpdate();
+
+                // The driver has no generated keys, so read the id as UserDAO does
+                try (ResultSet rs = stmt.executeQuery("SELECT last_insert_rowid()")) {
+                    if (rs.next()) {
+                        playlistId = rs.getInt(1);
+                    }
+                }
+                if (playlistId == 0) {
+                    conn.rollback();
+                    return null;
+                }
+
+                materialize(conn, playlistId, playlist.getUserId(), rule);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(previousAutoCommit);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        }
+
+        return playlistDAO.findById(playlistId).orElse(null);
+    }
+
+    /**
+     * Get the rule of a playlist
+     * @param playlistId the playlist id
+     * @return the rule, or empty if the playlist is not found or is a regular playlist
+     */
+    public Optional<SmartRule> getRule(int playlistId) {
+        String sql = "SELECT rule FROM playlists WHERE id = ?";
+
+        try (Connection conn = DatabaseUtil.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, playlistId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next() && rs.getString("rule") != null) {
+                    return Optional.of(SmartRule.parse(rs.getString("rule")));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Change the rule of a playlist, replacing its songs with the ones matching the new rule.
+     * A null rule makes it a regular playlist again, keeping the songs it has.
+     * @param playlistId the playlist id
+     * @param rule the new rule, or null
+     * @return true if the rule was set, false if the playlist is not found or it failed
+     */
+    public boolean setRule(int playlistId, SmartRule rule) {
+        try (Connection conn = DatabaseUtil.getConnection()) {
+            boolean previousAutoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                int userId = 0;
+                try (PreparedStatement pstmt = conn.prepareStatement("SELECT user_id FROM playlists WHERE id = ?")) {
+                    pstmt.setInt(1, playlistId);
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        if (!rs.next()) {
+                            conn.rollback();
+                            return false;
+                        }
+                        userId = rs.getInt("user_id");
+                    }
+                }
+
+                try (PreparedStatement pstmt = conn.prepareStatement("UPDATE playlists SET rule = ? WHERE id = ?")) {
+                    pstmt.setString(1, rule != null ? rule.toString() : null);
+                    pstmt.setInt(2, playlistId);
+                    pstmt.executeUpdate();
+                }
+
+                if (rule != null) {
+                    materialize(conn, playlistId, userId, rule);
+                } else {
+                    dropTriggers(conn, playlistId);
+                }
+                conn.commit();
+                return true;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(previousAutoCommit);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Replace the songs of a playlist with every song of its owner matching a rule, and create the
+     * triggers that keep them matching
+     */
+    private void materialize(Connection conn, int playlistId, int userId, SmartRule rule) throws SQLException {
+        dropTriggers(conn, playlistId);
+
+        try (PreparedStatement pstmt = conn.prepareStatement("DELETE FROM playlist_songs WHERE playlist_id = ?")) {
+            pstmt.setInt(1, playlistId);
+            pstmt.executeUpdate();
+        }
+
+        List<Integer> songIds = new ArrayList<>();
+        String sql = "SELECT s.id FROM songs s " +
+                "LEFT JOIN user_song_statistics st ON st.song_id = s.id AND st.user_id = ? " +
+                "WHERE s.user_id = ? AND " + rule.toSql() + " ORDER BY s.id";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, userId);
+            pstmt.setInt(2, userId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    songIds.add(rs.getInt(1));
+                }
+            }
+        }
+        playlistDAO.insertRows(conn, playlistId, songIds);
+
+        try (Statement stmt = conn.createStatement()) {
+            for (String trigger : triggers(playlistId, userId, rule)) {
+                stmt.execute(trigger);
+            }
+        }
+    }
+
+    /**
+     * Build the triggers that re-check one written song against a playlist's rule.
+     * A song that stopped matching is dropped; a song that started matching is appended,
+     * and one that still matches keeps its place.
+     */
+    static List<String> triggers(int playlistId, int userId, SmartRule rule) {
+        List<String> triggers = new ArrayList<>();
+        String prefix = "trg_smart_" + playlistId + "_";
+
+        triggers.add("CREATE TRIGGER " + prefix + TRIGGERS[0] + " AFTER INSERT ON songs " +
+                "WHEN NEW.user_id = " + userId + " BEGIN " +
+                recheck(playlistId, userId, rule, "NEW.id") + " END");
+        // Only columns a rule can test, so moving a song's file does not fire it;
+        // a song given to another user is dropped by the recheck
+        triggers.add("CREATE TRIGGER " + prefix + TRIGGERS[1] + " " +
+                "AFTER UPDATE OF title, artist, album, genre, year, duration, user_id ON songs " +
+                "WHEN NEW.user_id = " + userId + " OR OLD.user_id = " + userId + " BEGIN " +
+                recheck(playlistId, userId, rule, "NEW.id") + " END");
+        if (rule.usesStatistics()) {
+            // Only the owner's plays and favorites count
+            triggers.add("CREATE TRIGGER " + prefix + TRIGGERS[2] + " AFTER INSERT ON user_song_statistics " +
+                    "WHEN NEW.user_id = " + userId + " BEGIN " +
+                    recheck(playlistId, userId, rule, "NEW.song_id") + " END");
+            triggers.add("CREATE TRIGGER " + prefix + TRIGGERS[3] + " AFTER UPDATE ON user_song_statistics " +
+                    "WHEN NEW.user_id = " + userId + " BEGIN " +
+                    recheck(playlistId, userId, rule, "NEW.song_id") + " END");
+        }
+        return triggers;
+    }
+
+    private static String recheck(int playlistId, int userId, SmartRule rule, String songId) {
+        String matches = "EXISTS (SELECT 1 FROM songs s " +
+                "LEFT JOIN user_song_statistics st ON st.song_id = s.id AND st.user_id = " + userId + " " +
+                "WHERE s.id = " + songId + " AND s.user_id = " + userId + " AND " + rule.toSql() + ")";
+        return "DELETE FROM playlist_songs WHERE playlist_id = " + playlistId + " AND song_id = " + songId +
+                " AND NOT " + matches + "; " +
+                "INSERT OR IGNORE INTO playlist_songs (playlist_id, song_id, position) " +
+                "SELECT " + playlistId + ", " + songId + ", " +
+                "COALESCE((SELECT MAX(position) FROM playlist_songs WHERE playlist_id = " + playlistId + "), 0) + " +
+                PlaylistDAO.POSITION_GAP + " WHERE " + matches + ";";
+    }
+
+    /**
+     * Drop the triggers of a smart playlist, if it has any
+     * @param conn the connection, possibly in a transaction
+     * @param playlistId the playlist id
+     * @throws SQLException if a database access error occurs
+     */
+    static void dropTriggers(Connection conn, int playlistId) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            for (String trigger : TRIGGERS) {
+                stmt.execute("DROP TRIGGER IF EXISTS trg_smart_" + playlistId + "_" + trigger);
+            }
+        }
+    }
+}
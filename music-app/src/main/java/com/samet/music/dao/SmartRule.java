@@ -0,0 +1,193 @@
+package com.samet.music.dao;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Rule selecting the songs of a smart playlist, such as
+ * {@code genre = Rock AND year >= 2000 AND play_count > 5}.
+ * A rule is one or more conditions joined by AND. A condition compares a song field
+ * (title, artist, album, genre, year, duration) or one of the playlist owner's statistics
+ * (play_count, favorite) with a value, using =, !=, &lt;, &lt;=, &gt;, &gt;= or, for text,
+ * contains. Text is compared ignoring case; values with spaces are quoted.
+ * Rules are parsed into a fixed set of fields and validated values, so the SQL they compile
+ * to inlines nothing that came from the user unchecked.
+ */
+public final class SmartRule {
+
+    private static final Pattern CONDITION = Pattern.compile(
+            "\\s*([A-Za-z_]+)\\s*(<=|>=|!=|<>|=|<|>|(?i:contains)(?=[\\s'\"]))\\s*" +
+            "('(?:[^']|'')*'|\"[^\"]*\"|[^\\s'\"]+)\\s*");
+    private static final Pattern AND = Pattern.compile("(?i)AND(?=\\s)");
+
+    /**
+     * Fields a condition can test
+     */
+    private enum Field {
+        TITLE("COALESCE(s.title, '')", true, false),
+        ARTIST("COALESCE(s.artist, '')", true, false),
+        ALBUM("COALESCE(s.album, '')", true, false),
+        GENRE("COALESCE(s.genre, '')", true, false),
+        YEAR("COALESCE(s.year, 0)", false, false),
+        DURATION("COALESCE(s.duration, 0)", false, false),
+        PLAY_COUNT("COALESCE(st.play_count, 0)", false, true),
+        FAVORITE("COALESCE(st.favorite, 0)", false, true);
+
+        private final String column;
+        private final boolean text;
+        private final boolean statistic;
+
+        Field(String column, boolean text, boolean statistic) {
+            this.column = column;
+            this.text = text;
+            this.statistic = statistic;
+        }
+    }
+
+    private static final class Condition {
+        final Field field;
+        final String operator;
+        final String value;
+
+        Condition(Field field, String operator, String value) {
+            this.field = field;
+            this.operator = operator;
+            this.value = value;
+        }
+    }
+
+    private final List<Condition> conditions;
+
+    private SmartRule(List<Condition> conditions) {
+        this.conditions = Collections.unmodifiableList(conditions);
+    }
+
+    /**
+     * Parse a rule
+     * @param text the rule, e.g. {@code genre = Rock AND year >= 2000}
+     * @return the rule
+     * @throws IllegalArgumentException if the rule cannot be parsed
+     */
+    public static SmartRule parse(String text) {
+        if (text == null || text.trim().isEmpty()) {
+            throw new IllegalArgumentException("Rule is empty");
+        }
+
+        List<Condition> conditions = new ArrayList<>();
+        Matcher condition = CONDITION.matcher(text);
+        Matcher and = AND.matcher(text);
+        int at = 0;
+        while (true) {
+            condition.region(at, text.length());
+            if (!condition.lookingAt()) {
+                throw new IllegalArgumentException("Expected a condition at: " + text.substring(at).trim());
+            }
+            conditions.add(condition(condition.group(1), condition.group(2), condition.group(3)));
+            at = condition.end();
+            if (at == text.length()) {
+                return new SmartRule(conditions);
+            }
+            and.region(at, text.length());
+            if (!and.lookingAt()) {
+                throw new IllegalArgumentException("Expected AND at: " + text.substring(at).trim());
+            }
+            at = and.end();
+        }
+    }
+
+    private static Condition condition(String name, String operator, String rawValue) {
+        Field field;
+        try {
+            field = Field.valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown field: " + name);
+        }
+        String op = operator.equals("<>") ? "!=" : operator.toLowerCase(Locale.ROOT);
+
+        String value = rawValue;
+        if (value.startsWith("'")) {
+            value = value.substring(1, value.length() - 1).replace("''", "'");
+        } else if (value.startsWith("\"")) {
+            value = value.substring(1, value.length() - 1);
+        }
+
+        if (!field.text) {
+            if (op.equals("contains")) {
+                throw new IllegalArgumentException("contains only applies to text fields: " + name);
+            }
+            if (field == Field.FAVORITE && (value.equalsIgnoreCase("true") || value.equalsIgnoreCase("false"))) {
+                value = value.equalsIgnoreCase("true") ? "1" : "0";
+            }
+            try {
+                // Re-rendered from the parsed number, so only digits reach the SQL
+                value = Long.toString(Long.parseLong(value));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Expected a whole number for " + name + ": " + value);
+            }
+        }
+        return new Condition(field, op, value);
+    }
+
+    /**
+     * @return true if the rule tests the playlist owner's statistics, not only song fields
+     */
+    public boolean usesStatistics() {
+        for (Condition condition : conditions) {
+            if (condition.field.statistic) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compile the rule to an SQL condition over songs aliased s, left joined to the
+     * owner's user_song_statistics row aliased st. Values are inlined as literals,
+     * so the condition can be used in trigger bodies.
+     * @return the condition
+     */
+    String toSql() {
+        StringBuilder sql = new StringBuilder();
+        for (Condition condition : conditions) {
+            if (sql.length() > 0) {
+                sql.append(" AND ");
+            }
+            if (!condition.field.text) {
+                sql.append(condition.field.column).append(' ').append(condition.operator).append(' ')
+                        .append(condition.value);
+            } else if (condition.operator.equals("contains")) {
+                sql.append("instr(lower(").append(condition.field.column).append("), lower(")
+                        .append(quote(condition.value)).append(")) > 0");
+            } else {
+                sql.append(condition.field.column).append(" COLLATE NOCASE ").append(condition.operator)
+                        .append(' ').append(quote(condition.value));
+            }
+        }
+        return sql.toString();
+    }
+
+    private static String quote(String value) {
+        return "'" + value.replace("'", "''") + "'";
+    }
+
+    /**
+     * @return the rule in its canonical form, which parses back to the same rule
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (Condition condition : conditions) {
+            if (text.length() > 0) {
+                text.append(" AND ");
+            }
+            text.append(condition.field.name().toLowerCase(Locale.ROOT)).append(' ')
+                    .append(condition.operator).append(' ')
+                    .append(condition.field.text ? quote(condition.value) : condition.value);
+        }
+        return text.toString();
+    }
+}
@@ -2,41 +2,46 @@ package com.samet.music.dao;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import com.samet.music.model.Song;
 import com.samet.music.util.DatabaseUtil;
 
 public class SongDAO {
     
+    /**
+     * Maximum number of ids bound into a single IN (...) query
+     */
+    static final int ID_CHUNK_SIZE = 500;
+    
+    /**
+     * Columns findSongPage can sort by, each backed by a COLLATE NOCASE index
+     */
+    static final Set<String> SORT_COLUMNS = Collections.unmodifiableSet(
+            new HashSet<>(Arrays.asList("title", "artist", "album", "genre")));
+    
     private Connection connection;
+    private final ArtistRegistry artistRegistry = ArtistRegistry.getInstance();
+    private final CompletionIndex completionIndex = CompletionIndex.getInstance();
+    private final SongSearchIndex songSearchIndex = SongSearchIndex.getInstance();
+    private final NameDictionary names = NameDictionary.getInstance();
     
+    /**
+     * Constructor
+     * Tables are created once at startup by SchemaManager
+     */
     public SongDAO() {
-        System.out.println("SongDAO initializing");
-        
-        try (Connection conn = DatabaseUtil.getConnection()) {
-            System.out.println("Database connection established successfully");
-            
-            String sql = "CREATE TABLE IF NOT EXISTS songs (" +
-                    "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                    "title TEXT NOT NULL," +
-                    "artist TEXT NOT NULL," +
-                    "album TEXT NOT NULL," +
-                    "genre TEXT NOT NULL," +
-                    "year INTEGER," +
-                    "duration INTEGER," +
-                    "file_path TEXT," +
-                    "user_id INTEGER," +
-                    "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
-                    ")";
-                    
-            conn.createStatement().execute(sql);
-            System.out.println("SongDAO: songs table check/creation completed");
-        } catch (SQLException e) {
-            System.err.println("Error initializing database: " + e.getMessage());
-            e.printStackTrace();
-        }
     }
     
     /**
@@ -49,19 +54,33 @@ public class SongDAO {
     }
 
     public void addSong(String title, String artist, String album, String genre) {
-        String sql = "INSERT INTO songs(title, artist, album, genre) VALUES (?, ?, ?, ?)";
+        String sql = "INSERT INTO songs(title, artist, album, genre, artist_id, album_id, genre_id) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?)";
         try (Connection conn = DatabaseUtil.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, title);
             pstmt.setString(2, artist);
             pstmt.setString(3, album);
             pstmt.setString(4, genre);
+            setNameKeys(conn, pstmt, 5, artist, album, genre);
             pstmt.executeUpdate();
             
+            // The driver has no generated keys, so read the id as UserDAO does
+            int id = 0;
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT last_insert_rowid()")) {
+                if (rs.next()) {
+                    id = rs.getInt(1);
+                }
+            }
+            
             // Only commit if we're not in auto-commit mode
             if (conn != null && !conn.getAutoCommit()) {
                 conn.commit();
             }
+            artistRegistry.register(artist);
+            completionIndex.register(artist, album, genre);
+            songSearchIndex.add(legacySong(id, title, artist, album, genre));
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -89,17 +108,26 @@ public class SongDAO {
 
     public void deleteSong(String title, String artist, String album) {
         String sql = "DELETE FROM songs WHERE title=? AND artist=? AND album=?";
-        try (Connection conn = DatabaseUtil.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, title);
-            pstmt.setString(2, artist);
-            pstmt.setString(3, album);
-            pstmt.executeUpdate();
+        try (Connection conn = DatabaseUtil.getConnection()) {
+            List<Song> deleted = findSongs(conn, "title = ? AND artist = ? AND album = ?", title, artist, album);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, title);
+                pstmt.setString(2, artist);
+                pstmt.setString(3, album);
+                pstmt.executeUpdate();
+            }
             
             // Only commit if we're not in auto-commit mode
             if (conn != null && !conn.getAutoCommit()) {
                 conn.commit();
             }
+            if (!deleted.isEmpty()) {
+                artistRegistry.unregister(conn, artist);
+            }
+            for (Song song : deleted) {
+                completionIndex.unregister(song.getArtist(), song.getAlbum(), song.getGenre());
+                songSearchIndex.remove(song.getId());
+            }
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -111,8 +139,8 @@ public class SongDAO {
      * @return created song
      */
     public Song create(Song song) {
-        String sql = "INSERT INTO songs(title, artist, album, genre, year, duration, file_path, user_id, created_at) " +
-                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        String sql = "INSERT INTO songs(title, artist, album, genre, year, duration, file_path, user_id, created_at, " +
+                "artist_id, album_id, genre_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
         Connection conn = null;
         PreparedStatement pstmt = null;
         boolean previousAutoCommit = true;
@@ -135,6 +163,7 @@ public class SongDAO {
             pstmt.setString(7, song.getFilePath());
             pstmt.setInt(8, song.getUserId());
             pstmt.setTimestamp(9, song.getCreatedAt());
+            setNameKeys(conn, pstmt, 10, song.getArtist(), song.getAlbum(), song.getGenre());
                 
             int affectedRows = pstmt.executeUpdate();
                 
@@ -145,6 +174,9 @@ public class SongDAO {
                     
                     // Commit transaction
                     conn.commit();
+                    artistRegistry.register(song.getArtist());
+                    completionIndex.register(song.getArtist(), song.getAlbum(), song.getGenre());
+                    songSearchIndex.add(song);
                     return song;
                 }
             }
@@ -168,6 +200,7 @@ public class SongDAO {
                 try {
                     conn.setAutoCommit(previousAutoCommit);
                     if (pstmt != null) pstmt.close();
+                    conn.close();
                 } catch (SQLException e) {
                     e.printStackTrace();
                 }
@@ -198,6 +231,52 @@ public class SongDAO {
         return Optional.empty();
     }
 
+    /**
+     * Find several songs by ID in as few queries as possible.
+     * IDs are looked up in chunks of {@value #ID_CHUNK_SIZE} with one IN (...) query per chunk;
+     * duplicates and null IDs are ignored and IDs that do not exist are simply absent from the result.
+     * @param ids song IDs
+     * @return map of song ID to song
+     */
+    public Map<Integer, Song> findByIds(Collection<Integer> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        
+        List<Integer> uniqueIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        uniqueIds.remove(null);
+        Map<Integer, Song> songs = new HashMap<>();
+        
+        try (Connection conn = DatabaseUtil.getConnection()) {
+            for (int from = 0; from < uniqueIds.size(); from += ID_CHUNK_SIZE) {
+                List<Integer> chunk = uniqueIds.subList(from, Math.min(from + ID_CHUNK_SIZE, uniqueIds.size()));
+                
+                StringBuilder sql = new StringBuilder("SELECT * FROM songs WHERE id IN (");
+                for (int i = 0; i < chunk.size(); i++) {
+                    sql.append(i == 0 ? "?" : ", ?");
+                }
+                sql.append(")");
+                
+                try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+                    for (int i = 0; i < chunk.size(); i++) {
+                        pstmt.setInt(i + 1, chunk.get(i));
+                    }
+                    
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            Song song = mapResultSetToSong(rs);
+                            songs.put(song.getId(), song);
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        
+        return songs;
+    }
+
     /**
      * Find all songs
      * @return list of songs
@@ -242,6 +321,115 @@ public class SongDAO {
         return songs;
     }
 
+    /**
+     * Get the next page of songs in id order, for keyset pagination
+     * @param afterId id of the last song of the previous page, 0 for the first page
+     * @param pageSize maximum number of songs to return
+     * @return the songs with an id above afterId, empty if pageSize is not positive
+     */
+    public List<Song> findAllAfter(int afterId, int pageSize) {
+        if (pageSize <= 0) {
+            return new ArrayList<>();
+        }
+        String sql = "SELECT * FROM songs WHERE id > ? ORDER BY id LIMIT ?";
+        try (Stream<Song> songs = CursorStream.query(DatabaseUtil.getConnection(), sql,
+                this::mapResultSetToSong, afterId, pageSize)) {
+            return songs.collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Get the next page of a user's songs in id order, for keyset pagination
+     * @param userId user ID
+     * @param afterId id of the last song of the previous page, 0 for the first page
+     * @param pageSize maximum number of songs to return
+     * @return the user's songs with an id above afterId, empty if pageSize is not positive
+     */
+    public List<Song> findByUserIdAfter(int userId, int afterId, int pageSize) {
+        if (pageSize <= 0) {
+            return new ArrayList<>();
+        }
+        String sql = "SELECT * FROM songs WHERE user_id = ? AND id > ? ORDER BY id LIMIT ?";
+        try (Stream<Song> songs = CursorStream.query(DatabaseUtil.getConnection(), sql,
+                this::mapResultSetToSong, userId, afterId, pageSize)) {
+            return songs.collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Stream all songs in id order over an open cursor.
+     * The stream holds a pooled connection until it is closed, so use it in try-with-resources.
+     * @return a lazily-read stream of songs
+     */
+    public Stream<Song> streamAll() {
+        return CursorStream.query(DatabaseUtil.getConnection(), "SELECT * FROM songs ORDER BY id",
+                this::mapResultSetToSong);
+    }
+
+    /**
+     * Stream a user's songs in id order over an open cursor.
+     * The stream holds a pooled connection until it is closed, so use it in try-with-resources.
+     * @param userId user ID
+     * @return a lazily-read stream of the user's songs
+     */
+    public Stream<Song> streamByUserId(int userId) {
+        return CursorStream.query(DatabaseUtil.getConnection(),
+                "SELECT * FROM songs WHERE user_id = ? ORDER BY id", this::mapResultSetToSong, userId);
+    }
+
+    /**
+     * Count all songs
+     * @return number of songs, 0 if they could not be counted
+     */
+    public int countSongs() {
+        try (Connection conn = DatabaseUtil.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM songs")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return 0;
+    }
+
+    /**
+     * Get a window of songs in a sort order, for tables that load rows as they are shown.
+     * Sorting is done by SQL, ignoring case, with the id as tie-breaker so windows never overlap.
+     * The offset is walked in the sort index on ids only; full rows are read for the window alone.
+     * @param offset position of the first song in the sort order
+     * @param limit maximum number of songs to return
+     * @param sortColumn one of title, artist, album or genre; null or any other value sorts by id
+     * @param ascending true for ascending order
+     * @return the songs in the window, in sort order
+     */
+    public List<Song> findSongPage(int offset, int limit, String sortColumn, boolean ascending) {
+        List<Song> songs = new ArrayList<>();
+        if (offset < 0 || limit <= 0) {
+            return songs;
+        }
+        String direction = ascending ? " ASC" : " DESC";
+        String order = "%1$sid" + direction;
+        if (SORT_COLUMNS.contains(sortColumn)) {
+            order = "%1$s" + sortColumn + " COLLATE NOCASE" + direction + ", " + order;
+        }
+        String sql = "SELECT s.* FROM songs s JOIN (" +
+                "SELECT id FROM songs ORDER BY " + String.format(order, "") + " LIMIT ? OFFSET ?) page " +
+                "ON s.id = page.id ORDER BY " + String.format(order, "s.");
+        try (Connection conn = DatabaseUtil.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, limit);
+            pstmt.setInt(2, offset);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    songs.add(mapResultSetToSong(rs));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return songs;
+    }
+
     /**
      * Song update
      * @param song song to update
@@ -249,9 +437,10 @@ public class SongDAO {
      */
     public boolean update(Song song) {
         String sql = "UPDATE songs SET title = ?, artist = ?, album = ?, genre = ?, " +
-                "year = ?, duration = ?, file_path = ? WHERE id = ?";
+                "year = ?, duration = ?, file_path = ?, artist_id = ?, album_id = ?, genre_id = ? WHERE id = ?";
         try (Connection conn = DatabaseUtil.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            List<Song> before = findSongs(conn, "id = ?", song.getId());
             pstmt.setString(1, song.getTitle());
             pstmt.setString(2, song.getArtist());
             pstmt.setString(3, song.getAlbum());
@@ -259,9 +448,18 @@ public class SongDAO {
             pstmt.setInt(5, song.getYear());
             pstmt.setInt(6, song.getDuration());
             pstmt.setString(7, song.getFilePath());
-            pstmt.setInt(8, song.getId());
+            setNameKeys(conn, pstmt, 8, song.getArtist(), song.getAlbum(), song.getGenre());
+            pstmt.setInt(11, song.getId());
             
             int affectedRows = pstmt.executeUpdate();
+            if (affectedRows > 0) {
+                for (Song old : before) {
+                    artistRegistry.rename(conn, old.getArtist(), song.getArtist());
+                    completionIndex.update(old.getArtist(), old.getAlbum(), old.getGenre(),
+                            song.getArtist(), song.getAlbum(), song.getGenre());
+                }
+                songSearchIndex.add(song);
+            }
             return affectedRows > 0;
         } catch (SQLException e) {
             e.printStackTrace();
@@ -278,9 +476,17 @@ public class SongDAO {
         String sql = "DELETE FROM songs WHERE id = ?";
         try (Connection conn = DatabaseUtil.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            List<Song> deleted = findSongs(conn, "id = ?", id);
             pstmt.setInt(1, id);
             
             int affectedRows = pstmt.executeUpdate();
+            if (affectedRows > 0) {
+                for (Song old : deleted) {
+                    artistRegistry.unregister(conn, old.getArtist());
+                    completionIndex.unregister(old.getArtist(), old.getAlbum(), old.getGenre());
+                }
+                songSearchIndex.remove(id);
+            }
             return affectedRows > 0;
         } catch (SQLException e) {
             e.printStackTrace();
@@ -341,6 +547,84 @@ public class SongDAO {
         return songs;
     }
 
+    /**
+     * Search one user's songs through the full-text index on title, artist, album and genre.
+     * Every word of the query must match a word in any of those fields; words match as
+     * prefixes, so partially typed words already find results. Best matches come first.
+     * @param query words to search for
+     * @param userId the user whose songs are searched
+     * @param limit maximum number of results, or 0 for all
+     * @return matching songs, ranked by BM25
+     */
+    public List<Song> searchFullText(String query, int userId, int limit) {
+        return searchFullText(query, Integer.valueOf(userId), limit);
+    }
+
+    /**
+     * Search all songs through the full-text index on title, artist, album and genre,
+     * with the same matching and ranking as the search over one user's songs
+     * @param query words to search for
+     * @param limit maximum number of results, or 0 for all
+     * @return matching songs, ranked by BM25
+     */
+    public List<Song> searchFullText(String query, int limit) {
+        return searchFullText(query, null, limit);
+    }
+
+    private List<Song> searchFullText(String query, Integer userId, int limit) {
+        List<Song> songs = new ArrayList<>();
+        String match = toFullTextQuery(query);
+        if (match.isEmpty()) {
+            return songs;
+        }
+        
+        String sql = "SELECT s.* FROM songs_fts f JOIN songs s ON s.id = f.rowid WHERE songs_fts MATCH ?" +
+                (userId != null ? " AND s.user_id = ?" : "") + " ORDER BY bm25(songs_fts), s.id LIMIT ?";
+        try (Connection conn = DatabaseUtil.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            int index = 1;
+            pstmt.setString(index++, match);
+            if (userId != null) {
+                pstmt.setInt(index++, userId);
+            }
+            pstmt.setInt(index, limit > 0 ? limit : -1);
+            
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    songs.add(mapResultSetToSong(rs));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        
+        return songs;
+    }
+    
+    /**
+     * Turn free text into an FTS5 query of quoted prefix terms, so that user input
+     * can never be read as FTS5 operators
+     * @param query free text
+     * @return the FTS5 query, or an empty string if there is nothing to search for
+     */
+    static String toFullTextQuery(String query) {
+        if (query == null) {
+            return "";
+        }
+        
+        StringBuilder match = new StringBuilder();
+        for (String term : query.trim().split("\\s+")) {
+            if (term.isEmpty()) {
+                continue;
+            }
+            if (match.length() > 0) {
+                match.append(' ');
+            }
+            match.append('"').append(term.replace("\"", "\"\"")).append("\"*");
+        }
+        return match.toString();
+    }
+
     /**
      * Find songs by artist
      * @param artist artist name
@@ -348,7 +632,9 @@ public class SongDAO {
      */
     public List<Song> findByArtist(String artist) {
         List<Song> songs = new ArrayList<>();
-        String sql = "SELECT * FROM songs WHERE artist = ?";
+        // Filters on the indexed integer key rather than comparing every artist name
+        String sql = "SELECT * FROM songs WHERE artist_id = " +
+                "(SELECT id FROM artist_names WHERE name = trim(?))";
         try (Connection conn = DatabaseUtil.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, artist);
@@ -398,24 +684,36 @@ public class SongDAO {
      */
     public boolean updateSong(String oldTitle, String oldArtist, String oldAlbum, 
                              String newTitle, String newArtist, String newAlbum, String newGenre) {
-        String sql = "UPDATE songs SET title = ?, artist = ?, album = ?, genre = ? " +
+        String sql = "UPDATE songs SET title = ?, artist = ?, album = ?, genre = ?, " +
+                     "artist_id = ?, album_id = ?, genre_id = ? " +
                      "WHERE title = ? AND artist = ? AND album = ?";
-        try (Connection conn = DatabaseUtil.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, newTitle);
-            pstmt.setString(2, newArtist);
-            pstmt.setString(3, newAlbum);
-            pstmt.setString(4, newGenre);
-            pstmt.setString(5, oldTitle);
-            pstmt.setString(6, oldArtist);
-            pstmt.setString(7, oldAlbum);
-            
-            int affectedRows = pstmt.executeUpdate();
+        try (Connection conn = DatabaseUtil.getConnection()) {
+            List<Song> before = findSongs(conn, "title = ? AND artist = ? AND album = ?", oldTitle, oldArtist, oldAlbum);
+            int affectedRows;
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, newTitle);
+                pstmt.setString(2, newArtist);
+                pstmt.setString(3, newAlbum);
+                pstmt.setString(4, newGenre);
+                setNameKeys(conn, pstmt, 5, newArtist, newAlbum, newGenre);
+                pstmt.setString(8, oldTitle);
+                pstmt.setString(9, oldArtist);
+                pstmt.setString(10, oldAlbum);
+                
+                affectedRows = pstmt.executeUpdate();
+            }
             
             // Only commit if we're not in auto-commit mode
             if (conn != null && !conn.getAutoCommit()) {
                 conn.commit();
             }
+            if (affectedRows > 0) {
+                artistRegistry.rename(conn, oldArtist, newArtist);
+                for (Song old : before) {
+                    completionIndex.update(old.getArtist(), old.getAlbum(), old.getGenre(), newArtist, newAlbum, newGenre);
+                    songSearchIndex.add(legacySong(old.getId(), newTitle, newArtist, newAlbum, newGenre));
+                }
+            }
             
             return affectedRows > 0;
         } catch (SQLException e) {
@@ -423,4 +721,54 @@ public class SongDAO {
             return false;
         }
     }
-} 
\ No newline at end of file
+
+    /**
+     * Read the songs an update or delete is about to change, on its connection, so the
+     * in-memory indexes can be told which names went away and the search index which songs
+     * @param where condition choosing the songs
+     * @param params the condition's parameters, integers or strings
+     */
+    private List<Song> findSongs(Connection conn, String where, Object... params) throws SQLException {
+        List<Song> songs = new ArrayList<>();
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT * FROM songs WHERE " + where)) {
+            for (int i = 0; i < params.length; i++) {
+                if (params[i] instanceof Integer) {
+                    pstmt.setInt(i + 1, (Integer) params[i]);
+                } else {
+                    pstmt.setString(i + 1, (String) params[i]);
+                }
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    songs.add(mapResultSetToSong(rs));
+                }
+            }
+        }
+        return songs;
+    }
+
+    /**
+     * Build the song the legacy methods wrote, as far as the search index needs it;
+     * the index keeps the owner it already has
+     */
+    private static Song legacySong(int id, String title, String artist, String album, String genre) {
+        Song song = new Song();
+        song.setId(id);
+        song.setTitle(title);
+        song.setArtist(artist);
+        song.setAlbum(album);
+        song.setGenre(genre);
+        return song;
+    }
+
+    /**
+     * Bind the artist, album and genre keys of a song, written with its names so the row is
+     * written once
+     */
+    private void setNameKeys(Connection conn, PreparedStatement pstmt, int firstIndex,
+                             String artist, String album, String genre) throws SQLException {
+        pstmt.setObject(firstIndex, names.resolve(conn, NameDictionary.Kind.ARTIST, artist));
+        pstmt.setObject(firstIndex + 1, names.resolve(conn, NameDictionary.Kind.ALBUM, album));
+        pstmt.setObject(firstIndex + 2, names.resolve(conn, NameDictionary.Kind.GENRE, genre));
+    }
+}
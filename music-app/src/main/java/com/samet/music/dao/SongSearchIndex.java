@@ -0,0 +1,544 @@
+package com.samet.music.dao;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.samet.music.model.Song;
+import com.samet.music.util.DatabaseUtil;
+
+/**
+ * In-memory, typo-tolerant search index over song titles, artists and albums.
+ * Every word is indexed by its trigrams (padded with a space at both ends), with a sorted
+ * posting list of song slots per trigram. A query word first collects the songs that share
+ * enough of its trigrams to possibly match, then each candidate is verified: the word must be
+ * a substring of the song's text, or within a small edit distance of one of its words, so
+ * "metalica" still finds "Metallica".
+ * The index is built in the background at startup and kept current by SongDAO. Until it is
+ * ready, searches return nothing and callers fall back to the database.
+ */
+public class SongSearchIndex {
+    private static final Logger logger = LoggerFactory.getLogger(SongSearchIndex.class);
+
+    private static final int MIN_CAPACITY = 1024;
+
+    private static SongSearchIndex instance;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicBoolean building = new AtomicBoolean();
+    private final ThreadLocal<int[]> hitCounts = ThreadLocal.withInitial(() -> new int[0]);
+
+    // Songs by slot; a slot is never reused, updates and deletes leave a dead slot behind
+    private int[] songIds = new int[0];
+    private int[] userIds = new int[0];
+    private String[] texts = new String[0];
+    private final BitSet alive = new BitSet();
+    private int size;
+    private final Map<Integer, Integer> slotBySongId = new HashMap<>();
+    private final Map<Long, Postings> postings = new HashMap<>();
+
+    private volatile boolean ready;
+    // Set when songs change while the index is being built, so the build is repeated
+    private volatile boolean changedDuringBuild;
+
+    /**
+     * Get the shared index, which is cleared whenever the connection pool is closed
+     * @return the index
+     */
+    public static synchronized SongSearchIndex getInstance() {
+        if (instance == null) {
+            instance = new SongSearchIndex();
+            DatabaseUtil.addCloseListener(instance::clear);
+        }
+        return instance;
+    }
+
+    /**
+     * Constructor
+     */
+    SongSearchIndex() {
+    }
+
+    /**
+     * Check if the index has been built and can answer searches
+     * @return true if the index is ready
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Build the index on a background thread, unless a build is already running
+     */
+    public void buildAsync() {
+        if (building.get()) {
+            return;
+        }
+        Thread builder = new Thread(this::build, "song-search-index");
+        builder.setDaemon(true);
+        builder.start();
+    }
+
+    /**
+     * Build the index from the songs table. Text normalization and trigram extraction
+     * run in parallel; the posting lists are then filled in slot order so they stay sorted.
+     * @return true if the index was built, false if it could not be read or a build was already running
+     */
+    public boolean build() {
+        if (!building.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            boolean built;
+            do {
+                changedDuringBuild = false;
+                built = buildOnce();
+            } while (built && changedDuringBuild);
+            return built;
+        } finally {
+            building.set(false);
+        }
+    }
+
+    private boolean buildOnce() {
+        long start = System.currentTimeMillis();
+        List<int[]> keys = new ArrayList<>();
+        List<String> rawTexts = new ArrayList<>();
+        String sql = "SELECT id, user_id, title, artist, album FROM songs ORDER BY id";
+
+        try (Connection conn = DatabaseUtil.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+
+            while (rs.next()) {
+                keys.add(new int[] {rs.getInt("id"), rs.getInt("user_id")});
+                rawTexts.add(joinText(rs.getString("title"), rs.getString("artist"), rs.getString("album")));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+
+        int count = keys.size();
+        String[] normalized = new String[count];
+        long[][] trigrams = new long[count][];
+        IntStream.range(0, count).parallel().forEach(i -> {
+            normalized[i] = normalize(rawTexts.get(i));
+            trigrams[i] = textTrigrams(normalized[i]);
+        });
+
+        lock.writeLock().lock();
+        try {
+            clearState();
+            ensureCapacity(count);
+            for (int i = 0; i < count; i++) {
+                addSlot(keys.get(i)[0], keys.get(i)[1], normalized[i], trigrams[i]);
+            }
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        logger.info("Song search index built for {} songs in {} ms", count, System.currentTimeMillis() - start);
+        return true;
+    }
+
+    /**
+     * Add a song, or replace it if it is already indexed
+     * @param song the song as stored
+     */
+    public void add(Song song) {
+        if (song == null || song.getId() <= 0) {
+            return;
+        }
+        changedDuringBuild = true;
+        if (!ready) {
+            return;
+        }
+
+        String text = normalize(joinText(song.getTitle(), song.getArtist(), song.getAlbum()));
+        long[] trigrams = textTrigrams(text);
+        lock.writeLock().lock();
+        try {
+            Integer previous = slotBySongId.get(song.getId());
+            // Updates do not always carry the owner; keep the one already indexed
+            int userId = song.getUserId() <= 0 && previous != null ? userIds[previous] : song.getUserId();
+            removeSlot(song.getId());
+            ensureCapacity(size + 1);
+            addSlot(song.getId(), userId, text, trigrams);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove a song
+     * @param songId the song ID
+     */
+    public void remove(int songId) {
+        changedDuringBuild = true;
+        if (!ready) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            removeSlot(songId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Mark the index out of date after a change it cannot apply by song ID,
+     * and rebuild it in the background if it was in use
+     */
+    public void invalidate() {
+        changedDuringBuild = true;
+        if (ready) {
+            ready = false;
+            buildAsync();
+        }
+    }
+
+    /**
+     * Drop the index; it stays unavailable until it is built again
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            ready = false;
+            clearState();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Search one user's songs. Every query word must match: as a substring of the title,
+     * artist or album, or, for words of five letters or more, within one edit (two from
+     * nine letters) of a word in them. Substring matches rank above typo matches.
+     * @param userId the user whose songs are searched
+     * @param query the words to search for
+     * @param limit maximum number of results
+     * @return matching song IDs, best first; empty if the index is not ready
+     */
+    public List<Integer> search(int userId, String query, int limit) {
+        return search(Integer.valueOf(userId), query, limit);
+    }
+
+    /**
+     * Search all songs, whoever they belong to
+     * @param query the words to search for
+     * @param limit maximum number of results
+     * @return matching song IDs, best first; empty if the index is not ready
+     */
+    public List<Integer> search(String query, int limit) {
+        return search(null, query, limit);
+    }
+
+    private List<Integer> search(Integer userId, String query, int limit) {
+        List<Integer> results = new ArrayList<>();
+        String[] words = normalize(query).split(" ");
+        String driver = "";
+        for (String word : words) {
+            if (word.length() > driver.length()) {
+                driver = word;
+            }
+        }
+        if (!ready || driver.length() < 2 || limit <= 0) {
+            return results;
+        }
+
+        lock.readLock().lock();
+        try {
+            List<int[]> scored = new ArrayList<>();
+            for (int slot : candidates(driver)) {
+                if (userId != null && userIds[slot] != userId) {
+                    continue;
+                }
+                int score = 0;
+                for (String word : words) {
+                    int match = matchScore(word, texts[slot]);
+                    if (match == 0) {
+                        score = 0;
+                        break;
+                    }
+                    score += match;
+                }
+                if (score > 0) {
+                    scored.add(new int[] {score, slot});
+                }
+            }
+
+            // Higher score first, then the order songs were added in
+            scored.sort((a, b) -> a[0] != b[0] ? Integer.compare(b[0], a[0]) : Integer.compare(a[1], b[1]));
+            for (int i = 0; i < scored.size() && i < limit; i++) {
+                results.add(songIds[scored.get(i)[1]]);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return results;
+    }
+
+    /**
+     * Collect the live slots sharing enough trigrams with a word to possibly match it
+     */
+    private int[] candidates(String word) {
+        long[] wordTrigrams = wordTrigrams(word);
+        int maxEdits = maxEdits(word);
+        // Each edit can destroy at most three trigrams
+        int needed = Math.max(1, wordTrigrams.length - 3 * maxEdits);
+
+        int[] counts = hitCounts.get();
+        if (counts.length < size) {
+            counts = new int[Math.max(size, MIN_CAPACITY)];
+            hitCounts.set(counts);
+        }
+
+        int[] touched = new int[16];
+        int touchedCount = 0;
+        for (long trigram : wordTrigrams) {
+            Postings list = postings.get(trigram);
+            if (list == null) {
+                continue;
+            }
+            for (int i = 0; i < list.size; i++) {
+                int slot = list.slots[i];
+                if (counts[slot]++ == 0) {
+                    if (touchedCount == touched.length) {
+                        touched = Arrays.copyOf(touched, touchedCount * 2);
+                    }
+                    touched[touchedCount++] = slot;
+                }
+            }
+        }
+
+        int[] found = new int[touchedCount];
+        int foundCount = 0;
+        for (int i = 0; i < touchedCount; i++) {
+            int slot = touched[i];
+            if (counts[slot] >= needed && alive.get(slot)) {
+                found[foundCount++] = slot;
+            }
+            counts[slot] = 0;
+        }
+        return Arrays.copyOf(found, foundCount);
+    }
+
+    private void addSlot(int songId, int userId, String text, long[] trigrams) {
+        int slot = size++;
+        songIds[slot] = songId;
+        userIds[slot] = userId;
+        texts[slot] = text;
+        alive.set(slot);
+        slotBySongId.put(songId, slot);
+        for (long trigram : trigrams) {
+            postings.computeIfAbsent(trigram, t -> new Postings()).add(slot);
+        }
+    }
+
+    private void removeSlot(int songId) {
+        Integer slot = slotBySongId.remove(songId);
+        if (slot != null) {
+            alive.clear(slot);
+            texts[slot] = null;
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (songIds.length >= capacity) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, Math.max(MIN_CAPACITY, songIds.length * 2));
+        songIds = Arrays.copyOf(songIds, newCapacity);
+        userIds = Arrays.copyOf(userIds, newCapacity);
+        texts = Arrays.copyOf(texts, newCapacity);
+    }
+
+    private void clearState() {
+        songIds = new int[0];
+        userIds = new int[0];
+        texts = new String[0];
+        alive.clear();
+        size = 0;
+        slotBySongId.clear();
+        postings.clear();
+    }
+
+    /**
+     * Score one query word against a song's normalized text
+     * @return 2 for a substring match, 1 for a typo match, 0 for no match
+     */
+    static int matchScore(String word, String text) {
+        if (text == null) {
+            return 0;
+        }
+        if (text.contains(word)) {
+            return 2;
+        }
+        int maxEdits = maxEdits(word);
+        if (maxEdits == 0) {
+            return 0;
+        }
+        for (String token : text.split(" ")) {
+            if (Math.abs(token.length() - word.length()) <= maxEdits
+                    && editDistance(word, token, maxEdits) <= maxEdits) {
+                return 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Number of typos tolerated in a query word of the given length
+     */
+    static int maxEdits(String word) {
+        if (word.length() >= 9) {
+            return 2;
+        }
+        return word.length() >= 5 ? 1 : 0;
+    }
+
+    /**
+     * Levenshtein distance, giving up as soon as it must exceed a bound
+     * @return the distance, or bound + 1 if it is larger than the bound
+     */
+    static int editDistance(String a, String b, int bound) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > bound) {
+                return bound + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return Math.min(previous[b.length()], bound + 1);
+    }
+
+    /**
+     * Lower-case, strip accents and reduce everything but letters and digits to single spaces
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder out = new StringBuilder(decomposed.length());
+        boolean space = true;
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (Character.isLetterOrDigit(c)) {
+                out.append(Character.toLowerCase(c));
+                space = false;
+            } else if (!space) {
+                out.append(' ');
+                space = true;
+            }
+        }
+        int length = out.length();
+        if (length > 0 && out.charAt(length - 1) == ' ') {
+            out.setLength(length - 1);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Distinct trigrams of every word in a normalized text, each word padded with spaces
+     */
+    private static long[] textTrigrams(String text) {
+        if (text.isEmpty()) {
+            return new long[0];
+        }
+        String padded = " " + text.replace(" ", "  ") + " ";
+        long[] trigrams = new long[Math.max(0, padded.length() - 2)];
+        int count = 0;
+        for (int i = 0; i + 2 < padded.length(); i++) {
+            // Skip the gaps between words
+            if (padded.charAt(i + 1) == ' ') {
+                continue;
+            }
+            trigrams[count++] = trigram(padded, i);
+        }
+        return sortedDistinct(trigrams, count);
+    }
+
+    /**
+     * Trigrams a matching word must contain: its inner trigrams, or for two-letter words
+     * the start-of-word trigram
+     */
+    private static long[] wordTrigrams(String word) {
+        if (word.length() == 2) {
+            return new long[] {trigram(" " + word, 0)};
+        }
+        long[] trigrams = new long[word.length() - 2];
+        for (int i = 0; i < trigrams.length; i++) {
+            trigrams[i] = trigram(word, i);
+        }
+        return sortedDistinct(trigrams, trigrams.length);
+    }
+
+    private static long trigram(String s, int i) {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+
+    private static long[] sortedDistinct(long[] values, int count) {
+        Arrays.sort(values, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || values[distinct - 1] != values[i]) {
+                values[distinct++] = values[i];
+            }
+        }
+        return Arrays.copyOf(values, distinct);
+    }
+
+    private static String joinText(String title, String artist, String album) {
+        return (title != null ? title : "") + " " + (artist != null ? artist : "") + " " + (album != null ? album : "");
+    }
+
+    /**
+     * Growable, ascending list of slots containing one trigram
+     */
+    private static final class Postings {
+        private int[] slots = new int[4];
+        private int size;
+
+        void add(int slot) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            slots[size++] = slot;
+        }
+    }
+}
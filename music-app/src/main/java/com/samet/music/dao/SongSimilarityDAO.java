@@ -0,0 +1,386 @@
+package com.samet.music.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.samet.music.util.DatabaseUtil;
+
+/**
+ * Data Access Object for the song_similarity table.
+ * Each song keeps at most a fixed number of neighbours, the songs that most often
+ * appear together with it in users' listening histories and in playlists.
+ */
+public class SongSimilarityDAO {
+
+    /**
+     * Default number of neighbours kept per song
+     */
+    public static final int DEFAULT_MAX_NEIGHBOURS = 50;
+
+    private final int maxNeighbours;
+
+    /**
+     * Constructor
+     */
+    public SongSimilarityDAO() {
+        this(DEFAULT_MAX_NEIGHBOURS);
+    }
+
+    /**
+     * Constructor
+     * @param maxNeighbours number of neighbours kept per song
+     */
+    public SongSimilarityDAO(int maxNeighbours) {
+        this.maxNeighbours = maxNeighbours;
+    }
+
+    /**
+     * @return number of neighbours kept per song
+     */
+    public int getMaxNeighbours() {
+        return maxNeighbours;
+    }
+
+    /**
+     * Get the neighbours of one song
+     * @param songId song ID
+     * @param limit maximum number of neighbours
+     * @return similar song ID to score, highest score first
+     */
+    public Map<Integer, Double> getSimilarSongs(int songId, int limit) {
+        Map<Integer, Double> similar = new LinkedHashMap<>();
+        String sql = "SELECT similar_song_id, score FROM song_similarity WHERE song_id = ? " +
+                "ORDER BY score DESC LIMIT ?";
+
+        try (Connection conn = DatabaseUtil.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, songId);
+            pstmt.setInt(2, limit);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    similar.put(rs.getInt("similar_song_id"), rs.getDouble("score"));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        return similar;
+    }
+
+    /**
+     * Merge the neighbour lists of several songs into one ranking.
+     * Scores of a song reached from more than one seed are summed; the seeds themselves and the
+     * songs the user has already played are excluded.
+     * @param seedSongIds songs to start from
+     * @param userId user whose played songs are left out
+     * @param limit maximum number of songs to return
+     * @return song ID to merged score, highest score first
+     */
+    public Map<Integer, Double> getMergedSimilarSongs(Collection<Integer> seedSongIds, int userId, int limit) {
+        Map<Integer, Double> merged = new LinkedHashMap<>();
+        if (seedSongIds == null || seedSongIds.isEmpty() || limit <= 0) {
+            return merged;
+        }
+
+        List<Integer> seeds = new ArrayList<>(new LinkedHashSet<>(seedSongIds));
+        seeds.remove(null);
+        if (seeds.size() > SongDAO.ID_CHUNK_SIZE) {
+            seeds = seeds.subList(0, SongDAO.ID_CHUNK_SIZE);
+        }
+        String placeholders = placeholders(seeds.size());
+        String sql = "SELECT similar_song_id, SUM(score) AS total FROM song_similarity " +
+                "WHERE song_id IN (" + placeholders + ") AND similar_song_id NOT IN (" + placeholders + ") " +
+                "AND NOT EXISTS (SELECT 1 FROM user_song_statistics st " +
+                "WHERE st.user_id = ? AND st.song_id = similar_song_id AND st.play_count > 0) " +
+                "GROUP BY similar_song_id ORDER BY total DESC LIMIT ?";
+
+        try (Connection conn = DatabaseUtil.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            int index = 1;
+            for (int pass = 0; pass < 2; pass++) {
+                for (Integer seed : seeds) {
+                    pstmt.setInt(index++, seed);
+                }
+            }
+            pstmt.setInt(index++, userId);
+            pstmt.setInt(index, limit);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    merged.put(rs.getInt("similar_song_id"), rs.getDouble("total"));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        return merged;
+    }
+
+    /**
+     * Record that a song appeared together with other songs (or, with a negative delta, no longer does).
+     * Both directions of every pair are updated, neighbour lists of the touched songs are
+     * trimmed back to the maximum size and pairs whose score drops to zero are removed.
+     * @param songId the song that was played or added
+     * @param otherSongIds the songs it now co-occurs with
+     * @param delta score change per pair
+     * @return true if successful, false otherwise
+     */
+    public boolean addCoOccurrences(int songId, Collection<Integer> otherSongIds, double delta) {
+        Set<Integer> others = new LinkedHashSet<>(otherSongIds);
+        others.remove(songId);
+        others.remove(null);
+        if (others.isEmpty()) {
+            return true;
+        }
+
+        String upsertSql = "INSERT INTO song_similarity (song_id, similar_song_id, score) VALUES (?, ?, ?) " +
+                "ON CONFLICT(song_id, similar_song_id) DO UPDATE SET score = score + excluded.score";
+        String cleanupSql = "DELETE FROM song_similarity WHERE song_id = ? AND score <= 0";
+
+        Connection conn = null;
+        try {
+            conn = DatabaseUtil.getConnection();
+            conn.setAutoCommit(false);
+
+            try (PreparedStatement upsert = conn.prepareStatement(upsertSql)) {
+                for (Integer other : others) {
+                    upsert.setInt(1, songId);
+                    upsert.setInt(2, other);
+                    upsert.setDouble(3, delta);
+                    upsert.addBatch();
+                    upsert.setInt(1, other);
+                    upsert.setInt(2, songId);
+                    upsert.setDouble(3, delta);
+                    upsert.addBatch();
+                }
+                upsert.executeBatch();
+            }
+
+            List<Integer> touched = new ArrayList<>(others);
+            touched.add(songId);
+            try (PreparedStatement cleanup = conn.prepareStatement(cleanupSql)) {
+                for (Integer touchedId : touched) {
+                    cleanup.setInt(1, touchedId);
+                    cleanup.addBatch();
+                }
+                cleanup.executeBatch();
+            }
+            trim(conn, touched);
+
+            conn.commit();
+            return true;
+        } catch (SQLException e) {
+            if (conn != null) {
+                try {
+                    conn.rollback();
+                } catch (SQLException ex) {
+                    ex.printStackTrace();
+                }
+            }
+            e.printStackTrace();
+            return false;
+        } finally {
+            if (conn != null) {
+                try {
+                    conn.setAutoCommit(true);
+                    conn.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Replace the neighbour lists of the given songs in one transaction
+     * @param neighbours song ID to its neighbours (similar song ID to score)
+     * @return true if successful, false otherwise
+     */
+    public boolean replaceNeighbours(Map<Integer, Map<Integer, Double>> neighbours) {
+        String deleteSql = "DELETE FROM song_similarity WHERE song_id = ?";
+        String insertSql = "INSERT INTO song_similarity (song_id, similar_song_id, score) VALUES (?, ?, ?)";
+
+        Connection conn = null;
+        try {
+            conn = DatabaseUtil.getConnection();
+            conn.setAutoCommit(false);
+
+            try (PreparedStatement delete = conn.prepareStatement(deleteSql);
+                 PreparedStatement insert = conn.prepareStatement(insertSql)) {
+                for (Map.Entry<Integer, Map<Integer, Double>> entry : neighbours.entrySet()) {
+                    delete.setInt(1, entry.getKey());
+                    delete.addBatch();
+                    for (Map.Entry<Integer, Double> neighbour : entry.getValue().entrySet()) {
+                        insert.setInt(1, entry.getKey());
+                        insert.setInt(2, neighbour.getKey());
+                        insert.setDouble(3, neighbour.getValue());
+                        insert.addBatch();
+                    }
+                }
+                delete.executeBatch();
+                insert.executeBatch();
+            }
+
+            conn.commit();
+            return true;
+        } catch (SQLException e) {
+            if (conn != null) {
+                try {
+                    conn.rollback();
+                } catch (SQLException ex) {
+                    ex.printStackTrace();
+                }
+            }
+            e.printStackTrace();
+            return false;
+        } finally {
+            if (conn != null) {
+                try {
+                    conn.setAutoCommit(true);
+                    conn.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Check whether the index holds any data
+     * @return true if there is no similarity data yet
+     */
+    public boolean isEmpty() {
+        try (Connection conn = DatabaseUtil.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT 1 FROM song_similarity LIMIT 1")) {
+            return !rs.next();
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return true;
+        }
+    }
+
+    /**
+     * Stream song memberships of all "baskets": the songs each user has played and each playlist.
+     * Users and playlists are mapped to distinct basket IDs (even for users, odd for playlists).
+     * @param handler receives one call per basket/song pair, grouped by basket
+     * @return true if all rows were read, false if a database error occurred
+     */
+    public boolean forEachBasketItem(BasketHandler handler) {
+        String sql = "SELECT user_id * 2 AS basket_id, song_id FROM user_song_statistics " +
+                "WHERE play_count > 0 " +
+                "UNION ALL " +
+                "SELECT playlist_id * 2 + 1 AS basket_id, song_id FROM playlist_songs " +
+                "ORDER BY basket_id";
+
+        try (Connection conn = DatabaseUtil.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+
+            while (rs.next()) {
+                handler.accept(rs.getInt("basket_id"), rs.getInt("song_id"));
+            }
+            return true;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Get the songs a user listened to most recently
+     * @param userId user ID
+     * @param limit maximum number of songs
+     * @return song IDs, most recent first
+     */
+    public List<Integer> getUserBasket(int userId, int limit) {
+        String sql = "SELECT song_id FROM user_song_statistics WHERE user_id = ? AND play_count > 0 " +
+                "ORDER BY last_played DESC LIMIT ?";
+        return queryIds(sql, userId, limit);
+    }
+
+    /**
+     * Get the songs of a playlist
+     * @param playlistId playlist ID
+     * @param limit maximum number of songs
+     * @return song IDs in playlist order
+     */
+    public List<Integer> getPlaylistBasket(int playlistId, int limit) {
+        String sql = "SELECT song_id FROM playlist_songs WHERE playlist_id = ? ORDER BY position LIMIT ?";
+        return queryIds(sql, playlistId, limit);
+    }
+
+    private List<Integer> queryIds(String sql, int id, int limit) {
+        List<Integer> songIds = new ArrayList<>();
+
+        try (Connection conn = DatabaseUtil.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, id);
+            pstmt.setInt(2, limit);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    songIds.add(rs.getInt("song_id"));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        return songIds;
+    }
+
+    /**
+     * Keep only the best neighbours of each touched song
+     */
+    private void trim(Connection conn, List<Integer> songIds) throws SQLException {
+        String sql = "DELETE FROM song_similarity WHERE song_id = ? AND similar_song_id NOT IN (" +
+                "SELECT similar_song_id FROM song_similarity WHERE song_id = ? " +
+                "ORDER BY score DESC, similar_song_id LIMIT ?)";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (Integer songId : songIds) {
+                pstmt.setInt(1, songId);
+                pstmt.setInt(2, songId);
+                pstmt.setInt(3, maxNeighbours);
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.append(i == 0 ? "?" : ", ?");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Callback for {@link #forEachBasketItem(BasketHandler)}
+     */
+    public interface BasketHandler {
+        /**
+         * @param basketId user or playlist basket ID
+         * @param songId song ID
+         */
+        void accept(int basketId, int songId);
+    }
+}
@@ -8,6 +8,8 @@ import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -143,6 +145,33 @@ public class UserDAO {
         return users;
     }
 
+    /**
+     * Get the next page of users in id order, for keyset pagination
+     * @param afterId id of the last user of the previous page, 0 for the first page
+     * @param pageSize maximum number of users to return
+     * @return the users with an id above afterId, empty if pageSize is not positive
+     */
+    public List<User> findAllAfter(int afterId, int pageSize) {
+        if (pageSize <= 0) {
+            return new ArrayList<>();
+        }
+        String sql = "SELECT * FROM users WHERE id > ? ORDER BY id LIMIT ?";
+        try (Stream<User> users = CursorStream.query(DatabaseUtil.getConnection(), sql,
+                this::mapResultSetToUser, afterId, pageSize)) {
+            return users.collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Stream all users in id order over an open cursor.
+     * The stream holds a pooled connection until it is closed, so use it in try-with-resources.
+     * @return a lazily-read stream of users
+     */
+    public Stream<User> streamAll() {
+        return CursorStream.query(DatabaseUtil.getConnection(), "SELECT * FROM users ORDER BY id",
+                this::mapResultSetToUser);
+    }
+
     /**
      * Update a user in the database
      * @param user the user to update
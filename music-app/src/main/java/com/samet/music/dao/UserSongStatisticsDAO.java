@@ -1,5 +1,8 @@
 package com.samet.music.dao;
 
+import com.samet.music.model.SongStatistics;
+import com.samet.music.util.DatabaseUtil;
+
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -11,56 +14,32 @@ import java.util.Map;
  * Data Access Object for tracking user statistics with songs
  */
 public class UserSongStatisticsDAO {
-    private static final String DB_URL = "jdbc:sqlite:" + System.getProperty("user.dir") + "/musiclibrary.db";
     
+    /**
+     * Song columns joined with one user's statistics, for the SongStatistics projection
+     */
+    // The query adds its most_played column and the FROM clause
+    private static final String SONG_STATISTICS_COLUMNS =
+            "SELECT s.*, st.play_count, st.favorite, st.last_played, ";
+    
+    private final SongDAO songDAO = new SongDAO();
+    private final PlayCountBuffer playCountBuffer = PlayCountBuffer.getInstance();
+    
+    /**
+     * Constructor
+     * The user_song_statistics table is created once at startup by SchemaManager
+     */
     public UserSongStatisticsDAO() {
-        try (Connection conn = DriverManager.getConnection(DB_URL)) {
-            // Create user_song_statistics table
-            String sql = "CREATE TABLE IF NOT EXISTS user_song_statistics (" +
-                    "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                    "user_id INTEGER NOT NULL," +
-                    "song_id INTEGER NOT NULL," +
-                    "play_count INTEGER DEFAULT 0," +
-                    "last_played TIMESTAMP," +
-                    "favorite BOOLEAN DEFAULT 0," +
-                    "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
-                    "FOREIGN KEY (user_id) REFERENCES users(id)," +
-                    "FOREIGN KEY (song_id) REFERENCES songs(id)," +
-                    "UNIQUE(user_id, song_id)" +
-                    ")";
-            conn.createStatement().execute(sql);
-            System.out.println("UserSongStatisticsDAO: user_song_statistics table check/creation completed");
-        } catch (SQLException e) {
-            System.err.println("Error initializing user song statistics database: " + e.getMessage());
-            e.printStackTrace();
-        }
     }
     
     /**
-     * Increment play count for a song by a user
+     * Record a play of a song by a user without waiting for the database.
+     * The play is counted in memory and written by the play count buffer in a later batch.
      * @param userId user ID
      * @param songId song ID
-     * @return true if successful, false otherwise
      */
-    public boolean incrementPlayCount(int userId, int songId) {
-        String sql = "INSERT INTO user_song_statistics (user_id, song_id, play_count, last_played) " +
-                "VALUES (?, ?, 1, CURRENT_TIMESTAMP) " +
-                "ON CONFLICT(user_id, song_id) DO UPDATE SET " +
-                "play_count = play_count + 1, " +
-                "last_played = CURRENT_TIMESTAMP";
-                
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setInt(1, userId);
-            pstmt.setInt(2, songId);
-            
-            int affectedRows = pstmt.executeUpdate();
-            return affectedRows > 0;
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return false;
-        }
+    public void recordPlay(int userId, int songId) {
+        playCountBuffer.record(userId, songId);
     }
     
     /**
@@ -76,7 +55,7 @@ public class UserSongStatisticsDAO {
                 "ON CONFLICT(user_id, song_id) DO UPDATE SET " +
                 "favorite = ?";
                 
-        try (Connection conn = DriverManager.getConnection(DB_URL);
+        try (Connection conn = DatabaseUtil.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             
             pstmt.setInt(1, userId);
@@ -101,7 +80,7 @@ public class UserSongStatisticsDAO {
     public boolean isFavorite(int userId, int songId) {
         String sql = "SELECT favorite FROM user_song_statistics WHERE user_id = ? AND song_id = ?";
         
-        try (Connection conn = DriverManager.getConnection(DB_URL);
+        try (Connection conn = DatabaseUtil.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             
             pstmt.setInt(1, userId);
@@ -117,7 +96,7 @@ public class UserSongStatisticsDAO {
     }
     
     /**
-     * Get play count for a song by a user
+     * Get play count for a song by a user, including plays not yet written by the buffer
      * @param userId user ID
      * @param songId song ID
      * @return play count or 0 if not found
@@ -125,18 +104,19 @@ public class UserSongStatisticsDAO {
     public int getPlayCount(int userId, int songId) {
         String sql = "SELECT play_count FROM user_song_statistics WHERE user_id = ? AND song_id = ?";
         
-        try (Connection conn = DriverManager.getConnection(DB_URL);
+        try (Connection conn = DatabaseUtil.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             
             pstmt.setInt(1, userId);
             pstmt.setInt(2, songId);
             
             try (ResultSet rs = pstmt.executeQuery()) {
-                return rs.next() ? rs.getInt("play_count") : 0;
+                int stored = rs.next() ? rs.getInt("play_count") : 0;
+                return stored + playCountBuffer.getPendingPlays(userId, songId);
             }
         } catch (SQLException e) {
             e.printStackTrace();
-            return 0;
+            return playCountBuffer.getPendingPlays(userId, songId);
         }
     }
     
@@ -151,7 +131,7 @@ public class UserSongStatisticsDAO {
         String sql = "SELECT song_id FROM user_song_statistics WHERE user_id = ? " +
                     "ORDER BY play_count DESC LIMIT ?";
         
-        try (Connection conn = DriverManager.getConnection(DB_URL);
+        try (Connection conn = DatabaseUtil.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             
             pstmt.setInt(1, userId);
@@ -178,7 +158,7 @@ public class UserSongStatisticsDAO {
         List<Integer> songIds = new ArrayList<>();
         String sql = "SELECT song_id FROM user_song_statistics WHERE user_id = ? AND favorite = 1";
         
-        try (Connection conn = DriverManager.getConnection(DB_URL);
+        try (Connection conn = DatabaseUtil.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             
             pstmt.setInt(1, userId);
@@ -206,7 +186,7 @@ public class UserSongStatisticsDAO {
         String sql = "SELECT song_id FROM user_song_statistics WHERE user_id = ? AND last_played IS NOT NULL " +
                     "ORDER BY last_played DESC LIMIT ?";
         
-        try (Connection conn = DriverManager.getConnection(DB_URL);
+        try (Connection conn = DatabaseUtil.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             
             pstmt.setInt(1, userId);
@@ -224,6 +204,83 @@ public class UserSongStatisticsDAO {
         return songIds;
     }
     
+    /**
+     * Get a user's favorite songs plus their most played songs, with statistics, in one query.
+     * The most played songs are flagged, so callers can take both the favorites and the top
+     * played songs from the same result.
+     * @param userId user ID
+     * @param mostPlayedLimit number of most played songs to include besides the favorites
+     * @return songs with play count, favorite and most played flags and last played time,
+     *         ordered by play count (descending)
+     */
+    public List<SongStatistics> getFavoriteAndMostPlayedSongStatistics(int userId, int mostPlayedLimit) {
+        String sql = SONG_STATISTICS_COLUMNS + "top.id IS NOT NULL AS most_played " +
+                    "FROM user_song_statistics st JOIN songs s ON s.id = st.song_id " +
+                    "LEFT JOIN (SELECT id FROM user_song_statistics WHERE user_id = ? " +
+                    "ORDER BY play_count DESC, id LIMIT ?) top ON top.id = st.id " +
+                    "WHERE st.user_id = ? AND (st.favorite = 1 OR top.id IS NOT NULL) " +
+                    "ORDER BY st.play_count DESC, st.id";
+        return querySongStatistics(sql, userId, mostPlayedLimit, userId);
+    }
+    
+    /**
+     * Run a SongStatistics projection query
+     * @param sql query selecting SONG_STATISTICS_COLUMNS and most_played
+     * @param params integer parameters in order
+     * @return the mapped rows
+     */
+    private List<SongStatistics> querySongStatistics(String sql, int... params) {
+        List<SongStatistics> statistics = new ArrayList<>();
+        
+        try (Connection conn = DatabaseUtil.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            for (int i = 0; i < params.length; i++) {
+                pstmt.setInt(i + 1, params[i]);
+            }
+            
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    statistics.add(new SongStatistics(
+                            songDAO.mapResultSetToSong(rs),
+                            rs.getInt("play_count"),
+                            rs.getBoolean("favorite"),
+                            rs.getTimestamp("last_played"),
+                            rs.getBoolean("most_played")));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        
+        return statistics;
+    }
+    
+    /**
+     * Stream every user/song statistics row to a handler, ordered by user ID and song ID.
+     * Rows are not collected into a list, so this stays cheap for large listening histories.
+     * @param handler receives one call per row
+     * @return true if all rows were read, false if a database error occurred
+     */
+    public boolean forEachInteraction(InteractionHandler handler) {
+        String sql = "SELECT user_id, song_id, play_count, favorite FROM user_song_statistics " +
+                    "ORDER BY user_id, song_id";
+        
+        try (Connection conn = DatabaseUtil.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            
+            while (rs.next()) {
+                handler.accept(rs.getInt("user_id"), rs.getInt("song_id"),
+                        rs.getInt("play_count"), rs.getBoolean("favorite"));
+            }
+            return true;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+    
     /**
      * Get listening statistics for a user
      * @param userId user ID
@@ -238,7 +295,7 @@ public class UserSongStatisticsDAO {
                     "MAX(last_played) as last_played " +
                     "FROM user_song_statistics WHERE user_id = ?";
         
-        try (Connection conn = DriverManager.getConnection(DB_URL);
+        try (Connection conn = DatabaseUtil.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             
             pstmt.setInt(1, userId);
@@ -261,4 +318,17 @@ public class UserSongStatisticsDAO {
         
         return stats;
     }
-} 
\ No newline at end of file
+    
+    /**
+     * Callback for {@link #forEachInteraction(InteractionHandler)}
+     */
+    public interface InteractionHandler {
+        /**
+         * @param userId user ID
+         * @param songId song ID
+         * @param playCount number of plays
+         * @param favorite whether the song is marked as favorite
+         */
+        void accept(int userId, int songId, int playCount, boolean favorite);
+    }
+}
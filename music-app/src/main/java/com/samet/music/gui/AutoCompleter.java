@@ -0,0 +1,92 @@
+package com.samet.music.gui;
+
+import java.util.List;
+import java.util.function.Function;
+
+import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+
+/**
+ * Inline autocomplete for a text field. While typing at the end of the text, the field is
+ * filled with the best known value starting with what was typed, and the part not typed
+ * is selected: typing on replaces it, moving the caret or pressing Enter keeps it.
+ * The known value's spelling replaces the typed prefix, so names are not stored twice in
+ * different case. Completions are looked up on the event dispatch thread, so they must
+ * come from memory.
+ */
+public class AutoCompleter implements DocumentListener {
+
+    private final JTextField field;
+    private final Function<String, List<String>> completions;
+
+    // Set while the field is filled in, so that change is not completed again
+    private boolean completing;
+
+    /**
+     * Constructor
+     * @param field the text field
+     * @param completions gives the known values starting with a prefix, best first
+     */
+    public AutoCompleter(JTextField field, Function<String, List<String>> completions) {
+        this.field = field;
+        this.completions = completions;
+    }
+
+    /**
+     * Add inline autocomplete to a text field
+     * @param field the text field
+     * @param completions gives the known values starting with a prefix, best first
+     * @return the completer listening to the field
+     */
+    public static AutoCompleter install(JTextField field, Function<String, List<String>> completions) {
+        AutoCompleter completer = new AutoCompleter(field, completions);
+        field.getDocument().addDocumentListener(completer);
+        return completer;
+    }
+
+    @Override
+    public void insertUpdate(DocumentEvent e) {
+        // Only complete when typing at the end; the document cannot be changed from its own listener
+        if (!completing && e.getOffset() + e.getLength() == e.getDocument().getLength()) {
+            SwingUtilities.invokeLater(this::complete);
+        }
+    }
+
+    @Override
+    public void removeUpdate(DocumentEvent e) {
+        // Deleting never completes, or backspace could not remove a completion
+    }
+
+    @Override
+    public void changedUpdate(DocumentEvent e) {
+        // Attribute changes do not change the text
+    }
+
+    /**
+     * Fill in the best completion of the current text, if there is a longer one
+     */
+    void complete() {
+        String typed = field.getText();
+        if (typed.trim().isEmpty() || field.getCaretPosition() != typed.length()) {
+            return;
+        }
+        List<String> found = completions.apply(typed);
+        if (found == null || found.isEmpty()) {
+            return;
+        }
+        String best = found.get(0);
+        if (best.length() <= typed.length() || !best.regionMatches(true, 0, typed, 0, typed.length())) {
+            return;
+        }
+
+        completing = true;
+        try {
+            field.setText(best);
+            field.select(typed.length(), best.length());
+        } finally {
+            completing = false;
+        }
+    }
+}
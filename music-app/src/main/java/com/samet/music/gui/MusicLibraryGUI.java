@@ -6,6 +6,8 @@ import java.awt.FlowLayout;
 import java.awt.Font;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 
@@ -17,14 +19,31 @@ import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JTabbedPane;
 import javax.swing.JTable;
+import javax.swing.JTextField;
 import javax.swing.SwingConstants;
+import javax.swing.SwingWorker;
 import javax.swing.border.EmptyBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.table.DefaultTableModel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import com.samet.music.dao.AlbumDAO;
 import com.samet.music.dao.ArtistDAO;
+import com.samet.music.dao.CompletionIndex;
+import com.samet.music.dao.PlayCountBuffer;
 import com.samet.music.dao.PlaylistDAO;
 import com.samet.music.dao.SongDAO;
+import com.samet.music.dao.SongSearchIndex;
+import com.samet.music.model.ArtistSummary;
+import com.samet.music.model.Song;
+import com.samet.music.service.SongSimilarityIndex;
 import com.samet.music.util.DatabaseUtil;
 
 /**
@@ -43,6 +62,10 @@ public class MusicLibraryGUI extends JFrame {
     protected JTable playlistsTable;
     protected JLabel statusLabel;
     
+    // Search field for songs tab
+    protected JTextField songSearchField;
+    protected SongSearch songSearch;
+    
     // Buttons for songs tab
     protected JButton btnAddSong;
     protected JButton btnEditSong;
@@ -71,8 +94,20 @@ public class MusicLibraryGUI extends JFrame {
     protected AlbumDAO albumDAO;
 	protected PlaylistDAO playlistDAO;
     
+    // Known artist, album and genre names for the dialogs' autocomplete
+    protected CompletionIndex completionIndex = CompletionIndex.getInstance();
+    
     // For testing purposes
     protected boolean initializeDatabase = true;
+    
+    // Table loads still running, so a new load can cancel the one it replaces
+    private final Map<JTable, SwingWorker<?, ?>> activeLoads = new HashMap<>();
+    
+    // Number of tables still loading in the current loadDataFromDatabase
+    private int pendingLoads;
+    
+    // Most songs offered when picking a song to add to a playlist
+    private static final int SONG_PICKER_LIMIT = 100;
 
 	/**
      * Main method to launch the application
@@ -83,6 +118,8 @@ public class MusicLibraryGUI extends JFrame {
 				try {
                     // Initialize database
 					DatabaseUtil.initializeDatabase();
+					SongSearchIndex.getInstance().buildAsync();
+					PlayCountBuffer.getInstance().setFirstPlayListener(new SongSimilarityIndex()::recordFirstPlay);
 					
                     // Create and display the GUI
 					MusicLibraryGUI frame = new MusicLibraryGUI();
@@ -178,19 +215,48 @@ public class MusicLibraryGUI extends JFrame {
         
         // Create songs table
         songsTable = new JTable();
-        DefaultTableModel songsModel = new DefaultTableModel(
-                new Object[][] {},
-                new String[] {"Title", "Artist", "Album", "Genre"}
-        ) {
-            private static final long serialVersionUID = 1L;
+        final SongTableModel songsModel = new SongTableModel(songDAO,
+                SongTableModel.DEFAULT_PAGE_SIZE, SongTableModel.DEFAULT_MAX_PAGES, this::execute);
+        songsTable.setModel(songsModel);
+        
+        // Clicking a column header sorts by that column in the database
+        songsTable.getTableHeader().addMouseListener(new MouseAdapter() {
             @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
+            public void mouseClicked(MouseEvent e) {
+                int column = songsTable.convertColumnIndexToModel(songsTable.columnAtPoint(e.getPoint()));
+                songsTable.clearSelection();
+                songsModel.toggleSort(column);
             }
-        };
-        songsTable.setModel(songsModel);
+        });
         JScrollPane scrollPane = new JScrollPane(songsTable);
-        songsPanel.add(scrollPane, BorderLayout.NORTH);
+        songsPanel.add(scrollPane, BorderLayout.CENTER);
+        
+        // Create search panel; the table is filtered while typing
+        JPanel searchPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        searchPanel.add(new JLabel("Search:"));
+        songSearchField = new JTextField(30);
+        searchPanel.add(songSearchField);
+        songsPanel.add(searchPanel, BorderLayout.NORTH);
+        
+        songSearch = new SongSearch(songDAO, SongSearchIndex.getInstance(), songsModel,
+                this::execute, this::updateStatusBar, SongSearch.DEBOUNCE_DELAY);
+        songSearchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                songSearch.queryChanged(songSearchField.getText());
+            }
+            
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                songSearch.queryChanged(songSearchField.getText());
+            }
+            
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                // Attribute changes do not change the text
+            }
+        });
+        songSearchField.addActionListener(e -> songSearch.searchNow());
         
         // Create buttons panel
         JPanel buttonsPanel = new JPanel();
@@ -225,7 +291,7 @@ public class MusicLibraryGUI extends JFrame {
         artistsTable = new JTable();
         DefaultTableModel artistsModel = new DefaultTableModel(
                 new Object[][] {},
-                new String[] {"Name", "Country", "Genre"}
+                new String[] {"Name", "Country", "Genre", "Songs", "Albums"}
         ) {
             private static final long serialVersionUID = 1L;
             @Override
@@ -355,43 +421,152 @@ public class MusicLibraryGUI extends JFrame {
     }
     
     /**
-     * Load data from database into tables
+     * Load data from database into tables.
+     * The four tables load in parallel on background threads and rows are added as they
+     * arrive; loading a table again cancels the load it replaces.
      */
     protected void loadDataFromDatabase() {
-        try {
-            // Load songs
-            DefaultTableModel songsModel = (DefaultTableModel) songsTable.getModel();
-            songsModel.setRowCount(0); // Clear existing data
-            for (String[] song : songDAO.getAllSongs()) {
-                songsModel.addRow(song);
+        pendingLoads = 4;
+        updateStatusBar("Loading data...");
+        
+        // Load songs; only the row count is read here, rows are read as they are shown
+        ((SongTableModel) songsTable.getModel()).refresh(this::onTableLoaded);
+        songSearch.refresh();
+        
+        // Load artists together with the size of their catalogue
+        loadTable("artists", artistsTable, () -> {
+            Map<String, ArtistSummary> catalogue = new HashMap<>();
+            for (ArtistSummary summary : artistDAO.getArtistCatalogue(0, 0)) {
+                catalogue.put(summary.getName(), summary);
             }
-            
-            // Load artists
-            DefaultTableModel artistsModel = (DefaultTableModel) artistsTable.getModel();
-            artistsModel.setRowCount(0);
-            for (String[] artist : artistDAO.getAllArtists()) {
-                artistsModel.addRow(artist);
+            return artistDAO.streamAllArtists().map(artist -> {
+                ArtistSummary summary = artist[0] != null ? catalogue.get(artist[0].trim()) : null;
+                return new Object[] {artist[0], artist[1], artist[2],
+                        summary != null ? summary.getSongCount() : 0,
+                        summary != null ? summary.getAlbumCount() : 0};
+            });
+        });
+        
+        // Load albums
+        loadTable("albums", albumsTable, () -> albumDAO.streamAllAlbums().map(album -> (Object[]) album));
+        
+        // Load playlists
+        loadTable("playlists", playlistsTable, () -> playlistDAO.streamAllPlaylists().map(playlist -> (Object[]) playlist));
+        
+        // Read the names for autocomplete now, so typing in a dialog never waits for the database
+        execute(new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() {
+                completionIndex.preload();
+                return null;
             }
-            
-            // Load albums
-            DefaultTableModel albumsModel = (DefaultTableModel) albumsTable.getModel();
-            albumsModel.setRowCount(0);
-            for (String[] album : albumDAO.getAllAlbums()) {
-                albumsModel.addRow(album);
+        });
+    }
+    
+    /**
+     * Empty a table and fill it again on a background thread, cancelling any load still running for it
+     * @param name table name shown in the status bar
+     * @param table the table, backed by a DefaultTableModel
+     * @param rowSource opens a stream over the rows in the database, closed once they are read
+     */
+    protected void loadTable(String name, JTable table, Callable<Stream<Object[]>> rowSource) {
+        SwingWorker<?, ?> previous = activeLoads.remove(table);
+        if (previous != null) {
+            previous.cancel(false);
+        }
+        
+        DefaultTableModel model = (DefaultTableModel) table.getModel();
+        model.setRowCount(0);
+        TableLoadWorker worker = new TableLoadWorker(model, rowSource, rows -> {
+            activeLoads.remove(table);
+            onTableLoaded();
+        }, error -> {
+            activeLoads.remove(table);
+            showErrorMessage("Error loading data: " + error.getMessage());
+            error.printStackTrace();
+        });
+        worker.addPropertyChangeListener(event -> {
+            if (TableLoadWorker.ROWS_PROPERTY.equals(event.getPropertyName()) && pendingLoads > 0) {
+                updateStatusBar("Loading " + name + "... " + event.getNewValue() + " rows");
             }
-            
-            // Load playlists
-            DefaultTableModel playlistsModel = (DefaultTableModel) playlistsTable.getModel();
-            playlistsModel.setRowCount(0);
-            for (String[] playlist : playlistDAO.getAllPlaylists()) {
-                playlistsModel.addRow(playlist);
+        });
+        activeLoads.put(table, worker);
+        execute(worker);
+    }
+    
+    /**
+     * Called on the event dispatch thread each time a table finished loading
+     */
+    private void onTableLoaded() {
+        if (pendingLoads > 0 && --pendingLoads == 0) {
+            updateStatusBar("Data loaded successfully");
+        }
+    }
+    
+    /**
+     * Run a database call on a background thread and hand its result to the event dispatch thread
+     * @param databaseCall the call to run off the event dispatch thread
+     * @param onSuccess receives the result on the event dispatch thread
+     * @param errorPrefix put before the error message if the call fails
+     */
+    protected <T> void runInBackground(Callable<T> databaseCall, Consumer<T> onSuccess, String errorPrefix) {
+        execute(new SwingWorker<T, Void>() {
+            @Override
+            protected T doInBackground() throws Exception {
+                return databaseCall.call();
             }
             
-            updateStatusBar("Data loaded successfully");
-        } catch (Exception e) {
-            showErrorMessage("Error loading data: " + e.getMessage());
-            e.printStackTrace();
+            @Override
+            protected void done() {
+                try {
+                    onSuccess.accept(get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    showErrorMessage(errorPrefix + e.getCause().getMessage());
+                    e.getCause().printStackTrace();
+                }
+            }
+        });
+    }
+    
+    /**
+     * Start a background worker
+     * @param worker the worker to start
+     */
+    protected void execute(SwingWorker<?, ?> worker) {
+        worker.execute();
+    }
+    
+    /**
+     * Find a row again after a background call, in case rows moved in the meantime
+     * @param model the table model
+     * @param expectedRow the row the values were read from
+     * @param key values of the leading columns of the row
+     * @return the row index, or -1 if no row has these values any more
+     */
+    protected static int findRow(DefaultTableModel model, int expectedRow, Object... key) {
+        if (matchesRow(model, expectedRow, key)) {
+            return expectedRow;
+        }
+        for (int row = 0; row < model.getRowCount(); row++) {
+            if (matchesRow(model, row, key)) {
+                return row;
+            }
+        }
+        return -1;
+    }
+    
+    private static boolean matchesRow(DefaultTableModel model, int row, Object[] key) {
+        if (row < 0 || row >= model.getRowCount()) {
+            return false;
+        }
+        for (int column = 0; column < key.length; column++) {
+            if (!Objects.equals(model.getValueAt(row, column), key[column])) {
+                return false;
+            }
         }
+        return true;
     }
     
     /**
@@ -461,17 +636,16 @@ public class MusicLibraryGUI extends JFrame {
                     return;
                 }
                 
-                try {
-                    // Add song to database
+                // Add song to database
+                runInBackground(() -> {
                     songDAO.addSong(title, artist, album, genre);
-                    
-                    // Update table
-                    DefaultTableModel model = (DefaultTableModel) songsTable.getModel();
-                    model.addRow(new Object[] {title, artist, album, genre});
+                    return null;
+                }, ignored -> {
+                    // Update table; only the pages the song can land in are read again
+                    ((SongTableModel) songsTable.getModel()).songAdded();
+                    songSearch.refresh();
                     updateStatusBar("Song added successfully");
-                } catch (Exception ex) {
-                    showErrorMessage("Error adding song: " + ex.getMessage());
-                }
+                }, "Error adding song: ");
             }
         } catch (Exception e) {
             showErrorMessage("Error adding song: " + e.getMessage());
@@ -522,6 +696,11 @@ public class MusicLibraryGUI extends JFrame {
             genreField.setText(initialValues[3]);
         }
         
+        // Complete names that are already in the library
+        addCompletion(artistField, CompletionIndex.Field.ARTIST);
+        addCompletion(albumField, CompletionIndex.Field.ALBUM);
+        addCompletion(genreField, CompletionIndex.Field.GENRE);
+        
         // Show dialog
         int result = JOptionPane.showConfirmDialog(this, panel, title, JOptionPane.OK_CANCEL_OPTION);
         if (result == JOptionPane.OK_OPTION) {
@@ -536,6 +715,15 @@ public class MusicLibraryGUI extends JFrame {
         }
     }
     
+    /**
+     * Complete a dialog field with the best known name starting with what was typed
+     * @param field the text field
+     * @param kind which names to complete
+     */
+    protected void addCompletion(JTextField field, CompletionIndex.Field kind) {
+        AutoCompleter.install(field, prefix -> completionIndex.complete(kind, prefix, 1));
+    }
+    
     /**
      * Handle Edit Song button click
      */
@@ -548,11 +736,16 @@ public class MusicLibraryGUI extends JFrame {
         
         try {
             // Get selected song data
-            DefaultTableModel model = (DefaultTableModel) songsTable.getModel();
-            String oldTitle = (String) model.getValueAt(selectedRow, 0);
-            String oldArtist = (String) model.getValueAt(selectedRow, 1);
-            String oldAlbum = (String) model.getValueAt(selectedRow, 2);
-            String oldGenre = (String) model.getValueAt(selectedRow, 3);
+            SongTableModel model = (SongTableModel) songsTable.getModel();
+            Song song = model.getSongAt(selectedRow);
+            if (song == null) {
+                showErrorMessage("Please wait until the songs are loaded");
+                return;
+            }
+            String oldTitle = song.getTitle();
+            String oldArtist = song.getArtist();
+            String oldAlbum = song.getAlbum();
+            String oldGenre = song.getGenre();
             
             // Show dialog for editing song with initial values
             String[] initialValues = {oldTitle, oldArtist, oldAlbum, oldGenre};
@@ -572,18 +765,17 @@ public class MusicLibraryGUI extends JFrame {
                 }
                 
                 // Update song in database
-                boolean success = songDAO.updateSong(oldTitle, oldArtist, oldAlbum, newTitle, newArtist, newAlbum, newGenre);
-                
-                if (success) {
-                    // Update table
-                    model.setValueAt(newTitle, selectedRow, 0);
-                    model.setValueAt(newArtist, selectedRow, 1);
-                    model.setValueAt(newAlbum, selectedRow, 2);
-                    model.setValueAt(newGenre, selectedRow, 3);
-                    updateStatusBar("Song updated successfully");
-                } else {
-                    showErrorMessage("Failed to update song in database");
-                }
+                runInBackground(() -> songDAO.updateSong(oldTitle, oldArtist, oldAlbum,
+                        newTitle, newArtist, newAlbum, newGenre), success -> {
+                    if (success) {
+                        // Update table
+                        model.songUpdated(song, newTitle, newArtist, newAlbum, newGenre);
+                        songSearch.refresh();
+                        updateStatusBar("Song updated successfully");
+                    } else {
+                        showErrorMessage("Failed to update song in database");
+                    }
+                }, "Error updating song: ");
             }
         } catch (Exception e) {
             showErrorMessage("Error updating song: " + e.getMessage());
@@ -603,24 +795,29 @@ public class MusicLibraryGUI extends JFrame {
         
         try {
             // Get selected song data
-            DefaultTableModel model = (DefaultTableModel) songsTable.getModel();
-            String title = (String) model.getValueAt(selectedRow, 0);
-            String artist = (String) model.getValueAt(selectedRow, 1);
-            String album = (String) model.getValueAt(selectedRow, 2);
+            SongTableModel model = (SongTableModel) songsTable.getModel();
+            Song song = model.getSongAt(selectedRow);
+            if (song == null) {
+                showErrorMessage("Please wait until the songs are loaded");
+                return;
+            }
+            String title = song.getTitle();
+            String artist = song.getArtist();
+            String album = song.getAlbum();
             
             // Confirm deletion
             boolean confirm = showConfirmDialog("Are you sure you want to delete the song '" + title + "' by '" + artist + "'?");
             if (confirm) {
                 // Delete song from database
-                try {
+                runInBackground(() -> {
                     songDAO.deleteSong(title, artist, album);
-                    
+                    return null;
+                }, ignored -> {
                     // Remove row from table
-                    model.removeRow(selectedRow);
+                    model.songDeleted(song);
+                    songSearch.refresh();
                     updateStatusBar("Song deleted successfully");
-                } catch (Exception ex) {
-                    showErrorMessage("Failed to delete song from database: " + ex.getMessage());
-                }
+                }, "Failed to delete song from database: ");
             }
         } catch (Exception e) {
             showErrorMessage("Error deleting song: " + e.getMessage());
@@ -651,16 +848,16 @@ public class MusicLibraryGUI extends JFrame {
                 }
                 
                 // Add artist to database
-                boolean success = artistDAO.addArtist(name, country, genre, 1);
-                
-                if (success) {
-                    // Update table
-                    DefaultTableModel model = (DefaultTableModel) artistsTable.getModel();
-                    model.addRow(new Object[] {name, country, genre});
-                    updateStatusBar("Artist added successfully");
-                } else {
-                    showErrorMessage("Failed to add artist to database");
-                }
+                runInBackground(() -> artistDAO.addArtist(name, country, genre, 1), success -> {
+                    if (success) {
+                        // Update table
+                        DefaultTableModel model = (DefaultTableModel) artistsTable.getModel();
+                        model.addRow(new Object[] {name, country, genre});
+                        updateStatusBar("Artist added successfully");
+                    } else {
+                        showErrorMessage("Failed to add artist to database");
+                    }
+                }, "Error adding artist: ");
             }
         } catch (Exception e) {
             showErrorMessage("Error adding artist: " + e.getMessage());
@@ -701,17 +898,20 @@ public class MusicLibraryGUI extends JFrame {
                 }
                 
                 // Update artist in database
-					boolean success = artistDAO.updateArtist(oldName, newName, newCountry, newGenre);
-					
-					if (success) {
-                    // Update table
-                    model.setValueAt(newName, selectedRow, 0);
-                    model.setValueAt(newCountry, selectedRow, 1);
-                    model.setValueAt(newGenre, selectedRow, 2);
-                    updateStatusBar("Artist updated successfully");
-					} else {
-                    showErrorMessage("Failed to update artist in database");
-                }
+                runInBackground(() -> artistDAO.updateArtist(oldName, newName, newCountry, newGenre), success -> {
+                    if (success) {
+                        // Update table; rows may have moved while the update ran
+                        int row = findRow(model, selectedRow, oldName);
+                        if (row >= 0) {
+                            model.setValueAt(newName, row, 0);
+                            model.setValueAt(newCountry, row, 1);
+                            model.setValueAt(newGenre, row, 2);
+                        }
+                        updateStatusBar("Artist updated successfully");
+                    } else {
+                        showErrorMessage("Failed to update artist in database");
+                    }
+                }, "Error updating artist: ");
             }
         } catch (Exception e) {
             showErrorMessage("Error updating artist: " + e.getMessage());
@@ -751,6 +951,10 @@ public class MusicLibraryGUI extends JFrame {
         genrePanel.add(genreField);
         panel.add(genrePanel);
         
+        // Complete names that are already in the library
+        addCompletion(nameField, CompletionIndex.Field.ARTIST);
+        addCompletion(genreField, CompletionIndex.Field.GENRE);
+        
         // Show dialog
         int result = JOptionPane.showConfirmDialog(this, panel, title, JOptionPane.OK_CANCEL_OPTION);
         
@@ -784,15 +988,18 @@ public class MusicLibraryGUI extends JFrame {
             boolean confirm = showConfirmDialog("Are you sure you want to delete the artist '" + name + "'?");
             if (confirm) {
                 // Delete artist from database
-					boolean success = artistDAO.deleteArtist(name);
-					
-					if (success) {
-                    // Remove row from table
-                    model.removeRow(selectedRow);
-                    updateStatusBar("Artist deleted successfully");
-					} else {
-                    showErrorMessage("Failed to delete artist from database");
-                }
+                runInBackground(() -> artistDAO.deleteArtist(name), success -> {
+                    if (success) {
+                        // Remove row from table
+                        int row = findRow(model, selectedRow, name);
+                        if (row >= 0) {
+                            model.removeRow(row);
+                        }
+                        updateStatusBar("Artist deleted successfully");
+                    } else {
+                        showErrorMessage("Failed to delete artist from database");
+                    }
+                }, "Error deleting artist: ");
             }
         } catch (Exception e) {
             showErrorMessage("Error deleting artist: " + e.getMessage());
@@ -824,16 +1031,16 @@ public class MusicLibraryGUI extends JFrame {
                 }
                 
                 // Add album to database
-                boolean success = albumDAO.addAlbum(title, artist, year, genre, 1);
-                
-                if (success) {
-                    // Update table
-                    DefaultTableModel model = (DefaultTableModel) albumsTable.getModel();
-                    model.addRow(new Object[] {title, artist, year, genre});
-                    updateStatusBar("Album added successfully");
-                } else {
-                    showErrorMessage("Failed to add album to database");
-                }
+                runInBackground(() -> albumDAO.addAlbum(title, artist, year, genre, 1), success -> {
+                    if (success) {
+                        // Update table
+                        DefaultTableModel model = (DefaultTableModel) albumsTable.getModel();
+                        model.addRow(new Object[] {title, artist, year, genre});
+                        updateStatusBar("Album added successfully");
+                    } else {
+                        showErrorMessage("Failed to add album to database");
+                    }
+                }, "Error adding album: ");
             }
         } catch (Exception e) {
             showErrorMessage("Error adding album: " + e.getMessage());
@@ -880,6 +1087,10 @@ public class MusicLibraryGUI extends JFrame {
         genrePanel.add(genreField);
         panel.add(genrePanel);
         
+        // Complete names that are already in the library
+        addCompletion(artistField, CompletionIndex.Field.ARTIST);
+        addCompletion(genreField, CompletionIndex.Field.GENRE);
+        
         // Show dialog
         int result = JOptionPane.showConfirmDialog(this, panel, title, JOptionPane.OK_CANCEL_OPTION);
         
@@ -930,18 +1141,21 @@ public class MusicLibraryGUI extends JFrame {
                 }
                 
                 // Update album in database
-					boolean success = albumDAO.updateAlbum(oldTitle, oldArtist, newTitle, newArtist, newYear, newGenre);
-					
-					if (success) {
-                    // Update table
-                    model.setValueAt(newTitle, selectedRow, 0);
-                    model.setValueAt(newArtist, selectedRow, 1);
-                    model.setValueAt(newYear, selectedRow, 2);
-                    model.setValueAt(newGenre, selectedRow, 3);
-                    updateStatusBar("Album updated successfully");
-					} else {
-                    showErrorMessage("Failed to update album in database");
-                }
+                runInBackground(() -> albumDAO.updateAlbum(oldTitle, oldArtist, newTitle, newArtist, newYear, newGenre), success -> {
+                    if (success) {
+                        // Update table; rows may have moved while the update ran
+                        int row = findRow(model, selectedRow, oldTitle, oldArtist);
+                        if (row >= 0) {
+                            model.setValueAt(newTitle, row, 0);
+                            model.setValueAt(newArtist, row, 1);
+                            model.setValueAt(newYear, row, 2);
+                            model.setValueAt(newGenre, row, 3);
+                        }
+                        updateStatusBar("Album updated successfully");
+                    } else {
+                        showErrorMessage("Failed to update album in database");
+                    }
+                }, "Error updating album: ");
             }
         } catch (Exception e) {
             showErrorMessage("Error updating album: " + e.getMessage());
@@ -969,15 +1183,18 @@ public class MusicLibraryGUI extends JFrame {
             boolean confirm = showConfirmDialog("Are you sure you want to delete the album '" + title + "' by '" + artist + "'?");
             if (confirm) {
                 // Delete album from database
-					boolean success = albumDAO.deleteAlbum(title, artist);
-					
-					if (success) {
-                    // Remove row from table
-                    model.removeRow(selectedRow);
-                    updateStatusBar("Album deleted successfully");
-					} else {
-                    showErrorMessage("Failed to delete album from database");
-                }
+                runInBackground(() -> albumDAO.deleteAlbum(title, artist), success -> {
+                    if (success) {
+                        // Remove row from table
+                        int row = findRow(model, selectedRow, title, artist);
+                        if (row >= 0) {
+                            model.removeRow(row);
+                        }
+                        updateStatusBar("Album deleted successfully");
+                    } else {
+                        showErrorMessage("Failed to delete album from database");
+                    }
+                }, "Error deleting album: ");
             }
         } catch (Exception e) {
             showErrorMessage("Error deleting album: " + e.getMessage());
@@ -1014,16 +1231,16 @@ public class MusicLibraryGUI extends JFrame {
 			}
 			
                 // Add playlist to database
-                boolean success = playlistDAO.addPlaylist(name, "", 1);
-					
-					if (success) {
-                    // Update table
-                    DefaultTableModel model = (DefaultTableModel) playlistsTable.getModel();
-                    model.addRow(new Object[] {name, "0", java.time.LocalDate.now().toString()});
-                    updateStatusBar("Playlist created successfully");
-					} else {
-                    showErrorMessage("Failed to create playlist in database");
-                }
+                runInBackground(() -> playlistDAO.addPlaylist(name, "", 1), success -> {
+                    if (success) {
+                        // Update table
+                        DefaultTableModel model = (DefaultTableModel) playlistsTable.getModel();
+                        model.addRow(new Object[] {name, "0", java.time.LocalDate.now().toString()});
+                        updateStatusBar("Playlist created successfully");
+                    } else {
+                        showErrorMessage("Failed to create playlist in database");
+                    }
+                }, "Error creating playlist: ");
             }
         } catch (Exception e) {
             showErrorMessage("Error creating playlist: " + e.getMessage());
@@ -1068,15 +1285,18 @@ public class MusicLibraryGUI extends JFrame {
                 }
                 
                 // Update playlist in database
-                boolean success = playlistDAO.updatePlaylist(oldName, newName);
-                
-                if (success) {
-                    // Update table
-                    model.setValueAt(newName, selectedRow, 0);
-                    updateStatusBar("Playlist updated successfully");
-                } else {
-                    showErrorMessage("Failed to update playlist in database");
-                }
+                runInBackground(() -> playlistDAO.updatePlaylist(oldName, newName), success -> {
+                    if (success) {
+                        // Update table
+                        int row = findRow(model, selectedRow, oldName);
+                        if (row >= 0) {
+                            model.setValueAt(newName, row, 0);
+                        }
+                        updateStatusBar("Playlist updated successfully");
+                    } else {
+                        showErrorMessage("Failed to update playlist in database");
+                    }
+                }, "Error updating playlist: ");
             }
         } catch (Exception e) {
             showErrorMessage("Error updating playlist: " + e.getMessage());
@@ -1103,15 +1323,18 @@ public class MusicLibraryGUI extends JFrame {
             boolean confirm = showConfirmDialog("Are you sure you want to delete the playlist '" + name + "'?");
             if (confirm) {
                 // Delete playlist from database
-                boolean success = playlistDAO.deletePlaylist(name);
-                
-                if (success) {
-                    // Remove row from table
-                    model.removeRow(selectedRow);
-                    updateStatusBar("Playlist deleted successfully");
-		        } else {
-                    showErrorMessage("Failed to delete playlist from database");
-		        }
+                runInBackground(() -> playlistDAO.deletePlaylist(name), success -> {
+                    if (success) {
+                        // Remove row from table
+                        int row = findRow(model, selectedRow, name);
+                        if (row >= 0) {
+                            model.removeRow(row);
+                        }
+                        updateStatusBar("Playlist deleted successfully");
+                    } else {
+                        showErrorMessage("Failed to delete playlist from database");
+                    }
+                }, "Error deleting playlist: ");
 		    }
         } catch (Exception e) {
             showErrorMessage("Error deleting playlist: " + e.getMessage());
@@ -1134,45 +1357,54 @@ public class MusicLibraryGUI extends JFrame {
             DefaultTableModel playlistModel = (DefaultTableModel) playlistsTable.getModel();
             String playlistName = (String) playlistModel.getValueAt(selectedRow, 0);
             
-            // Get all songs for selection
-            DefaultTableModel songsModel = (DefaultTableModel) songsTable.getModel();
-            int songCount = songsModel.getRowCount();
-            
-            if (songCount == 0) {
+            if (songsTable.getModel().getRowCount() == 0) {
                 showErrorMessage("No songs available to add to playlist");
                 return;
             }
             
-            // Create a list of songs for selection
-            String[] songs = new String[songCount];
-            for (int i = 0; i < songCount; i++) {
-                String title = (String) songsModel.getValueAt(i, 0);
-                String artist = (String) songsModel.getValueAt(i, 1);
-                songs[i] = title + " - " + artist;
-            }
-            
-            // Show selection dialog
-            String selected = (String) JOptionPane.showInputDialog(
+            // Ask what to look for, so only the matching songs are read instead of the whole library
+            String query = JOptionPane.showInputDialog(
                     this,
-                    "Select a song to add to playlist '" + playlistName + "':",
+                    "Search for the song to add to playlist '" + playlistName + "':",
                     "Add to Playlist",
-                    JOptionPane.QUESTION_MESSAGE,
-                    null,
-                    songs,
-                    songs[0]);
+                    JOptionPane.QUESTION_MESSAGE);
+            if (query == null || query.trim().isEmpty()) {
+                return;
+            }
             
-            if (selected != null) {
-                // Extract song info
-                String[] parts = selected.split(" - ");
-                String title = parts[0];
-                String artist = parts[1];
+            runInBackground(() -> songDAO.searchFullText(query, SONG_PICKER_LIMIT), matches -> {
+                if (matches.isEmpty()) {
+                    showErrorMessage("No songs match '" + query.trim() + "'");
+                    return;
+                }
                 
-                // Update playlist song count
-                int currentCount = Integer.parseInt(playlistModel.getValueAt(selectedRow, 1).toString());
-                playlistModel.setValueAt(Integer.toString(currentCount + 1), selectedRow, 1);
+                // Create a list of songs for selection
+                String[] songs = new String[matches.size()];
+                for (int i = 0; i < songs.length; i++) {
+                    songs[i] = matches.get(i).getTitle() + " - " + matches.get(i).getArtist();
+                }
                 
-                updateStatusBar("Added '" + selected + "' to playlist '" + playlistName + "'");
-            }
+                // Show selection dialog
+                String selected = (String) JOptionPane.showInputDialog(
+                        this,
+                        "Select a song to add to playlist '" + playlistName + "':",
+                        "Add to Playlist",
+                        JOptionPane.QUESTION_MESSAGE,
+                        null,
+                        songs,
+                        songs[0]);
+                
+                if (selected != null) {
+                    // Update playlist song count
+                    int row = findRow(playlistModel, selectedRow, playlistName);
+                    if (row >= 0) {
+                        int currentCount = Integer.parseInt(playlistModel.getValueAt(row, 1).toString());
+                        playlistModel.setValueAt(Integer.toString(currentCount + 1), row, 1);
+                    }
+                    
+                    updateStatusBar("Added '" + selected + "' to playlist '" + playlistName + "'");
+                }
+            }, "Error adding song to playlist: ");
         } catch (Exception e) {
             showErrorMessage("Error adding song to playlist: " + e.getMessage());
             e.printStackTrace();
@@ -0,0 +1,236 @@
+package com.samet.music.gui;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
+
+import com.samet.music.dao.SongDAO;
+import com.samet.music.dao.SongSearchIndex;
+import com.samet.music.model.Song;
+
+/**
+ * Search-as-you-type for the songs table.
+ * Keystrokes are debounced, so a search only starts once typing pauses, and the results of
+ * a search that is overtaken by a newer one are dropped. Searches run in SwingWorkers against
+ * the full-text index, falling back to the in-memory trigram index for substrings and typos.
+ * When a query only adds characters to the one shown and all of that query's matches are
+ * known, the new results are filtered from them in memory without reading the database.
+ * Everything except the database reads runs on the event dispatch thread.
+ */
+public class SongSearch {
+
+    /**
+     * Milliseconds typing has to pause before a search starts
+     */
+    public static final int DEBOUNCE_DELAY = 200;
+
+    /**
+     * Maximum number of songs shown for a search
+     */
+    public static final int RESULT_LIMIT = 1000;
+
+    private final SongDAO songDAO;
+    private final SongSearchIndex searchIndex;
+    private final SongTableModel model;
+    private final Consumer<SwingWorker<?, ?>> launcher;
+    private final Consumer<String> onSearched;
+    private final Timer timer;
+
+    private String pendingQuery = "";
+    private SwingWorker<List<Song>, Void> running;
+
+    // The query the table shows results for, and whether they are all of its matches
+    private String shownQuery;
+    private List<Song> shownResults;
+    private boolean complete;
+
+    /**
+     * Constructor
+     * @param songDAO song data access object
+     * @param searchIndex index used when the full-text search finds nothing
+     * @param model the table model the results are shown in
+     * @param launcher starts the workers that read from the database
+     * @param onSearched receives a status message whenever the table shows new results
+     * @param debounceDelay milliseconds typing has to pause before a search starts
+     */
+    public SongSearch(SongDAO songDAO, SongSearchIndex searchIndex, SongTableModel model,
+                      Consumer<SwingWorker<?, ?>> launcher, Consumer<String> onSearched, int debounceDelay) {
+        this.songDAO = songDAO;
+        this.searchIndex = searchIndex;
+        this.model = model;
+        this.launcher = launcher;
+        this.onSearched = onSearched;
+        this.timer = new Timer(debounceDelay, e -> searchNow());
+        this.timer.setRepeats(false);
+    }
+
+    /**
+     * Called for every change of the search text; the search starts once typing pauses
+     * @param query the current search text
+     */
+    public void queryChanged(String query) {
+        pendingQuery = query != null ? query : "";
+        timer.restart();
+    }
+
+    /**
+     * Search for the current text right away
+     */
+    public void searchNow() {
+        timer.stop();
+        search(normalize(pendingQuery));
+    }
+
+    /**
+     * Run the shown search again, after songs were changed
+     */
+    public void refresh() {
+        if (shownQuery == null) {
+            return;
+        }
+        String query = shownQuery;
+        shownQuery = null;
+        search(query);
+    }
+
+    /**
+     * @return true while a search is reading from the database
+     */
+    boolean isSearching() {
+        return running != null;
+    }
+
+    private void search(String query) {
+        if (running != null) {
+            // Never interrupt a worker that holds a pooled connection; its result is dropped instead
+            SwingWorker<?, ?> overtaken = running;
+            running = null;
+            overtaken.cancel(false);
+        }
+        if (query.isEmpty()) {
+            shownQuery = null;
+            shownResults = null;
+            model.clearSearchResults();
+            onSearched.accept("Showing all songs");
+            return;
+        }
+        if (query.equals(shownQuery)) {
+            return;
+        }
+        if (complete && narrows(shownQuery, query)) {
+            List<Song> narrowed = new ArrayList<>();
+            for (Song song : shownResults) {
+                if (matches(song, query)) {
+                    narrowed.add(song);
+                }
+            }
+            show(query, narrowed, true);
+            return;
+        }
+
+        running = new SwingWorker<List<Song>, Void>() {
+            private boolean fullText;
+
+            @Override
+            protected List<Song> doInBackground() {
+                List<Song> songs = songDAO.searchFullText(query, RESULT_LIMIT);
+                fullText = true;
+                if (songs.isEmpty() && !isCancelled() && searchIndex.isReady()) {
+                    // Nothing starts with those words: look for substrings and typos
+                    fullText = false;
+                    List<Integer> songIds = searchIndex.search(query, RESULT_LIMIT);
+                    Map<Integer, Song> songsById = songDAO.findByIds(songIds);
+                    for (Integer songId : songIds) {
+                        Song song = songsById.get(songId);
+                        if (song != null) {
+                            songs.add(song);
+                        }
+                    }
+                }
+                return songs;
+            }
+
+            @Override
+            protected void done() {
+                if (running != this || isCancelled()) {
+                    return;
+                }
+                running = null;
+                try {
+                    List<Song> songs = get();
+                    // Typo matches are no superset of a longer query's matches, so never narrow them
+                    show(query, songs, fullText && songs.size() < RESULT_LIMIT);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    e.printStackTrace();
+                    onSearched.accept("Search failed: " + e.getCause().getMessage());
+                }
+            }
+        };
+        launcher.accept(running);
+    }
+
+    private void show(String query, List<Song> songs, boolean allMatches) {
+        shownQuery = query;
+        shownResults = songs;
+        complete = allMatches;
+        model.showSearchResults(songs);
+        if (songs.size() >= RESULT_LIMIT) {
+            onSearched.accept("Showing the first " + RESULT_LIMIT + " songs matching '" + query + "'");
+        } else {
+            onSearched.accept(songs.size() + " songs match '" + query + "'");
+        }
+    }
+
+    /**
+     * Check whether every match of a query also matches the query before it.
+     * Words match as prefixes, so that holds when characters were only added at the end,
+     * as long as the query has no punctuation the full-text tokenizer would split on.
+     */
+    static boolean narrows(String before, String after) {
+        return before != null && after.startsWith(before) && after.matches("[\\p{L}\\p{N} ]+");
+    }
+
+    /**
+     * Check a song the way the full-text index does: every query word must start
+     * a word of the title, artist, album or genre, ignoring case and accents
+     */
+    static boolean matches(Song song, String query) {
+        StringBuilder text = new StringBuilder();
+        for (String field : new String[] {song.getTitle(), song.getArtist(), song.getAlbum(), song.getGenre()}) {
+            if (field != null) {
+                text.append(field).append(' ');
+            }
+        }
+        String[] words = fold(text.toString()).split("[^\\p{L}\\p{N}]+");
+        for (String term : fold(query).split(" ")) {
+            boolean found = false;
+            for (String word : words) {
+                if (word.startsWith(term)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static String normalize(String query) {
+        return query.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private static String fold(String text) {
+        return Normalizer.normalize(text, Normalizer.Form.NFD).replaceAll("\\p{M}", "").toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,443 @@
+package com.samet.music.gui;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+import javax.swing.SwingWorker;
+import javax.swing.table.AbstractTableModel;
+
+import com.samet.music.dao.SongDAO;
+import com.samet.music.model.Song;
+
+/**
+ * Table model for the songs tab that only knows the row count up front.
+ * Rows are read from the database a page at a time when the table first asks for them,
+ * and only the most recently used pages are kept. Sorting is done by SQL, so changing
+ * the sort order just drops the loaded pages.
+ * All database reads run in SwingWorkers: a row whose page is still loading shows as
+ * loading and is repainted when the page arrives. Results of reads started before a
+ * refresh, sort or edit are dropped.
+ * The table can also show a list of search results instead of all songs; those are
+ * held in memory and sorted there.
+ */
+public class SongTableModel extends AbstractTableModel {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Number of rows read per page
+     */
+    public static final int DEFAULT_PAGE_SIZE = 200;
+
+    /**
+     * Number of pages kept in memory
+     */
+    public static final int DEFAULT_MAX_PAGES = 10;
+
+    /**
+     * Shown in the title column of rows whose page is still loading
+     */
+    static final String LOADING = "Loading...";
+
+    private static final String[] COLUMN_NAMES = {"Title", "Artist", "Album", "Genre"};
+    private static final String[] SORT_COLUMNS = {"title", "artist", "album", "genre"};
+
+    private final transient SongDAO songDAO;
+    private final transient Consumer<SwingWorker<?, ?>> launcher;
+    private final int pageSize;
+    private final Map<Integer, List<Song>> pages;
+    private final Set<Integer> pendingPages = new HashSet<>();
+
+    private int rowCount;
+    // Search results in ranked order and as shown; null while all songs are shown
+    private List<Song> rankedResults;
+    private List<Song> searchResults;
+    private int sortColumn = -1;
+    private boolean ascending = true;
+    private boolean counting;
+
+    // Bumped whenever loaded rows become stale; reads from an older generation are dropped
+    private int generation;
+
+    /**
+     * Constructor with the default page size and cache size
+     * @param songDAO song data access object
+     */
+    public SongTableModel(SongDAO songDAO) {
+        this(songDAO, DEFAULT_PAGE_SIZE, DEFAULT_MAX_PAGES, SwingWorker::execute);
+    }
+
+    /**
+     * Constructor
+     * @param songDAO song data access object
+     * @param pageSize number of rows read per page
+     * @param maxPages number of pages kept in memory
+     * @param launcher starts the workers that read from the database
+     */
+    public SongTableModel(SongDAO songDAO, int pageSize, int maxPages, Consumer<SwingWorker<?, ?>> launcher) {
+        this.songDAO = songDAO;
+        this.pageSize = pageSize;
+        this.launcher = launcher;
+        // Access-ordered, so the eldest entry is the least recently used page
+        this.pages = new LinkedHashMap<Integer, List<Song>>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<Song>> eldest) {
+                return size() > maxPages;
+            }
+        };
+    }
+
+    /**
+     * Count the songs again and drop every loaded page
+     */
+    public void refresh() {
+        refresh(null);
+    }
+
+    /**
+     * Count the songs again and drop every loaded page
+     * @param onCounted run on the event dispatch thread once the new count is shown, may be null
+     */
+    public void refresh(Runnable onCounted) {
+        int current = invalidate();
+        pages.clear();
+        counting = true;
+        launcher.accept(new SwingWorker<Integer, Void>() {
+            @Override
+            protected Integer doInBackground() {
+                return songDAO.countSongs();
+            }
+
+            @Override
+            protected void done() {
+                if (current != generation) {
+                    return;
+                }
+                counting = false;
+                rowCount = getOrNull(this, 0);
+                fireTableDataChanged();
+                if (onCounted != null) {
+                    onCounted.run();
+                }
+            }
+        });
+    }
+
+    /**
+     * Sort by a column, or reverse the order if the table is already sorted by it
+     * @param column the column index
+     */
+    public void toggleSort(int column) {
+        if (column < 0 || column >= SORT_COLUMNS.length) {
+            return;
+        }
+        ascending = column != sortColumn || !ascending;
+        sortColumn = column;
+        invalidate();
+        pages.clear();
+        if (searchResults != null) {
+            sortSearchResults();
+        }
+        fireTableDataChanged();
+    }
+
+    /**
+     * Show search results instead of all songs
+     * @param results matching songs, best match first
+     */
+    public void showSearchResults(List<Song> results) {
+        rankedResults = new ArrayList<>(results);
+        sortSearchResults();
+        fireTableDataChanged();
+    }
+
+    /**
+     * Show all songs again after search results were shown
+     */
+    public void clearSearchResults() {
+        if (searchResults == null) {
+            return;
+        }
+        rankedResults = null;
+        searchResults = null;
+        fireTableDataChanged();
+    }
+
+    /**
+     * @return true if the table shows search results rather than all songs
+     */
+    public boolean isShowingSearchResults() {
+        return searchResults != null;
+    }
+
+    /**
+     * Show a song that was just added, without counting the songs again.
+     * Only the pages the new song can land in are dropped.
+     */
+    public void songAdded() {
+        invalidate();
+        if (sortColumn < 0 && ascending) {
+            // In insertion order the new song is the last row
+            pages.remove(rowCount / pageSize);
+        } else {
+            pages.clear();
+        }
+        rowCount++;
+        if (searchResults == null) {
+            fireTableRowsInserted(rowCount - 1, rowCount - 1);
+        }
+    }
+
+    /**
+     * Show the new values of a song that was just updated
+     * @param song the song as shown in the table
+     * @param title new title
+     * @param artist new artist
+     * @param album new album
+     * @param genre new genre
+     */
+    public void songUpdated(Song song, String title, String artist, String album, String genre) {
+        String[] before = {song.getTitle(), song.getArtist(), song.getAlbum(), song.getGenre()};
+        song.setTitle(title);
+        song.setArtist(artist);
+        song.setAlbum(album);
+        song.setGenre(genre);
+
+        if (searchResults != null) {
+            // Loaded pages hold their own copy of the song
+            invalidate();
+            pages.clear();
+        }
+        if (sortColumn >= 0 && !Objects.equals(before[sortColumn], getValue(song, sortColumn))) {
+            // The song may move in the sort order
+            invalidate();
+            pages.clear();
+            if (searchResults != null) {
+                sortSearchResults();
+            }
+            fireTableDataChanged();
+            return;
+        }
+        int row = rowOf(song);
+        if (row >= 0) {
+            fireTableRowsUpdated(row, row);
+        }
+    }
+
+    /**
+     * Remove a song that was just deleted, without counting the songs again.
+     * Pages before the song's page stay loaded.
+     * @param song the song as shown in the table
+     */
+    public void songDeleted(Song song) {
+        int row = rowOf(song);
+        invalidate();
+        rowCount = Math.max(0, rowCount - 1);
+        if (searchResults != null) {
+            pages.clear();
+            rankedResults.remove(song);
+            searchResults.remove(song);
+            if (row >= 0) {
+                fireTableRowsDeleted(row, row);
+            }
+            return;
+        }
+        if (row < 0) {
+            pages.clear();
+            fireTableDataChanged();
+            return;
+        }
+        int firstStalePage = row / pageSize;
+        pages.keySet().removeIf(page -> page >= firstStalePage);
+        fireTableRowsDeleted(row, row);
+    }
+
+    /**
+     * @return the index of the column the table is sorted by, -1 for insertion order
+     */
+    public int getSortColumn() {
+        return sortColumn;
+    }
+
+    /**
+     * @return true if the sort order is ascending
+     */
+    public boolean isAscending() {
+        return ascending;
+    }
+
+    /**
+     * Get the song shown in a row.
+     * If its page is not loaded yet, loading starts in the background.
+     * @param row the row index
+     * @return the song, or null if it is still loading or the row does not exist
+     */
+    public Song getSongAt(int row) {
+        if (searchResults != null) {
+            return row >= 0 && row < searchResults.size() ? searchResults.get(row) : null;
+        }
+        if (row < 0 || row >= rowCount) {
+            return null;
+        }
+        int pageIndex = row / pageSize;
+        List<Song> page = pages.get(pageIndex);
+        if (page == null) {
+            requestPage(pageIndex);
+            // The launcher may have run the read already
+            page = pages.get(pageIndex);
+            if (page == null) {
+                return null;
+            }
+        }
+        int index = row % pageSize;
+        return index < page.size() ? page.get(index) : null;
+    }
+
+    /**
+     * @return true while the count or a page is being read
+     */
+    boolean isLoading() {
+        return counting || !pendingPages.isEmpty();
+    }
+
+    /**
+     * @return the number of pages currently kept in memory
+     */
+    int getLoadedPageCount() {
+        return pages.size();
+    }
+
+    private int invalidate() {
+        pendingPages.clear();
+        counting = false;
+        return ++generation;
+    }
+
+    private void requestPage(int pageIndex) {
+        if (!pendingPages.add(pageIndex)) {
+            return;
+        }
+        int current = generation;
+        String column = sortColumn >= 0 ? SORT_COLUMNS[sortColumn] : null;
+        boolean order = ascending;
+        launcher.accept(new SwingWorker<List<Song>, Void>() {
+            @Override
+            protected List<Song> doInBackground() {
+                return songDAO.findSongPage(pageIndex * pageSize, pageSize, column, order);
+            }
+
+            @Override
+            protected void done() {
+                if (current != generation) {
+                    return;
+                }
+                pendingPages.remove(pageIndex);
+                List<Song> page = getOrNull(this, null);
+                if (page == null) {
+                    return;
+                }
+                pages.put(pageIndex, page);
+                int first = pageIndex * pageSize;
+                int last = Math.min(first + pageSize, rowCount) - 1;
+                if (last >= first && searchResults == null) {
+                    fireTableRowsUpdated(first, last);
+                }
+            }
+        });
+    }
+
+    private int rowOf(Song song) {
+        if (searchResults != null) {
+            return searchResults.indexOf(song);
+        }
+        for (Map.Entry<Integer, List<Song>> entry : pages.entrySet()) {
+            int index = entry.getValue().indexOf(song);
+            if (index >= 0) {
+                return entry.getKey() * pageSize + index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Sort the search results like the database sorts pages: ignoring case, nulls first
+     */
+    private void sortSearchResults() {
+        searchResults = new ArrayList<>(rankedResults);
+        if (sortColumn < 0) {
+            return;
+        }
+        int column = sortColumn;
+        Comparator<Song> order = Comparator.comparing((Song song) -> getValue(song, column),
+                Comparator.nullsFirst(String.CASE_INSENSITIVE_ORDER));
+        order = order.thenComparingInt(Song::getId);
+        searchResults.sort(ascending ? order : order.reversed());
+    }
+
+    private static <T> T getOrNull(SwingWorker<T, ?> worker, T fallback) {
+        try {
+            T result = worker.get();
+            return result != null ? result : fallback;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+        }
+        return fallback;
+    }
+
+    private static String getValue(Song song, int columnIndex) {
+        switch (columnIndex) {
+            case 0:
+                return song.getTitle();
+            case 1:
+                return song.getArtist();
+            case 2:
+                return song.getAlbum();
+            case 3:
+                return song.getGenre();
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public int getRowCount() {
+        return searchResults != null ? searchResults.size() : rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        Song song = getSongAt(rowIndex);
+        if (song == null) {
+            return columnIndex == 0 && searchResults == null && rowIndex >= 0 && rowIndex < rowCount
+                    ? LOADING : null;
+        }
+        return getValue(song, columnIndex);
+    }
+
+    @Override
+    public boolean isCellEditable(int rowIndex, int columnIndex) {
+        return false;
+    }
+}
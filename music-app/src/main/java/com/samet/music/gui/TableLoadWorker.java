@@ -0,0 +1,90 @@
+package com.samet.music.gui;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import javax.swing.SwingWorker;
+import javax.swing.table.DefaultTableModel;
+
+/**
+ * Fills a table from the database on a background thread.
+ * Rows are read from an open cursor and published one by one, so the first rows show
+ * while later ones are still being read and no full list is ever held; the number of
+ * rows read so far is reported through the worker's "rows" property. Once the worker
+ * is cancelled it stops reading and closes the cursor, and no more rows reach the
+ * table, so a newer load can take over the table right away.
+ */
+class TableLoadWorker extends SwingWorker<Integer, Object[]> {
+
+    /**
+     * Name of the property reporting the number of rows read
+     */
+    static final String ROWS_PROPERTY = "rows";
+
+    // Rows read between two reports, so listeners are not called once per row
+    private static final int ROWS_PER_REPORT = 500;
+
+    private final DefaultTableModel model;
+    private final Callable<Stream<Object[]>> rowSource;
+    private final Consumer<Integer> onLoaded;
+    private final Consumer<Throwable> onError;
+
+    /**
+     * Constructor
+     * @param model the table model to fill; it is expected to be empty
+     * @param rowSource opens a stream over the rows, called on the background thread; the worker closes it
+     * @param onLoaded receives the number of rows once all were added, on the event dispatch thread
+     * @param onError receives the error if the rows could not be read, on the event dispatch thread
+     */
+    TableLoadWorker(DefaultTableModel model, Callable<Stream<Object[]>> rowSource,
+                    Consumer<Integer> onLoaded, Consumer<Throwable> onError) {
+        this.model = model;
+        this.rowSource = rowSource;
+        this.onLoaded = onLoaded;
+        this.onError = onError;
+    }
+
+    @Override
+    protected Integer doInBackground() throws Exception {
+        int count = 0;
+        try (Stream<Object[]> rows = rowSource.call()) {
+            Iterator<Object[]> iterator = rows.iterator();
+            while (!isCancelled() && iterator.hasNext()) {
+                publish(iterator.next());
+                count++;
+                if (count % ROWS_PER_REPORT == 0) {
+                    firePropertyChange(ROWS_PROPERTY, count - ROWS_PER_REPORT, count);
+                }
+            }
+        }
+        return count;
+    }
+
+    @Override
+    protected void process(List<Object[]> rows) {
+        if (isCancelled()) {
+            return;
+        }
+        for (Object[] row : rows) {
+            model.addRow(row);
+        }
+    }
+
+    @Override
+    protected void done() {
+        if (isCancelled()) {
+            return;
+        }
+        try {
+            onLoaded.accept(get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            onError.accept(e.getCause());
+        }
+    }
+}
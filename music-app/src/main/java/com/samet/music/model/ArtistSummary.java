@@ -0,0 +1,64 @@
+package com.samet.music.model;
+
+/**
+ * An artist name together with the size of its catalogue
+ */
+public class ArtistSummary {
+    private String name;
+    private int songCount;
+    private int albumCount;
+    private int totalDuration;
+
+    // Default constructor
+    public ArtistSummary() {
+    }
+
+    // Full constructor
+    public ArtistSummary(String name, int songCount, int albumCount, int totalDuration) {
+        this.name = name;
+        this.songCount = songCount;
+        this.albumCount = albumCount;
+        this.totalDuration = totalDuration;
+    }
+
+    // Getters and Setters
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public int getSongCount() {
+        return songCount;
+    }
+
+    public void setSongCount(int songCount) {
+        this.songCount = songCount;
+    }
+
+    public int getAlbumCount() {
+        return albumCount;
+    }
+
+    public void setAlbumCount(int albumCount) {
+        this.albumCount = albumCount;
+    }
+
+    /**
+     * @return the summed duration of the artist's songs, in seconds
+     */
+    public int getTotalDuration() {
+        return totalDuration;
+    }
+
+    public void setTotalDuration(int totalDuration) {
+        this.totalDuration = totalDuration;
+    }
+
+    @Override
+    public String toString() {
+        return name + " (songs: " + songCount + ", albums: " + albumCount + ")";
+    }
+}
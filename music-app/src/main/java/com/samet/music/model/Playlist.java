@@ -5,7 +5,10 @@ import java.util.ArrayList;
 import java.util.List;
 
 /**
- * Playlist model class representing a collection of songs
+ * Playlist model class representing a collection of songs.
+ * A playlist read as a header only carries its track count and total duration;
+ * its songs are empty until they are loaded or set.
+ * A smart playlist has a rule, and its songs are the ones matching it.
  */
 public class Playlist {
     private int id;
@@ -14,6 +17,10 @@ public class Playlist {
     private int userId;
     private LocalDateTime createdAt;
     private List<Song> songs;
+    private boolean songsLoaded = true;
+    private int trackCount;
+    private int totalDuration;
+    private String rule;
 
     // Default constructor
     public Playlist() {
@@ -86,6 +93,44 @@ public class Playlist {
 
     public void setSongs(List<Song> songs) {
         this.songs = songs;
+        this.songsLoaded = true;
+    }
+
+    /**
+     * @return the rule of a smart playlist, or null for a regular playlist
+     */
+    public String getRule() {
+        return rule;
+    }
+
+    public void setRule(String rule) {
+        this.rule = rule;
+    }
+
+    /**
+     * @return true if the songs of this playlist are chosen by a rule
+     */
+    public boolean isSmart() {
+        return rule != null;
+    }
+
+    /**
+     * Make this a header: keep the stored totals and drop the songs until they are loaded
+     * @param trackCount number of songs in the playlist
+     * @param totalDuration summed duration of the songs, in seconds
+     */
+    public void setSummary(int trackCount, int totalDuration) {
+        this.trackCount = trackCount;
+        this.totalDuration = totalDuration;
+        this.songs = new ArrayList<>();
+        this.songsLoaded = false;
+    }
+
+    /**
+     * @return true if getSongs holds the playlist's songs, false for a header
+     */
+    public boolean isSongsLoaded() {
+        return songsLoaded;
     }
 
     /**
@@ -119,6 +164,9 @@ public class Playlist {
      * @return the total duration
      */
     public int getTotalDuration() {
+        if (!songsLoaded) {
+            return totalDuration;
+        }
         return this.songs.stream().mapToInt(Song::getDuration).sum();
     }
 
@@ -144,7 +192,7 @@ public class Playlist {
      * @return the number of songs
      */
     public int getSongCount() {
-        return this.songs.size();
+        return songsLoaded ? this.songs.size() : trackCount;
     }
 
     @Override
@@ -0,0 +1,97 @@
+package com.samet.music.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of adding several songs to a playlist at once, per song in the order requested
+ */
+public class PlaylistAddResult {
+
+    /**
+     * What happened to one requested song
+     */
+    public enum Outcome {
+        ADDED,
+        ALREADY_IN_PLAYLIST,
+        SONG_NOT_FOUND,
+        FAILED
+    }
+
+    private final Map<Integer, Outcome> outcomes = new LinkedHashMap<>();
+
+    /**
+     * Record the outcome for a song; a song requested more than once keeps its first outcome
+     * @param songId song ID
+     * @param outcome what happened to the song
+     */
+    public void put(int songId, Outcome outcome) {
+        outcomes.putIfAbsent(songId, outcome);
+    }
+
+    /**
+     * Replace the outcome of a song already recorded
+     * @param songId song ID
+     * @param outcome what happened to the song
+     */
+    public void replace(int songId, Outcome outcome) {
+        outcomes.replace(songId, outcome);
+    }
+
+    /**
+     * @param songId song ID
+     * @return what happened to the song, or null if it was not requested
+     */
+    public Outcome getOutcome(int songId) {
+        return outcomes.get(songId);
+    }
+
+    /**
+     * @return every requested song with its outcome, in the order requested
+     */
+    public Map<Integer, Outcome> getOutcomes() {
+        return Collections.unmodifiableMap(outcomes);
+    }
+
+    /**
+     * @param outcome an outcome
+     * @return the songs with that outcome, in the order requested
+     */
+    public List<Integer> getSongIds(Outcome outcome) {
+        List<Integer> songIds = new ArrayList<>();
+        for (Map.Entry<Integer, Outcome> entry : outcomes.entrySet()) {
+            if (entry.getValue() == outcome) {
+                songIds.add(entry.getKey());
+            }
+        }
+        return songIds;
+    }
+
+    /**
+     * @param outcome an outcome
+     * @return the number of songs with that outcome
+     */
+    public int count(Outcome outcome) {
+        return getSongIds(outcome).size();
+    }
+
+    /**
+     * @return the number of songs added
+     */
+    public int getAddedCount() {
+        return count(Outcome.ADDED);
+    }
+
+    @Override
+    public String toString() {
+        return "PlaylistAddResult{" +
+                "added=" + getAddedCount() +
+                ", alreadyInPlaylist=" + count(Outcome.ALREADY_IN_PLAYLIST) +
+                ", songNotFound=" + count(Outcome.SONG_NOT_FOUND) +
+                ", failed=" + count(Outcome.FAILED) +
+                '}';
+    }
+}
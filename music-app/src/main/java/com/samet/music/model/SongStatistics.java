@@ -0,0 +1,78 @@
+package com.samet.music.model;
+
+import java.sql.Timestamp;
+
+/**
+ * A song together with one user's listening statistics for it
+ */
+public class SongStatistics {
+    private Song song;
+    private int playCount;
+    private boolean favorite;
+    private Timestamp lastPlayed;
+    private boolean mostPlayed;
+
+    // Default constructor
+    public SongStatistics() {
+    }
+
+    // Full constructor
+    public SongStatistics(Song song, int playCount, boolean favorite, Timestamp lastPlayed) {
+        this.song = song;
+        this.playCount = playCount;
+        this.favorite = favorite;
+        this.lastPlayed = lastPlayed;
+    }
+
+    // Constructor for rows of a query that also picks the most played songs
+    public SongStatistics(Song song, int playCount, boolean favorite, Timestamp lastPlayed, boolean mostPlayed) {
+        this(song, playCount, favorite, lastPlayed);
+        this.mostPlayed = mostPlayed;
+    }
+
+    // Getters and Setters
+    public Song getSong() {
+        return song;
+    }
+
+    public void setSong(Song song) {
+        this.song = song;
+    }
+
+    public int getPlayCount() {
+        return playCount;
+    }
+
+    public void setPlayCount(int playCount) {
+        this.playCount = playCount;
+    }
+
+    public boolean isFavorite() {
+        return favorite;
+    }
+
+    public void setFavorite(boolean favorite) {
+        this.favorite = favorite;
+    }
+
+    public Timestamp getLastPlayed() {
+        return lastPlayed;
+    }
+
+    public void setLastPlayed(Timestamp lastPlayed) {
+        this.lastPlayed = lastPlayed;
+    }
+
+    public boolean isMostPlayed() {
+        return mostPlayed;
+    }
+
+    public void setMostPlayed(boolean mostPlayed) {
+        this.mostPlayed = mostPlayed;
+    }
+
+    @Override
+    public String toString() {
+        return song + " (plays: " + playCount + (favorite ? ", favorite" : "") + ")";
+    }
+}
@@ -0,0 +1,351 @@
+package com.samet.music.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.samet.music.dao.UserSongStatisticsDAO;
+
+/**
+ * User-user collaborative filtering over user_song_statistics.
+ * The listening history is loaded once into a {@link UserSongMatrix}; for a user,
+ * only the users sharing at least one song are visited (through the song view of
+ * the matrix), the top-K most similar of them are kept as neighbours and cached,
+ * and their songs are scored by similarity-weighted listening weight.
+ */
+public class CollaborativeFilter {
+    private static final Logger logger = LoggerFactory.getLogger(CollaborativeFilter.class);
+
+    /**
+     * How similarity between two users is measured
+     */
+    public enum Similarity {
+        /** Cosine of the two weighted listening vectors */
+        COSINE,
+        /** Shared songs divided by songs listened to by either user, ignoring weights */
+        JACCARD
+    }
+
+    private static final int DEFAULT_NEIGHBOUR_COUNT = 30;
+    private static final long DEFAULT_MAX_AGE_MILLIS = 5 * 60 * 1000L;
+
+    private final UserSongStatisticsDAO statisticsDAO;
+    private final Similarity similarity;
+    private final int neighbourCount;
+    private final long maxAgeMillis;
+
+    private volatile Snapshot snapshot;
+
+    // Score and candidate buffers of each calling thread, all zero between calls
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+    /**
+     * Constructor with cosine similarity, 30 neighbours and a five minute refresh interval
+     * @param statisticsDAO source of listening history
+     */
+    public CollaborativeFilter(UserSongStatisticsDAO statisticsDAO) {
+        this(statisticsDAO, Similarity.COSINE, DEFAULT_NEIGHBOUR_COUNT, DEFAULT_MAX_AGE_MILLIS);
+    }
+
+    /**
+     * Constructor
+     * @param statisticsDAO source of listening history
+     * @param similarity similarity measure between users
+     * @param neighbourCount number of most similar users considered per user (K)
+     * @param maxAgeMillis how long a loaded matrix and its cached neighbours are reused
+     */
+    public CollaborativeFilter(UserSongStatisticsDAO statisticsDAO, Similarity similarity,
+                               int neighbourCount, long maxAgeMillis) {
+        if (neighbourCount <= 0) {
+            throw new IllegalArgumentException("Neighbour count must be positive: " + neighbourCount);
+        }
+        this.statisticsDAO = statisticsDAO;
+        this.similarity = similarity;
+        this.neighbourCount = neighbourCount;
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    /**
+     * Recommend songs the user has not listened to, liked by the most similar users.
+     * Users without history, or without any neighbour, get the most popular songs instead.
+     * @param userId user ID
+     * @param limit maximum number of songs
+     * @return song IDs, best recommendation first
+     */
+    public List<Integer> recommendSongIds(int userId, int limit) {
+        if (limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        Snapshot current = currentSnapshot();
+        UserSongMatrix matrix = current.matrix;
+        int user = matrix.userIndex(userId);
+
+        Scratch buffers = scratch.get().ensureCapacity(matrix.getSongCount());
+        float[] scores = buffers.scores;
+        int[] candidates = buffers.candidates;
+        int candidateCount = 0;
+
+        List<Integer> songIds = new ArrayList<>(limit);
+        try {
+            // Songs the user already knows can never be recommended
+            if (user >= 0) {
+                for (int k = matrix.userRowStart(user); k < matrix.userRowEnd(user); k++) {
+                    scores[matrix.userEntrySong(k)] = Float.NEGATIVE_INFINITY;
+                }
+
+                Neighbours neighbours = current.neighboursOf(user);
+                for (int n = 0; n < neighbours.users.length; n++) {
+                    int neighbour = neighbours.users[n];
+                    float weight = neighbours.similarities[n];
+                    for (int k = matrix.userRowStart(neighbour); k < matrix.userRowEnd(neighbour); k++) {
+                        int song = matrix.userEntrySong(k);
+                        if (scores[song] == 0f) {
+                            candidates[candidateCount++] = song;
+                        }
+                        scores[song] += weight * matrix.userEntryWeight(k);
+                    }
+                }
+            }
+
+            for (int song : topK(candidates, candidateCount, scores, limit)) {
+                songIds.add(matrix.songId(song));
+            }
+
+            // Cold start or too few neighbour songs: fill up with the most popular unheard songs.
+            // Every scored candidate was taken above, so any song with a score is known or taken.
+            for (int rank = 0; rank < matrix.getPopularSongCount() && songIds.size() < limit; rank++) {
+                int song = matrix.popularSong(rank);
+                if (scores[song] == 0f) {
+                    songIds.add(matrix.songId(song));
+                }
+            }
+        } finally {
+            // Clear only the entries written, so the buffers are ready for the next call
+            if (user >= 0) {
+                for (int k = matrix.userRowStart(user); k < matrix.userRowEnd(user); k++) {
+                    scores[matrix.userEntrySong(k)] = 0f;
+                }
+            }
+            for (int c = 0; c < candidateCount; c++) {
+                scores[candidates[c]] = 0f;
+            }
+        }
+        return songIds;
+    }
+
+    /**
+     * Get the most similar users of a user
+     * @param userId user ID
+     * @return neighbour user ID to similarity, most similar first; empty if the user has no history
+     */
+    public Map<Integer, Double> getNeighbours(int userId) {
+        Snapshot current = currentSnapshot();
+        Map<Integer, Double> result = new LinkedHashMap<>();
+        int user = current.matrix.userIndex(userId);
+        if (user < 0) {
+            return result;
+        }
+        Neighbours neighbours = current.neighboursOf(user);
+        for (int n = 0; n < neighbours.users.length; n++) {
+            result.put(current.matrix.userId(neighbours.users[n]), (double) neighbours.similarities[n]);
+        }
+        return result;
+    }
+
+    /**
+     * Drop the loaded matrix and all cached neighbour lists; the next call reloads them
+     */
+    public void invalidate() {
+        snapshot = null;
+    }
+
+    private Snapshot currentSnapshot() {
+        Snapshot current = snapshot;
+        if (current != null && System.currentTimeMillis() - current.loadedAt < maxAgeMillis) {
+            return current;
+        }
+        synchronized (this) {
+            current = snapshot;
+            if (current == null || System.currentTimeMillis() - current.loadedAt >= maxAgeMillis) {
+                long start = System.nanoTime();
+                current = new Snapshot(UserSongMatrix.load(statisticsDAO));
+                snapshot = current;
+                logger.info("Loaded listening matrix: {} users, {} songs, {} interactions in {} ms",
+                        current.matrix.getUserCount(), current.matrix.getSongCount(),
+                        current.matrix.getInteractionCount(), (System.nanoTime() - start) / 1_000_000);
+            }
+            return current;
+        }
+    }
+
+    /**
+     * Compute the top-K neighbours of a user by visiting only users that share a song
+     */
+    private Neighbours findNeighbours(UserSongMatrix matrix, int user) {
+        float[] dot = new float[matrix.getUserCount()];
+        int[] overlap = new int[matrix.getUserCount()];
+        int[] touched = new int[matrix.getUserCount()];
+        int touchedCount = 0;
+
+        for (int k = matrix.userRowStart(user); k < matrix.userRowEnd(user); k++) {
+            int song = matrix.userEntrySong(k);
+            float weight = matrix.userEntryWeight(k);
+            for (int e = matrix.songRowStart(song); e < matrix.songRowEnd(song); e++) {
+                int other = matrix.songEntryUser(e);
+                if (other == user) {
+                    continue;
+                }
+                if (overlap[other] == 0) {
+                    touched[touchedCount++] = other;
+                }
+                overlap[other]++;
+                dot[other] += weight * matrix.songEntryWeight(e);
+            }
+        }
+
+        int userSize = matrix.userRowEnd(user) - matrix.userRowStart(user);
+        float[] similarities = dot;
+        for (int t = 0; t < touchedCount; t++) {
+            int other = touched[t];
+            if (similarity == Similarity.JACCARD) {
+                int otherSize = matrix.userRowEnd(other) - matrix.userRowStart(other);
+                similarities[other] = (float) overlap[other] / (userSize + otherSize - overlap[other]);
+            } else {
+                float norms = matrix.userNorm(user) * matrix.userNorm(other);
+                similarities[other] = norms > 0 ? dot[other] / norms : 0f;
+            }
+        }
+
+        int[] best = topK(touched, touchedCount, similarities, neighbourCount);
+        float[] bestSimilarities = new float[best.length];
+        for (int n = 0; n < best.length; n++) {
+            bestSimilarities[n] = similarities[best[n]];
+        }
+        return new Neighbours(best, bestSimilarities);
+    }
+
+    /**
+     * Select the k candidates with the highest positive score using a bounded min-heap
+     * @param candidates candidate indexes into scores
+     * @param count number of valid candidates
+     * @param scores score per index
+     * @param k how many to keep
+     * @return the selected indexes, highest score first
+     */
+    static int[] topK(int[] candidates, int count, float[] scores, int k) {
+        int[] heap = new int[Math.min(k, count)];
+        int size = 0;
+        for (int c = 0; c < count; c++) {
+            int candidate = candidates[c];
+            float score = scores[candidate];
+            if (!(score > 0f)) {
+                continue;
+            }
+            if (size < heap.length) {
+                heap[size] = candidate;
+                siftUp(heap, size++, scores);
+            } else if (size > 0 && score > scores[heap[0]]) {
+                heap[0] = candidate;
+                siftDown(heap, size, scores);
+            }
+        }
+
+        // Pop the heap from the back to get descending order
+        int[] result = new int[size];
+        for (int i = size - 1; i >= 0; i--) {
+            result[i] = heap[0];
+            heap[0] = heap[--size];
+            siftDown(heap, size, scores);
+        }
+        return result;
+    }
+
+    private static void siftUp(int[] heap, int index, float[] scores) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (scores[heap[parent]] <= scores[heap[index]]) {
+                return;
+            }
+            swap(heap, parent, index);
+            index = parent;
+        }
+    }
+
+    private static void siftDown(int[] heap, int size, float[] scores) {
+        int index = 0;
+        while (true) {
+            int smallest = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < size && scores[heap[left]] < scores[heap[smallest]]) {
+                smallest = left;
+            }
+            if (right < size && scores[heap[right]] < scores[heap[smallest]]) {
+                smallest = right;
+            }
+            if (smallest == index) {
+                return;
+            }
+            swap(heap, smallest, index);
+            index = smallest;
+        }
+    }
+
+    private static void swap(int[] heap, int a, int b) {
+        int tmp = heap[a];
+        heap[a] = heap[b];
+        heap[b] = tmp;
+    }
+
+    /**
+     * A loaded matrix with the neighbour lists computed from it so far
+     */
+    private final class Snapshot {
+        private final UserSongMatrix matrix;
+        private final long loadedAt = System.currentTimeMillis();
+        private final Map<Integer, Neighbours> neighbourCache = new ConcurrentHashMap<>();
+
+        Snapshot(UserSongMatrix matrix) {
+            this.matrix = matrix;
+        }
+
+        Neighbours neighboursOf(int user) {
+            return neighbourCache.computeIfAbsent(user, u -> findNeighbours(matrix, u));
+        }
+    }
+
+    /**
+     * Per-song buffers of one thread, grown to the largest matrix seen
+     */
+    private static final class Scratch {
+        private float[] scores = new float[0];
+        private int[] candidates = new int[0];
+
+        Scratch ensureCapacity(int songCount) {
+            if (scores.length < songCount) {
+                scores = new float[songCount];
+                candidates = new int[songCount];
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Top-K neighbours of one user as parallel primitive arrays
+     */
+    private static final class Neighbours {
+        private final int[] users;
+        private final float[] similarities;
+
+        Neighbours(int[] users, float[] similarities) {
+            this.users = users;
+            this.similarities = similarities;
+        }
+    }
+}
@@ -4,9 +4,12 @@ import com.samet.music.dao.SongDAO;
 import com.samet.music.dao.UserSongStatisticsDAO;
 import com.samet.music.dao.AlbumDAO;
 import com.samet.music.dao.ArtistDAO;
+import com.samet.music.dao.PlayRollupDAO;
 import com.samet.music.model.Song;
+import com.samet.music.model.SongStatistics;
 import com.samet.music.model.User;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.DayOfWeek;
 import java.time.format.TextStyle;
@@ -21,6 +24,16 @@ public class MusicStatisticsService {
     private final UserSongStatisticsDAO userSongStatisticsDAO;
     private final AlbumDAO albumDAO;
     private final ArtistDAO artistDAO;
+    private final CollaborativeFilter collaborativeFilter;
+    private final PlayRollupDAO playRollupDAO;
+    
+    /**
+     * Longest period one trend report covers, which bounds how many rollup rows it reads
+     */
+    private static final int MAX_REPORT_DAYS = 366;
+    
+    private static final String[] TIME_OF_DAY_LABELS = {
+            "Night (12AM-6AM)", "Morning (6AM-12PM)", "Afternoon (12PM-6PM)", "Evening (6PM-12AM)"};
     
     /**
      * Constructor
@@ -30,6 +43,8 @@ public class MusicStatisticsService {
         this.userSongStatisticsDAO = new UserSongStatisticsDAO();
         this.albumDAO = new AlbumDAO();
         this.artistDAO = new ArtistDAO();
+        this.collaborativeFilter = new CollaborativeFilter(userSongStatisticsDAO);
+        this.playRollupDAO = new PlayRollupDAO();
     }
     
     /**
@@ -44,13 +59,13 @@ public class MusicStatisticsService {
         Map<String, Object> basicStats = userSongStatisticsDAO.getUserStatistics(userId);
         summary.putAll(basicStats);
         
-        // Get favorite songs
-        List<Integer> favoriteSongIds = userSongStatisticsDAO.getFavoriteSongs(userId);
-        List<Song> favoriteSongs = new ArrayList<>();
+        // Favorites and the 3 most played songs with their statistics, in one query
+        List<SongStatistics> listenedSongs = userSongStatisticsDAO.getFavoriteAndMostPlayedSongStatistics(userId, 3);
         
-        for (Integer songId : favoriteSongIds) {
-            songDAO.findById(songId).ifPresent(favoriteSongs::add);
-        }
+        List<Song> favoriteSongs = listenedSongs.stream()
+                .filter(SongStatistics::isFavorite)
+                .map(SongStatistics::getSong)
+                .collect(Collectors.toList());
         
         // Get top 3 favorite songs titles and artists
         List<Map<String, Object>> topFavoriteSongs = favoriteSongs.stream()
@@ -66,36 +81,28 @@ public class MusicStatisticsService {
                 
         summary.put("top_favorites", topFavoriteSongs);
         
-        // Get most played songs
-        List<Integer> mostPlayedIds = userSongStatisticsDAO.getMostPlayedSongs(userId, 3);
+        // Get most played songs, flagged by the query and ordered by play count
         List<Map<String, Object>> topPlayedSongs = new ArrayList<>();
         
-        for (Integer songId : mostPlayedIds) {
-            songDAO.findById(songId).ifPresent(song -> {
-                Map<String, Object> songInfo = new HashMap<>();
-                songInfo.put("id", song.getId());
-                songInfo.put("title", song.getTitle());
-                songInfo.put("artist", song.getArtist());
-                songInfo.put("play_count", userSongStatisticsDAO.getPlayCount(userId, song.getId()));
-                topPlayedSongs.add(songInfo);
-            });
+        for (SongStatistics statistics : listenedSongs) {
+            if (!statistics.isMostPlayed()) {
+                continue;
+            }
+            Song song = statistics.getSong();
+            Map<String, Object> songInfo = new HashMap<>();
+            songInfo.put("id", song.getId());
+            songInfo.put("title", song.getTitle());
+            songInfo.put("artist", song.getArtist());
+            songInfo.put("play_count", statistics.getPlayCount());
+            topPlayedSongs.add(songInfo);
         }
         
         summary.put("top_played", topPlayedSongs);
         
-        // Get favorite genres
+        // Count genres over favorites and most played songs
         Map<String, Integer> genreCounts = new HashMap<>();
-        List<Song> userSongs = favoriteSongs;
-        
-        // Add most played songs to the analysis if they're not already in favorites
-        for (Integer songId : mostPlayedIds) {
-            if (!favoriteSongIds.contains(songId)) {
-                songDAO.findById(songId).ifPresent(userSongs::add);
-            }
-        }
-        
-        // Count genres
-        for (Song song : userSongs) {
+        for (SongStatistics statistics : listenedSongs) {
+            Song song = statistics.getSong();
             if (song.getGenre() != null && !song.getGenre().isEmpty()) {
                 genreCounts.put(song.getGenre(), genreCounts.getOrDefault(song.getGenre(), 0) + 1);
             }
@@ -115,42 +122,46 @@ public class MusicStatisticsService {
     }
     
     /**
-     * Generate a listening trend report for a given time period
+     * Generate a listening trend report for a given time period from the daily listening rollups.
+     * Whole days are reported; periods longer than a year are cut to the most recent year.
      * @param userId the user ID
      * @param startDate the start date (inclusive)
      * @param endDate the end date (inclusive)
-     * @return a map with trend data
+     * @return a map with daily play counts (ISO date to plays), genre distribution (percent) and total plays
      */
     public Map<String, Object> getListeningTrendReport(int userId, LocalDateTime startDate, LocalDateTime endDate) {
-        // In a real implementation, we would query the database for listening activity
-        // during the specified time period and generate trend data
-        
-        // For this example, we'll create some mock trend data
         Map<String, Object> report = new HashMap<>();
         
-        // Mock daily listening activity
-        Map<String, Integer> dailyActivity = new HashMap<>();
-        LocalDateTime currentDay = startDate;
+        LocalDate lastDay = endDate.toLocalDate();
+        LocalDate firstDay = startDate.toLocalDate();
+        if (firstDay.isBefore(lastDay.minusDays(MAX_REPORT_DAYS))) {
+            firstDay = lastDay.minusDays(MAX_REPORT_DAYS);
+        }
+        playRollupDAO.catchUp();
         
-        while (!currentDay.isAfter(endDate)) {
-            String dayName = currentDay.getDayOfWeek().getDisplayName(TextStyle.FULL, Locale.ENGLISH);
-            // Generate a random number of plays for this day (between 0 and 20)
-            int plays = new Random().nextInt(21);
-            dailyActivity.put(dayName, plays);
-            
-            currentDay = currentDay.plusDays(1);
+        // Every day of the period, including days without plays
+        Map<String, Integer> dailyActivity = new LinkedHashMap<>();
+        for (LocalDate day = firstDay; !day.isAfter(lastDay); day = day.plusDays(1)) {
+            dailyActivity.put(day.toString(), 0);
         }
         
+        int totalPlays = 0;
+        Map<Long, Integer> dailyPlays = playRollupDAO.getDailyPlayCounts(userId, firstDay.toEpochDay(), lastDay.toEpochDay());
+        for (Map.Entry<Long, Integer> day : dailyPlays.entrySet()) {
+            dailyActivity.put(LocalDate.ofEpochDay(day.getKey()).toString(), day.getValue());
+            totalPlays += day.getValue();
+        }
         report.put("daily_activity", dailyActivity);
-        
-        // Mock genre distribution
-        Map<String, Double> genreDistribution = new HashMap<>();
-        genreDistribution.put("Rock", 35.0);
-        genreDistribution.put("Pop", 25.0);
-        genreDistribution.put("Electronic", 15.0);
-        genreDistribution.put("Hip-Hop", 10.0);
-        genreDistribution.put("Other", 15.0);
-        
+        report.put("total_plays", totalPlays);
+        
+        // Share of plays per genre
+        Map<String, Double> genreDistribution = new LinkedHashMap<>();
+        if (totalPlays > 0) {
+            Map<String, Integer> genrePlays = playRollupDAO.getGenrePlayCounts(userId, firstDay.toEpochDay(), lastDay.toEpochDay());
+            for (Map.Entry<String, Integer> genre : genrePlays.entrySet()) {
+                genreDistribution.put(genre.getKey(), Math.round(1000.0 * genre.getValue() / totalPlays) / 10.0);
+            }
+        }
         report.put("genre_distribution", genreDistribution);
         
         return report;
@@ -164,19 +175,8 @@ public class MusicStatisticsService {
     public Map<String, Object> getMusicTasteProfile(int userId) {
         Map<String, Object> profile = new HashMap<>();
         
-        // Get user's songs and analyze them
-        List<Integer> favoriteSongIds = userSongStatisticsDAO.getFavoriteSongs(userId);
-        List<Integer> mostPlayedIds = userSongStatisticsDAO.getMostPlayedSongs(userId, 10);
-        
-        // Combine these for analysis
-        Set<Integer> analysisSongIds = new HashSet<>();
-        analysisSongIds.addAll(favoriteSongIds);
-        analysisSongIds.addAll(mostPlayedIds);
-        
-        List<Song> analysisSongs = new ArrayList<>();
-        for (Integer songId : analysisSongIds) {
-            songDAO.findById(songId).ifPresent(analysisSongs::add);
-        }
+        // Get user's favorites and 10 most played songs with their play counts
+        List<SongStatistics> analysisSongs = userSongStatisticsDAO.getFavoriteAndMostPlayedSongStatistics(userId, 10);
         
         // If the user hasn't listened to anything yet, return empty profile
         if (analysisSongs.isEmpty()) {
@@ -186,10 +186,10 @@ public class MusicStatisticsService {
         
         // Analyze genres
         Map<String, Integer> genreCounts = new HashMap<>();
-        for (Song song : analysisSongs) {
+        for (SongStatistics statistics : analysisSongs) {
+            Song song = statistics.getSong();
             if (song.getGenre() != null && !song.getGenre().isEmpty()) {
-                int weight = userSongStatisticsDAO.getPlayCount(userId, song.getId());
-                weight = Math.max(1, weight); // Ensure at least weight of 1
+                int weight = Math.max(1, statistics.getPlayCount()); // Ensure at least weight of 1
                 genreCounts.put(song.getGenre(), genreCounts.getOrDefault(song.getGenre(), 0) + weight);
             }
         }
@@ -208,7 +208,8 @@ public class MusicStatisticsService {
         int songCount = 0;
         int currentYear = LocalDateTime.now().getYear();
         
-        for (Song song : analysisSongs) {
+        for (SongStatistics statistics : analysisSongs) {
+            Song song = statistics.getSong();
             if (song.getYear() > 0) {
                 totalYears += song.getYear();
                 songCount++;
@@ -265,81 +266,96 @@ public class MusicStatisticsService {
      * @return a list of recommended songs
      */
     public List<Song> getSimilarUserRecommendations(int userId, int limit) {
-        // In a real implementation, we would:
-        // 1. Find users with similar listening patterns 
-        // 2. Get songs they enjoy that the current user hasn't heard
-        // 3. Return those as recommendations
-        
-        // For this example, we'll return some mock recommendations
-        List<Song> mockRecommendations = new ArrayList<>();
-        
-        // Get some songs the user hasn't played
-        List<Song> allSongs = songDAO.findAll();
-        List<Integer> userSongIds = new ArrayList<>();
-        
-        // Get IDs of songs the user has played
-        for (Song song : allSongs) {
-            if (userSongStatisticsDAO.getPlayCount(userId, song.getId()) > 0) {
-                userSongIds.add(song.getId());
+        // Songs liked by the users whose listening history is most similar to this user's
+        List<Integer> songIds = collaborativeFilter.recommendSongIds(userId, limit);
+        Map<Integer, Song> songsById = songDAO.findByIds(songIds);
+        
+        List<Song> recommendations = new ArrayList<>();
+        for (Integer songId : songIds) {
+            Song song = songsById.get(songId);
+            if (song != null) {
+                recommendations.add(song);
             }
         }
         
-        // Filter to songs the user hasn't played
-        List<Song> unplayedSongs = allSongs.stream()
-                .filter(song -> !userSongIds.contains(song.getId()))
-                .collect(Collectors.toList());
-                
-        // Return a random subset of unplayed songs
-        Collections.shuffle(unplayedSongs);
-        int count = Math.min(limit, unplayedSongs.size());
-        
-        for (int i = 0; i < count; i++) {
-            mockRecommendations.add(unplayedSongs.get(i));
-        }
-        
-        return mockRecommendations;
+        return recommendations;
     }
     
     /**
-     * Generate a report of listening habits by time of day
+     * Generate a report of listening habits by time of day from the hourly listening rollup
      * @param userId the user ID
-     * @return a map with time-based listening data
+     * @return a map with the percentage of plays per part of the day, summing to 100 if there are any plays
      */
     public Map<String, Integer> getTimeOfDayListeningHabits(int userId) {
-        // In a real implementation, we would analyze when users listen to music
-        // and group their activity by time of day
+        playRollupDAO.catchUp();
+        int[] hourlyPlays = playRollupDAO.getHourOfDayPlayCounts(userId);
+        
+        // Night, Morning, Afternoon and Evening are six hours each, starting at midnight
+        int[] plays = new int[TIME_OF_DAY_LABELS.length];
+        for (int hour = 0; hour < hourlyPlays.length; hour++) {
+            plays[hour / 6] += hourlyPlays[hour];
+        }
         
-        // For this example, we'll return mock data
-        Map<String, Integer> timeDistribution = new HashMap<>();
-        timeDistribution.put("Morning (6AM-12PM)", 15);
-        timeDistribution.put("Afternoon (12PM-6PM)", 25);
-        timeDistribution.put("Evening (6PM-12AM)", 45);
-        timeDistribution.put("Night (12AM-6AM)", 15);
+        int[] percentages = toPercentages(plays);
+        Map<String, Integer> timeDistribution = new LinkedHashMap<>();
+        for (int part : new int[] {1, 2, 3, 0}) {
+            timeDistribution.put(TIME_OF_DAY_LABELS[part], percentages[part]);
+        }
         
         return timeDistribution;
     }
     
     /**
-     * Get listening activity by day of week
+     * Get listening activity by day of week from the weekday listening rollup
      * @param userId the user ID
-     * @return a map with day-based listening data
+     * @return a map with the number of plays per day of week, Monday first
      */
     public Map<String, Integer> getDayOfWeekListeningActivity(int userId) {
-        // In a real implementation, we would analyze which days users listen to music most
-        
-        // For this example, we'll return mock data
-        Map<String, Integer> dayDistribution = new HashMap<>();
-        dayDistribution.put("Monday", 10);
-        dayDistribution.put("Tuesday", 12);
-        dayDistribution.put("Wednesday", 15);
-        dayDistribution.put("Thursday", 18);
-        dayDistribution.put("Friday", 25);
-        dayDistribution.put("Saturday", 30);
-        dayDistribution.put("Sunday", 20);
+        playRollupDAO.catchUp();
+        int[] plays = playRollupDAO.getWeekdayPlayCounts(userId);
+        
+        Map<String, Integer> dayDistribution = new LinkedHashMap<>();
+        for (DayOfWeek day : DayOfWeek.values()) {
+            dayDistribution.put(day.getDisplayName(TextStyle.FULL, Locale.ENGLISH), plays[day.getValue() - 1]);
+        }
         
         return dayDistribution;
     }
     
+    /**
+     * Convert counts to whole percentages that add up to exactly 100 (largest remainder method)
+     */
+    private static int[] toPercentages(int[] counts) {
+        int[] percentages = new int[counts.length];
+        long total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+        if (total == 0) {
+            return percentages;
+        }
+        
+        int assigned = 0;
+        long[] remainders = new long[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            percentages[i] = (int) (100L * counts[i] / total);
+            remainders[i] = 100L * counts[i] % total;
+            assigned += percentages[i];
+        }
+        while (assigned < 100) {
+            int largest = 0;
+            for (int i = 1; i < counts.length; i++) {
+                if (remainders[i] > remainders[largest]) {
+                    largest = i;
+                }
+            }
+            percentages[largest]++;
+            remainders[largest] = -1;
+            assigned++;
+        }
+        return percentages;
+    }
+    
     /**
      * Get average song duration preferences for a user
      * @param userId the user ID
@@ -362,14 +378,10 @@ public class MusicStatisticsService {
         int totalDuration = 0;
         int songCount = 0;
         
-        for (Integer songId : analysisSongIds) {
-            Optional<Song> songOpt = songDAO.findById(songId);
-            if (songOpt.isPresent()) {
-                Song song = songOpt.get();
-                if (song.getDuration() > 0) {
-                    totalDuration += song.getDuration();
-                    songCount++;
-                }
+        for (Song song : songDAO.findByIds(analysisSongIds).values()) {
+            if (song.getDuration() > 0) {
+                totalDuration += song.getDuration();
+                songCount++;
             }
         }
         
@@ -0,0 +1,147 @@
+package com.samet.music.service;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.samet.music.dao.PlaylistDAO;
+import com.samet.music.model.Song;
+
+/**
+ * Exports a playlist as M3U, PLS or CSV.
+ * Songs are read over an open cursor and written one at a time, so memory stays constant
+ * however long the playlist is. Every format carries the file path, title and artist,
+ * which is what PlaylistImporter matches songs by.
+ */
+public class PlaylistExporter {
+    private static final Logger logger = LoggerFactory.getLogger(PlaylistExporter.class);
+
+    /**
+     * Columns of an exported CSV file, in order
+     */
+    static final String CSV_HEADER = "title,artist,album,genre,year,duration,file_path";
+
+    private final PlaylistDAO playlistDAO;
+
+    /**
+     * Constructor
+     */
+    public PlaylistExporter() {
+        this(new PlaylistDAO());
+    }
+
+    /**
+     * Constructor
+     * @param playlistDAO playlist data access object the songs are read through
+     */
+    public PlaylistExporter(PlaylistDAO playlistDAO) {
+        this.playlistDAO = playlistDAO;
+    }
+
+    /**
+     * Export a playlist to a file, choosing the format from its extension
+     * @param playlistId the playlist id
+     * @param file the file to write as UTF-8; it is replaced if it exists
+     * @return the number of songs written
+     * @throws IOException if the file cannot be written
+     * @throws IllegalArgumentException if the extension is not a known playlist format
+     */
+    public int exportFile(int playlistId, Path file) throws IOException {
+        PlaylistFormat format = PlaylistFormat.forFileName(file.getFileName().toString());
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            return exportTo(playlistId, writer, format);
+        }
+    }
+
+    /**
+     * Export a playlist
+     * @param playlistId the playlist id
+     * @param writer receives the playlist text; it is flushed, not closed
+     * @param format the playlist format
+     * @return the number of songs written
+     * @throws IOException if the playlist cannot be written
+     */
+    public int exportTo(int playlistId, Writer writer, PlaylistFormat format) throws IOException {
+        int count = 0;
+        switch (format) {
+            case M3U:
+                writer.write("#EXTM3U\n");
+                break;
+            case PLS:
+                writer.write("[playlist]\n");
+                break;
+            default:
+                writer.write(CSV_HEADER + "\n");
+                break;
+        }
+
+        try (Stream<Song> songs = playlistDAO.streamSongs(playlistId)) {
+            Iterator<Song> iterator = songs.iterator();
+            while (iterator.hasNext()) {
+                Song song = iterator.next();
+                count++;
+                switch (format) {
+                    case M3U:
+                        writer.write("#EXTINF:" + song.getDuration() + "," + display(song) + "\n");
+                        // Without a path the display text is the location, so the entry still matches by title
+                        writer.write((hasPath(song) ? song.getFilePath() : display(song)) + "\n");
+                        break;
+                    case PLS:
+                        if (hasPath(song)) {
+                            writer.write("File" + count + "=" + song.getFilePath() + "\n");
+                        }
+                        writer.write("Title" + count + "=" + display(song) + "\n");
+                        writer.write("Length" + count + "=" + song.getDuration() + "\n");
+                        break;
+                    default:
+                        writer.write(csv(song.getTitle()) + "," + csv(song.getArtist()) + "," +
+                                csv(song.getAlbum()) + "," + csv(song.getGenre()) + "," +
+                                song.getYear() + "," + song.getDuration() + "," + csv(song.getFilePath()) + "\n");
+                        break;
+                }
+            }
+        }
+
+        if (format == PlaylistFormat.PLS) {
+            writer.write("NumberOfEntries=" + count + "\n");
+            writer.write("Version=2\n");
+        }
+        writer.flush();
+
+        logger.info("Exported {} songs of playlist {} as {}", count, playlistId, format);
+        return count;
+    }
+
+    private static boolean hasPath(Song song) {
+        return song.getFilePath() != null && !song.getFilePath().trim().isEmpty();
+    }
+
+    /**
+     * The "Artist - Title" text M3U and PLS players show
+     */
+    private static String display(Song song) {
+        String title = song.getTitle() != null ? song.getTitle() : "";
+        String artist = song.getArtist();
+        return artist != null && !artist.trim().isEmpty() ? artist + " - " + title : title;
+    }
+
+    /**
+     * Quote a CSV field when it holds a comma, quote or line break
+     */
+    static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+}
@@ -0,0 +1,43 @@
+package com.samet.music.service;
+
+import java.util.Locale;
+
+/**
+ * Playlist file formats that can be imported and exported
+ */
+public enum PlaylistFormat {
+    /**
+     * Extended M3U, one path per line with #EXTINF lines for duration, artist and title
+     */
+    M3U,
+    /**
+     * PLS, numbered FileN, TitleN and LengthN keys
+     */
+    PLS,
+    /**
+     * Comma separated values with a header row naming the columns
+     */
+    CSV;
+
+    /**
+     * Get the format of a playlist file from its extension
+     * @param fileName the file name; .m3u and .m3u8 are both M3U
+     * @return the format
+     * @throws IllegalArgumentException if the extension is not a known playlist format
+     */
+    public static PlaylistFormat forFileName(String fileName) {
+        int dot = fileName != null ? fileName.lastIndexOf('.') : -1;
+        String extension = dot >= 0 ? fileName.substring(dot + 1).toLowerCase(Locale.ROOT) : "";
+        switch (extension) {
+            case "m3u":
+            case "m3u8":
+                return M3U;
+            case "pls":
+                return PLS;
+            case "csv":
+                return CSV;
+            default:
+                throw new IllegalArgumentException("Unknown playlist format: " + fileName);
+        }
+    }
+}
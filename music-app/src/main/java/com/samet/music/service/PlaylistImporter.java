@@ -0,0 +1,455 @@
+package com.samet.music.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.samet.music.dao.PlaylistDAO;
+import com.samet.music.dao.SongDAO;
+import com.samet.music.model.PlaylistAddResult;
+import com.samet.music.model.PlaylistAddResult.Outcome;
+import com.samet.music.model.Song;
+
+/**
+ * Imports M3U, PLS and CSV playlist files into an existing playlist.
+ * Entries are matched to the playlist owner's songs by file path, or else by title and
+ * artist, through maps built from one pass over those songs, so no entry costs a query of
+ * its own and another user's copy of a song is never picked.
+ * The file is read as a stream and the matched songs are appended in batches of
+ * {@value #BATCH_SIZE}, one transaction each, so memory stays bounded by the size of
+ * the library rather than of the playlist file.
+ */
+public class PlaylistImporter {
+    private static final Logger logger = LoggerFactory.getLogger(PlaylistImporter.class);
+
+    /**
+     * Number of matched songs appended per transaction
+     */
+    static final int BATCH_SIZE = 1000;
+
+    /**
+     * Most unmatched entries kept for the result, so a file of unknown songs stays cheap
+     */
+    static final int MAX_REPORTED_UNRESOLVED = 100;
+
+    private final PlaylistDAO playlistDAO;
+    private final SongDAO songDAO;
+
+    /**
+     * Constructor
+     */
+    public PlaylistImporter() {
+        this(new PlaylistDAO(), new SongDAO());
+    }
+
+    /**
+     * Constructor
+     * @param playlistDAO playlist data access object the songs are appended through
+     * @param songDAO song data access object the songs are matched from
+     */
+    public PlaylistImporter(PlaylistDAO playlistDAO, SongDAO songDAO) {
+        this.playlistDAO = playlistDAO;
+        this.songDAO = songDAO;
+    }
+
+    /**
+     * Import a playlist file, choosing the format from its extension
+     * @param playlistId the playlist the songs are appended to
+     * @param file the playlist file, read as UTF-8
+     * @return what was imported
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if the extension is not a known playlist format
+     */
+    public Result importFile(int playlistId, Path file) throws IOException {
+        PlaylistFormat format = PlaylistFormat.forFileName(file.getFileName().toString());
+        // Undecodable bytes, as in an old Latin-1 .m3u, are replaced rather than failing the import
+        try (Reader reader = new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8)) {
+            return importFrom(playlistId, reader, format);
+        }
+    }
+
+    /**
+     * Import a playlist
+     * @param playlistId the playlist the songs are appended to
+     * @param reader the playlist text; it is not closed
+     * @param format the playlist format
+     * @return what was imported
+     * @throws IOException if the playlist cannot be read
+     */
+    public Result importFrom(int playlistId, Reader reader, PlaylistFormat format) throws IOException {
+        SongLookup lookup = SongLookup.load(songDAO, playlistDAO.getOwnerId(playlistId));
+        Result result = new Result();
+        List<Integer> batch = new ArrayList<>();
+
+        Consumer<Entry> sink = entry -> {
+            result.entries++;
+            Integer songId = lookup.resolve(entry);
+            if (songId == null) {
+                result.unresolved(entry);
+                return;
+            }
+            batch.add(songId);
+            if (batch.size() >= BATCH_SIZE) {
+                append(playlistId, batch, result);
+            }
+        };
+
+        BufferedReader lines = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        switch (format) {
+            case M3U:
+                readM3u(lines, sink);
+                break;
+            case PLS:
+                readPls(lines, sink);
+                break;
+            default:
+                readCsv(lines, sink);
+                break;
+        }
+        append(playlistId, batch, result);
+
+        logger.info("Imported {} into playlist {}", result, playlistId);
+        return result;
+    }
+
+    private void append(int playlistId, List<Integer> batch, Result result) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        PlaylistAddResult added = playlistDAO.appendSongs(playlistId, batch);
+        int failed = added.count(Outcome.FAILED) + added.count(Outcome.SONG_NOT_FOUND);
+        result.added += added.getAddedCount();
+        result.failed += failed;
+        // Songs already in the playlist, or listed more than once
+        result.skipped += batch.size() - added.getAddedCount() - failed;
+        batch.clear();
+    }
+
+    static void readM3u(BufferedReader reader, Consumer<Entry> sink) throws IOException {
+        String title = null;
+        String artist = null;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = stripBom(line).trim();
+            if (line.regionMatches(true, 0, "#EXTINF:", 0, 8)) {
+                // #EXTINF:<seconds>,<artist> - <title>
+                int comma = line.indexOf(',');
+                String[] display = splitDisplay(comma >= 0 ? line.substring(comma + 1) : "");
+                artist = display[0];
+                title = display[1];
+            } else if (!line.isEmpty() && !line.startsWith("#")) {
+                sink.accept(new Entry(line, title, artist));
+                title = null;
+                artist = null;
+            }
+        }
+    }
+
+    static void readPls(BufferedReader reader, Consumer<Entry> sink) throws IOException {
+        // Keys of one entry are next to each other, so only the current entry is kept
+        int index = -1;
+        String path = null;
+        String title = null;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = stripBom(line).trim();
+            int equals = line.indexOf('=');
+            if (equals <= 0) {
+                continue;
+            }
+            String key = line.substring(0, equals).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(equals + 1).trim();
+
+            int digits = key.length();
+            while (digits > 0 && Character.isDigit(key.charAt(digits - 1))) {
+                digits--;
+            }
+            String name = key.substring(0, digits);
+            if (digits == key.length() || key.length() - digits > 9 || !(name.equals("file") || name.equals("title"))) {
+                continue;
+            }
+            int entryIndex = Integer.parseInt(key.substring(digits));
+
+            if (entryIndex != index) {
+                emitPls(path, title, sink);
+                index = entryIndex;
+                path = null;
+                title = null;
+            }
+            if (name.equals("file")) {
+                path = value;
+            } else {
+                title = value;
+            }
+        }
+        emitPls(path, title, sink);
+    }
+
+    private static void emitPls(String path, String title, Consumer<Entry> sink) {
+        if (path == null && title == null) {
+            return;
+        }
+        String[] display = splitDisplay(title != null ? title : "");
+        sink.accept(new Entry(path, display[1], display[0]));
+    }
+
+    static void readCsv(BufferedReader reader, Consumer<Entry> sink) throws IOException {
+        List<String> header = readCsvRecord(reader);
+        if (header == null) {
+            return;
+        }
+        int pathColumn = -1;
+        int titleColumn = -1;
+        int artistColumn = -1;
+        for (int i = 0; i < header.size(); i++) {
+            String column = stripBom(header.get(i)).trim().toLowerCase(Locale.ROOT);
+            if (column.equals("file_path") || column.equals("path")) {
+                pathColumn = i;
+            } else if (column.equals("title")) {
+                titleColumn = i;
+            } else if (column.equals("artist")) {
+                artistColumn = i;
+            }
+        }
+        if (pathColumn < 0 && titleColumn < 0) {
+            throw new IOException("CSV header needs a file_path or title column: " + header);
+        }
+
+        List<String> record;
+        while ((record = readCsvRecord(reader)) != null) {
+            if (record.size() == 1 && record.get(0).trim().isEmpty()) {
+                continue;
+            }
+            sink.accept(new Entry(column(record, pathColumn), column(record, titleColumn), column(record, artistColumn)));
+        }
+    }
+
+    private static String column(List<String> record, int index) {
+        if (index < 0 || index >= record.size()) {
+            return null;
+        }
+        String value = record.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    /**
+     * Read one CSV record; quoted fields may hold commas, doubled quotes and line breaks
+     * @return the fields, or null at the end of the input
+     */
+    static List<String> readCsvRecord(BufferedReader reader) throws IOException {
+        int c = reader.read();
+        if (c == -1) {
+            return null;
+        }
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        while (c != -1) {
+            if (quoted) {
+                if (c == '"') {
+                    reader.mark(1);
+                    if (reader.read() == '"') {
+                        field.append('"');
+                    } else {
+                        reader.reset();
+                        quoted = false;
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n') {
+                break;
+            } else if (c != '\r') {
+                field.append((char) c);
+            }
+            c = reader.read();
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    /**
+     * Split the "Artist - Title" display text used by M3U and PLS
+     * @return the artist, or null if there is none, and the title, or null if the text is blank
+     */
+    static String[] splitDisplay(String display) {
+        String text = display.trim();
+        int dash = text.indexOf(" - ");
+        if (dash < 0) {
+            return new String[] {null, text.isEmpty() ? null : text};
+        }
+        return new String[] {text.substring(0, dash).trim(), text.substring(dash + 3).trim()};
+    }
+
+    private static String stripBom(String line) {
+        return line.startsWith("\uFEFF") ? line.substring(1) : line;
+    }
+
+    /**
+     * One playlist entry as read from a file; any of its fields may be missing
+     */
+    static final class Entry {
+        final String path;
+        final String title;
+        final String artist;
+
+        Entry(String path, String title, String artist) {
+            this.path = path;
+            this.title = title;
+            this.artist = artist;
+        }
+
+        @Override
+        public String toString() {
+            if (path != null) {
+                return path;
+            }
+            return artist != null ? artist + " - " + title : String.valueOf(title);
+        }
+    }
+
+    /**
+     * Maps file paths, and titles with their artist, to song ids, read in one pass over a user's songs
+     */
+    static final class SongLookup {
+        // Marks a title shared by several songs, which cannot be matched on its title alone
+        private static final Integer AMBIGUOUS = -1;
+
+        private final Map<String, Integer> byPath = new HashMap<>();
+        private final Map<String, Integer> byTitleAndArtist = new HashMap<>();
+        private final Map<String, Integer> byTitle = new HashMap<>();
+
+        static SongLookup load(SongDAO songDAO, int userId) {
+            SongLookup lookup = new SongLookup();
+            try (Stream<Song> songs = songDAO.streamByUserId(userId)) {
+                songs.forEach(lookup::add);
+            }
+            return lookup;
+        }
+
+        void add(Song song) {
+            if (song.getFilePath() != null && !song.getFilePath().trim().isEmpty()) {
+                byPath.putIfAbsent(pathKey(song.getFilePath()), song.getId());
+            }
+            if (song.getTitle() != null && !song.getTitle().trim().isEmpty()) {
+                byTitleAndArtist.putIfAbsent(key(song.getTitle()) + '\n' + key(song.getArtist()), song.getId());
+                byTitle.merge(key(song.getTitle()), song.getId(), (first, second) -> AMBIGUOUS);
+            }
+        }
+
+        /**
+         * @return the id of the song an entry refers to, or null if no song matches it
+         */
+        Integer resolve(Entry entry) {
+            if (entry.path != null) {
+                Integer songId = byPath.get(pathKey(entry.path));
+                if (songId != null) {
+                    return songId;
+                }
+            }
+            if (entry.title == null) {
+                return null;
+            }
+            if (entry.artist != null) {
+                return byTitleAndArtist.get(key(entry.title) + '\n' + key(entry.artist));
+            }
+            Integer songId = byTitle.get(key(entry.title));
+            return AMBIGUOUS.equals(songId) ? null : songId;
+        }
+
+        private static String key(String value) {
+            return value != null ? value.trim().toLowerCase(Locale.ROOT) : "";
+        }
+
+        private static String pathKey(String path) {
+            String key = path.trim().replace('\\', '/');
+            return key.startsWith("file://") ? key.substring(7) : key;
+        }
+    }
+
+    /**
+     * Counts of what an import did with the entries of a playlist file
+     */
+    public static final class Result {
+        private int entries;
+        private int added;
+        private int skipped;
+        private int failed;
+        private int unresolved;
+        private final List<String> unresolvedEntries = new ArrayList<>();
+
+        private void unresolved(Entry entry) {
+            unresolved++;
+            if (unresolvedEntries.size() < MAX_REPORTED_UNRESOLVED) {
+                unresolvedEntries.add(entry.toString());
+            }
+        }
+
+        /**
+         * @return number of entries read from the file
+         */
+        public int getEntries() {
+            return entries;
+        }
+
+        /**
+         * @return number of songs appended to the playlist
+         */
+        public int getAdded() {
+            return added;
+        }
+
+        /**
+         * @return number of entries whose song was already in the playlist or listed before
+         */
+        public int getSkipped() {
+            return skipped;
+        }
+
+        /**
+         * @return number of matched songs that could not be appended
+         */
+        public int getFailed() {
+            return failed;
+        }
+
+        /**
+         * @return number of entries that matched no song
+         */
+        public int getUnresolved() {
+            return unresolved;
+        }
+
+        /**
+         * @return the first unmatched entries, at most MAX_REPORTED_UNRESOLVED
+         */
+        public List<String> getUnresolvedEntries() {
+            return unresolvedEntries;
+        }
+
+        @Override
+        public String toString() {
+            return entries + " entries: " + added + " added, " + skipped + " skipped, " +
+                    unresolved + " unresolved, " + failed + " failed";
+        }
+    }
+}
@@ -5,8 +5,10 @@ import com.samet.music.dao.AlbumDAO;
 import com.samet.music.dao.ArtistDAO;
 import com.samet.music.dao.UserSongStatisticsDAO;
 import com.samet.music.model.Song;
+import com.samet.music.model.SongStatistics;
 import com.samet.music.model.Album;
 import com.samet.music.model.User;
+import com.samet.music.util.DatabaseUtil;
 
 import java.sql.*;
 import java.util.*;
@@ -16,11 +18,16 @@ import java.util.stream.Collectors;
  * Service for generating music recommendations
  */
 public class RecommendationService {
-    private static final String DB_URL = "jdbc:sqlite:" + System.getProperty("user.dir") + "/musiclibrary.db";
     private final SongDAO songDAO;
     private final AlbumDAO albumDAO;
     private final ArtistDAO artistDAO;
     private final UserSongStatisticsDAO userSongStatisticsDAO;
+    private final SongSimilarityIndex songSimilarityIndex;
+    
+    /**
+     * Number of songs taken from each part of the listening history as recommendation seeds
+     */
+    private static final int SEED_SONG_COUNT = 10;
     
     /**
      * Constructor
@@ -30,25 +37,7 @@ public class RecommendationService {
         this.albumDAO = new AlbumDAO();
         this.artistDAO = new ArtistDAO();
         this.userSongStatisticsDAO = new UserSongStatisticsDAO();
-        
-        try (Connection conn = DriverManager.getConnection(DB_URL)) {
-            // Create recommendations table
-            String sql = "CREATE TABLE IF NOT EXISTS recommendations (" +
-                    "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                    "user_id INTEGER NOT NULL," +
-                    "song_id INTEGER," +
-                    "album_id INTEGER," +
-                    "artist_name TEXT," +
-                    "reason TEXT," +
-                    "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
-                    "FOREIGN KEY (user_id) REFERENCES users(id)," +
-                    "FOREIGN KEY (song_id) REFERENCES songs(id)," +
-                    "FOREIGN KEY (album_id) REFERENCES albums(id)" +
-                    ")";
-            conn.createStatement().execute(sql);
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        this.songSimilarityIndex = new SongSimilarityIndex();
     }
     
     /**
@@ -62,83 +51,46 @@ public class RecommendationService {
             return List.of();
         }
         
-        // First check if we have stored recommendations for this user
-        List<Song> storedRecommendations = getStoredSongRecommendations(user.getId(), limit);
-        if (!storedRecommendations.isEmpty()) {
-            return storedRecommendations;
+        // Seed with what the user listens to: favorites, most played and most recent songs
+        Set<Integer> seedSongIds = new LinkedHashSet<>();
+        List<Integer> favoriteSongIds = userSongStatisticsDAO.getFavoriteSongs(user.getId());
+        seedSongIds.addAll(favoriteSongIds.subList(0, Math.min(SEED_SONG_COUNT, favoriteSongIds.size())));
+        seedSongIds.addAll(userSongStatisticsDAO.getMostPlayedSongs(user.getId(), SEED_SONG_COUNT));
+        seedSongIds.addAll(userSongStatisticsDAO.getRecentlyPlayedSongs(user.getId(), SEED_SONG_COUNT));
+        
+        // Without any listening history, start from the user's own library
+        if (seedSongIds.isEmpty()) {
+            for (Song song : songDAO.findByUserId(user.getId())) {
+                seedSongIds.add(song.getId());
+                if (seedSongIds.size() >= SEED_SONG_COUNT) {
+                    break;
+                }
+            }
         }
         
-        // Generate new recommendations
-        List<Song> userSongs = songDAO.findByUserId(user.getId());
-        
         // If user has no songs, return empty list
-        if (userSongs.isEmpty()) {
+        if (seedSongIds.isEmpty()) {
             return List.of();
         }
         
-        // Calculate genre preferences
-        Map<String, Integer> genrePreferences = new HashMap<>();
-        Map<String, Integer> artistPreferences = new HashMap<>();
-        
-        // Consider favorites and play counts for stronger weighting
-        List<Integer> favoriteSongIds = userSongStatisticsDAO.getFavoriteSongs(user.getId());
-        List<Integer> mostPlayedSongIds = userSongStatisticsDAO.getMostPlayedSongs(user.getId(), 10);
+        // Merge the neighbour lists of the seeds, leaving out songs the user has played;
+        // over-fetch to leave room for the user's own songs
+        songSimilarityIndex.ensurePopulated();
+        Map<Integer, Double> similarSongs = songSimilarityIndex.getSimilarityDAO()
+                .getMergedSimilarSongs(seedSongIds, user.getId(), limit * 2 + SEED_SONG_COUNT);
+        Map<Integer, Song> songsById = songDAO.findByIds(similarSongs.keySet());
         
-        for (Song song : userSongs) {
-            int weight = 1;
-            
-            // Increase weight for favorite songs
-            if (favoriteSongIds.contains(song.getId())) {
-                weight += 3;
-            }
-            
-            // Increase weight for frequently played songs
-            if (mostPlayedSongIds.contains(song.getId())) {
-                weight += 2;
-            }
-            
-            // Count genres with weight
-            String genre = song.getGenre();
-            if (genre != null && !genre.isEmpty()) {
-                genrePreferences.put(genre, genrePreferences.getOrDefault(genre, 0) + weight);
-            }
-            
-            // Count artists with weight
-            String artist = song.getArtist();
-            if (artist != null && !artist.isEmpty()) {
-                artistPreferences.put(artist, artistPreferences.getOrDefault(artist, 0) + weight);
+        List<Song> recommendations = new ArrayList<>();
+        for (Integer songId : similarSongs.keySet()) {
+            Song song = songsById.get(songId);
+            if (song != null && song.getUserId() != user.getId()) {
+                recommendations.add(song);
+                if (recommendations.size() >= limit) {
+                    break;
+                }
             }
         }
         
-        // Get top genres and artists
-        List<String> topGenres = genrePreferences.entrySet().stream()
-                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
-                .limit(3)
-                .map(Map.Entry::getKey)
-                .collect(Collectors.toList());
-        
-        List<String> topArtists = artistPreferences.entrySet().stream()
-                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
-                .limit(3)
-                .map(Map.Entry::getKey)
-                .collect(Collectors.toList());
-        
-        // Get all songs
-        List<Song> allSongs = songDAO.findAll();
-        
-        // Filter to songs not owned by user but matching preferences
-        List<Song> recommendations = allSongs.stream()
-                .filter(song -> song.getUserId() != user.getId())
-                .filter(song -> 
-                    (song.getGenre() != null && topGenres.contains(song.getGenre())) ||
-                    (song.getArtist() != null && topArtists.contains(song.getArtist()))
-                )
-                .limit(limit)
-                .collect(Collectors.toList());
-        
-        // Store these recommendations for future use
-        storeSongRecommendations(user.getId(), recommendations);
-        
         return recommendations;
     }
     
@@ -158,25 +110,28 @@ public class RecommendationService {
         // Get favorite songs for this user
         List<Integer> favoriteSongIds = userSongStatisticsDAO.getFavoriteSongs(user.getId());
         
-        // Get songs by the same artists as user's favorites
+        // Get recently played songs
+        List<Integer> recentSongIds = userSongStatisticsDAO.getRecentlyPlayedSongs(user.getId(), 5);
+        
+        Set<Integer> lookupIds = new HashSet<>(favoriteSongIds);
+        lookupIds.addAll(recentSongIds);
+        Map<Integer, Song> songsById = songDAO.findByIds(lookupIds);
+        
+        // Get the artists of the user's favorites, to recommend their other songs
         Set<String> favoriteArtists = new HashSet<>();
         for (Integer songId : favoriteSongIds) {
-            songDAO.findById(songId).ifPresent(song -> {
-                if (song.getArtist() != null && !song.getArtist().isEmpty()) {
-                    favoriteArtists.add(song.getArtist());
-                }
-            });
+            Song song = songsById.get(songId);
+            if (song != null && song.getArtist() != null && !song.getArtist().isEmpty()) {
+                favoriteArtists.add(song.getArtist());
+            }
         }
         
-        // Get recently played songs
-        List<Integer> recentSongIds = userSongStatisticsDAO.getRecentlyPlayedSongs(user.getId(), 5);
         Set<String> recentGenres = new HashSet<>();
         for (Integer songId : recentSongIds) {
-            songDAO.findById(songId).ifPresent(song -> {
-                if (song.getGenre() != null && !song.getGenre().isEmpty()) {
-                    recentGenres.add(song.getGenre());
-                }
-            });
+            Song song = songsById.get(songId);
+            if (song != null && song.getGenre() != null && !song.getGenre().isEmpty()) {
+                recentGenres.add(song.getGenre());
+            }
         }
         
         // Get all songs
@@ -381,30 +336,29 @@ public class RecommendationService {
             return List.of();
         }
         
-        // Get user listening statistics
-        Map<String, Object> userStats = userSongStatisticsDAO.getUserStatistics(user.getId());
+        // Favorites and the most played songs give us the strongest signal of preference,
+        // read with their play counts in one query
+        List<SongStatistics> listened = userSongStatisticsDAO.getFavoriteAndMostPlayedSongStatistics(user.getId(), 5);
         
         // If user has no listening history, fall back to regular recommendations
-        if ((int)userStats.getOrDefault("total_plays", 0) == 0) {
+        if (listened.stream().noneMatch(statistics -> statistics.getPlayCount() > 0)) {
             return getSongRecommendations(user, limit);
         }
         
-        // Get most played songs, these give us the strongest signal of preference
-        List<Integer> mostPlayedIds = userSongStatisticsDAO.getMostPlayedSongs(user.getId(), 5);
-        List<Song> mostPlayedSongs = new ArrayList<>();
-        
-        for (Integer id : mostPlayedIds) {
-            songDAO.findById(id).ifPresent(mostPlayedSongs::add);
-        }
-        
         // Calculate genre and artist weights based on play counts
         Map<String, Double> genreScores = new HashMap<>();
         Map<String, Double> artistScores = new HashMap<>();
         
-        for (Song song : mostPlayedSongs) {
-            // Get play count
-            int playCount = userSongStatisticsDAO.getPlayCount(user.getId(), song.getId());
-            double weight = Math.log10(playCount + 1); // Logarithmic scaling to prevent one extremely played song from dominating
+        for (SongStatistics statistics : listened) {
+            Song song = statistics.getSong();
+            double weight = 0.0;
+            if (statistics.isMostPlayed()) {
+                weight += Math.log10(statistics.getPlayCount() + 1); // Logarithmic scaling to prevent one extremely played song from dominating
+            }
+            if (statistics.isFavorite()) {
+                // Explicitly favorited songs get a high weight
+                weight += 3.0;
+            }
             
             if (song.getGenre() != null && !song.getGenre().isEmpty()) {
                 genreScores.put(song.getGenre(), genreScores.getOrDefault(song.getGenre(), 0.0) + weight);
@@ -415,23 +369,6 @@ public class RecommendationService {
             }
         }
         
-        // Add favorite songs to the mix
-        List<Integer> favoriteIds = userSongStatisticsDAO.getFavoriteSongs(user.getId());
-        for (Integer id : favoriteIds) {
-            songDAO.findById(id).ifPresent(song -> {
-                // Explicitly favorited songs get a high weight
-                double weight = 3.0;
-                
-                if (song.getGenre() != null && !song.getGenre().isEmpty()) {
-                    genreScores.put(song.getGenre(), genreScores.getOrDefault(song.getGenre(), 0.0) + weight);
-                }
-                
-                if (song.getArtist() != null && !song.getArtist().isEmpty()) {
-                    artistScores.put(song.getArtist(), artistScores.getOrDefault(song.getArtist(), 0.0) + weight);
-                }
-            });
-        }
-        
         // Get all songs
         List<Song> allSongs = songDAO.findAll();
         
@@ -470,34 +407,6 @@ public class RecommendationService {
         return recommendations;
     }
     
-    /**
-     * Store song recommendations for a user
-     * @param userId the user ID
-     * @param songs the recommended songs
-     */
-    private void storeSongRecommendations(int userId, List<Song> songs) {
-        String sql = "INSERT INTO recommendations (user_id, song_id, reason) VALUES (?, ?, ?)";
-        
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            // First delete old recommendations
-            deleteUserRecommendations(conn, userId, "song");
-            
-            // Then add new ones
-            for (Song song : songs) {
-                pstmt.setInt(1, userId);
-                pstmt.setInt(2, song.getId());
-                pstmt.setString(3, "Based on your music preferences");
-                pstmt.addBatch();
-            }
-            
-            pstmt.executeBatch();
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-    }
-    
     /**
      * Store album recommendations for a user
      * @param userId the user ID
@@ -506,7 +415,7 @@ public class RecommendationService {
     private void storeAlbumRecommendations(int userId, List<Album> albums) {
         String sql = "INSERT INTO recommendations (user_id, album_id, reason) VALUES (?, ?, ?)";
         
-        try (Connection conn = DriverManager.getConnection(DB_URL);
+        try (Connection conn = DatabaseUtil.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             
             // First delete old recommendations
@@ -534,7 +443,7 @@ public class RecommendationService {
     private void storeArtistRecommendations(int userId, List<String> artists) {
         String sql = "INSERT INTO recommendations (user_id, artist_name, reason) VALUES (?, ?, ?)";
         
-        try (Connection conn = DriverManager.getConnection(DB_URL);
+        try (Connection conn = DatabaseUtil.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             
             // First delete old recommendations
@@ -558,15 +467,12 @@ public class RecommendationService {
      * Delete a user's recommendations of a specific type
      * @param conn the database connection
      * @param userId the user ID
-     * @param type the recommendation type (song, album, or artist)
+     * @param type the recommendation type (album or artist)
      */
     private void deleteUserRecommendations(Connection conn, int userId, String type) throws SQLException {
         String sql = "";
         
         switch (type) {
-            case "song":
-                sql = "DELETE FROM recommendations WHERE user_id = ? AND song_id IS NOT NULL";
-                break;
             case "album":
                 sql = "DELETE FROM recommendations WHERE user_id = ? AND album_id IS NOT NULL";
                 break;
@@ -583,35 +489,6 @@ public class RecommendationService {
         }
     }
     
-    /**
-     * Get stored song recommendations for a user
-     * @param userId the user ID
-     * @param limit the maximum number of recommendations
-     * @return a list of recommended songs
-     */
-    private List<Song> getStoredSongRecommendations(int userId, int limit) {
-        List<Song> recommendations = new ArrayList<>();
-        String sql = "SELECT song_id FROM recommendations WHERE user_id = ? AND song_id IS NOT NULL LIMIT ?";
-        
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setInt(1, userId);
-            pstmt.setInt(2, limit);
-            
-            try (ResultSet rs = pstmt.executeQuery()) {
-                while (rs.next()) {
-                    int songId = rs.getInt("song_id");
-                    songDAO.findById(songId).ifPresent(recommendations::add);
-                }
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        
-        return recommendations;
-    }
-    
     /**
      * Get stored album recommendations for a user
      * @param userId the user ID
@@ -622,7 +499,7 @@ public class RecommendationService {
         List<Album> recommendations = new ArrayList<>();
         String sql = "SELECT album_id FROM recommendations WHERE user_id = ? AND album_id IS NOT NULL LIMIT ?";
         
-        try (Connection conn = DriverManager.getConnection(DB_URL);
+        try (Connection conn = DatabaseUtil.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             
             pstmt.setInt(1, userId);
@@ -654,7 +531,7 @@ public class RecommendationService {
         List<String> recommendations = new ArrayList<>();
         String sql = "SELECT artist_name FROM recommendations WHERE user_id = ? AND artist_name IS NOT NULL LIMIT ?";
         
-        try (Connection conn = DriverManager.getConnection(DB_URL);
+        try (Connection conn = DatabaseUtil.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             
             pstmt.setInt(1, userId);
@@ -0,0 +1,174 @@
+package com.samet.music.service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.samet.music.dao.SongSimilarityDAO;
+
+/**
+ * Maintains the persisted item-item similarity index in song_similarity.
+ * Two songs are similar when they appear together in the same "baskets": the set of
+ * songs a user has played, or a playlist. The index is rebuilt from scratch only when
+ * it is empty; afterwards plays and playlist edits update the affected pairs in place.
+ */
+public class SongSimilarityIndex {
+    private static final Logger logger = LoggerFactory.getLogger(SongSimilarityIndex.class);
+
+    /**
+     * Maximum number of basket songs paired with a new song in one incremental update
+     */
+    static final int MAX_BASKET_PAIRS = 200;
+
+    /**
+     * Number of songs whose neighbour lists are written per transaction during a rebuild
+     */
+    private static final int REBUILD_BATCH_SIZE = 1000;
+
+    private final SongSimilarityDAO similarityDAO;
+    private volatile boolean populated;
+
+    /**
+     * Constructor
+     */
+    public SongSimilarityIndex() {
+        this(new SongSimilarityDAO());
+    }
+
+    /**
+     * Constructor
+     * @param similarityDAO the similarity DAO
+     */
+    public SongSimilarityIndex(SongSimilarityDAO similarityDAO) {
+        this.similarityDAO = similarityDAO;
+    }
+
+    /**
+     * @return the underlying DAO
+     */
+    public SongSimilarityDAO getSimilarityDAO() {
+        return similarityDAO;
+    }
+
+    /**
+     * Build the index once if it holds no data yet, e.g. on an existing database
+     * created before the index existed
+     */
+    public void ensurePopulated() {
+        if (populated) {
+            return;
+        }
+        synchronized (this) {
+            if (!populated) {
+                if (similarityDAO.isEmpty()) {
+                    rebuild();
+                }
+                populated = true;
+            }
+        }
+    }
+
+    /**
+     * Recompute every neighbour list from the current listening histories and playlists
+     * @return true if successful, false otherwise
+     */
+    public synchronized boolean rebuild() {
+        long start = System.nanoTime();
+
+        // Baskets take the place of users in the matrix, each membership with weight 1
+        final UserSongMatrix.Builder builder = new UserSongMatrix.Builder();
+        boolean complete = similarityDAO.forEachBasketItem(new SongSimilarityDAO.BasketHandler() {
+            @Override
+            public void accept(int basketId, int songId) {
+                builder.add(basketId, songId, 1f);
+            }
+        });
+        if (!complete) {
+            return false;
+        }
+        UserSongMatrix matrix = builder.build();
+
+        int songCount = matrix.getSongCount();
+        int maxNeighbours = similarityDAO.getMaxNeighbours();
+        float[] counts = new float[songCount];
+        int[] touched = new int[songCount];
+        Map<Integer, Map<Integer, Double>> batch = new LinkedHashMap<>();
+        boolean success = true;
+
+        for (int song = 0; song < songCount; song++) {
+            // Count co-occurrences by walking the baskets that contain this song
+            int touchedCount = 0;
+            for (int e = matrix.songRowStart(song); e < matrix.songRowEnd(song); e++) {
+                int basket = matrix.songEntryUser(e);
+                for (int k = matrix.userRowStart(basket); k < matrix.userRowEnd(basket); k++) {
+                    int other = matrix.userEntrySong(k);
+                    if (other == song) {
+                        continue;
+                    }
+                    if (counts[other] == 0f) {
+                        touched[touchedCount++] = other;
+                    }
+                    counts[other] += 1f;
+                }
+            }
+
+            int[] best = CollaborativeFilter.topK(touched, touchedCount, counts, maxNeighbours);
+            if (best.length > 0) {
+                Map<Integer, Double> neighbours = new LinkedHashMap<>();
+                for (int other : best) {
+                    neighbours.put(matrix.songId(other), (double) counts[other]);
+                }
+                batch.put(matrix.songId(song), neighbours);
+            }
+            for (int t = 0; t < touchedCount; t++) {
+                counts[touched[t]] = 0f;
+            }
+
+            if (batch.size() >= REBUILD_BATCH_SIZE) {
+                success &= similarityDAO.replaceNeighbours(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            success &= similarityDAO.replaceNeighbours(batch);
+        }
+
+        logger.info("Rebuilt song similarity index: {} baskets, {} songs in {} ms",
+                matrix.getUserCount(), songCount, (System.nanoTime() - start) / 1_000_000);
+        return success;
+    }
+
+    /**
+     * Update the index after a user played a song for the first time:
+     * the song now co-occurs with the user's other recently played songs
+     * @param userId user ID
+     * @param songId song ID
+     */
+    public void recordFirstPlay(int userId, int songId) {
+        List<Integer> basket = similarityDAO.getUserBasket(userId, MAX_BASKET_PAIRS);
+        similarityDAO.addCoOccurrences(songId, basket, 1.0);
+    }
+
+    /**
+     * Update the index after a song was added to a playlist
+     * @param playlistId playlist ID
+     * @param songId song ID
+     */
+    public void recordPlaylistAdd(int playlistId, int songId) {
+        List<Integer> basket = similarityDAO.getPlaylistBasket(playlistId, MAX_BASKET_PAIRS);
+        similarityDAO.addCoOccurrences(songId, basket, 1.0);
+    }
+
+    /**
+     * Update the index after a song was removed from a playlist
+     * @param playlistId playlist ID
+     * @param songId song ID
+     */
+    public void recordPlaylistRemove(int playlistId, int songId) {
+        List<Integer> basket = similarityDAO.getPlaylistBasket(playlistId, MAX_BASKET_PAIRS);
+        similarityDAO.addCoOccurrences(songId, basket, -1.0);
+    }
+}
@@ -0,0 +1,328 @@
+package com.samet.music.service;
+
+import java.util.Arrays;
+
+import com.samet.music.dao.UserSongStatisticsDAO;
+
+/**
+ * Immutable sparse user x song matrix of listening weights.
+ * Stored twice in compressed sparse row form, once by user and once by song,
+ * using only primitive arrays so that millions of interactions stay compact
+ * and can be scanned without boxing.
+ */
+public final class UserSongMatrix {
+    private final int[] userIds;        // sorted, row i of the user view
+    private final int[] userOffsets;    // row i spans [userOffsets[i], userOffsets[i + 1])
+    private final int[] userSongIndexes;
+    private final float[] userWeights;
+    private final float[] userNorms;
+
+    private final int[] songIds;        // sorted, row j of the song view
+    private final int[] songOffsets;
+    private final int[] songUserIndexes;
+    private final float[] songWeights;
+    private final float[] songTotals;
+    private final int[] songsByPopularity; // song indexes with a positive total, most popular first
+
+    private UserSongMatrix(int[] userIds, int[] userOffsets, int[] userSongIndexes, float[] userWeights,
+                           int[] songIds, int[] songOffsets, int[] songUserIndexes, float[] songWeights) {
+        this.userIds = userIds;
+        this.userOffsets = userOffsets;
+        this.userSongIndexes = userSongIndexes;
+        this.userWeights = userWeights;
+        this.songIds = songIds;
+        this.songOffsets = songOffsets;
+        this.songUserIndexes = songUserIndexes;
+        this.songWeights = songWeights;
+
+        this.userNorms = new float[userIds.length];
+        for (int u = 0; u < userIds.length; u++) {
+            double sum = 0;
+            for (int k = userOffsets[u]; k < userOffsets[u + 1]; k++) {
+                sum += (double) userWeights[k] * userWeights[k];
+            }
+            userNorms[u] = (float) Math.sqrt(sum);
+        }
+
+        this.songTotals = new float[songIds.length];
+        for (int j = 0; j < songIds.length; j++) {
+            for (int k = songOffsets[j]; k < songOffsets[j + 1]; k++) {
+                songTotals[j] += songWeights[k];
+            }
+        }
+
+        // Positive float bits order like the floats, so the total and the index sort as one long
+        long[] keys = new long[songIds.length];
+        int popularCount = 0;
+        for (int j = 0; j < songIds.length; j++) {
+            if (songTotals[j] > 0f) {
+                keys[popularCount++] = ((long) Float.floatToIntBits(songTotals[j]) << 32) | (Integer.MAX_VALUE - j);
+            }
+        }
+        Arrays.sort(keys, 0, popularCount);
+        this.songsByPopularity = new int[popularCount];
+        for (int r = 0; r < popularCount; r++) {
+            songsByPopularity[r] = Integer.MAX_VALUE - (int) keys[popularCount - 1 - r];
+        }
+    }
+
+    /**
+     * Load the matrix from user_song_statistics
+     * @param statisticsDAO the statistics DAO
+     * @return the matrix, empty if the statistics could not be read
+     */
+    public static UserSongMatrix load(UserSongStatisticsDAO statisticsDAO) {
+        final Builder builder = new Builder();
+        boolean complete = statisticsDAO.forEachInteraction(new UserSongStatisticsDAO.InteractionHandler() {
+            @Override
+            public void accept(int userId, int songId, int playCount, boolean favorite) {
+                builder.add(userId, songId, weight(playCount, favorite));
+            }
+        });
+        return complete ? builder.build() : new Builder().build();
+    }
+
+    /**
+     * Listening weight of one user/song pair.
+     * Play counts are log-scaled so a single song on repeat does not dominate,
+     * and an explicit favorite counts as much as a few plays.
+     * @param playCount number of plays
+     * @param favorite whether the song is a favorite
+     * @return the weight, 0 if the user has no interest signal for the song
+     */
+    public static float weight(int playCount, boolean favorite) {
+        return (float) (Math.log1p(Math.max(0, playCount)) + (favorite ? 1.0 : 0.0));
+    }
+
+    /**
+     * @return number of users with at least one interaction
+     */
+    public int getUserCount() {
+        return userIds.length;
+    }
+
+    /**
+     * @return number of songs with at least one interaction
+     */
+    public int getSongCount() {
+        return songIds.length;
+    }
+
+    /**
+     * @return number of non-zero entries
+     */
+    public int getInteractionCount() {
+        return userSongIndexes.length;
+    }
+
+    /**
+     * Find the row of a user
+     * @param userId user ID
+     * @return the user index, or a negative value if the user has no interactions
+     */
+    public int userIndex(int userId) {
+        return Arrays.binarySearch(userIds, userId);
+    }
+
+    /**
+     * Find the column of a song
+     * @param songId song ID
+     * @return the song index, or a negative value if nobody has listened to the song
+     */
+    public int songIndex(int songId) {
+        return Arrays.binarySearch(songIds, songId);
+    }
+
+    public int userId(int userIndex) {
+        return userIds[userIndex];
+    }
+
+    public int songId(int songIndex) {
+        return songIds[songIndex];
+    }
+
+    public int userRowStart(int userIndex) {
+        return userOffsets[userIndex];
+    }
+
+    public int userRowEnd(int userIndex) {
+        return userOffsets[userIndex + 1];
+    }
+
+    /**
+     * @param entry position in the user view, between userRowStart and userRowEnd
+     * @return song index of the entry
+     */
+    public int userEntrySong(int entry) {
+        return userSongIndexes[entry];
+    }
+
+    /**
+     * @param entry position in the user view, between userRowStart and userRowEnd
+     * @return weight of the entry
+     */
+    public float userEntryWeight(int entry) {
+        return userWeights[entry];
+    }
+
+    /**
+     * @param userIndex user index
+     * @return Euclidean norm of the user's row
+     */
+    public float userNorm(int userIndex) {
+        return userNorms[userIndex];
+    }
+
+    public int songRowStart(int songIndex) {
+        return songOffsets[songIndex];
+    }
+
+    public int songRowEnd(int songIndex) {
+        return songOffsets[songIndex + 1];
+    }
+
+    /**
+     * @param entry position in the song view, between songRowStart and songRowEnd
+     * @return user index of the entry
+     */
+    public int songEntryUser(int entry) {
+        return songUserIndexes[entry];
+    }
+
+    /**
+     * @param entry position in the song view, between songRowStart and songRowEnd
+     * @return weight of the entry
+     */
+    public float songEntryWeight(int entry) {
+        return songWeights[entry];
+    }
+
+    /**
+     * @param songIndex song index
+     * @return sum of all users' weights for the song, a popularity measure
+     */
+    public float songTotal(int songIndex) {
+        return songTotals[songIndex];
+    }
+
+    /**
+     * @return number of songs with a positive total
+     */
+    public int getPopularSongCount() {
+        return songsByPopularity.length;
+    }
+
+    /**
+     * @param rank 0 for the most popular song
+     * @return index of the song at that rank by total, ties in index order
+     */
+    public int popularSong(int rank) {
+        return songsByPopularity[rank];
+    }
+
+    /**
+     * Collects interactions and converts them into the two CSR views.
+     * Interactions may arrive in any order; duplicates of a user/song pair are summed.
+     */
+    static final class Builder {
+        private int size;
+        private int[] users = new int[1024];
+        private int[] songs = new int[1024];
+        private float[] weights = new float[1024];
+
+        void add(int userId, int songId, float weight) {
+            if (weight <= 0) {
+                return;
+            }
+            if (size == users.length) {
+                int capacity = size * 2;
+                users = Arrays.copyOf(users, capacity);
+                songs = Arrays.copyOf(songs, capacity);
+                weights = Arrays.copyOf(weights, capacity);
+            }
+            users[size] = userId;
+            songs[size] = songId;
+            weights[size] = weight;
+            size++;
+        }
+
+        UserSongMatrix build() {
+            int[] userIds = distinctSorted(users, size);
+            int[] songIds = distinctSorted(songs, size);
+
+            // Bucket entries by user (counting sort), packing song index and weight into one long
+            int[] userOffsets = new int[userIds.length + 1];
+            int[] rowOf = new int[size];
+            for (int i = 0; i < size; i++) {
+                rowOf[i] = Arrays.binarySearch(userIds, users[i]);
+                userOffsets[rowOf[i] + 1]++;
+            }
+            for (int u = 0; u < userIds.length; u++) {
+                userOffsets[u + 1] += userOffsets[u];
+            }
+            long[] packed = new long[size];
+            int[] fill = Arrays.copyOf(userOffsets, userIds.length);
+            for (int i = 0; i < size; i++) {
+                int column = Arrays.binarySearch(songIds, songs[i]);
+                packed[fill[rowOf[i]]++] = ((long) column << 32) | (Float.floatToIntBits(weights[i]) & 0xFFFFFFFFL);
+            }
+
+            // Sort each user row by song and merge repeated user/song pairs
+            int[] rowSongs = new int[size];
+            float[] rowWeights = new float[size];
+            int[] compactOffsets = new int[userIds.length + 1];
+            int entries = 0;
+            for (int u = 0; u < userIds.length; u++) {
+                Arrays.sort(packed, userOffsets[u], userOffsets[u + 1]);
+                for (int k = userOffsets[u]; k < userOffsets[u + 1]; k++) {
+                    int column = (int) (packed[k] >>> 32);
+                    float weight = Float.intBitsToFloat((int) packed[k]);
+                    if (entries > compactOffsets[u] && rowSongs[entries - 1] == column) {
+                        rowWeights[entries - 1] += weight;
+                    } else {
+                        rowSongs[entries] = column;
+                        rowWeights[entries] = weight;
+                        entries++;
+                    }
+                }
+                compactOffsets[u + 1] = entries;
+            }
+            rowSongs = Arrays.copyOf(rowSongs, entries);
+            rowWeights = Arrays.copyOf(rowWeights, entries);
+
+            // Transpose; visiting users in order keeps every song row sorted by user
+            int[] songOffsets = new int[songIds.length + 1];
+            for (int k = 0; k < entries; k++) {
+                songOffsets[rowSongs[k] + 1]++;
+            }
+            for (int j = 0; j < songIds.length; j++) {
+                songOffsets[j + 1] += songOffsets[j];
+            }
+            int[] colUsers = new int[entries];
+            float[] colWeights = new float[entries];
+            int[] colFill = Arrays.copyOf(songOffsets, songIds.length);
+            for (int u = 0; u < userIds.length; u++) {
+                for (int k = compactOffsets[u]; k < compactOffsets[u + 1]; k++) {
+                    int position = colFill[rowSongs[k]]++;
+                    colUsers[position] = u;
+                    colWeights[position] = rowWeights[k];
+                }
+            }
+
+            return new UserSongMatrix(userIds, compactOffsets, rowSongs, rowWeights,
+                    songIds, songOffsets, colUsers, colWeights);
+        }
+
+        private static int[] distinctSorted(int[] values, int length) {
+            int[] sorted = Arrays.copyOf(values, length);
+            Arrays.sort(sorted);
+            int distinct = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                if (i == 0 || sorted[i] != sorted[i - 1]) {
+                    sorted[distinct++] = sorted[i];
+                }
+            }
+            return Arrays.copyOf(sorted, distinct);
+        }
+    }
+}
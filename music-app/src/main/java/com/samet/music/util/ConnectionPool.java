@@ -0,0 +1,311 @@
+package com.samet.music.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded pool of JDBC connections.
+ * Borrowed connections are handed out as proxies whose close() returns the
+ * physical connection to the pool instead of closing it, so the DAOs can keep
+ * using try-with-resources unchanged.
+ */
+public class ConnectionPool {
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionPool.class);
+
+    private final String url;
+    private final int maxSize;
+    private final long borrowTimeoutMillis;
+    private final long validationIntervalMillis;
+    private final int validationTimeoutSeconds;
+    private final List<String> initStatements;
+
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Semaphore permits;
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private volatile boolean closed;
+
+    // Metrics
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong borrowWaitNanos = new AtomicLong();
+    private final AtomicLong maxBorrowWaitNanos = new AtomicLong();
+    private final AtomicLong borrowTimeouts = new AtomicLong();
+    private final AtomicLong connectionsCreated = new AtomicLong();
+    private final AtomicLong validationFailures = new AtomicLong();
+
+    /**
+     * Constructor
+     * @param url JDBC url of the database
+     * @param maxSize maximum number of connections open at the same time
+     * @param borrowTimeoutMillis how long a borrower waits for a free connection
+     * @param validationIntervalMillis idle time after which a connection is validated before reuse
+     */
+    public ConnectionPool(String url, int maxSize, long borrowTimeoutMillis, long validationIntervalMillis) {
+        this(url, maxSize, borrowTimeoutMillis, validationIntervalMillis, Collections.<String>emptyList());
+    }
+
+    /**
+     * Constructor
+     * @param url JDBC url of the database
+     * @param maxSize maximum number of connections open at the same time
+     * @param borrowTimeoutMillis how long a borrower waits for a free connection
+     * @param validationIntervalMillis idle time after which a connection is validated before reuse
+     * @param initStatements statements (e.g. PRAGMAs) run once on every newly opened connection
+     */
+    public ConnectionPool(String url, int maxSize, long borrowTimeoutMillis, long validationIntervalMillis,
+                          List<String> initStatements) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Pool size must be positive: " + maxSize);
+        }
+        this.url = url;
+        this.maxSize = maxSize;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.validationIntervalMillis = validationIntervalMillis;
+        this.validationTimeoutSeconds = 2;
+        this.initStatements = new ArrayList<>(initStatements);
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    /**
+     * Borrow a connection from the pool, opening a new one if none is idle
+     * @return a connection that returns itself to the pool when closed
+     * @throws SQLException if the pool is closed, exhausted or the database cannot be opened
+     */
+    public Connection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+
+        if (!acquired) {
+            borrowTimeouts.incrementAndGet();
+            throw new SQLException("Timed out after " + borrowTimeoutMillis
+                    + " ms waiting for a database connection (pool size " + maxSize + ")");
+        }
+
+        try {
+            PooledConnection pooled = takeValidIdle();
+            if (pooled == null) {
+                pooled = open();
+            }
+            recordBorrow(System.nanoTime() - start);
+            return pooled.lease();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Close all idle connections and refuse further borrows.
+     * Connections still on loan are closed as they are returned.
+     */
+    public void close() {
+        closed = true;
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            discard(pooled);
+        }
+        logger.info("Connection pool closed: {}", getMetrics());
+    }
+
+    /**
+     * @return true if close() has been called
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Get pool metrics
+     * @return a map with pool size, usage and borrow latency figures
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        long borrows = borrowCount.get();
+        metrics.put("max_size", maxSize);
+        metrics.put("open", openConnections.get());
+        metrics.put("idle", idle.size());
+        metrics.put("in_use", maxSize - permits.availablePermits());
+        metrics.put("borrow_count", borrows);
+        metrics.put("avg_borrow_wait_micros", borrows == 0 ? 0L : borrowWaitNanos.get() / borrows / 1000);
+        metrics.put("max_borrow_wait_micros", maxBorrowWaitNanos.get() / 1000);
+        metrics.put("borrow_timeouts", borrowTimeouts.get());
+        metrics.put("connections_created", connectionsCreated.get());
+        metrics.put("validation_failures", validationFailures.get());
+        return metrics;
+    }
+
+    private PooledConnection takeValidIdle() {
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            if (isUsable(pooled)) {
+                return pooled;
+            }
+            validationFailures.incrementAndGet();
+            discard(pooled);
+        }
+        return null;
+    }
+
+    private boolean isUsable(PooledConnection pooled) {
+        try {
+            if (pooled.physical.isClosed()) {
+                return false;
+            }
+            if (System.currentTimeMillis() - pooled.lastReturned < validationIntervalMillis) {
+                return true;
+            }
+            return pooled.physical.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private PooledConnection open() throws SQLException {
+        Connection physical = DriverManager.getConnection(url);
+        try (Statement stmt = physical.createStatement()) {
+            for (String sql : initStatements) {
+                stmt.execute(sql);
+            }
+        } catch (SQLException e) {
+            physical.close();
+            throw e;
+        }
+        openConnections.incrementAndGet();
+        connectionsCreated.incrementAndGet();
+        logger.debug("Opened pooled connection to {} ({} open)", url, openConnections.get());
+        return new PooledConnection(physical);
+    }
+
+    private void recordBorrow(long waitNanos) {
+        borrowCount.incrementAndGet();
+        borrowWaitNanos.addAndGet(waitNanos);
+        long max;
+        do {
+            max = maxBorrowWaitNanos.get();
+        } while (waitNanos > max && !maxBorrowWaitNanos.compareAndSet(max, waitNanos));
+    }
+
+    /**
+     * Return a connection to the pool, resetting any transaction left open by the borrower
+     */
+    private void giveBack(PooledConnection pooled) {
+        try {
+            boolean reusable = !closed && !pooled.physical.isClosed();
+            if (reusable && !pooled.physical.getAutoCommit()) {
+                pooled.physical.rollback();
+                pooled.physical.setAutoCommit(true);
+            }
+            if (reusable) {
+                pooled.lastReturned = System.currentTimeMillis();
+                idle.offerFirst(pooled);
+            } else {
+                discard(pooled);
+            }
+        } catch (SQLException e) {
+            logger.warn("Discarding pooled connection that could not be reset", e);
+            discard(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void discard(PooledConnection pooled) {
+        try {
+            pooled.physical.close();
+        } catch (SQLException e) {
+            logger.warn("Error closing pooled connection", e);
+        }
+        openConnections.decrementAndGet();
+    }
+
+    /**
+     * A physical connection owned by the pool
+     */
+    private final class PooledConnection {
+        private final Connection physical;
+        private volatile long lastReturned = System.currentTimeMillis();
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+        }
+
+        Connection lease() {
+            return (Connection) Proxy.newProxyInstance(
+                    ConnectionPool.class.getClassLoader(),
+                    new Class<?>[] { Connection.class },
+                    new LeaseHandler(this));
+        }
+    }
+
+    /**
+     * Delegates to the physical connection until the lease is closed
+     */
+    private final class LeaseHandler implements InvocationHandler {
+        private final PooledConnection pooled;
+        private boolean returned;
+
+        LeaseHandler(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public synchronized Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if ("close".equals(name) && method.getParameterCount() == 0) {
+                if (!returned) {
+                    returned = true;
+                    giveBack(pooled);
+                }
+                return null;
+            }
+            if ("isClosed".equals(name) && method.getParameterCount() == 0) {
+                return returned || pooled.physical.isClosed();
+            }
+            if ("equals".equals(name) && method.getParameterCount() == 1) {
+                return proxy == args[0];
+            }
+            if ("hashCode".equals(name) && method.getParameterCount() == 0) {
+                return System.identityHashCode(proxy);
+            }
+            if ("toString".equals(name) && method.getParameterCount() == 0) {
+                return "PooledConnection[" + pooled.physical + (returned ? ", returned" : "") + "]";
+            }
+            if (returned) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+            try {
+                return method.invoke(pooled.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
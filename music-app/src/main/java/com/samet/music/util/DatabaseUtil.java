@@ -1,9 +1,13 @@
 package com.samet.music.util;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
-import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.io.File;
@@ -14,122 +18,109 @@ import java.io.File;
 public class DatabaseUtil {
     private static final Logger logger = LoggerFactory.getLogger(DatabaseUtil.class);
     private static final String DB_URL = "jdbc:sqlite:" + System.getProperty("user.dir") + File.separator + "musiclibrary.db";
-    private static Connection connection;
+
+    // Pool settings, overridable with -Dmusic.db.pool.size=... etc.
+    private static final int POOL_SIZE = Integer.getInteger("music.db.pool.size", 4);
+    private static final long POOL_BORROW_TIMEOUT_MS = Long.getLong("music.db.pool.borrowTimeoutMs", 5000L);
+    private static final long POOL_VALIDATION_INTERVAL_MS = Long.getLong("music.db.pool.validationIntervalMs", 30000L);
+
+    // Applied to every pooled connection. WAL lets readers run alongside the play-count writer,
+    // synchronous=NORMAL is durable in WAL mode and busy_timeout makes writers wait instead of failing.
+    private static final List<String> CONNECTION_PRAGMAS = Arrays.asList(
+            "PRAGMA journal_mode=WAL",
+            "PRAGMA synchronous=NORMAL",
+            "PRAGMA cache_size=-8000",
+            "PRAGMA mmap_size=268435456",
+            "PRAGMA busy_timeout=5000",
+            "PRAGMA temp_store=MEMORY");
+
+    private static final List<Runnable> CLOSE_LISTENERS = new CopyOnWriteArrayList<>();
+
+    private static ConnectionPool pool;
 
     /**
-     * Initialize the database connection and create tables if they don't exist
+     * Initialize the connection pool and apply any pending schema migrations
      */
     public static void initializeDatabase() {
-        try {
-            // Create database connection
-            connection = DriverManager.getConnection(DB_URL);
-            logger.info("Connected to SQLite database at: " + DB_URL);
-            
-            // Create tables
-            createTables();
-        } catch (SQLException e) {
-            logger.error("Database initialization error", e);
-        }
+        getPool();
+        logger.info("Connection pool for SQLite database at: " + DB_URL + " (size " + POOL_SIZE + ")");
     }
 
     /**
-     * Get database connection
-     * @return Connection object
+     * Borrow a database connection from the pool.
+     * Closing the returned connection gives it back to the pool.
+     * @return Connection object, or null if no connection could be obtained
      */
     public static Connection getConnection() {
         try {
-            if (connection == null || connection.isClosed()) {
-                connection = DriverManager.getConnection(DB_URL);
-            }
+            return getPool().borrow();
         } catch (SQLException e) {
             logger.error("Error getting database connection", e);
         }
-        return connection;
+        return null;
+    }
+
+    /**
+     * Get the pool metrics (size, usage and borrow latency)
+     * @return a map with the metrics, empty if the pool has not been created
+     */
+    public static synchronized Map<String, Object> getPoolMetrics() {
+        if (pool == null) {
+            return Collections.emptyMap();
+        }
+        return pool.getMetrics();
     }
 
     /**
-     * Close the database connection
+     * Register a task to run before the connection pool is closed, e.g. to drain buffered writes
+     * @param listener the task
+     */
+    public static void addCloseListener(Runnable listener) {
+        CLOSE_LISTENERS.add(listener);
+    }
+
+    /**
+     * Run the close listeners, then close the connection pool
      */
     public static void closeConnection() {
-        try {
-            if (connection != null && !connection.isClosed()) {
-                connection.close();
-                logger.info("Database connection closed");
+        // Listeners still need connections, so they run outside the pool lock
+        for (Runnable listener : CLOSE_LISTENERS) {
+            try {
+                listener.run();
+            } catch (RuntimeException e) {
+                logger.error("Error running database close listener", e);
             }
-        } catch (SQLException e) {
-            logger.error("Error closing database connection", e);
         }
+        closePool();
+    }
+
+    private static synchronized void closePool() {
+        if (pool != null) {
+            pool.close();
+            pool = null;
+            logger.info("Database connection pool closed");
+        }
+    }
+
+    private static synchronized ConnectionPool getPool() {
+        if (pool == null || pool.isClosed()) {
+            pool = new ConnectionPool(DB_URL, POOL_SIZE, POOL_BORROW_TIMEOUT_MS, POOL_VALIDATION_INTERVAL_MS,
+                    CONNECTION_PRAGMAS);
+            migrateSchema(pool);
+        }
+        return pool;
     }
 
     /**
-     * Create database tables if they don't exist
+     * Bring the schema up to date through the pool's first connection.
+     * Runs once per pool, so DAOs never have to create tables themselves.
      */
-    private static void createTables() {
-        try (Statement statement = connection.createStatement()) {
-            // Users table
-            statement.execute("CREATE TABLE IF NOT EXISTS users (" +
-                    "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                    "username TEXT NOT NULL UNIQUE," +
-                    "password TEXT NOT NULL," +
-                    "email TEXT," +
-                    "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
-            
-            // Artists table
-            statement.execute("CREATE TABLE IF NOT EXISTS artists (" +
-                    "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                    "name TEXT NOT NULL," +
-                    "bio TEXT," +
-                    "country TEXT," +
-                    "genre TEXT," +
-                    "user_id INTEGER," +
-                    "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
-                    "FOREIGN KEY (user_id) REFERENCES users(id))");
-            
-            // Songs table
-            statement.execute("CREATE TABLE IF NOT EXISTS songs (" +
-                    "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                    "title TEXT NOT NULL," +
-                    "artist TEXT," +
-                    "album TEXT," +
-                    "genre TEXT," +
-                    "year INTEGER," +
-                    "duration INTEGER," +
-                    "file_path TEXT," +
-                    "user_id INTEGER," +
-                    "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
-                    "FOREIGN KEY (user_id) REFERENCES users(id))");
-            
-            // Playlists table
-            statement.execute("CREATE TABLE IF NOT EXISTS playlists (" +
-                    "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                    "name TEXT NOT NULL," +
-                    "description TEXT," +
-                    "user_id INTEGER," +
-                    "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
-                    "FOREIGN KEY (user_id) REFERENCES users(id))");
-            
-            // Playlist_songs (many-to-many relationship)
-            statement.execute("CREATE TABLE IF NOT EXISTS playlist_songs (" +
-                    "playlist_id INTEGER," +
-                    "song_id INTEGER," +
-                    "position INTEGER," +
-                    "added_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
-                    "PRIMARY KEY (playlist_id, song_id)," +
-                    "FOREIGN KEY (playlist_id) REFERENCES playlists(id)," +
-                    "FOREIGN KEY (song_id) REFERENCES songs(id))");
-            
-            // User_preferences for recommendations
-            statement.execute("CREATE TABLE IF NOT EXISTS user_preferences (" +
-                    "user_id INTEGER," +
-                    "genre TEXT," +
-                    "artist TEXT," +
-                    "weight INTEGER," +
-                    "PRIMARY KEY (user_id, genre, artist)," +
-                    "FOREIGN KEY (user_id) REFERENCES users(id))");
-            
-            logger.info("Database tables created successfully");
+    private static void migrateSchema(ConnectionPool newPool) {
+        try (Connection connection = newPool.borrow()) {
+            int version = SchemaManager.migrate(connection);
+            logger.info("Database schema at version {}", version);
         } catch (SQLException e) {
-            logger.error("Error creating database tables", e);
+            logger.error("Error migrating database schema", e);
         }
     }
-} 
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,454 @@
+package com.samet.music.util;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Owns the database schema.
+ * Every table and index is created here through numbered migrations; the
+ * number of the last applied migration is kept in SQLite's user_version so
+ * each migration runs exactly once per database file.
+ */
+public final class SchemaManager {
+    private static final Logger logger = LoggerFactory.getLogger(SchemaManager.class);
+
+    private static final List<Migration> MIGRATIONS = Collections.unmodifiableList(Arrays.asList(
+            new Migration(1, "Base tables",
+                    "CREATE TABLE IF NOT EXISTS users (" +
+                            "id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                            "username TEXT NOT NULL UNIQUE," +
+                            "password TEXT NOT NULL," +
+                            "email TEXT," +
+                            "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP)",
+                    "CREATE TABLE IF NOT EXISTS artists (" +
+                            "id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                            "name TEXT NOT NULL," +
+                            "bio TEXT," +
+                            "country TEXT," +
+                            "genre TEXT," +
+                            "user_id INTEGER," +
+                            "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
+                            "FOREIGN KEY (user_id) REFERENCES users(id))",
+                    "CREATE TABLE IF NOT EXISTS songs (" +
+                            "id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                            "title TEXT NOT NULL," +
+                            "artist TEXT," +
+                            "album TEXT," +
+                            "genre TEXT," +
+                            "year INTEGER," +
+                            "duration INTEGER," +
+                            "file_path TEXT," +
+                            "user_id INTEGER," +
+                            "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
+                            "FOREIGN KEY (user_id) REFERENCES users(id))",
+                    "CREATE TABLE IF NOT EXISTS albums (" +
+                            "id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                            "title TEXT NOT NULL," +
+                            "artist TEXT NOT NULL," +
+                            "year INTEGER," +
+                            "genre TEXT," +
+                            "user_id INTEGER," +
+                            "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP)",
+                    "CREATE TABLE IF NOT EXISTS album_songs (" +
+                            "album_id INTEGER," +
+                            "song_id INTEGER," +
+                            "PRIMARY KEY (album_id, song_id)," +
+                            "FOREIGN KEY (album_id) REFERENCES albums(id)," +
+                            "FOREIGN KEY (song_id) REFERENCES songs(id))",
+                    "CREATE TABLE IF NOT EXISTS playlists (" +
+                            "id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                            "name TEXT NOT NULL," +
+                            "description TEXT," +
+                            "user_id INTEGER," +
+                            "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
+                            "FOREIGN KEY (user_id) REFERENCES users(id))",
+                    "CREATE TABLE IF NOT EXISTS playlist_songs (" +
+                            "playlist_id INTEGER," +
+                            "song_id INTEGER," +
+                            "position INTEGER," +
+                            "added_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
+                            "PRIMARY KEY (playlist_id, song_id)," +
+                            "FOREIGN KEY (playlist_id) REFERENCES playlists(id)," +
+                            "FOREIGN KEY (song_id) REFERENCES songs(id))",
+                    "CREATE TABLE IF NOT EXISTS user_preferences (" +
+                            "user_id INTEGER," +
+                            "genre TEXT," +
+                            "artist TEXT," +
+                            "weight INTEGER," +
+                            "PRIMARY KEY (user_id, genre, artist)," +
+                            "FOREIGN KEY (user_id) REFERENCES users(id))",
+                    "CREATE TABLE IF NOT EXISTS user_song_statistics (" +
+                            "id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                            "user_id INTEGER NOT NULL," +
+                            "song_id INTEGER NOT NULL," +
+                            "play_count INTEGER DEFAULT 0," +
+                            "last_played TIMESTAMP," +
+                            "favorite BOOLEAN DEFAULT 0," +
+                            "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
+                            "FOREIGN KEY (user_id) REFERENCES users(id)," +
+                            "FOREIGN KEY (song_id) REFERENCES songs(id)," +
+                            "UNIQUE(user_id, song_id))",
+                    "CREATE TABLE IF NOT EXISTS recommendations (" +
+                            "id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                            "user_id INTEGER NOT NULL," +
+                            "song_id INTEGER," +
+                            "album_id INTEGER," +
+                            "artist_name TEXT," +
+                            "reason TEXT," +
+                            "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
+                            "FOREIGN KEY (user_id) REFERENCES users(id)," +
+                            "FOREIGN KEY (song_id) REFERENCES songs(id)," +
+                            "FOREIGN KEY (album_id) REFERENCES albums(id))"),
+            new Migration(2, "Secondary indexes for DAO lookups",
+                    "CREATE INDEX IF NOT EXISTS idx_songs_user_id ON songs(user_id)",
+                    "CREATE INDEX IF NOT EXISTS idx_songs_artist ON songs(artist)",
+                    "CREATE INDEX IF NOT EXISTS idx_songs_title_artist ON songs(title, artist)",
+                    "CREATE INDEX IF NOT EXISTS idx_albums_artist ON albums(artist)",
+                    "CREATE INDEX IF NOT EXISTS idx_albums_user_id ON albums(user_id)",
+                    "CREATE INDEX IF NOT EXISTS idx_album_songs_song_id ON album_songs(song_id)",
+                    "CREATE INDEX IF NOT EXISTS idx_artists_name ON artists(name)",
+                    "CREATE INDEX IF NOT EXISTS idx_artists_user_id ON artists(user_id)",
+                    "CREATE INDEX IF NOT EXISTS idx_playlists_user_id ON playlists(user_id)",
+                    "CREATE INDEX IF NOT EXISTS idx_playlists_name ON playlists(name)",
+                    "CREATE INDEX IF NOT EXISTS idx_playlist_songs_position ON playlist_songs(playlist_id, position)",
+                    "CREATE INDEX IF NOT EXISTS idx_playlist_songs_song_id ON playlist_songs(song_id)",
+                    "CREATE INDEX IF NOT EXISTS idx_stats_user_play_count ON user_song_statistics(user_id, play_count)",
+                    "CREATE INDEX IF NOT EXISTS idx_stats_user_last_played ON user_song_statistics(user_id, last_played)",
+                    "CREATE INDEX IF NOT EXISTS idx_stats_user_favorite ON user_song_statistics(user_id, favorite)",
+                    "CREATE INDEX IF NOT EXISTS idx_recommendations_user_id ON recommendations(user_id)"),
+            new Migration(3, "Item-item similarity index",
+                    "CREATE TABLE IF NOT EXISTS song_similarity (" +
+                            "song_id INTEGER NOT NULL," +
+                            "similar_song_id INTEGER NOT NULL," +
+                            "score REAL NOT NULL," +
+                            "PRIMARY KEY (song_id, similar_song_id)) WITHOUT ROWID"),
+            new Migration(4, "Append-only play history",
+                    // played_at is Unix epoch seconds: a compact integer that sorts in time order
+                    "CREATE TABLE IF NOT EXISTS play_events (" +
+                            "id INTEGER PRIMARY KEY," +
+                            "user_id INTEGER NOT NULL," +
+                            "song_id INTEGER NOT NULL," +
+                            "played_at INTEGER NOT NULL)",
+                    "CREATE INDEX IF NOT EXISTS idx_play_events_user_time ON play_events(user_id, played_at, song_id)"),
+            new Migration(5, "Listening rollups",
+                    // Highest play_events id already counted in the rollups
+                    "CREATE TABLE IF NOT EXISTS play_rollup_state (" +
+                            "id INTEGER PRIMARY KEY CHECK (id = 1)," +
+                            "last_event_id INTEGER NOT NULL)",
+                    "INSERT OR IGNORE INTO play_rollup_state (id, last_event_id) VALUES (1, 0)",
+                    "CREATE TABLE IF NOT EXISTS play_rollup_hour (" +
+                            "user_id INTEGER NOT NULL," +
+                            "hour INTEGER NOT NULL," +
+                            "plays INTEGER NOT NULL," +
+                            "PRIMARY KEY (user_id, hour)) WITHOUT ROWID",
+                    "CREATE TABLE IF NOT EXISTS play_rollup_weekday (" +
+                            "user_id INTEGER NOT NULL," +
+                            "weekday INTEGER NOT NULL," +
+                            "plays INTEGER NOT NULL," +
+                            "PRIMARY KEY (user_id, weekday)) WITHOUT ROWID",
+                    // day is the local date as days since 1970-01-01
+                    "CREATE TABLE IF NOT EXISTS play_rollup_day (" +
+                            "user_id INTEGER NOT NULL," +
+                            "day INTEGER NOT NULL," +
+                            "plays INTEGER NOT NULL," +
+                            "PRIMARY KEY (user_id, day)) WITHOUT ROWID",
+                    "CREATE TABLE IF NOT EXISTS play_rollup_genre (" +
+                            "user_id INTEGER NOT NULL," +
+                            "day INTEGER NOT NULL," +
+                            "genre TEXT NOT NULL," +
+                            "plays INTEGER NOT NULL," +
+                            "PRIMARY KEY (user_id, day, genre)) WITHOUT ROWID"),
+            new Migration(6, "Artist name registry",
+                    // Every trimmed artist name in use, with the number of songs, albums and artists rows using it
+                    "CREATE TABLE IF NOT EXISTS artist_registry (" +
+                            "name TEXT PRIMARY KEY," +
+                            "refs INTEGER NOT NULL) WITHOUT ROWID",
+                    "INSERT OR IGNORE INTO artist_registry (name, refs) " +
+                            "SELECT name, COUNT(*) FROM (" +
+                            "SELECT trim(name) AS name FROM artists UNION ALL " +
+                            "SELECT trim(artist) FROM songs UNION ALL " +
+                            "SELECT trim(artist) FROM albums) " +
+                            "WHERE name IS NOT NULL AND name <> '' GROUP BY name")
+                    .with(artistRegistryTriggers("artists", "name"))
+                    .with(artistRegistryTriggers("songs", "artist"))
+                    .with(artistRegistryTriggers("albums", "artist")),
+            new Migration(7, "Full-text song search",
+                    // External content table: the index stores only tokens, the text stays in songs
+                    "CREATE VIRTUAL TABLE IF NOT EXISTS songs_fts USING fts5(" +
+                            "title, artist, album, genre, " +
+                            "content='songs', content_rowid='id', tokenize='unicode61 remove_diacritics 2')",
+                    "INSERT INTO songs_fts (songs_fts) VALUES ('rebuild')",
+                    "CREATE TRIGGER IF NOT EXISTS trg_songs_fts_insert AFTER INSERT ON songs BEGIN " +
+                            "INSERT INTO songs_fts (rowid, title, artist, album, genre) " +
+                            "VALUES (NEW.id, NEW.title, NEW.artist, NEW.album, NEW.genre); END",
+                    "CREATE TRIGGER IF NOT EXISTS trg_songs_fts_delete AFTER DELETE ON songs BEGIN " +
+                            "INSERT INTO songs_fts (songs_fts, rowid, title, artist, album, genre) " +
+                            "VALUES ('delete', OLD.id, OLD.title, OLD.artist, OLD.album, OLD.genre); END",
+                    "CREATE TRIGGER IF NOT EXISTS trg_songs_fts_update AFTER UPDATE OF title, artist, album, genre ON songs BEGIN " +
+                            "INSERT INTO songs_fts (songs_fts, rowid, title, artist, album, genre) " +
+                            "VALUES ('delete', OLD.id, OLD.title, OLD.artist, OLD.album, OLD.genre); " +
+                            "INSERT INTO songs_fts (rowid, title, artist, album, genre) " +
+                            "VALUES (NEW.id, NEW.title, NEW.artist, NEW.album, NEW.genre); END"),
+            new Migration(8, "Song table sort orders",
+                    // Match the song table's ORDER BY <column> COLLATE NOCASE, id; the rowid is the tie-breaker
+                    "CREATE INDEX IF NOT EXISTS idx_songs_sort_title ON songs(title COLLATE NOCASE)",
+                    "CREATE INDEX IF NOT EXISTS idx_songs_sort_artist ON songs(artist COLLATE NOCASE)",
+                    "CREATE INDEX IF NOT EXISTS idx_songs_sort_album ON songs(album COLLATE NOCASE)",
+                    "CREATE INDEX IF NOT EXISTS idx_songs_sort_genre ON songs(genre COLLATE NOCASE)"),
+            new Migration(9, "Integer keys for artist, album and genre names",
+                    // One row per trimmed name; a name keeps its key for good, so keys can be cached
+                    "CREATE TABLE IF NOT EXISTS artist_names (id INTEGER PRIMARY KEY, name TEXT NOT NULL UNIQUE)",
+                    "CREATE TABLE IF NOT EXISTS album_names (id INTEGER PRIMARY KEY, name TEXT NOT NULL UNIQUE)",
+                    "CREATE TABLE IF NOT EXISTS genre_names (id INTEGER PRIMARY KEY, name TEXT NOT NULL UNIQUE)",
+                    "ALTER TABLE songs ADD COLUMN artist_id INTEGER REFERENCES artist_names(id)",
+                    "ALTER TABLE songs ADD COLUMN album_id INTEGER REFERENCES album_names(id)",
+                    "ALTER TABLE songs ADD COLUMN genre_id INTEGER REFERENCES genre_names(id)",
+                    "ALTER TABLE albums ADD COLUMN artist_id INTEGER REFERENCES artist_names(id)",
+                    "ALTER TABLE albums ADD COLUMN genre_id INTEGER REFERENCES genre_names(id)")
+                    .with(nameKeys("songs", "artist", "artist_names", "artist_id"))
+                    .with(nameKeys("songs", "album", "album_names", "album_id"))
+                    .with(nameKeys("songs", "genre", "genre_names", "genre_id"))
+                    .with(nameKeys("albums", "artist", "artist_names", "artist_id"))
+                    .with(nameKeys("albums", "genre", "genre_names", "genre_id")),
+            new Migration(10, "Playlist track counts and durations",
+                    // Headers carry their totals, so listing playlists never reads playlist_songs
+                    "ALTER TABLE playlists ADD COLUMN track_count INTEGER NOT NULL DEFAULT 0",
+                    "ALTER TABLE playlists ADD COLUMN total_duration INTEGER NOT NULL DEFAULT 0",
+                    "UPDATE playlists SET " +
+                            "track_count = (SELECT COUNT(*) FROM playlist_songs ps JOIN songs s ON s.id = ps.song_id " +
+                            "WHERE ps.playlist_id = playlists.id), " +
+                            "total_duration = (SELECT COALESCE(SUM(s.duration), 0) FROM playlist_songs ps " +
+                            "JOIN songs s ON s.id = ps.song_id WHERE ps.playlist_id = playlists.id)",
+                    "CREATE INDEX IF NOT EXISTS idx_playlists_user_created ON playlists(user_id, created_at)",
+                    "CREATE TRIGGER IF NOT EXISTS trg_playlist_songs_summary_insert AFTER INSERT ON playlist_songs BEGIN " +
+                            playlistTotals("+", "NEW") + " END",
+                    "CREATE TRIGGER IF NOT EXISTS trg_playlist_songs_summary_delete AFTER DELETE ON playlist_songs BEGIN " +
+                            playlistTotals("-", "OLD") + " END",
+                    "CREATE TRIGGER IF NOT EXISTS trg_playlist_songs_summary_update " +
+                            "AFTER UPDATE OF playlist_id, song_id ON playlist_songs BEGIN " +
+                            playlistTotals("-", "OLD") + " " + playlistTotals("+", "NEW") + " END",
+                    "CREATE TRIGGER IF NOT EXISTS trg_songs_playlist_duration AFTER UPDATE OF duration ON songs " +
+                            "WHEN OLD.duration IS NOT NEW.duration BEGIN " +
+                            "UPDATE playlists SET total_duration = total_duration - COALESCE(OLD.duration, 0) " +
+                            "+ COALESCE(NEW.duration, 0) " +
+                            "WHERE id IN (SELECT playlist_id FROM playlist_songs WHERE song_id = NEW.id); END",
+                    "CREATE TRIGGER IF NOT EXISTS trg_songs_playlist_delete AFTER DELETE ON songs BEGIN " +
+                            "UPDATE playlists SET track_count = track_count - 1, " +
+                            "total_duration = total_duration - COALESCE(OLD.duration, 0) " +
+                            "WHERE id IN (SELECT playlist_id FROM playlist_songs WHERE song_id = OLD.id); END"),
+            new Migration(11, "Smart playlist rules",
+                    // Smart playlists keep their matches in playlist_songs, maintained by
+                    // per-playlist triggers that SmartPlaylistDAO creates from each rule
+                    "ALTER TABLE playlists ADD COLUMN rule TEXT",
+                    // Before the delete, so the summary triggers still see the song's duration
+                    "CREATE TRIGGER IF NOT EXISTS trg_songs_smart_delete BEFORE DELETE ON songs BEGIN " +
+                            "DELETE FROM playlist_songs WHERE song_id = OLD.id " +
+                            "AND playlist_id IN (SELECT id FROM playlists WHERE rule IS NOT NULL); END"),
+            new Migration(12, "Name keys written by the DAOs",
+                    // SongDAO and AlbumDAO bind the keys in the statement writing the names, so the
+                    // key triggers only fill in for rows written without them
+                    nameKeyFallbacks("songs", "artist", "artist_names", "artist_id"))
+                    .with(nameKeyFallbacks("songs", "album", "album_names", "album_id"))
+                    .with(nameKeyFallbacks("songs", "genre", "genre_names", "genre_id"))
+                    .with(nameKeyFallbacks("albums", "artist", "artist_names", "artist_id"))
+                    .with(nameKeyFallbacks("albums", "genre", "genre_names", "genre_id"))
+    ));
+
+    private SchemaManager() {
+    }
+
+    /**
+     * Get the schema version this build expects
+     * @return the number of the newest migration
+     */
+    public static int getLatestVersion() {
+        return MIGRATIONS.get(MIGRATIONS.size() - 1).version;
+    }
+
+    /**
+     * Apply every migration newer than the database's user_version.
+     * Each migration runs in its own transaction together with the version bump.
+     * @param conn the connection to migrate through
+     * @return the schema version after migrating
+     * @throws SQLException if a migration fails; that migration is rolled back
+     */
+    public static int migrate(Connection conn) throws SQLException {
+        int version = getVersion(conn);
+        boolean previousAutoCommit = conn.getAutoCommit();
+
+        try {
+            for (Migration migration : MIGRATIONS) {
+                if (migration.version <= version) {
+                    continue;
+                }
+
+                conn.setAutoCommit(false);
+                try (Statement stmt = conn.createStatement()) {
+                    for (String sql : migration.statements) {
+                        stmt.execute(sql);
+                    }
+                    stmt.execute("PRAGMA user_version = " + migration.version);
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                }
+
+                version = migration.version;
+                logger.info("Applied schema migration {}: {}", migration.version, migration.description);
+            }
+        } finally {
+            conn.setAutoCommit(previousAutoCommit);
+        }
+
+        return version;
+    }
+
+    /**
+     * Build the triggers that keep artist_registry counting the names in one column
+     * @param table the table holding artist names
+     * @param column the column holding the name
+     * @return insert, update and delete triggers
+     */
+    private static String[] artistRegistryTriggers(String table, String column) {
+        String addName = "BEGIN " +
+                "INSERT OR IGNORE INTO artist_registry (name, refs) VALUES (trim(NEW." + column + "), 0); " +
+                "UPDATE artist_registry SET refs = refs + 1 WHERE name = trim(NEW." + column + "); END";
+        String dropName = "BEGIN " +
+                "UPDATE artist_registry SET refs = refs - 1 WHERE name = trim(OLD." + column + "); " +
+                "DELETE FROM artist_registry WHERE name = trim(OLD." + column + ") AND refs <= 0; END";
+        String hasNew = "trim(COALESCE(NEW." + column + ", '')) <> ''";
+        String hasOld = "trim(COALESCE(OLD." + column + ", '')) <> ''";
+        String changed = "OLD." + column + " IS NOT NEW." + column;
+        String prefix = "CREATE TRIGGER IF NOT EXISTS trg_" + table + "_artist_registry_";
+
+        return new String[] {
+                prefix + "insert AFTER INSERT ON " + table + " WHEN " + hasNew + " " + addName,
+                prefix + "update_old AFTER UPDATE OF " + column + " ON " + table +
+                        " WHEN " + changed + " AND " + hasOld + " " + dropName,
+                prefix + "update_new AFTER UPDATE OF " + column + " ON " + table +
+                        " WHEN " + changed + " AND " + hasNew + " " + addName,
+                prefix + "delete AFTER DELETE ON " + table + " WHEN " + hasOld + " " + dropName
+        };
+    }
+
+    /**
+     * Build the statements that key one name column by its row in a name dictionary:
+     * fill the dictionary and the key column from the rows already there, index the key,
+     * and add triggers that keep the key in step with the name on every insert and update.
+     * The name column stays, so code reading names keeps working while readers move to the keys.
+     * @param table the table holding names
+     * @param column the column holding the name
+     * @param dictionary the dictionary table for that kind of name
+     * @param keyColumn the column holding the key
+     * @return backfill, index and trigger statements
+     */
+    private static String[] nameKeys(String table, String column, String dictionary, String keyColumn) {
+        String keyRow = keyRow(table, column, dictionary, keyColumn);
+        String prefix = "CREATE TRIGGER IF NOT EXISTS trg_" + table + "_" + keyColumn + "_";
+
+        return new String[] {
+                "INSERT OR IGNORE INTO " + dictionary + " (name) SELECT DISTINCT trim(" + column + ") FROM " + table +
+                        " WHERE trim(COALESCE(" + column + ", '')) <> ''",
+                "UPDATE " + table + " SET " + keyColumn + " = (SELECT id FROM " + dictionary +
+                        " WHERE name = trim(" + table + "." + column + "))",
+                "CREATE INDEX IF NOT EXISTS idx_" + table + "_" + keyColumn + " ON " + table + "(" + keyColumn + ")",
+                prefix + "insert AFTER INSERT ON " + table + " " + keyRow,
+                prefix + "update AFTER UPDATE OF " + column + " ON " + table + " " + keyRow
+        };
+    }
+
+    /**
+     * Build the statements that narrow the key triggers of nameKeys to rows written without
+     * their key: an insert naming something but leaving the key empty, or an update changing
+     * the name but not the key. Rows written by the DAOs carry their keys, so they are written
+     * once instead of once plus once per key.
+     * @param table the table holding names
+     * @param column the column holding the name
+     * @param dictionary the dictionary table for that kind of name
+     * @param keyColumn the column holding the key
+     * @return DROP and CREATE TRIGGER statements
+     */
+    private static String[] nameKeyFallbacks(String table, String column, String dictionary, String keyColumn) {
+        String keyRow = keyRow(table, column, dictionary, keyColumn);
+        String prefix = "trg_" + table + "_" + keyColumn + "_";
+
+        return new String[] {
+                "DROP TRIGGER IF EXISTS " + prefix + "insert",
+                "DROP TRIGGER IF EXISTS " + prefix + "update",
+                "CREATE TRIGGER IF NOT EXISTS " + prefix + "insert AFTER INSERT ON " + table +
+                        " WHEN NEW." + keyColumn + " IS NULL AND trim(COALESCE(NEW." + column + ", '')) <> '' " + keyRow,
+                "CREATE TRIGGER IF NOT EXISTS " + prefix + "update AFTER UPDATE OF " + column + " ON " + table +
+                        " WHEN NEW." + keyColumn + " IS OLD." + keyColumn +
+                        " AND NEW." + column + " IS NOT OLD." + column + " " + keyRow
+        };
+    }
+
+    /**
+     * Build the trigger body that adds the written name to its dictionary and keys the row by it
+     */
+    private static String keyRow(String table, String column, String dictionary, String keyColumn) {
+        String lookup = "(SELECT id FROM " + dictionary + " WHERE name = trim(NEW." + column + "))";
+        return "BEGIN " +
+                "INSERT OR IGNORE INTO " + dictionary + " (name) " +
+                "SELECT trim(NEW." + column + ") WHERE trim(COALESCE(NEW." + column + ", '')) <> ''; " +
+                "UPDATE " + table + " SET " + keyColumn + " = " + lookup + " WHERE id = NEW.id; END";
+    }
+
+    /**
+     * Build the statement that adds one membership to, or takes it from, its playlist's totals.
+     * Memberships of songs that no longer exist are left out, as the backfill leaves them out.
+     * @param sign "+" to add, "-" to take away
+     * @param row "NEW" or "OLD", the playlist_songs row changed
+     * @return the UPDATE statement, ending in a semicolon
+     */
+    private static String playlistTotals(String sign, String row) {
+        String song = "(SELECT duration FROM songs WHERE id = " + row + ".song_id)";
+        return "UPDATE playlists SET track_count = track_count " + sign + " 1, " +
+                "total_duration = total_duration " + sign + " COALESCE(" + song + ", 0) " +
+                "WHERE id = " + row + ".playlist_id " +
+                "AND EXISTS (SELECT 1 FROM songs WHERE id = " + row + ".song_id);";
+    }
+
+    /**
+     * Read the schema version stored in the database
+     * @param conn the connection
+     * @return the applied schema version, 0 for a new database
+     * @throws SQLException if a database access error occurs
+     */
+    public static int getVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * A numbered group of DDL statements
+     */
+    private static final class Migration {
+        private final int version;
+        private final String description;
+        private final List<String> statements;
+
+        Migration(int version, String description, String... statements) {
+            this.version = version;
+            this.description = description;
+            this.statements = new ArrayList<>(Arrays.asList(statements));
+        }
+
+        Migration with(String... moreStatements) {
+            statements.addAll(Arrays.asList(moreStatements));
+            return this;
+        }
+    }
+}
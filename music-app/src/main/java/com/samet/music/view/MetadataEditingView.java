@@ -5,6 +5,7 @@ import java.util.Scanner;
 
 import com.samet.music.controller.SongController;
 import com.samet.music.controller.UserController;
+import com.samet.music.dao.CompletionIndex;
 import com.samet.music.model.Song;
 
 import org.slf4j.Logger;
@@ -126,6 +127,7 @@ public class MetadataEditingView extends MenuView {
             waitForEnter();
             return;
         }
+        newArtist = suggestKnownName(CompletionIndex.Field.ARTIST, newArtist);
         
         // Update the artist
         boolean updated = songController.updateSong(
@@ -200,6 +202,7 @@ public class MetadataEditingView extends MenuView {
             waitForEnter();
             return;
         }
+        newAlbum = suggestKnownName(CompletionIndex.Field.ALBUM, newAlbum);
         
         // Update the album
         boolean updated = songController.updateSong(
@@ -274,6 +277,7 @@ public class MetadataEditingView extends MenuView {
             waitForEnter();
             return;
         }
+        newGenre = suggestKnownName(CompletionIndex.Field.GENRE, newGenre);
         
         // Update the genre
         boolean updated = songController.updateSong(
@@ -293,4 +297,35 @@ public class MetadataEditingView extends MenuView {
         
         waitForEnter();
     }
-} 
\ No newline at end of file
+    
+    /**
+     * Offer the known names starting with what was typed, so the same name is not
+     * stored with a different spelling
+     * @param field the field being entered
+     * @param value what was typed
+     * @return the chosen known name, or the value as typed
+     */
+    private String suggestKnownName(CompletionIndex.Field field, String value) {
+        List<String> completions = songController.getCompletions(field, value);
+        if (completions == null || completions.isEmpty() || completions.contains(value)) {
+            return value;
+        }
+        
+        System.out.println("\nKnown names starting with '" + value + "':");
+        for (int i = 0; i < completions.size(); i++) {
+            System.out.printf("  %d. %s%n", i + 1, completions.get(i));
+        }
+        System.out.print("Enter a number to use one, or press Enter to keep '" + value + "': ");
+        String choice = scanner.nextLine().trim();
+        
+        try {
+            int number = Integer.parseInt(choice);
+            if (number >= 1 && number <= completions.size()) {
+                return completions.get(number - 1);
+            }
+        } catch (NumberFormatException e) {
+            // Keep the value as typed
+        }
+        return value;
+    }
+}
@@ -1,6 +1,8 @@
 package com.samet.music.view;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
 import java.util.ArrayList;
 
@@ -15,6 +17,7 @@ import com.samet.music.dao.SongDAO;
 import com.samet.music.model.Song;
 import com.samet.music.model.Album;
 import com.samet.music.model.Artist;
+import com.samet.music.model.ArtistSummary;
 import com.samet.music.util.TimeFormatter;
 
 import org.slf4j.Logger;
@@ -587,10 +590,21 @@ public class MusicCollectionView extends MenuView {
             return;
         }
         
-            System.out.println("\nYour artists:");
-            int index = 1;
+        Map<String, ArtistSummary> catalogue = new HashMap<>();
+        for (ArtistSummary summary : artistController.getUserArtistCatalogue()) {
+            catalogue.put(summary.getName(), summary);
+        }
+        
+        System.out.println("\nYour artists:");
+        int index = 1;
         for (String artist : artists) {
-            System.out.printf("  %d. %s%n", index++, artist);
+            ArtistSummary summary = artist != null ? catalogue.get(artist.trim()) : null;
+            if (summary != null) {
+                System.out.printf("  %d. %s (%d songs, %d albums)%n", index++, artist,
+                        summary.getSongCount(), summary.getAlbumCount());
+            } else {
+                System.out.printf("  %d. %s%n", index++, artist);
+            }
         }
         
         System.out.println("\nEnter the number of the artist to view their songs (or 0 to go back):");
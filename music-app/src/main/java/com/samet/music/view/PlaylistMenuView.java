@@ -1,5 +1,6 @@
 package com.samet.music.view;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Scanner;
 
@@ -343,6 +344,11 @@ public class PlaylistMenuView extends MenuView {
      * @param playlist the playlist to remove songs from
      */
     private void removeSongsFromPlaylist(Playlist playlist) {
+        if (!playlist.isSongsLoaded()) {
+            // The playlist list only holds headers; read the songs now that it is opened
+            Playlist opened = playlistController.getPlaylist(playlist.getId());
+            playlist.setSongs(opened != null ? opened.getSongs() : new ArrayList<>());
+        }
         List<Song> playlistSongs = playlist.getSongs();
         
         if (playlistSongs.isEmpty()) {
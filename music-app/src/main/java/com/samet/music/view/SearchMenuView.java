@@ -1,5 +1,6 @@
 package com.samet.music.view;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Scanner;
 
@@ -7,6 +8,7 @@ import com.samet.music.controller.PlaylistController;
 import com.samet.music.controller.SongController;
 import com.samet.music.controller.UserController;
 import com.samet.music.model.Playlist;
+import com.samet.music.model.PlaylistAddResult;
 import com.samet.music.model.Song;
 
 import org.slf4j.Logger;
@@ -190,33 +192,38 @@ public class SearchMenuView extends MenuView {
         System.out.println("\nEnter song numbers to add (comma-separated, e.g. 1,3,5), or 'all' for all songs:");
         String input = scanner.nextLine().trim();
         
+        List<Integer> songIds = new ArrayList<>();
         if (input.equalsIgnoreCase("all")) {
             // Add all songs to playlist
             for (Song song : searchResults) {
-                playlistController.addSongToPlaylist(selectedPlaylist.getId(), song.getId());
+                songIds.add(song.getId());
             }
-            displaySuccess("Added all songs to playlist: " + selectedPlaylist.getName());
         } else {
             // Add selected songs
             String[] selections = input.split(",");
-            int addedCount = 0;
             
             for (String selection : selections) {
                 try {
                     int songIndex = Integer.parseInt(selection.trim()) - 1;
                     if (songIndex >= 0 && songIndex < searchResults.size()) {
-                        Song song = searchResults.get(songIndex);
-                        boolean added = playlistController.addSongToPlaylist(selectedPlaylist.getId(), song.getId());
-                        if (added) {
-                            addedCount++;
-                        }
+                        songIds.add(searchResults.get(songIndex).getId());
                     }
                 } catch (NumberFormatException e) {
                     // Just skip invalid input
                 }
             }
-            
-            displaySuccess("Added " + addedCount + " song(s) to playlist: " + selectedPlaylist.getName());
+        }
+        
+        // All selected songs are added in one go
+        PlaylistAddResult result = playlistController.addSongsToPlaylist(selectedPlaylist.getId(), songIds);
+        displaySuccess("Added " + result.getAddedCount() + " song(s) to playlist: " + selectedPlaylist.getName());
+        int alreadyThere = result.count(PlaylistAddResult.Outcome.ALREADY_IN_PLAYLIST);
+        if (alreadyThere > 0) {
+            displayInfo(alreadyThere + " song(s) were already in the playlist.");
+        }
+        int notAdded = result.count(PlaylistAddResult.Outcome.SONG_NOT_FOUND) + result.count(PlaylistAddResult.Outcome.FAILED);
+        if (notAdded > 0) {
+            displayError(notAdded + " song(s) could not be added.");
         }
         
         waitForEnter();
@@ -65,6 +65,19 @@ public class MusicCollectionViewTest {
         System.setOut(originalOut);
     }
 
+    /**
+     * View kendi AlbumController'ını oluşturduğu için test controller'ını reflection ile yerleştirir
+     */
+    private void useTestAlbumController(MusicCollectionView view) {
+        try {
+            java.lang.reflect.Field field = MusicCollectionView.class.getDeclaredField("albumController");
+            field.setAccessible(true);
+            field.set(view, albumController);
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError("albumController alanı ayarlanamadı", e);
+        }
+    }
+
     /**
      * Test UserController oluşturur
      */
@@ -356,6 +369,7 @@ public class MusicCollectionViewTest {
         String input = "8\nTest Album 1\nTest Artist 1\ny\n0";
         Scanner scanner = new Scanner(input);
         MusicCollectionView view = new MusicCollectionView(scanner, userController, songController, playlistController);
+        useTestAlbumController(view);
         view.display();
         
         String output = outputStream.toString().toLowerCase();
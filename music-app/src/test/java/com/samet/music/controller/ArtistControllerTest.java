@@ -6,6 +6,7 @@ import com.samet.music.dao.ArtistDAO;
 import com.samet.music.model.Album;
 import com.samet.music.model.Song;
 import com.samet.music.model.Artist;
+import com.samet.music.model.ArtistSummary;
 import com.samet.music.model.User;
 import org.junit.Before;
 import org.junit.Test;
@@ -107,6 +108,38 @@ public class ArtistControllerTest {
         verify(mockArtistDAO).artistExists("Unknown Artist");
     }
     
+    /**
+     * getArtistCatalogue metodunu test eder - sayfa sınırları
+     */
+    @Test
+    public void testGetArtistCataloguePage() {
+        List<ArtistSummary> page = new ArrayList<>();
+        page.add(new ArtistSummary("Test Artist", 3, 1, 600));
+        when(mockArtistDAO.getArtistCatalogue(40, 20)).thenReturn(page);
+        
+        assertEquals(page, artistController.getArtistCatalogue(2, 20));
+        assertTrue("Negatif sayfa boş dönmeli", artistController.getArtistCatalogue(-1, 20).isEmpty());
+        assertTrue("Sıfır boyutlu sayfa boş dönmeli", artistController.getArtistCatalogue(0, 0).isEmpty());
+        verify(mockArtistDAO).getArtistCatalogue(40, 20);
+    }
+    
+    /**
+     * getUserArtistCatalogue metodunu test eder - yalnızca giriş yapmış kullanıcının sanatçıları
+     */
+    @Test
+    public void testGetUserArtistCatalogue() {
+        List<ArtistSummary> catalogue = new ArrayList<>();
+        catalogue.add(new ArtistSummary("Test Artist", 2, 0, 300));
+        when(mockArtistDAO.getUserArtistCatalogue(testUser.getId())).thenReturn(catalogue);
+        
+        when(mockUserController.getCurrentUser()).thenReturn(null);
+        assertTrue("Kullanıcı yoksa boş dönmeli", artistController.getUserArtistCatalogue().isEmpty());
+        
+        when(mockUserController.getCurrentUser()).thenReturn(testUser);
+        assertEquals(catalogue, artistController.getUserArtistCatalogue());
+        verify(mockArtistDAO).getUserArtistCatalogue(testUser.getId());
+    }
+    
     /**
      * getArtistSongCount metodunu test eder - normal durum
      */
@@ -1,10 +1,16 @@
 package com.samet.music.controller;
 
 import com.samet.music.dao.PlaylistDAO;
+import com.samet.music.dao.SmartPlaylistDAO;
+import com.samet.music.dao.SmartRule;
 import com.samet.music.dao.SongDAO;
 import com.samet.music.model.Playlist;
+import com.samet.music.model.PlaylistAddResult;
 import com.samet.music.model.Song;
 import com.samet.music.model.User;
+import com.samet.music.service.PlaylistExporter;
+import com.samet.music.service.PlaylistImporter;
+import com.samet.music.service.SongSimilarityIndex;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -15,7 +21,9 @@ import org.mockito.junit.MockitoJUnitRunner;
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
+import java.io.IOException;
 import java.lang.reflect.Field;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -29,7 +37,11 @@ public class PlaylistControllerTest {
     
     @Mock private PlaylistDAO mockPlaylistDAO;
     @Mock private SongDAO mockSongDAO;
+    @Mock private SmartPlaylistDAO mockSmartPlaylistDAO;
     @Mock private UserController mockUserController;
+    @Mock private SongSimilarityIndex mockSongSimilarityIndex;
+    @Mock private PlaylistImporter mockPlaylistImporter;
+    @Mock private PlaylistExporter mockPlaylistExporter;
     
     // Test edilecek nesne
     private PlaylistController playlistController;
@@ -67,6 +79,10 @@ public class PlaylistControllerTest {
         // Reflection kullanarak PlaylistDAO ve SongDAO alanlarını mocklar ile değiştir
         setPrivateField(playlistController, "playlistDAO", mockPlaylistDAO);
         setPrivateField(playlistController, "songDAO", mockSongDAO);
+        setPrivateField(playlistController, "smartPlaylistDAO", mockSmartPlaylistDAO);
+        setPrivateField(playlistController, "songSimilarityIndex", mockSongSimilarityIndex);
+        setPrivateField(playlistController, "playlistImporter", mockPlaylistImporter);
+        setPrivateField(playlistController, "playlistExporter", mockPlaylistExporter);
     }
     
     // Reflection yardımcı metodu - private alanlara erişim için
@@ -274,6 +290,7 @@ public class PlaylistControllerTest {
         verify(mockPlaylistDAO, atLeastOnce()).findById(testPlaylist.getId());
         verify(mockSongDAO, atLeastOnce()).findById(testSong.getId());
         verify(mockPlaylistDAO).addSongsToPlaylist(eq(testPlaylist.getId()), any());
+        verify(mockSongSimilarityIndex).recordPlaylistAdd(testPlaylist.getId(), testSong.getId());
     }
     
     /**
@@ -305,17 +322,10 @@ public class PlaylistControllerTest {
         songs.add(testSong);
         testPlaylist.setSongs(songs);
         
-        // Güncellenen çalma listesi
-        Playlist updatedPlaylist = new Playlist();
-        updatedPlaylist.setId(testPlaylist.getId());
-        updatedPlaylist.setName(testPlaylist.getName());
-        updatedPlaylist.setUserId(testPlaylist.getUserId());
-        updatedPlaylist.setSongs(new ArrayList<>()); // Şarkı kaldırıldıktan sonra boş liste
-        
         // Mock davranışlarını ayarla
         when(mockUserController.getCurrentUser()).thenReturn(testUser);
         when(mockPlaylistDAO.findById(testPlaylist.getId())).thenReturn(Optional.of(testPlaylist));
-        when(mockPlaylistDAO.update(any(Playlist.class))).thenReturn(true);
+        when(mockPlaylistDAO.removeSong(testPlaylist.getId(), testSong.getId())).thenReturn(true);
         
         // Metodu çağır
         boolean result = playlistController.removeSongFromPlaylist(testPlaylist.getId(), testSong.getId());
@@ -326,7 +336,72 @@ public class PlaylistControllerTest {
         // Etkileşimleri doğrula - metodlar birden fazla kez çağrılabilir
         verify(mockUserController).getCurrentUser();
         verify(mockPlaylistDAO, atLeastOnce()).findById(testPlaylist.getId());
-        verify(mockPlaylistDAO).update(any(Playlist.class));
+        // Sadece şarkının kendi satırı silinmeli, liste yeniden yazılmamalı
+        verify(mockPlaylistDAO).removeSong(testPlaylist.getId(), testSong.getId());
+        verify(mockPlaylistDAO, never()).update(any(Playlist.class));
+        verify(mockSongSimilarityIndex).recordPlaylistRemove(testPlaylist.getId(), testSong.getId());
+    }
+    
+    /**
+     * Toplu şarkı ekleme metodunu test eder
+     */
+    @Test
+    public void testAddSongsToPlaylist() {
+        List<Integer> songIds = Arrays.asList(1, 2, 3);
+        PlaylistAddResult daoResult = new PlaylistAddResult();
+        daoResult.put(1, PlaylistAddResult.Outcome.ADDED);
+        daoResult.put(2, PlaylistAddResult.Outcome.ALREADY_IN_PLAYLIST);
+        daoResult.put(3, PlaylistAddResult.Outcome.ADDED);
+        
+        // Mock davranışlarını ayarla
+        when(mockUserController.getCurrentUser()).thenReturn(testUser);
+        when(mockPlaylistDAO.getOwnerId(testPlaylist.getId())).thenReturn(testUser.getId());
+        when(mockPlaylistDAO.appendSongs(testPlaylist.getId(), songIds)).thenReturn(daoResult);
+        
+        // Sonuçları doğrula
+        assertSame(daoResult, playlistController.addSongsToPlaylist(testPlaylist.getId(), songIds));
+        
+        // Sahiplik şarkılar okunmadan kontrol edilmeli, şarkı başına sorgu yapılmamalı
+        verify(mockPlaylistDAO, never()).findById(anyInt());
+        verifyNoInteractions(mockSongDAO);
+        verify(mockSongSimilarityIndex).recordPlaylistAdd(testPlaylist.getId(), 1);
+        verify(mockSongSimilarityIndex).recordPlaylistAdd(testPlaylist.getId(), 3);
+        verify(mockSongSimilarityIndex, never()).recordPlaylistAdd(testPlaylist.getId(), 2);
+    }
+    
+    /**
+     * Toplu şarkı ekleme metodunu test eder - başka kullanıcının listesi
+     */
+    @Test
+    public void testAddSongsToPlaylistNotOwner() {
+        // Mock davranışlarını ayarla
+        when(mockUserController.getCurrentUser()).thenReturn(testUser);
+        when(mockPlaylistDAO.getOwnerId(testPlaylist.getId())).thenReturn(99);
+        
+        // Sonuçları doğrula
+        assertTrue(playlistController.addSongsToPlaylist(testPlaylist.getId(), Arrays.asList(1, 2))
+                .getOutcomes().isEmpty());
+        verify(mockPlaylistDAO, never()).appendSongs(anyInt(), anyList());
+    }
+    
+    /**
+     * Çalma listesinde şarkı taşıma metodunu test eder
+     */
+    @Test
+    public void testMoveSongInPlaylist() {
+        // Mock davranışlarını ayarla
+        when(mockUserController.getCurrentUser()).thenReturn(testUser);
+        when(mockPlaylistDAO.findById(testPlaylist.getId())).thenReturn(Optional.of(testPlaylist));
+        when(mockPlaylistDAO.moveSong(testPlaylist.getId(), testSong.getId(), 0)).thenReturn(true);
+        
+        // Sonuçları doğrula
+        assertTrue("Şarkı taşıma başarılı olmalı", playlistController.moveSongInPlaylist(testPlaylist.getId(), testSong.getId(), 0));
+        verify(mockPlaylistDAO).moveSong(testPlaylist.getId(), testSong.getId(), 0);
+        
+        // Başka kullanıcının listesi taşınamamalı
+        testPlaylist.setUserId(99);
+        assertFalse(playlistController.moveSongInPlaylist(testPlaylist.getId(), testSong.getId(), 1));
+        verify(mockPlaylistDAO, never()).moveSong(testPlaylist.getId(), testSong.getId(), 1);
     }
     
     /**
@@ -477,4 +552,81 @@ public class PlaylistControllerTest {
         verify(mockUserController).getCurrentUser();
         verify(mockPlaylistDAO).findById(testPlaylist.getId());
     }
-} 
\ No newline at end of file
+
+    /**
+     * Akıllı çalma listesi oluşturma metodunu test eder - kural ayrıştırılıp DAO'ya verilir
+     */
+    @Test
+    public void testCreateSmartPlaylistSuccess() {
+        when(mockUserController.getCurrentUser()).thenReturn(testUser);
+        when(mockSmartPlaylistDAO.create(any(Playlist.class), any(SmartRule.class))).thenReturn(testPlaylist);
+
+        Playlist result = playlistController.createSmartPlaylist("Rock", "Yeni rock", "genre = Rock AND year >= 2000");
+
+        assertSame(testPlaylist, result);
+        verify(mockSmartPlaylistDAO).create(
+                argThat(playlist -> playlist.getUserId() == testUser.getId() && "Rock".equals(playlist.getName())),
+                argThat(rule -> rule.toString().equals("genre = 'Rock' AND year >= 2000")));
+    }
+
+    /**
+     * Akıllı çalma listesi oluşturma metodunu test eder - geçersiz kural
+     */
+    @Test
+    public void testCreateSmartPlaylistInvalidRule() {
+        when(mockUserController.getCurrentUser()).thenReturn(testUser);
+
+        assertNull(playlistController.createSmartPlaylist("Rock", null, "mood = happy"));
+        verify(mockSmartPlaylistDAO, never()).create(any(Playlist.class), any(SmartRule.class));
+    }
+
+    /**
+     * Kural güncelleme metodunu test eder - sahiplik kontrolü ve kuralın kaldırılması
+     */
+    @Test
+    public void testUpdatePlaylistRule() {
+        when(mockUserController.getCurrentUser()).thenReturn(testUser);
+        when(mockPlaylistDAO.getOwnerId(1)).thenReturn(testUser.getId());
+        when(mockPlaylistDAO.getOwnerId(2)).thenReturn(999);
+        when(mockSmartPlaylistDAO.setRule(1, null)).thenReturn(true);
+
+        assertFalse("Başkasının listesi değiştirilmemeli", playlistController.updatePlaylistRule(2, "genre = Pop"));
+        assertFalse("Geçersiz kural reddedilmeli", playlistController.updatePlaylistRule(1, "genre"));
+        assertTrue("Kural kaldırılabilmeli", playlistController.updatePlaylistRule(1, null));
+
+        verify(mockSmartPlaylistDAO, never()).setRule(eq(2), any());
+        verify(mockSmartPlaylistDAO).setRule(1, null);
+    }
+
+    /**
+     * Çalma listesi içe aktarma metodunu test eder - sahiplik ve okuma hatası
+     */
+    @Test
+    public void testImportPlaylist() throws Exception {
+        PlaylistImporter.Result imported = mock(PlaylistImporter.Result.class);
+        when(mockUserController.getCurrentUser()).thenReturn(testUser);
+        when(mockPlaylistDAO.getOwnerId(1)).thenReturn(testUser.getId());
+        when(mockPlaylistDAO.getOwnerId(2)).thenReturn(999);
+        when(mockPlaylistImporter.importFile(1, Paths.get("mix.m3u"))).thenReturn(imported);
+        when(mockPlaylistImporter.importFile(1, Paths.get("missing.csv"))).thenThrow(new IOException("not found"));
+
+        assertSame(imported, playlistController.importPlaylist(1, "mix.m3u"));
+        assertNull("Okunamayan dosya null dönmeli", playlistController.importPlaylist(1, "missing.csv"));
+        assertNull("Başkasının listesine aktarılmamalı", playlistController.importPlaylist(2, "mix.m3u"));
+        verify(mockPlaylistImporter, never()).importFile(eq(2), any());
+    }
+
+    /**
+     * Çalma listesi dışa aktarma metodunu test eder
+     */
+    @Test
+    public void testExportPlaylist() throws Exception {
+        when(mockUserController.getCurrentUser()).thenReturn(testUser);
+        when(mockPlaylistDAO.getOwnerId(1)).thenReturn(testUser.getId());
+        when(mockPlaylistDAO.getOwnerId(3)).thenReturn(0);
+        when(mockPlaylistExporter.exportFile(1, Paths.get("mix.pls"))).thenReturn(12);
+
+        assertEquals(12, playlistController.exportPlaylist(1, "mix.pls"));
+        assertEquals("Olmayan liste -1 dönmeli", -1, playlistController.exportPlaylist(3, "mix.pls"));
+    }
+}
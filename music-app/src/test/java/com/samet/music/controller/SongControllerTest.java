@@ -5,6 +5,7 @@ import static org.mockito.Mockito.*;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -20,6 +21,7 @@ import org.mockito.junit.MockitoJUnitRunner;
 
 import com.samet.music.dao.AlbumDAO;
 import com.samet.music.dao.SongDAO;
+import com.samet.music.dao.SongSearchIndex;
 import com.samet.music.dao.UserSongStatisticsDAO;
 import com.samet.music.model.Album;
 import com.samet.music.model.Song;
@@ -46,6 +48,9 @@ public class SongControllerTest {
     @Mock
     private RecommendationService recommendationService;
     
+    @Mock
+    private SongSearchIndex songSearchIndex;
+    
     private User testUser;
     
     @Before
@@ -74,6 +79,10 @@ public class SongControllerTest {
             java.lang.reflect.Field recommendationServiceField = SongController.class.getDeclaredField("recommendationService");
             recommendationServiceField.setAccessible(true);
             recommendationServiceField.set(songController, recommendationService);
+            
+            java.lang.reflect.Field songSearchIndexField = SongController.class.getDeclaredField("songSearchIndex");
+            songSearchIndexField.setAccessible(true);
+            songSearchIndexField.set(songController, songSearchIndex);
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -149,7 +158,6 @@ public class SongControllerTest {
         expectedSong.setId(songId);
         
         when(songDAO.findById(songId)).thenReturn(Optional.of(expectedSong));
-        when(userSongStatisticsDAO.incrementPlayCount(testUser.getId(), songId)).thenReturn(true);
         
         // Act
         Song result = songController.playSong(songId);
@@ -157,7 +165,7 @@ public class SongControllerTest {
         // Assert
         assertNotNull("Should return the played song", result);
         assertEquals("Should return correct song", expectedSong, result);
-        verify(userSongStatisticsDAO).incrementPlayCount(testUser.getId(), songId);
+        verify(userSongStatisticsDAO).recordPlay(testUser.getId(), songId);
     }
     
     @Test
@@ -170,7 +178,7 @@ public class SongControllerTest {
         
         // Assert
         assertNull("Should return null when no user is logged in", result);
-        verify(userSongStatisticsDAO, never()).incrementPlayCount(anyInt(), anyInt());
+        verify(userSongStatisticsDAO, never()).recordPlay(anyInt(), anyInt());
     }
     
     @Test
@@ -184,7 +192,7 @@ public class SongControllerTest {
         
         // Assert
         assertNull("Should return null when song is not found", result);
-        verify(userSongStatisticsDAO, never()).incrementPlayCount(anyInt(), anyInt());
+        verify(userSongStatisticsDAO, never()).recordPlay(anyInt(), anyInt());
     }
     
     @Test
@@ -718,22 +726,41 @@ public class SongControllerTest {
         // Arrange
         String query = "rock";
         
-        List<Song> allFoundSongs = new ArrayList<>();
+        List<Song> foundSongs = new ArrayList<>();
         Song userSong = new Song("Rock Song", "Rock Artist", "Rock Album", "Rock", 2023, 180, "path1.mp3", testUser.getId());
-        Song otherUserSong = new Song("Pop Song", "Pop Artist", "Pop Album", "Pop", 2023, 180, "path2.mp3", 999); // different user
-        
-        allFoundSongs.add(userSong);
-        allFoundSongs.add(otherUserSong);
+        foundSongs.add(userSong);
         
-        when(songDAO.search(query, query, query, query)).thenReturn(allFoundSongs);
+        when(songDAO.searchFullText(eq(query), eq(testUser.getId()), anyInt())).thenReturn(foundSongs);
         
         // Act
         List<Song> result = songController.searchSongs(query);
         
         // Assert
-        assertEquals("Should return only songs owned by the current user", 1, result.size());
+        assertEquals("Should return the songs found for the current user", 1, result.size());
         assertEquals("Should return songs with matching query", "Rock Song", result.get(0).getTitle());
-        verify(songDAO).search(query, query, query, query);
+        verify(songDAO).searchFullText(eq(query), eq(testUser.getId()), anyInt());
+    }
+    
+    @Test
+    public void testSearchSongs_FallsBackToTypoTolerantIndex() {
+        // Arrange
+        String query = "metalica";
+        Song song = new Song("Enter Sandman", "Metallica", "Metallica", "Metal", 1991, 331, "path.mp3", testUser.getId());
+        song.setId(7);
+        Map<Integer, Song> songsById = new HashMap<>();
+        songsById.put(7, song);
+        
+        when(songDAO.searchFullText(eq(query), eq(testUser.getId()), anyInt())).thenReturn(new ArrayList<>());
+        when(songSearchIndex.isReady()).thenReturn(true);
+        when(songSearchIndex.search(eq(testUser.getId()), eq(query), anyInt())).thenReturn(Arrays.asList(7));
+        when(songDAO.findByIds(Arrays.asList(7))).thenReturn(songsById);
+        
+        // Act
+        List<Song> result = songController.searchSongs(query);
+        
+        // Assert
+        assertEquals("Should return the close match", 1, result.size());
+        assertEquals("Enter Sandman", result.get(0).getTitle());
     }
     
     @Test
@@ -746,7 +773,7 @@ public class SongControllerTest {
         
         // Assert
         assertTrue("Should return empty list when no user is logged in", result.isEmpty());
-        verify(songDAO, never()).search(anyString(), anyString(), anyString(), anyString());
+        verify(songDAO, never()).searchFullText(anyString(), anyInt(), anyInt());
     }
     
     @Test
@@ -10,10 +10,13 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import org.mockito.junit.MockitoJUnitRunner;
 
@@ -55,6 +58,7 @@ public class ArtistDAOImprovedTest {
     private Artist testArtist;
     private List<Song> testSongs;
     private List<Album> testAlbums;
+    private MockedStatic<DatabaseUtil> dbUtilMock;
     
     @Before
     public void setUp() throws Exception {
@@ -72,6 +76,11 @@ public class ArtistDAOImprovedTest {
         albumDAOField.setAccessible(true);
         albumDAOField.set(artistDAO, albumDAO);
         
+        // Use a registry of our own so names cached by other tests do not leak in
+        java.lang.reflect.Field registryField = ArtistDAO.class.getDeclaredField("artistRegistry");
+        registryField.setAccessible(true);
+        registryField.set(artistDAO, new ArtistRegistry());
+        
         // Mock the database connection
         mockDatabaseConnection();
         
@@ -79,14 +88,17 @@ public class ArtistDAOImprovedTest {
         setupTestData();
     }
     
+    @After
+    public void tearDown() {
+        if (dbUtilMock != null) {
+            dbUtilMock.close();
+        }
+    }
+    
     private void mockDatabaseConnection() throws Exception {
-        // Store the original connection
-        java.lang.reflect.Field connectionField = DatabaseUtil.class.getDeclaredField("connection");
-        connectionField.setAccessible(true);
-        Connection originalConn = (Connection) connectionField.get(null);
-        
-        // Replace with mock connection
-        connectionField.set(null, mockConn);
+        // Make DatabaseUtil hand out the mock connection instead of a pooled one
+        dbUtilMock = Mockito.mockStatic(DatabaseUtil.class);
+        dbUtilMock.when(DatabaseUtil::getConnection).thenReturn(mockConn);
         
         // Setup common mock behavior
         when(mockConn.prepareStatement(anyString())).thenReturn(mockPstmt);
@@ -510,44 +522,31 @@ public class ArtistDAOImprovedTest {
         Statement mockStmt = mock(Statement.class);
         when(mockConn.createStatement()).thenReturn(mockStmt);
         when(mockStmt.executeQuery(anyString())).thenReturn(mockRs);
-        when(mockRs.next()).thenReturn(true, true, false);
-        when(mockRs.getString("name")).thenReturn("Artist 1", "Artist 2");
-        
-        // Mock songs and albums
-        List<Song> songs = new ArrayList<>();
-        Song song1 = new Song();
-        song1.setArtist("Artist 3");
-        songs.add(song1);
-        when(songDAO.findAll()).thenReturn(songs);
-        
-        List<Album> albums = new ArrayList<>();
-        Album album1 = new Album();
-        album1.setArtist("Artist 4");
-        albums.add(album1);
-        when(albumDAO.findAll()).thenReturn(albums);
+        when(mockRs.next()).thenReturn(true, true, true, true, false);
+        when(mockRs.getString("name")).thenReturn("Artist 1", "Artist 2", "Artist 3", "Artist 4");
         
         // Act
         Set<String> results = artistDAO.getAllArtistNames();
+        Set<String> cached = artistDAO.getAllArtistNames();
         
         // Assert
         assertNotNull("Should return a non-null set", results);
         assertEquals("Should contain 4 unique artist names", 4, results.size());
         assertTrue("Should contain Artist 1", results.contains("Artist 1"));
-        assertTrue("Should contain Artist 2", results.contains("Artist 2"));
-        assertTrue("Should contain Artist 3", results.contains("Artist 3"));
         assertTrue("Should contain Artist 4", results.contains("Artist 4"));
+        assertEquals("Second call should be served from memory", results, cached);
+        verify(mockStmt, times(1)).executeQuery(anyString());
+        verify(songDAO, never()).findAll();
+        verify(albumDAO, never()).findAll();
     }
     
     @Test
     public void testArtistExists_True() throws Exception {
-        // Arrange - use a spy to mock the getAllArtistNames call
-        ArtistDAO spyDAO = spy(artistDAO);
-        Set<String> artists = new HashSet<>();
-        artists.add("Test Artist");
-        doReturn(artists).when(spyDAO).getAllArtistNames();
+        // Arrange
+        stubRegistryNames("Test Artist");
         
         // Act
-        boolean result = spyDAO.artistExists("Test Artist");
+        boolean result = artistDAO.artistExists("Test Artist");
         
         // Assert
         assertTrue("Should return true for existing artist", result);
@@ -555,14 +554,11 @@ public class ArtistDAOImprovedTest {
     
     @Test
     public void testArtistExists_CaseInsensitive() throws Exception {
-        // Arrange - use a spy to mock the getAllArtistNames call
-        ArtistDAO spyDAO = spy(artistDAO);
-        Set<String> artists = new HashSet<>();
-        artists.add("Test Artist");
-        doReturn(artists).when(spyDAO).getAllArtistNames();
+        // Arrange
+        stubRegistryNames("Test Artist");
         
         // Act
-        boolean result = spyDAO.artistExists("test artist"); // Different case
+        boolean result = artistDAO.artistExists("test artist"); // Different case
         
         // Assert
         assertTrue("Should be case insensitive", result);
@@ -570,14 +566,11 @@ public class ArtistDAOImprovedTest {
     
     @Test
     public void testArtistExists_False() throws Exception {
-        // Arrange - use a spy to mock the getAllArtistNames call
-        ArtistDAO spyDAO = spy(artistDAO);
-        Set<String> artists = new HashSet<>();
-        artists.add("Test Artist");
-        doReturn(artists).when(spyDAO).getAllArtistNames();
+        // Arrange
+        stubRegistryNames("Test Artist");
         
         // Act
-        boolean result = spyDAO.artistExists("Non-existent Artist");
+        boolean result = artistDAO.artistExists("Non-existent Artist");
         
         // Assert
         assertFalse("Should return false for non-existent artist", result);
@@ -597,10 +590,8 @@ public class ArtistDAOImprovedTest {
     @Test
     public void testGetArtistSongCount() throws Exception {
         // Arrange
-        List<Song> songs = new ArrayList<>();
-        songs.add(new Song());
-        songs.add(new Song());
-        when(songDAO.findByArtist("Test Artist")).thenReturn(songs);
+        when(mockRs.next()).thenReturn(true);
+        when(mockRs.getInt(1)).thenReturn(2);
         
         // Act
         int count = artistDAO.getArtistSongCount("Test Artist");
@@ -623,11 +614,8 @@ public class ArtistDAOImprovedTest {
     @Test
     public void testGetArtistAlbumCount() throws Exception {
         // Arrange
-        List<Album> albums = new ArrayList<>();
-        albums.add(new Album());
-        albums.add(new Album());
-        albums.add(new Album());
-        when(albumDAO.findByArtist("Test Artist")).thenReturn(albums);
+        when(mockRs.next()).thenReturn(true);
+        when(mockRs.getInt(1)).thenReturn(3);
         
         // Act
         int count = artistDAO.getArtistAlbumCount("Test Artist");
@@ -803,8 +791,8 @@ public class ArtistDAOImprovedTest {
         verify(mockConn).commit();
         verify(mockConn).setAutoCommit(true);
         
-        // Verify statement execution
-        verify(mockPstmt).setString(1, "Artist To Delete");
+        // Verify statement execution, once to read the artist and once to delete
+        verify(mockPstmt, times(2)).setString(1, "Artist To Delete");
     }
     
     /**
@@ -859,36 +847,15 @@ public class ArtistDAOImprovedTest {
         when(mockStmt.executeQuery(anyString())).thenReturn(mockRs);
         when(mockRs.next()).thenReturn(true, true, false);
         when(mockRs.getString("name")).thenReturn("Valid Artist", null, "");
-        
-        // Mocking songs with null artist
-        List<Song> songs = new ArrayList<>();
-        Song song1 = new Song();
-        song1.setArtist("Song Artist");
-        Song song2 = new Song();
-        song2.setArtist(null);
-        songs.add(song1);
-        songs.add(song2);
-        when(songDAO.findAll()).thenReturn(songs);
-        
-        // Mocking albums with null artist
-        List<Album> albums = new ArrayList<>();
-        Album album1 = new Album();
-        album1.setArtist("Album Artist");
-        Album album2 = new Album();
-        album2.setArtist(null);
-        albums.add(album1);
-        albums.add(album2);
-        when(albumDAO.findAll()).thenReturn(albums);
+        when(mockRs.next()).thenReturn(true, true, true, false);
         
         // Act
         Set<String> results = artistDAO.getAllArtistNames();
         
         // Assert
         assertNotNull("Should return a non-null set", results);
-        assertEquals("Should only contain valid artist names", 3, results.size()); // 1 from DB, 1 from songs, 1 from albums
+        assertEquals("Should only contain valid artist names", 1, results.size());
         assertTrue("Should contain Valid Artist", results.contains("Valid Artist"));
-        assertTrue("Should contain Song Artist", results.contains("Song Artist"));
-        assertTrue("Should contain Album Artist", results.contains("Album Artist"));
     }
     
     /**
@@ -926,8 +893,8 @@ public class ArtistDAOImprovedTest {
         verify(mockConn).commit();
         verify(mockConn).setAutoCommit(true);
         
-        // Verify correct parameter setting
-        verify(mockPstmt).setInt(1, 1);
+        // Verify correct parameter setting, once to read the name and once to delete
+        verify(mockPstmt, times(2)).setInt(1, 1);
     }
     
     /**
@@ -970,4 +937,12 @@ public class ArtistDAOImprovedTest {
         verify(mockConn).setAutoCommit(false);
         verify(mockConn).rollback();
     }
-} 
\ No newline at end of file
+    
+    /**
+     * Make the artist registry load the given names
+     */
+    private void stubRegistryNames(String name) throws SQLException {
+        when(mockRs.next()).thenReturn(true, false);
+        when(mockRs.getString("name")).thenReturn(name);
+    }
+}
@@ -10,11 +10,14 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import org.mockito.Spy;
 import org.mockito.junit.MockitoJUnitRunner;
@@ -45,6 +48,8 @@ public class ArtistDAOTest {
     private List<Song> testSongs;
     private List<Album> testAlbums;
     private Set<String> testArtistNames;
+    private ResultSet mockRs;
+    private MockedStatic<DatabaseUtil> dbUtilMock;
     
     @Before
     public void setUp() throws Exception {
@@ -59,6 +64,11 @@ public class ArtistDAOTest {
         albumDAOField.setAccessible(true);
         albumDAOField.set(artistDAO, albumDAO);
         
+        // Use a registry of our own so names cached by other tests do not leak in
+        java.lang.reflect.Field registryField = ArtistDAO.class.getDeclaredField("artistRegistry");
+        registryField.setAccessible(true);
+        registryField.set(artistDAO, new ArtistRegistry());
+        
         // Mock database connection for all tests
         mockDatabaseConnection();
         
@@ -99,7 +109,7 @@ public class ArtistDAOTest {
         Connection mockConn = mock(Connection.class);
         PreparedStatement mockPstmt = mock(PreparedStatement.class);
         Statement mockStmt = mock(Statement.class);
-        ResultSet mockRs = mock(ResultSet.class);
+        mockRs = mock(ResultSet.class);
         ResultSet mockGeneratedKeys = mock(ResultSet.class);
         
         // Setup common mock behavior
@@ -118,10 +128,16 @@ public class ArtistDAOTest {
         doNothing().when(mockConn).commit();
         doNothing().when(mockConn).rollback();
         
-        // Use reflection to replace the connection in DatabaseUtil
-        java.lang.reflect.Field connectionField = DatabaseUtil.class.getDeclaredField("connection");
-        connectionField.setAccessible(true);
-        connectionField.set(null, mockConn);
+        // Make DatabaseUtil hand out the mock connection instead of a pooled one
+        dbUtilMock = Mockito.mockStatic(DatabaseUtil.class);
+        dbUtilMock.when(DatabaseUtil::getConnection).thenReturn(mockConn);
+    }
+    
+    @After
+    public void tearDown() {
+        if (dbUtilMock != null) {
+            dbUtilMock.close();
+        }
     }
     
     // Direct tests with mocked return values
@@ -294,9 +310,10 @@ public class ArtistDAOTest {
     }
     
     @Test
-    public void testArtistExists_True() {
+    public void testArtistExists_True() throws SQLException {
         // Arrange
-        doReturn(testArtistNames).when(artistDAO).getAllArtistNames();
+        when(mockRs.next()).thenReturn(true, true, false);
+        when(mockRs.getString("name")).thenReturn("Test Artist", "Another Artist");
         
         // Act
         boolean result = artistDAO.artistExists("Test Artist");
@@ -329,9 +346,10 @@ public class ArtistDAOTest {
     }
     
     @Test
-    public void testGetArtistSongCount() {
+    public void testGetArtistSongCount() throws SQLException {
         // Arrange
-        when(songDAO.findByArtist("Test Artist")).thenReturn(testSongs);
+        when(mockRs.next()).thenReturn(true);
+        when(mockRs.getInt(1)).thenReturn(2);
         
         // Act
         int result = artistDAO.getArtistSongCount("Test Artist");
@@ -341,9 +359,10 @@ public class ArtistDAOTest {
     }
     
     @Test
-    public void testGetArtistSongCount_NoSongs() {
+    public void testGetArtistSongCount_NoSongs() throws SQLException {
         // Arrange
-        when(songDAO.findByArtist("Artist With No Songs")).thenReturn(new ArrayList<>());
+        when(mockRs.next()).thenReturn(true);
+        when(mockRs.getInt(1)).thenReturn(0);
         
         // Act
         int result = artistDAO.getArtistSongCount("Artist With No Songs");
@@ -361,9 +380,10 @@ public class ArtistDAOTest {
     }
     
     @Test
-    public void testGetArtistAlbumCount() {
+    public void testGetArtistAlbumCount() throws SQLException {
         // Arrange
-        when(albumDAO.findByArtist("Test Artist")).thenReturn(testAlbums);
+        when(mockRs.next()).thenReturn(true);
+        when(mockRs.getInt(1)).thenReturn(2);
         
         // Act
         int result = artistDAO.getArtistAlbumCount("Test Artist");
@@ -373,9 +393,10 @@ public class ArtistDAOTest {
     }
     
     @Test
-    public void testGetArtistAlbumCount_NoAlbums() {
+    public void testGetArtistAlbumCount_NoAlbums() throws SQLException {
         // Arrange
-        when(albumDAO.findByArtist("Artist With No Albums")).thenReturn(new ArrayList<>());
+        when(mockRs.next()).thenReturn(true);
+        when(mockRs.getInt(1)).thenReturn(0);
         
         // Act
         int result = artistDAO.getArtistAlbumCount("Artist With No Albums");
@@ -591,11 +612,10 @@ public class ArtistDAOTest {
     }
     
     @Test
-    public void testArtistExists_DifferentCases() {
+    public void testArtistExists_DifferentCases() throws SQLException {
         // Arrange
-        Set<String> artistNames = new HashSet<>();
-        artistNames.add("Test Artist");
-        doReturn(artistNames).when(artistDAO).getAllArtistNames();
+        when(mockRs.next()).thenReturn(true, false);
+        when(mockRs.getString("name")).thenReturn("Test Artist");
         
         // Act and Assert
         assertTrue("Should return true regardless of case", artistDAO.artistExists("TEST ARTIST"));
@@ -0,0 +1,204 @@
+package com.samet.music.dao;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+
+import com.samet.music.model.ArtistSummary;
+import com.samet.music.util.DatabaseUtil;
+import com.samet.music.util.SchemaManager;
+
+/**
+ * Test class for ArtistRegistry, the triggers behind it and the artist catalogue,
+ * against a migrated temporary database
+ */
+public class ArtistRegistryTest {
+
+    private File dbFile;
+    private String url;
+    private MockedStatic<DatabaseUtil> dbUtilMock;
+    private ArtistRegistry registry;
+
+    @Before
+    public void setUp() throws Exception {
+        dbFile = File.createTempFile("artists-test", ".db");
+        dbFile.deleteOnExit();
+        url = "jdbc:sqlite:" + dbFile.getAbsolutePath();
+        try (Connection conn = DriverManager.getConnection(url)) {
+            SchemaManager.migrate(conn);
+        }
+        execute("INSERT INTO artists (name) VALUES ('Queen')");
+        execute("INSERT INTO songs (title, artist) VALUES ('A', 'Queen'), ('B', ' Adele '), ('C', ''), ('D', NULL)");
+        execute("INSERT INTO albums (title, artist) VALUES ('E', 'Muse')");
+
+        dbUtilMock = Mockito.mockStatic(DatabaseUtil.class);
+        dbUtilMock.when(DatabaseUtil::getConnection).thenAnswer(invocation -> DriverManager.getConnection(url));
+        registry = new ArtistRegistry();
+    }
+
+    @After
+    public void tearDown() {
+        dbUtilMock.close();
+        dbFile.delete();
+    }
+
+    @Test
+    public void testNamesFromAllTablesAreRegistered() throws SQLException {
+        assertEquals("Names from artists, songs and albums should be registered, trimmed",
+                new HashSet<>(Arrays.asList("Queen", "Adele", "Muse")), registry.getNames());
+        assertEquals("Uses should be counted per name", 2, count("SELECT refs FROM artist_registry WHERE name = 'Queen'"));
+    }
+
+    @Test
+    public void testContainsIgnoresCaseAndSpaces() {
+        assertTrue(registry.contains("queen"));
+        assertTrue(registry.contains("  MUSE "));
+        assertFalse(registry.contains("Blur"));
+        assertFalse(registry.contains(" "));
+        assertFalse(registry.contains(null));
+    }
+
+    @Test
+    public void testNameIsDroppedWithItsLastUse() throws SQLException {
+        execute("DELETE FROM songs WHERE title = 'A'");
+        registry.invalidate();
+        assertTrue("Name still used by the artists table should stay", registry.contains("Queen"));
+
+        execute("UPDATE albums SET artist = 'Blur' WHERE title = 'E'");
+        execute("DELETE FROM artists");
+        registry.invalidate();
+        assertFalse(registry.contains("Queen"));
+        assertFalse("Renamed artist should be gone", registry.contains("Muse"));
+        assertTrue(registry.contains("Blur"));
+    }
+
+    @Test
+    public void testRegisteredNamesAreServedWithoutReloading() throws SQLException {
+        assertFalse(registry.contains("Blur"));
+
+        execute("INSERT INTO songs (title, artist) VALUES ('F', 'Blur')");
+        registry.register("Blur");
+        execute("DROP TABLE artist_registry");
+
+        assertTrue("Registered name should be in memory", registry.contains("blur"));
+        assertTrue(registry.contains("Queen"));
+    }
+
+    @Test
+    public void testRenamesAndDeletesAreAppliedWithoutReloading() throws SQLException {
+        assertTrue(registry.contains("Muse"));
+
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("UPDATE albums SET artist = 'Blur' WHERE title = 'E'");
+            registry.rename(conn, "Muse", "Blur");
+            stmt.executeUpdate("DELETE FROM songs WHERE title = 'A'");
+            registry.unregister(conn, "Queen");
+            stmt.executeUpdate("DELETE FROM songs WHERE title = 'B'");
+            registry.unregister(conn, " Adele ");
+        }
+
+        assertFalse("Renamed artist should be gone", registry.contains("Muse"));
+        assertTrue(registry.contains("blur"));
+        assertTrue("Name still used by the artists table should stay", registry.contains("Queen"));
+        assertFalse("Name deleted with its last use should be gone", registry.contains("Adele"));
+    }
+
+    @Test
+    public void testOtherSpellingKeepsTheName() throws SQLException {
+        execute("INSERT INTO songs (title, artist) VALUES ('F', 'QUEEN')");
+        assertTrue(registry.contains("queen"));
+
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("DELETE FROM songs WHERE title = 'A'");
+            stmt.executeUpdate("DELETE FROM artists");
+            registry.unregister(conn, "Queen");
+        }
+
+        assertTrue("Name still used in another case should stay", registry.contains("Queen"));
+        assertTrue(registry.getNames().contains("QUEEN"));
+    }
+
+    @Test
+    public void testUnchangedNameIsNotLookedUp() throws SQLException {
+        assertTrue(registry.contains("Queen"));
+        execute("DROP TABLE artist_registry");
+
+        try (Connection conn = DriverManager.getConnection(url)) {
+            registry.rename(conn, "Queen", " Queen ");
+        }
+
+        assertTrue("Failed lookup would have dropped the index", registry.contains("Queen"));
+    }
+
+    @Test
+    public void testArtistCatalogueCountsSongsAndAlbums() throws SQLException {
+        execute("UPDATE songs SET duration = 200 WHERE title IN ('A', 'B')");
+        execute("INSERT INTO songs (title, artist, duration) VALUES ('F', 'Queen', 100)");
+
+        List<ArtistSummary> catalogue = new ArtistDAO().getArtistCatalogue(0, 0);
+
+        assertEquals("Artists should be in name order", Arrays.asList("Adele", "Muse", "Queen"),
+                catalogue.stream().map(ArtistSummary::getName).collect(Collectors.toList()));
+        ArtistSummary queen = catalogue.get(2);
+        assertEquals(2, queen.getSongCount());
+        assertEquals(0, queen.getAlbumCount());
+        assertEquals("Durations should be summed", 300, queen.getTotalDuration());
+        assertEquals("Album-only artist should be listed", 1, catalogue.get(1).getAlbumCount());
+
+        List<ArtistSummary> page = new ArtistDAO().getArtistCatalogue(1, 1);
+        assertEquals(1, page.size());
+        assertEquals("Muse", page.get(0).getName());
+    }
+
+    @Test
+    public void testUserCatalogueCountsOnlyTheUsersRows() throws SQLException {
+        execute("INSERT INTO songs (title, artist, duration, user_id) VALUES " +
+                "('F', 'Queen', 100, 7), ('G', ' Queen', 50, 7), ('H', 'Muse', 10, 8)");
+        execute("INSERT INTO albums (title, artist, user_id) VALUES ('I', 'Queen', 7), ('J', 'Queen', 8)");
+
+        List<ArtistSummary> catalogue = new ArtistDAO().getUserArtistCatalogue(7);
+
+        assertEquals("Only artists of the user's songs should be listed", 1, catalogue.size());
+        ArtistSummary queen = catalogue.get(0);
+        assertEquals("Queen", queen.getName());
+        assertEquals(2, queen.getSongCount());
+        assertEquals(1, queen.getAlbumCount());
+        assertEquals(150, queen.getTotalDuration());
+
+        assertEquals("Counts should cover every user", 3, new ArtistDAO().getArtistSongCount(" Queen "));
+        assertEquals(2, new ArtistDAO().getArtistAlbumCount("Queen"));
+        assertEquals(0, new ArtistDAO().getArtistAlbumCount("Blur"));
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate(sql);
+        }
+    }
+
+    private int count(String sql) throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.getInt(1);
+        }
+    }
+}
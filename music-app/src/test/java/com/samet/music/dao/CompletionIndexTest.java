@@ -0,0 +1,115 @@
+package com.samet.music.dao;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+
+import com.samet.music.dao.CompletionIndex.Field;
+import com.samet.music.util.DatabaseUtil;
+import com.samet.music.util.SchemaManager;
+
+/**
+ * Test class for CompletionIndex, loaded from a migrated temporary database
+ */
+public class CompletionIndexTest {
+
+    private File dbFile;
+    private String url;
+    private MockedStatic<DatabaseUtil> dbUtilMock;
+    private CompletionIndex index;
+
+    @Before
+    public void setUp() throws Exception {
+        dbFile = File.createTempFile("completion-test", ".db");
+        dbFile.deleteOnExit();
+        url = "jdbc:sqlite:" + dbFile.getAbsolutePath();
+        try (Connection conn = DriverManager.getConnection(url)) {
+            SchemaManager.migrate(conn);
+        }
+        execute("INSERT INTO songs (title, artist, album, genre) VALUES " +
+                "('One', 'Metallica', 'Justice', 'Metal'), ('Battery', 'Metallica', 'Master', 'Metal'), " +
+                "('Peace Sells', 'Megadeth', 'Peace Sells', 'Metal'), ('Run', 'metallica', 'Master', 'Rock')");
+        execute("INSERT INTO albums (title, artist, genre) VALUES ('Rust in Peace', 'Megadeth', 'Metal')");
+        execute("INSERT INTO artists (name, genre) VALUES ('Megadeth', 'Thrash'), ('Mercyful Fate', NULL)");
+
+        dbUtilMock = Mockito.mockStatic(DatabaseUtil.class);
+        dbUtilMock.when(DatabaseUtil::getConnection).thenAnswer(invocation -> DriverManager.getConnection(url));
+        index = new CompletionIndex();
+    }
+
+    @After
+    public void tearDown() {
+        dbUtilMock.close();
+        dbFile.delete();
+    }
+
+    @Test
+    public void testNamesAreRankedByUseAcrossTables() {
+        assertEquals("Songs, albums and artists should count, ties in alphabetical order",
+                Arrays.asList("Megadeth", "Metallica", "Mercyful Fate"), index.complete(Field.ARTIST, "me", 10));
+        assertEquals(Arrays.asList("Master"), index.complete(Field.ALBUM, "ma", 10));
+        assertEquals(Arrays.asList("Peace Sells"), index.complete(Field.ALBUM, "pea", 10));
+        assertEquals(Arrays.asList("Rust in Peace"), index.complete(Field.ALBUM, "r", 10));
+        assertEquals(Arrays.asList("Metal"), index.complete(Field.GENRE, "m", 1));
+        assertTrue(index.complete(Field.GENRE, "m", 0).isEmpty());
+    }
+
+    @Test
+    public void testInsertsAreCountedWithoutReloading() throws SQLException {
+        assertEquals(Arrays.asList("Megadeth"), index.complete(Field.ARTIST, "meg", 10));
+
+        // Written behind the index's back, so only a reload would see it
+        execute("INSERT INTO artists (name) VALUES ('Mercury Rev')");
+        index.register("Mercyful Fate", null, "Heavy Metal");
+        index.register("Mercyful Fate", null, null);
+        assertEquals(Arrays.asList("Mercyful Fate"), index.complete(Field.ARTIST, "merc", 10));
+        assertEquals(Arrays.asList("Heavy Metal"), index.complete(Field.GENRE, "he", 10));
+    }
+
+    @Test
+    public void testUpdatesAndDeletesMoveTheCounts() {
+        assertEquals(Arrays.asList("Megadeth", "Metallica", "Mercyful Fate"), index.complete(Field.ARTIST, "me", 10));
+        dbUtilMock.verify(DatabaseUtil::getConnection, Mockito.times(1));
+
+        index.update("Megadeth", "Peace Sells", "Metal", "Megalith", "Peace Sells", "Metal");
+        index.update("Megadeth", null, "Thrash", "Megalith", null, "Thrash");
+        index.unregister("Mercyful Fate", null, null);
+        index.unregister("Metallica", "Justice", "Metal");
+
+        assertEquals("Counts should move without a query",
+                Arrays.asList("Megalith", "Metallica", "Megadeth"), index.complete(Field.ARTIST, "me", 10));
+        assertTrue("Album with no uses left should be gone", index.complete(Field.ALBUM, "ju", 10).isEmpty());
+        assertEquals(Arrays.asList("Peace Sells"), index.complete(Field.ALBUM, "pea", 10));
+        assertEquals(Arrays.asList("Metal", "Rock", "Thrash"), index.complete(Field.GENRE, "", 10));
+        dbUtilMock.verify(DatabaseUtil::getConnection, Mockito.times(1));
+    }
+
+    @Test
+    public void testClearDropsTheNames() throws SQLException {
+        index.preload();
+        index.clear();
+        execute("INSERT INTO artists (name) VALUES ('Mercury Rev')");
+
+        index.unregister("Mercyful Fate", null, null);
+        assertEquals("Nothing loaded, so the names should be read again",
+                Arrays.asList("Mercury Rev", "Mercyful Fate"), index.complete(Field.ARTIST, "merc", 10));
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate(sql);
+        }
+    }
+}
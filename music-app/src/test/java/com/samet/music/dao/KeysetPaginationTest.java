@@ -0,0 +1,169 @@
+package com.samet.music.dao;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+
+import com.samet.music.model.Album;
+import com.samet.music.model.Playlist;
+import com.samet.music.model.Song;
+import com.samet.music.model.User;
+import com.samet.music.util.DatabaseUtil;
+import com.samet.music.util.SchemaManager;
+
+/**
+ * Test class for the keyset-paginated and streaming DAO methods against a migrated temporary database
+ */
+public class KeysetPaginationTest {
+
+    private File dbFile;
+    private String url;
+    private MockedStatic<DatabaseUtil> dbUtilMock;
+    private SongDAO songDAO;
+
+    @Before
+    public void setUp() throws Exception {
+        dbFile = File.createTempFile("paging-test", ".db");
+        dbFile.deleteOnExit();
+        url = "jdbc:sqlite:" + dbFile.getAbsolutePath();
+        try (Connection conn = DriverManager.getConnection(url)) {
+            SchemaManager.migrate(conn);
+        }
+        execute("INSERT INTO users (id, username, password) VALUES (1, 'a', 'p'), (2, 'b', 'p'), (5, 'c', 'p')");
+        execute("INSERT INTO songs (id, title, user_id) VALUES " +
+                "(1, 'S1', 1), (2, 'S2', 2), (4, 'S4', 1), (7, 'S7', 1), (9, 'S9', 2)");
+        execute("INSERT INTO albums (id, title, artist, user_id) VALUES (3, 'A3', 'X', 1), (8, 'A8', 'Y', 1)");
+        execute("INSERT INTO playlists (id, name, user_id) VALUES (2, 'P2', 1), (6, 'P6', 1)");
+        execute("INSERT INTO playlist_songs (playlist_id, song_id, position) VALUES (6, 7, 0), (6, 1, 1)");
+
+        dbUtilMock = Mockito.mockStatic(DatabaseUtil.class);
+        dbUtilMock.when(DatabaseUtil::getConnection).thenAnswer(invocation -> DriverManager.getConnection(url));
+        songDAO = new SongDAO();
+    }
+
+    @After
+    public void tearDown() {
+        dbUtilMock.close();
+        dbFile.delete();
+    }
+
+    @Test
+    public void testSongPagesFollowTheLastSeenId() {
+        assertEquals(Arrays.asList(1, 2), songIds(songDAO.findAllAfter(0, 2)));
+        assertEquals(Arrays.asList(4, 7), songIds(songDAO.findAllAfter(2, 2)));
+        assertEquals(Arrays.asList(9), songIds(songDAO.findAllAfter(7, 2)));
+        assertTrue(songDAO.findAllAfter(9, 2).isEmpty());
+        assertTrue("Page size should have to be positive", songDAO.findAllAfter(0, 0).isEmpty());
+
+        assertEquals(Arrays.asList(4, 7), songIds(songDAO.findByUserIdAfter(1, 1, 5)));
+        assertEquals(Arrays.asList(2, 9), songIds(songDAO.findByUserIdAfter(2, 0, 5)));
+    }
+
+    @Test
+    public void testSongStreamsAreReadLazily() {
+        try (Stream<Song> songs = songDAO.streamByUserId(1)) {
+            assertEquals(Arrays.asList(1, 4, 7), songIds(songs.collect(Collectors.toList())));
+        }
+
+        AtomicBoolean closed = new AtomicBoolean();
+        try (Stream<Song> songs = songDAO.streamAll().onClose(() -> closed.set(true))) {
+            Iterator<Song> it = songs.iterator();
+            assertEquals(1, it.next().getId());
+            assertEquals(2, it.next().getId());
+        }
+        assertTrue(closed.get());
+    }
+
+    @Test
+    public void testOtherEntitiesArePagedAndStreamed() throws SQLException {
+        AlbumDAO albumDAO = new AlbumDAO();
+        assertEquals(Arrays.asList(8), albumDAO.findAllAfter(3, 10).stream()
+                .map(Album::getId).collect(Collectors.toList()));
+        try (Stream<Album> albums = albumDAO.streamAll()) {
+            assertEquals(2, albums.count());
+        }
+
+        PlaylistDAO playlistDAO = new PlaylistDAO();
+        List<Playlist> playlists = playlistDAO.findAllAfter(2, 10);
+        assertEquals(1, playlists.size());
+        assertFalse("Page should hold headers only", playlists.get(0).isSongsLoaded());
+        assertEquals("Headers should carry their track count", 2, playlists.get(0).getSongCount());
+        assertEquals("Opening the playlist should read its songs", Arrays.asList(7, 1),
+                songIds(playlistDAO.findById(6).get().getSongs()));
+        try (Stream<Playlist> rows = playlistDAO.streamAll()) {
+            assertEquals(Arrays.asList("P2", "P6"), rows.map(Playlist::getName).collect(Collectors.toList()));
+        }
+
+        // The rows the library window's tables are filled with
+        try (Stream<String[]> rows = albumDAO.streamAllAlbums()) {
+            assertEquals(Arrays.asList("A3", "A8"), rows.map(row -> row[0]).collect(Collectors.toList()));
+        }
+        execute("INSERT INTO artists (id, name, country) VALUES (2, 'Z', 'TR'), (1, 'X', NULL)");
+        try (Stream<String[]> rows = new ArtistDAO().streamAllArtists()) {
+            assertEquals(Arrays.asList("X", "Z"), rows.map(row -> row[0]).collect(Collectors.toList()));
+        }
+        try (Stream<String[]> rows = playlistDAO.streamAllPlaylists()) {
+            assertEquals(Arrays.asList("0", "2"), rows.map(row -> row[1]).collect(Collectors.toList()));
+        }
+
+        UserDAO userDAO = new UserDAO();
+        assertEquals(Arrays.asList(2, 5), userDAO.findAllAfter(1, 10).stream()
+                .map(User::getId).collect(Collectors.toList()));
+        try (Stream<User> users = userDAO.streamAll()) {
+            assertEquals(Arrays.asList("a", "b", "c"), users.map(User::getUsername).collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void testSongWindowsAreSortedBySql() throws SQLException {
+        execute("UPDATE songs SET artist = 'b' WHERE id IN (1, 9)");
+        execute("UPDATE songs SET artist = 'A' WHERE id IN (4, 7)");
+        execute("UPDATE songs SET artist = 'C' WHERE id = 2");
+
+        assertEquals(5, songDAO.countSongs());
+        assertEquals("Case should be ignored, ties broken by id", Arrays.asList(4, 7, 1),
+                songIds(songDAO.findSongPage(0, 3, "artist", true)));
+        assertEquals(Arrays.asList(9, 2), songIds(songDAO.findSongPage(3, 3, "artist", true)));
+        assertEquals(Arrays.asList(2, 9, 1), songIds(songDAO.findSongPage(0, 3, "artist", false)));
+        assertEquals("Unknown columns should sort by id", Arrays.asList(9, 7),
+                songIds(songDAO.findSongPage(0, 2, "id; DROP TABLE songs", false)));
+        assertTrue(songDAO.findSongPage(0, 0, null, true).isEmpty());
+    }
+
+    @Test
+    public void testMissingConnectionGivesEmptyResults() {
+        dbUtilMock.when(DatabaseUtil::getConnection).thenReturn(null);
+
+        assertTrue(songDAO.findAllAfter(0, 10).isEmpty());
+        try (Stream<Song> songs = songDAO.streamAll()) {
+            assertEquals(0, songs.count());
+        }
+    }
+
+    private static List<Integer> songIds(List<Song> songs) {
+        return songs.stream().map(Song::getId).collect(Collectors.toList());
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate(sql);
+        }
+    }
+}
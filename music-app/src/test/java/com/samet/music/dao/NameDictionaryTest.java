@@ -0,0 +1,136 @@
+package com.samet.music.dao;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+
+import com.samet.music.model.Song;
+import com.samet.music.util.DatabaseUtil;
+import com.samet.music.util.SchemaManager;
+
+/**
+ * Test class for NameDictionary and the queries reading the integer name keys,
+ * against a migrated temporary database
+ */
+public class NameDictionaryTest {
+
+    private File dbFile;
+    private String url;
+    private MockedStatic<DatabaseUtil> dbUtilMock;
+    private NameDictionary names;
+
+    @Before
+    public void setUp() throws Exception {
+        dbFile = File.createTempFile("names-test", ".db");
+        dbFile.deleteOnExit();
+        url = "jdbc:sqlite:" + dbFile.getAbsolutePath();
+        try (Connection conn = DriverManager.getConnection(url)) {
+            SchemaManager.migrate(conn);
+        }
+        execute("INSERT INTO songs (title, artist, album, genre) VALUES " +
+                "('One', 'Metallica', 'Justice', 'Metal'), ('Two', ' Metallica', 'Load', 'Metal'), " +
+                "('Three', 'metallica', NULL, '')");
+
+        dbUtilMock = Mockito.mockStatic(DatabaseUtil.class);
+        dbUtilMock.when(DatabaseUtil::getConnection).thenAnswer(invocation -> DriverManager.getConnection(url));
+        names = new NameDictionary();
+        // Name keys cached from another test's database would not match this one
+        NameDictionary.getInstance().clear();
+    }
+
+    @After
+    public void tearDown() {
+        dbUtilMock.close();
+        dbFile.delete();
+    }
+
+    @Test
+    public void testKeysAreResolvedAsStored() throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url)) {
+            assertEquals("Known name should resolve to its key, trimmed",
+                    Integer.valueOf(key("genre_names", "Metal")), names.resolve(conn, NameDictionary.Kind.GENRE, " Metal "));
+            assertNull("Blank name should have no key", names.resolve(conn, NameDictionary.Kind.ALBUM, ""));
+            assertNotEquals("Case should be kept apart like the name columns",
+                    names.resolve(conn, NameDictionary.Kind.ARTIST, "Metallica"),
+                    names.resolve(conn, NameDictionary.Kind.ARTIST, "metallica"));
+        }
+    }
+
+    @Test
+    public void testKnownKeysAreCached() throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url)) {
+            Integer justice = names.resolve(conn, NameDictionary.Kind.ALBUM, "Justice");
+            execute("UPDATE album_names SET name = 'Garage' WHERE id = " + justice);
+
+            assertEquals(justice, names.resolve(conn, NameDictionary.Kind.ALBUM, "Justice"));
+            names.clear();
+            assertNotEquals("Cleared keys should be read again", justice, names.resolve(conn, NameDictionary.Kind.ALBUM, "Justice"));
+            assertEquals(justice.intValue(), key("album_names", "Garage"));
+        }
+    }
+
+    @Test
+    public void testSongsAreFoundByArtistKey() throws SQLException {
+        List<Song> songs = new SongDAO().findByArtist("Metallica ");
+        assertEquals("Surrounding spaces should be ignored, case should not", 2, songs.size());
+
+        execute("UPDATE songs SET artist = 'Metallica' WHERE title = 'Three'");
+        assertEquals("Renamed songs should follow their new key", 3, new SongDAO().findByArtist("Metallica").size());
+        assertTrue(new SongDAO().findByArtist("Megadeth").isEmpty());
+    }
+
+    @Test
+    public void testKeysAreResolvedForWrites() throws SQLException {
+        new SongDAO().addSong("So What", "Miles Davis", "Kind of Blue", " Jazz");
+        int jazz = key("genre_names", "Jazz");
+        assertTrue("Written names should be added to the dictionary", jazz > 0);
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT genre_id FROM songs WHERE title = 'So What'")) {
+            assertTrue(rs.next());
+            assertEquals("The DAO should write the key with the name", jazz, rs.getInt(1));
+        }
+
+        try (Connection conn = DriverManager.getConnection(url)) {
+            conn.setAutoCommit(false);
+            assertEquals(Integer.valueOf(jazz), names.resolve(conn, NameDictionary.Kind.GENRE, "Jazz"));
+            assertNotNull(names.resolve(conn, NameDictionary.Kind.GENRE, "Funk"));
+            assertNull(names.resolve(conn, NameDictionary.Kind.GENRE, " "));
+            conn.rollback();
+        }
+        try (Connection conn = DriverManager.getConnection(url)) {
+            Integer funk = names.resolve(conn, NameDictionary.Kind.GENRE, "Funk");
+            assertEquals("Rolled back names should not be cached", key("genre_names", "Funk"), funk.intValue());
+        }
+    }
+
+    private int key(String table, String name) throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url);
+             PreparedStatement pstmt = conn.prepareStatement("SELECT id FROM " + table + " WHERE name = ?")) {
+            pstmt.setString(1, name);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate(sql);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.samet.music.dao;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+
+import com.samet.music.util.DatabaseUtil;
+import com.samet.music.util.SchemaManager;
+
+/**
+ * Test class for PlayCountBuffer against a migrated temporary database
+ */
+public class PlayCountBufferTest {
+
+    private File dbFile;
+    private String url;
+    private MockedStatic<DatabaseUtil> dbUtilMock;
+    private PlayCountBuffer buffer;
+
+    @Before
+    public void setUp() throws Exception {
+        dbFile = File.createTempFile("plays-test", ".db");
+        dbFile.deleteOnExit();
+        url = "jdbc:sqlite:" + dbFile.getAbsolutePath();
+        try (Connection conn = DriverManager.getConnection(url)) {
+            SchemaManager.migrate(conn);
+        }
+
+        dbUtilMock = Mockito.mockStatic(DatabaseUtil.class);
+        dbUtilMock.when(DatabaseUtil::getConnection).thenAnswer(invocation -> DriverManager.getConnection(url));
+        buffer = new PlayCountBuffer(100, 60000);
+    }
+
+    @After
+    public void tearDown() {
+        buffer.close();
+        dbUtilMock.close();
+        dbFile.delete();
+    }
+
+    @Test
+    public void testPlaysAreCoalescedUntilFlushed() throws SQLException {
+        buffer.record(1, 10);
+        buffer.record(1, 10);
+        buffer.record(1, 10);
+        buffer.record(1, 11);
+
+        assertEquals("Repeated plays should share one pending pair", 2, buffer.getPendingCount());
+        assertEquals("Pending plays should be counted", 3, buffer.getPendingPlays(1, 10));
+        assertEquals("Nothing should be written before the flush", 0, storedPlayCount(1, 10));
+
+        assertTrue(buffer.flush());
+
+        assertEquals("Buffer should be empty after the flush", 0, buffer.getPendingCount());
+        assertEquals("Plays should be written as one increment", 3, storedPlayCount(1, 10));
+        assertEquals(1, storedPlayCount(1, 11));
+        assertEquals("Every play should be appended to the history", 4, count("SELECT COUNT(*) FROM play_events"));
+        assertEquals("Flush should bring the rollups up to date", 4,
+                count("SELECT SUM(plays) FROM play_rollup_day"));
+        assertEquals("History should keep the play time", 3,
+                count("SELECT COUNT(*) FROM play_events WHERE song_id = 10 AND played_at > 0"));
+    }
+
+    @Test
+    public void testFlushAddsToExistingCountsAndReportsFirstPlays() throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("INSERT INTO user_song_statistics (user_id, song_id, play_count, favorite) " +
+                    "VALUES (1, 10, 5, 0), (1, 12, 0, 1)");
+        }
+        final List<Integer> firstPlays = new ArrayList<>();
+        buffer.setFirstPlayListener((userId, songId) -> firstPlays.add(songId));
+
+        buffer.record(1, 10);
+        buffer.record(1, 11);
+        buffer.record(1, 12);
+        assertTrue(buffer.flush());
+
+        assertEquals("Buffered plays should add to the stored count", 6, storedPlayCount(1, 10));
+        firstPlays.sort(null);
+        assertEquals("Only songs never played before are first plays", Arrays.asList(11, 12), firstPlays);
+    }
+
+    @Test
+    public void testFailedFlushKeepsPlays() throws SQLException {
+        buffer.record(2, 20);
+        buffer.record(2, 20);
+        dbUtilMock.when(DatabaseUtil::getConnection).thenReturn(null);
+
+        assertFalse("Flush without a connection should fail", buffer.flush());
+        assertEquals("Plays should be kept for the next flush", 2, buffer.getPendingPlays(2, 20));
+
+        dbUtilMock.when(DatabaseUtil::getConnection).thenAnswer(invocation -> DriverManager.getConnection(url));
+        assertTrue(buffer.flush());
+        assertEquals(2, storedPlayCount(2, 20));
+    }
+
+    private int count(String sql) throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.getInt(1);
+        }
+    }
+
+    private int storedPlayCount(int userId, int songId) throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url);
+             PreparedStatement pstmt = conn.prepareStatement(
+                     "SELECT play_count FROM user_song_statistics WHERE user_id = ? AND song_id = ?")) {
+            pstmt.setInt(1, userId);
+            pstmt.setInt(2, songId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getInt("play_count") : 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.samet.music.dao;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+
+import com.samet.music.util.DatabaseUtil;
+import com.samet.music.util.SchemaManager;
+
+/**
+ * Test class for PlayRollupDAO against a migrated temporary database
+ */
+public class PlayRollupDAOTest {
+
+    // Monday 2024-03-04 09:00 UTC
+    private static final LocalDateTime MONDAY_MORNING = LocalDateTime.of(2024, 3, 4, 9, 0);
+    private static final long MONDAY = MONDAY_MORNING.toLocalDate().toEpochDay();
+
+    private File dbFile;
+    private String url;
+    private MockedStatic<DatabaseUtil> dbUtilMock;
+    private PlayRollupDAO playRollupDAO;
+
+    @Before
+    public void setUp() throws Exception {
+        dbFile = File.createTempFile("rollup-test", ".db");
+        dbFile.deleteOnExit();
+        url = "jdbc:sqlite:" + dbFile.getAbsolutePath();
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement()) {
+            SchemaManager.migrate(conn);
+            stmt.executeUpdate("INSERT INTO songs (id, title, genre) VALUES (1, 'A', 'Rock'), (2, 'B', '')");
+        }
+        addPlay(1, 1, MONDAY_MORNING);
+        addPlay(1, 1, MONDAY_MORNING.plusMinutes(5));
+        addPlay(1, 2, MONDAY_MORNING.plusDays(4).withHour(21));
+        addPlay(2, 1, MONDAY_MORNING);
+
+        dbUtilMock = Mockito.mockStatic(DatabaseUtil.class);
+        dbUtilMock.when(DatabaseUtil::getConnection).thenAnswer(invocation -> DriverManager.getConnection(url));
+        playRollupDAO = new PlayRollupDAO(ZoneOffset.UTC);
+    }
+
+    @After
+    public void tearDown() {
+        dbUtilMock.close();
+        dbFile.delete();
+    }
+
+    @Test
+    public void testCatchUpCountsEventsIntoEveryRollup() {
+        assertTrue(playRollupDAO.catchUp());
+
+        Map<Long, Integer> days = playRollupDAO.getDailyPlayCounts(1, MONDAY, MONDAY + 6);
+        assertEquals("Plays should be counted per day", Integer.valueOf(2), days.get(MONDAY));
+        assertEquals(Integer.valueOf(1), days.get(MONDAY + 4));
+        assertFalse("Days without plays should be omitted", days.containsKey(MONDAY + 1));
+
+        int[] hours = playRollupDAO.getHourOfDayPlayCounts(1);
+        assertEquals("Plays should be counted per hour", 2, hours[9]);
+        assertEquals(1, hours[21]);
+
+        int[] weekdays = playRollupDAO.getWeekdayPlayCounts(1);
+        assertEquals("Monday should be the first weekday", 2, weekdays[0]);
+        assertEquals("Friday should be the fifth weekday", 1, weekdays[4]);
+
+        Map<String, Integer> genres = playRollupDAO.getGenrePlayCounts(1, MONDAY, MONDAY + 6);
+        assertEquals("Most played genre should come first", "Rock", genres.keySet().iterator().next());
+        assertEquals("Songs without a genre should be grouped", Integer.valueOf(1), genres.get("Unknown"));
+        assertEquals("Other users' plays should not count", 2, playRollupDAO.getHourOfDayPlayCounts(1)[9]);
+    }
+
+    @Test
+    public void testCatchUpOnlyCountsNewEvents() throws SQLException {
+        assertTrue(playRollupDAO.catchUp());
+        assertTrue("Catching up twice should not count events again", playRollupDAO.catchUp());
+        assertEquals(2, playRollupDAO.getWeekdayPlayCounts(1)[0]);
+
+        addPlay(1, 1, MONDAY_MORNING.plusDays(7));
+        try (Connection conn = DriverManager.getConnection(url)) {
+            conn.setAutoCommit(false);
+            assertEquals("Only the new event should be read", 1, playRollupDAO.catchUp(conn));
+            conn.commit();
+        }
+        assertEquals("New event should add to the counters", 3, playRollupDAO.getWeekdayPlayCounts(1)[0]);
+    }
+
+    @Test
+    public void testRebuildRecountsFromHistory() throws SQLException {
+        assertTrue(playRollupDAO.catchUp());
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("UPDATE play_rollup_day SET plays = 100");
+        }
+
+        assertTrue(playRollupDAO.rebuild());
+
+        assertEquals("Rebuild should recount the history", Integer.valueOf(2),
+                playRollupDAO.getDailyPlayCounts(1, MONDAY, MONDAY).get(MONDAY));
+        assertEquals("Watermark should point at the last event", 4, count("SELECT last_event_id FROM play_rollup_state"));
+    }
+
+    @Test
+    public void testRebuildIfStaleOnlyCatchesUpConsistentRollups() throws SQLException {
+        assertTrue(playRollupDAO.catchUp());
+        addPlay(1, 1, MONDAY_MORNING.plusDays(7));
+
+        assertFalse("Consistent rollups should not be rebuilt", playRollupDAO.rebuildIfStale());
+        assertEquals("New event should still be counted", 3, playRollupDAO.getWeekdayPlayCounts(1)[0]);
+        assertEquals(5, count("SELECT last_event_id FROM play_rollup_state"));
+    }
+
+    @Test
+    public void testRebuildIfStaleRecountsMismatchedRollups() throws SQLException {
+        assertTrue(playRollupDAO.catchUp());
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("UPDATE play_rollup_day SET plays = 100");
+        }
+
+        assertTrue("Rollups not adding up to the events should be rebuilt", playRollupDAO.rebuildIfStale());
+        assertEquals(Integer.valueOf(2), playRollupDAO.getDailyPlayCounts(1, MONDAY, MONDAY).get(MONDAY));
+    }
+
+    @Test
+    public void testRebuildIfStaleRecountsWhenWatermarkIsPastTheEvents() throws SQLException {
+        assertTrue(playRollupDAO.catchUp());
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("UPDATE play_rollup_state SET last_event_id = 40");
+        }
+
+        assertTrue("A watermark past the last event should trigger a rebuild", playRollupDAO.rebuildIfStale());
+        assertEquals("Watermark should point at the last event", 4, count("SELECT last_event_id FROM play_rollup_state"));
+    }
+
+    private void addPlay(int userId, int songId, LocalDateTime time) throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("INSERT INTO play_events (user_id, song_id, played_at) VALUES (" +
+                    userId + ", " + songId + ", " + time.toEpochSecond(ZoneOffset.UTC) + ")");
+        }
+    }
+
+    private int count(String sql) throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.getInt(1);
+        }
+    }
+}
@@ -163,7 +163,8 @@ public class PlaylistDAOMockTest {
             
             // Verify
             assertTrue("Should return true for valid input", result);
-            verify(mockPreparedStatement).setString(1, "Test Playlist");
+            // Once to find the playlists' ids, once to delete them
+            verify(mockPreparedStatement, times(2)).setString(1, "Test Playlist");
             verify(mockPreparedStatement).executeUpdate();
             verify(mockConn).commit();
         }
@@ -353,8 +354,9 @@ public class PlaylistDAOMockTest {
             assertEquals("Should return 1 result", 1, result.size());
             assertEquals("Should have name 'Test Playlist'", "Test Playlist", result.get(0).getName());
             
-            // The method is called twice - once in findByUserId and once in getSongsByPlaylistId
-            verify(mockPreparedStatement, times(2)).setInt(1, 1);
+            // Headers only: the songs are not read until the playlist is opened
+            verify(mockPreparedStatement, times(1)).setInt(1, 1);
+            assertFalse(result.get(0).isSongsLoaded());
         }
     }
     
@@ -511,9 +513,9 @@ public class PlaylistDAOMockTest {
             
             // Verify
             assertTrue("Should return true for successful addition", result);
-            verify(mockPreparedStatement).setInt(1, 1); // playlist_id
+            verify(mockPreparedStatement, atLeastOnce()).setInt(1, 1); // playlist_id, also used to find the last position
             verify(mockPreparedStatement).setInt(2, 1); // song_id
-            verify(mockPreparedStatement).setInt(3, 0); // position
+            verify(mockPreparedStatement).setLong(3, PlaylistDAO.POSITION_GAP); // first position of an empty playlist
             verify(mockPreparedStatement).addBatch();
             verify(mockPreparedStatement).executeBatch();
             verify(mockConn).commit();
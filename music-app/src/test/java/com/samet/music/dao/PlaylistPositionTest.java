@@ -0,0 +1,250 @@
+package com.samet.music.dao;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+
+import com.samet.music.model.PlaylistAddResult;
+import com.samet.music.model.PlaylistAddResult.Outcome;
+import com.samet.music.model.Song;
+import com.samet.music.util.DatabaseUtil;
+import com.samet.music.util.SchemaManager;
+
+/**
+ * Test class for the gap-based song positions and bulk appends of PlaylistDAO,
+ * against a migrated temporary database
+ */
+public class PlaylistPositionTest {
+
+    private static final int PLAYLIST = 1;
+
+    private File dbFile;
+    private String url;
+    private MockedStatic<DatabaseUtil> dbUtilMock;
+    private PlaylistDAO playlistDAO;
+
+    @Before
+    public void setUp() throws Exception {
+        dbFile = File.createTempFile("positions-test", ".db");
+        dbFile.deleteOnExit();
+        url = "jdbc:sqlite:" + dbFile.getAbsolutePath();
+        try (Connection conn = DriverManager.getConnection(url)) {
+            SchemaManager.migrate(conn);
+        }
+        execute("INSERT INTO playlists (id, name, user_id) VALUES (" + PLAYLIST + ", 'Mix', 7)");
+        execute("INSERT INTO songs (id, title) VALUES (1, 'A'), (2, 'B'), (3, 'C'), (4, 'D'), (5, 'E')");
+
+        dbUtilMock = Mockito.mockStatic(DatabaseUtil.class);
+        dbUtilMock.when(DatabaseUtil::getConnection).thenAnswer(invocation -> DriverManager.getConnection(url));
+        playlistDAO = new PlaylistDAO(new SongDAO());
+    }
+
+    @After
+    public void tearDown() {
+        dbUtilMock.close();
+        dbFile.delete();
+    }
+
+    @Test
+    public void testAddedSongsAreAppendedWithGaps() throws SQLException {
+        assertTrue(playlistDAO.addSongsToPlaylist(PLAYLIST, songs(1, 2)));
+        assertTrue(playlistDAO.addSongsToPlaylist(PLAYLIST, songs(3)));
+
+        assertEquals("Later adds should go after the songs already there", Arrays.asList(1, 2, 3), order());
+        assertEquals(Arrays.asList(PlaylistDAO.POSITION_GAP, 2 * PlaylistDAO.POSITION_GAP, 3 * PlaylistDAO.POSITION_GAP),
+                positions());
+    }
+
+    @Test
+    public void testInsertMoveAndRemoveWriteOneRow() throws SQLException {
+        playlistDAO.addSongsToPlaylist(PLAYLIST, songs(1, 2, 3));
+        List<Long> before = positions();
+
+        assertTrue(playlistDAO.insertSongAt(PLAYLIST, 4, 1));
+        assertEquals(Arrays.asList(1, 4, 2, 3), order());
+        assertTrue(playlistDAO.insertSongAt(PLAYLIST, 5, 0));
+        assertEquals(Arrays.asList(5, 1, 4, 2, 3), order());
+        assertFalse("A song should be in a playlist once", playlistDAO.insertSongAt(PLAYLIST, 5, 3));
+
+        assertTrue(playlistDAO.moveSong(PLAYLIST, 1, 99));
+        assertEquals(Arrays.asList(5, 4, 2, 3, 1), order());
+        assertTrue(playlistDAO.moveSong(PLAYLIST, 3, 1));
+        assertEquals(Arrays.asList(5, 3, 4, 2, 1), order());
+        assertFalse("Songs not in the playlist cannot be moved", playlistDAO.moveSong(PLAYLIST, 99, 0));
+
+        assertTrue(playlistDAO.removeSong(PLAYLIST, 4));
+        assertFalse(playlistDAO.removeSong(PLAYLIST, 4));
+        assertEquals(Arrays.asList(5, 3, 2, 1), order());
+        assertEquals("Untouched songs should keep their positions", before.get(1), position(2));
+    }
+
+    @Test
+    public void testPlaylistIsRenumberedWhenAGapCloses() throws SQLException {
+        // Positions as written before they were spaced out, including a tie
+        execute("INSERT INTO playlist_songs (playlist_id, song_id, position) VALUES (1, 1, 0), (1, 2, 1), (1, 3, 1)");
+        assertEquals(Arrays.asList(1, 2, 3), order());
+
+        assertTrue(playlistDAO.insertSongAt(PLAYLIST, 4, 1));
+        assertEquals(Arrays.asList(1, 4, 2, 3), order());
+        assertEquals("Renumbering should space every song out",
+                4, new HashSet<>(positions()).size());
+
+        assertEquals(4, playlistDAO.rebalance(PLAYLIST));
+        assertEquals(Arrays.asList(PlaylistDAO.POSITION_GAP, 2 * PlaylistDAO.POSITION_GAP,
+                3 * PlaylistDAO.POSITION_GAP, 4 * PlaylistDAO.POSITION_GAP), positions());
+    }
+
+    @Test
+    public void testOnlyCrowdedPlaylistsAreRebalanced() throws SQLException {
+        execute("INSERT INTO playlists (id, name, user_id) VALUES (2, 'Spaced', 7)");
+        execute("INSERT INTO playlist_songs (playlist_id, song_id, position) VALUES " +
+                "(1, 1, 5), (1, 2, 6), (1, 3, 2000), (2, 1, 1024), (2, 2, 3000)");
+
+        assertEquals("Only the playlist with songs close together should be renumbered",
+                1, playlistDAO.rebalanceCrowded());
+        assertEquals(Arrays.asList(1, 2, 3), order());
+        assertEquals(Arrays.asList(PlaylistDAO.POSITION_GAP, 2 * PlaylistDAO.POSITION_GAP,
+                3 * PlaylistDAO.POSITION_GAP), positions());
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT position FROM playlist_songs WHERE playlist_id = 2 AND song_id = 2")) {
+            assertEquals("Other playlists should keep their positions", 3000, rs.getLong(1));
+        }
+        assertEquals("Nothing should be left to renumber", 0, playlistDAO.rebalanceCrowded());
+    }
+
+    @Test
+    public void testSongsAreStreamedInPlaylistOrder() throws SQLException {
+        execute("INSERT INTO playlist_songs (playlist_id, song_id, position) VALUES (1, 3, 0), (1, 1, 1), (1, 2, 1)");
+
+        List<Integer> streamed = new ArrayList<>();
+        try (Stream<Song> songs = playlistDAO.streamSongs(PLAYLIST)) {
+            songs.forEach(song -> streamed.add(song.getId()));
+        }
+        assertEquals(Arrays.asList(3, 1, 2), streamed);
+        assertEquals(order(), streamed);
+    }
+
+    @Test
+    public void testSongsAreAppendedInBulk() throws SQLException {
+        playlistDAO.addSongsToPlaylist(PLAYLIST, songs(2));
+
+        PlaylistAddResult result = playlistDAO.appendSongs(PLAYLIST, Arrays.asList(3, 2, 99, 1, 3, null));
+
+        assertEquals("Every requested song should have one outcome, in request order",
+                Arrays.asList(3, 2, 99, 1), new ArrayList<>(result.getOutcomes().keySet()));
+        assertEquals(Outcome.ALREADY_IN_PLAYLIST, result.getOutcome(2));
+        assertEquals(Outcome.SONG_NOT_FOUND, result.getOutcome(99));
+        assertEquals(Arrays.asList(3, 1), result.getSongIds(Outcome.ADDED));
+        assertEquals("New songs should go after the old ones, in request order", Arrays.asList(2, 3, 1), order());
+        assertTrue(playlistDAO.appendSongs(PLAYLIST, new ArrayList<>()).getOutcomes().isEmpty());
+    }
+
+    @Test
+    public void testBulkAppendSpansSeveralStatements() throws SQLException {
+        List<Integer> songIds = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("INSERT INTO songs (id, title) VALUES (100, 'S')");
+        songIds.add(100);
+        for (int id = 101; id < 100 + PlaylistDAO.INSERT_CHUNK_SIZE * 2 + 5; id++) {
+            sql.append(", (").append(id).append(", 'S')");
+            songIds.add(id);
+        }
+        execute(sql.toString());
+
+        assertEquals(songIds.size(), playlistDAO.appendSongs(PLAYLIST, songIds).getAddedCount());
+        assertEquals(songIds, order());
+        assertEquals("Positions should stay spaced across chunks", songIds.size(), new HashSet<>(positions()).size());
+    }
+
+    @Test
+    public void testFailedAppendAddsNothing() throws SQLException {
+        // Writes to the playlist fail, so the whole append has to be rolled back
+        execute("CREATE TRIGGER fail_third BEFORE INSERT ON playlist_songs WHEN NEW.song_id = 3 " +
+                "BEGIN SELECT RAISE(ABORT, 'full'); END");
+
+        PlaylistAddResult result = playlistDAO.appendSongs(PLAYLIST, Arrays.asList(1, 2, 3));
+        assertEquals(Arrays.asList(1, 2, 3), result.getSongIds(Outcome.FAILED));
+        assertTrue(order().isEmpty());
+    }
+
+    @Test
+    public void testOwnerIsReadWithoutSongs() {
+        assertEquals(7, playlistDAO.getOwnerId(PLAYLIST));
+        assertEquals("Unknown playlists should have no owner", 0, playlistDAO.getOwnerId(42));
+    }
+
+    @Test
+    public void testPositionBetweenNeighbours() {
+        assertEquals(Long.valueOf(PlaylistDAO.POSITION_GAP), PlaylistDAO.positionBetween(null, null));
+        assertEquals(Long.valueOf(0), PlaylistDAO.positionBetween(null, PlaylistDAO.POSITION_GAP));
+        assertEquals(Long.valueOf(2048), PlaylistDAO.positionBetween(1024L, null));
+        assertEquals(Long.valueOf(1536), PlaylistDAO.positionBetween(1024L, 2048L));
+        assertNull(PlaylistDAO.positionBetween(5L, 6L));
+    }
+
+    private static List<Song> songs(int... ids) {
+        List<Song> songs = new ArrayList<>();
+        for (int id : ids) {
+            Song song = new Song();
+            song.setId(id);
+            songs.add(song);
+        }
+        return songs;
+    }
+
+    private List<Integer> order() throws SQLException {
+        List<Integer> songIds = new ArrayList<>();
+        for (Object value : column("song_id")) {
+            songIds.add(((Number) value).intValue());
+        }
+        return songIds;
+    }
+
+    private List<Long> positions() throws SQLException {
+        List<Long> positions = new ArrayList<>();
+        for (Object value : column("position")) {
+            positions.add(((Number) value).longValue());
+        }
+        return positions;
+    }
+
+    private Long position(int songId) throws SQLException {
+        return positions().get(order().indexOf(songId));
+    }
+
+    private List<Object> column(String name) throws SQLException {
+        List<Object> values = new ArrayList<>();
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT " + name + " FROM playlist_songs " +
+                     "WHERE playlist_id = " + PLAYLIST + " ORDER BY position, rowid")) {
+            while (rs.next()) {
+                values.add(rs.getObject(1));
+            }
+        }
+        return values;
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate(sql);
+        }
+    }
+}
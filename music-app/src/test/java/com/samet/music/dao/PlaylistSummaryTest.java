@@ -0,0 +1,126 @@
+package com.samet.music.dao;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+
+import com.samet.music.model.Playlist;
+import com.samet.music.util.DatabaseUtil;
+import com.samet.music.util.SchemaManager;
+
+/**
+ * Test class for the track counts and durations stored on playlists, the triggers
+ * keeping them up to date and the header-only playlist reads,
+ * against a migrated temporary database
+ */
+public class PlaylistSummaryTest {
+
+    private File dbFile;
+    private String url;
+    private MockedStatic<DatabaseUtil> dbUtilMock;
+    private PlaylistDAO playlistDAO;
+
+    @Before
+    public void setUp() throws Exception {
+        dbFile = File.createTempFile("summary-test", ".db");
+        dbFile.deleteOnExit();
+        url = "jdbc:sqlite:" + dbFile.getAbsolutePath();
+        try (Connection conn = DriverManager.getConnection(url)) {
+            SchemaManager.migrate(conn);
+        }
+        execute("INSERT INTO playlists (id, name, user_id) VALUES (1, 'Mix', 7), (2, 'Empty', 7)");
+        execute("INSERT INTO songs (id, title, duration) VALUES (1, 'A', 100), (2, 'B', 200), (3, 'C', NULL)");
+
+        dbUtilMock = Mockito.mockStatic(DatabaseUtil.class);
+        dbUtilMock.when(DatabaseUtil::getConnection).thenAnswer(invocation -> DriverManager.getConnection(url));
+        playlistDAO = new PlaylistDAO(new SongDAO());
+    }
+
+    @After
+    public void tearDown() {
+        dbUtilMock.close();
+        dbFile.delete();
+    }
+
+    @Test
+    public void testTotalsFollowMemberships() throws SQLException {
+        playlistDAO.appendSongs(1, Arrays.asList(1, 2, 3, 99));
+        assertTotals(1, 3, 300);
+
+        playlistDAO.removeSong(1, 2);
+        assertTotals(1, 2, 100);
+        playlistDAO.moveSong(1, 1, 5);
+        assertTotals(1, 2, 100);
+
+        execute("UPDATE playlist_songs SET playlist_id = 2 WHERE song_id = 1");
+        assertTotals(1, 1, 0);
+        assertTotals(2, 1, 100);
+    }
+
+    @Test
+    public void testTotalsFollowSongs() throws SQLException {
+        playlistDAO.appendSongs(1, Arrays.asList(1, 2));
+        playlistDAO.appendSongs(2, Arrays.asList(2));
+
+        execute("UPDATE songs SET duration = 250 WHERE id = 2");
+        assertTotals(1, 2, 350);
+        assertTotals(2, 1, 250);
+
+        execute("DELETE FROM songs WHERE id = 2");
+        assertTotals(1, 1, 100);
+        assertTotals(2, 0, 0);
+        // The membership left behind was already taken off
+        execute("DELETE FROM playlist_songs WHERE song_id = 2");
+        assertTotals(1, 1, 100);
+    }
+
+    @Test
+    public void testPlaylistsAreListedAsHeaders() throws SQLException {
+        playlistDAO.appendSongs(1, Arrays.asList(1, 2));
+
+        List<Playlist> playlists = playlistDAO.findByUserId(7);
+        Playlist mix = playlists.stream().filter(p -> p.getId() == 1).findFirst().get();
+        assertFalse("Listing should not read songs", mix.isSongsLoaded());
+        assertEquals(2, mix.getSongCount());
+        assertEquals(300, mix.getTotalDuration());
+        assertEquals("2", playlistDAO.getAllPlaylists().get(0)[1]);
+
+        // Saving a header must not drop the songs it never read
+        mix.setDescription("Renamed");
+        assertTrue(playlistDAO.update(mix));
+        Playlist opened = playlistDAO.findById(1).get();
+        assertTrue(opened.isSongsLoaded());
+        assertEquals(2, opened.getSongs().size());
+        assertEquals("Renamed", opened.getDescription());
+    }
+
+    private void assertTotals(int playlistId, int trackCount, int totalDuration) throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT track_count, total_duration FROM playlists WHERE id = " + playlistId)) {
+            assertTrue(rs.next());
+            assertEquals("Track count of playlist " + playlistId, trackCount, rs.getInt(1));
+            assertEquals("Total duration of playlist " + playlistId, totalDuration, rs.getInt(2));
+        }
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate(sql);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.samet.music.dao;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+/**
+ * Test class for PrefixTrie
+ */
+public class PrefixTrieTest {
+
+    @Test
+    public void testMostUsedValuesComeFirst() {
+        PrefixTrie trie = new PrefixTrie(10);
+        trie.add("Metallica", 5);
+        trie.add("Metal Church", 2);
+        trie.add("Megadeth", 3);
+        trie.add("Madonna", 9);
+
+        assertEquals(Arrays.asList("Metallica", "Megadeth", "Metal Church"), trie.complete("me", 10));
+        assertEquals(Arrays.asList("Metallica", "Metal Church"), trie.complete("METAL", 10));
+        assertEquals(Collections.singletonList("Madonna"), trie.complete("", 1));
+        assertTrue(trie.complete("x", 10).isEmpty());
+        assertEquals(4, trie.size());
+    }
+
+    @Test
+    public void testCountsGrowAndCaseVariantsMerge() {
+        PrefixTrie trie = new PrefixTrie(10);
+        trie.add("Rock", 1);
+        trie.add("Rap", 2);
+        trie.add(" rock ", 2);
+        trie.add("  ", 5);
+        trie.add(null, 5);
+
+        assertEquals("Folded names should share one count", Arrays.asList("Rock", "Rap"), trie.complete("r", 10));
+        assertEquals(2, trie.size());
+    }
+
+    @Test
+    public void testOnlyTheBestValuesAreKeptPerPrefix() {
+        PrefixTrie trie = new PrefixTrie(2);
+        trie.add("Abba", 1);
+        trie.add("Adele", 2);
+        trie.add("Aerosmith", 3);
+        assertEquals(Arrays.asList("Aerosmith", "Adele"), trie.complete("a", 10));
+
+        trie.add("Abba", 5);
+        assertEquals("A value should move up as it is used", Arrays.asList("Abba", "Aerosmith"), trie.complete("a", 10));
+        assertEquals("Ties should be alphabetical", Arrays.asList("Adele"), trie.complete("ad", 10));
+    }
+
+    @Test
+    public void testRemovedUsesBringBackTheNextBest() {
+        PrefixTrie trie = new PrefixTrie(2);
+        trie.add("Abba", 3);
+        trie.add("Adele", 2);
+        trie.add("Aerosmith", 1);
+        assertEquals(Arrays.asList("Abba", "Adele"), trie.complete("a", 10));
+
+        trie.remove("ABBA", 2);
+        assertEquals(Arrays.asList("Adele", "Abba"), trie.complete("a", 10));
+
+        trie.remove("Adele", 2);
+        trie.remove("Abba", 5);
+        trie.remove("Blur", 1);
+        trie.remove(null, 1);
+        assertEquals("Value left out of the cache should come back", Arrays.asList("Aerosmith"), trie.complete("a", 10));
+        assertTrue(trie.complete("ab", 10).isEmpty());
+        assertEquals(1, trie.size());
+
+        trie.add("Abc", 1);
+        assertEquals(Arrays.asList("Abc", "Aerosmith"), trie.complete("a", 10));
+    }
+}
@@ -0,0 +1,222 @@
+package com.samet.music.dao;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+
+import com.samet.music.model.Playlist;
+import com.samet.music.model.Song;
+import com.samet.music.util.DatabaseUtil;
+import com.samet.music.util.SchemaManager;
+
+/**
+ * Test class for smart playlists and the triggers keeping their songs matching,
+ * against a migrated temporary database
+ */
+public class SmartPlaylistTest {
+
+    private File dbFile;
+    private String url;
+    private MockedStatic<DatabaseUtil> dbUtilMock;
+    private SongDAO songDAO;
+    private PlaylistDAO playlistDAO;
+    private SmartPlaylistDAO smartPlaylistDAO;
+
+    @Before
+    public void setUp() throws Exception {
+        dbFile = File.createTempFile("smart-test", ".db");
+        dbFile.deleteOnExit();
+        url = "jdbc:sqlite:" + dbFile.getAbsolutePath();
+        try (Connection conn = DriverManager.getConnection(url)) {
+            SchemaManager.migrate(conn);
+        }
+        execute("INSERT INTO songs (id, title, artist, genre, year, duration, user_id) VALUES " +
+                "(1, 'Old Rock', 'A', 'Rock', 1990, 100, 7), " +
+                "(2, 'New Rock', 'B', 'rock', 2005, 200, 7), " +
+                "(3, 'New Pop', 'C', 'Pop', 2010, 300, 7)");
+
+        dbUtilMock = Mockito.mockStatic(DatabaseUtil.class);
+        dbUtilMock.when(DatabaseUtil::getConnection).thenAnswer(invocation -> DriverManager.getConnection(url));
+        // Name keys cached from another test's database would not match this one
+        NameDictionary.getInstance().clear();
+        songDAO = new SongDAO();
+        playlistDAO = new PlaylistDAO(songDAO);
+        smartPlaylistDAO = new SmartPlaylistDAO(playlistDAO);
+    }
+
+    @After
+    public void tearDown() {
+        dbUtilMock.close();
+        dbFile.delete();
+    }
+
+    @Test
+    public void testCreateFillsPlaylistWithMatches() {
+        Playlist playlist = smartPlaylistDAO.create(new Playlist("Modern rock", null, 7),
+                SmartRule.parse("genre = Rock AND year >= 2000"));
+
+        assertNotNull(playlist);
+        assertTrue(playlist.isSmart());
+        assertEquals("genre = 'Rock' AND year >= 2000", playlist.getRule());
+        assertEquals(Arrays.asList(2), songIds(playlist));
+        assertEquals("genre = 'Rock' AND year >= 2000",
+                smartPlaylistDAO.getRule(playlist.getId()).get().toString());
+    }
+
+    @Test
+    public void testSongWritesUpdateMatches() throws SQLException {
+        int id = smartPlaylistDAO.create(new Playlist("Modern rock", null, 7),
+                SmartRule.parse("genre = Rock AND year >= 2000")).getId();
+
+        execute("INSERT INTO songs (id, title, artist, genre, year, duration, user_id) VALUES (4, 'Newer Rock', 'D', 'Rock', 2020, 50, 7)");
+        assertEquals(Arrays.asList(2, 4), songIds(id));
+
+        execute("UPDATE songs SET year = 2001 WHERE id = 1");
+        assertEquals("New matches are appended", Arrays.asList(2, 4, 1), songIds(id));
+
+        Song song = songDAO.findById(4).get();
+        song.setGenre("Jazz");
+        assertTrue(songDAO.update(song));
+        assertEquals(Arrays.asList(2, 1), songIds(id));
+
+        // Still matching keeps its place
+        execute("UPDATE songs SET title = 'Renamed' WHERE id = 2");
+        assertEquals(Arrays.asList(2, 1), songIds(id));
+
+        assertTrue(songDAO.delete(2));
+        assertEquals(Arrays.asList(1), songIds(id));
+        assertTotals(id, 1, 100);
+    }
+
+    @Test
+    public void testPlaysUpdateMatchesOfTheOwnerOnly() throws SQLException {
+        int id = smartPlaylistDAO.create(new Playlist("Played", null, 7),
+                SmartRule.parse("play_count >= 2")).getId();
+        assertTrue(songIds(id).isEmpty());
+
+        PlayCountBuffer buffer = new PlayCountBuffer(100, 60000);
+        try {
+            buffer.record(7, 3);
+            buffer.record(8, 1);
+            buffer.record(8, 1);
+            assertTrue(buffer.flush());
+            assertTrue(songIds(id).isEmpty());
+
+            buffer.record(7, 3);
+            assertTrue(buffer.flush());
+            assertEquals(Arrays.asList(3), songIds(id));
+            assertTotals(id, 1, 300);
+        } finally {
+            buffer.close();
+        }
+
+        execute("UPDATE user_song_statistics SET play_count = 0 WHERE user_id = 7");
+        assertTrue(songIds(id).isEmpty());
+    }
+
+    @Test
+    public void testChangingAndClearingTheRule() throws SQLException {
+        int id = smartPlaylistDAO.create(new Playlist("Rules", null, 7),
+                SmartRule.parse("genre = Pop")).getId();
+        assertEquals(Arrays.asList(3), songIds(id));
+
+        assertTrue(smartPlaylistDAO.setRule(id, SmartRule.parse("title contains rock")));
+        assertEquals(Arrays.asList(1, 2), songIds(id));
+        assertTotals(id, 2, 300);
+
+        assertTrue(smartPlaylistDAO.setRule(id, null));
+        assertFalse(smartPlaylistDAO.getRule(id).isPresent());
+        execute("UPDATE songs SET genre = 'Jazz', title = 'Jazz' WHERE id = 1");
+        assertEquals("A regular playlist keeps its songs", Arrays.asList(1, 2), songIds(id));
+
+        assertFalse(smartPlaylistDAO.setRule(999, SmartRule.parse("genre = Pop")));
+    }
+
+    @Test
+    public void testDeletingPlaylistDropsItsTriggers() throws SQLException {
+        int id = smartPlaylistDAO.create(new Playlist("Gone", null, 7),
+                SmartRule.parse("play_count > 0 AND genre = Pop")).getId();
+        assertEquals(4, count("SELECT COUNT(*) FROM sqlite_master WHERE type = 'trigger' AND name LIKE 'trg_smart_%'"));
+
+        assertTrue(playlistDAO.delete(id));
+        assertEquals(0, count("SELECT COUNT(*) FROM sqlite_master WHERE type = 'trigger' AND name LIKE 'trg_smart_%'"));
+        execute("INSERT INTO songs (id, title, genre, user_id) VALUES (4, 'Another Pop', 'Pop', 7)");
+        assertEquals(0, count("SELECT COUNT(*) FROM playlist_songs"));
+    }
+
+    @Test
+    public void testOnlyTheOwnersSongsMatch() throws SQLException {
+        // Another user's copy of a matching song, and one of the owner's songs later given away
+        execute("INSERT INTO songs (id, title, genre, year, user_id) VALUES (10, 'New Rock', 'Rock', 2005, 8)");
+        int id = smartPlaylistDAO.create(new Playlist("Modern rock", null, 7),
+                SmartRule.parse("genre = Rock AND year >= 2000")).getId();
+        assertEquals(Arrays.asList(2), songIds(id));
+
+        execute("INSERT INTO songs (id, title, genre, year, user_id) VALUES (11, 'Newer Rock', 'Rock', 2020, 8)");
+        execute("UPDATE songs SET year = 2021 WHERE id = 10");
+        assertEquals(Arrays.asList(2), songIds(id));
+
+        execute("UPDATE songs SET user_id = 8 WHERE id = 2");
+        assertTrue(songIds(id).isEmpty());
+        execute("UPDATE songs SET user_id = 7 WHERE id = 11");
+        assertEquals(Arrays.asList(11), songIds(id));
+    }
+
+    @Test
+    public void testDeletingByNameDropsTriggers() throws SQLException {
+        int id = smartPlaylistDAO.create(new Playlist("Gone", null, 7), SmartRule.parse("genre = Pop")).getId();
+
+        assertTrue(playlistDAO.deletePlaylist("Gone"));
+        assertEquals(0, count("SELECT COUNT(*) FROM sqlite_master WHERE type = 'trigger' AND name LIKE 'trg_smart_%'"));
+        assertEquals(0, count("SELECT COUNT(*) FROM playlist_songs WHERE playlist_id = " + id));
+        execute("INSERT INTO songs (id, title, genre, user_id) VALUES (4, 'Another Pop', 'Pop', 7)");
+        assertEquals(0, count("SELECT COUNT(*) FROM playlist_songs"));
+    }
+
+    private List<Integer> songIds(int playlistId) {
+        return songIds(playlistDAO.findById(playlistId).get());
+    }
+
+    private static List<Integer> songIds(Playlist playlist) {
+        List<Integer> ids = new ArrayList<>();
+        for (Song song : playlist.getSongs()) {
+            ids.add(song.getId());
+        }
+        return ids;
+    }
+
+    private void assertTotals(int playlistId, int trackCount, int totalDuration) throws SQLException {
+        assertEquals(trackCount, count("SELECT track_count FROM playlists WHERE id = " + playlistId));
+        assertEquals(totalDuration, count("SELECT total_duration FROM playlists WHERE id = " + playlistId));
+    }
+
+    private int count(String sql) throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            assertTrue(rs.next());
+            return rs.getInt(1);
+        }
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate(sql);
+        }
+    }
+}
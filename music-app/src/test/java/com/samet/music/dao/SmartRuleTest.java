@@ -0,0 +1,51 @@
+package com.samet.music.dao;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Test class for SmartRule parsing and its canonical form
+ */
+public class SmartRuleTest {
+
+    @Test
+    public void testRuleIsParsedToCanonicalForm() {
+        SmartRule rule = SmartRule.parse("genre = Rock and YEAR>=2000 AND play_count > 5");
+        assertEquals("genre = 'Rock' AND year >= 2000 AND play_count > 5", rule.toString());
+        assertTrue(rule.usesStatistics());
+        assertEquals(rule.toString(), SmartRule.parse(rule.toString()).toString());
+    }
+
+    @Test
+    public void testQuotedValues() {
+        SmartRule rule = SmartRule.parse("artist = \"Led Zeppelin\" AND title contains 'Rock ''n'' Roll'");
+        assertEquals("artist = 'Led Zeppelin' AND title contains 'Rock ''n'' Roll'", rule.toString());
+        assertFalse(rule.usesStatistics());
+        assertEquals("favorite = 1", SmartRule.parse("favorite = true").toString());
+        assertEquals("year != 1999", SmartRule.parse("year <> 1999").toString());
+    }
+
+    @Test
+    public void testValuesAreInlinedSafely() {
+        String sql = SmartRule.parse("album = 'x'' OR 1=1 --'").toSql();
+        assertEquals("COALESCE(s.album, '') COLLATE NOCASE = 'x'' OR 1=1 --'", sql);
+    }
+
+    @Test
+    public void testInvalidRulesAreRejected() {
+        String[] invalid = {
+                "", "genre", "genre Rock", "mood = happy", "year >= soon", "year contains 19",
+                "genre = Rock OR year > 2000", "genre = Rock AND", "genre = Rock year > 2000",
+                "year = 1; DROP TABLE songs"
+        };
+        for (String rule : invalid) {
+            try {
+                SmartRule.parse(rule);
+                fail("Should be rejected: " + rule);
+            } catch (IllegalArgumentException expected) {
+                // expected
+            }
+        }
+    }
+}
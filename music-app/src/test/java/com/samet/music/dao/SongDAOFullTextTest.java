@@ -0,0 +1,107 @@
+package com.samet.music.dao;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+
+import com.samet.music.model.Song;
+import com.samet.music.util.DatabaseUtil;
+import com.samet.music.util.SchemaManager;
+
+/**
+ * Test class for the full-text song search against a migrated temporary database
+ */
+public class SongDAOFullTextTest {
+
+    private File dbFile;
+    private String url;
+    private MockedStatic<DatabaseUtil> dbUtilMock;
+    private SongDAO songDAO;
+
+    @Before
+    public void setUp() throws Exception {
+        dbFile = File.createTempFile("search-test", ".db");
+        dbFile.deleteOnExit();
+        url = "jdbc:sqlite:" + dbFile.getAbsolutePath();
+        try (Connection conn = DriverManager.getConnection(url)) {
+            SchemaManager.migrate(conn);
+        }
+        execute("INSERT INTO songs (id, title, artist, album, genre, user_id) VALUES " +
+                "(1, 'Bohemian Rhapsody', 'Queen', 'A Night at the Opera', 'Rock', 1), " +
+                "(2, 'Rocket Man', 'Elton John', 'Honky Chateau', 'Pop', 1), " +
+                "(3, 'Rock and Roll', 'Led Zeppelin', 'IV', 'Rock', 1), " +
+                "(4, 'We Will Rock You', 'Queen', 'News of the World', 'Rock', 2)");
+
+        dbUtilMock = Mockito.mockStatic(DatabaseUtil.class);
+        dbUtilMock.when(DatabaseUtil::getConnection).thenAnswer(invocation -> DriverManager.getConnection(url));
+        songDAO = new SongDAO();
+    }
+
+    @After
+    public void tearDown() {
+        dbUtilMock.close();
+        dbFile.delete();
+    }
+
+    @Test
+    public void testSearchMatchesPrefixesAcrossFieldsForOneUser() {
+        assertEquals("Prefix should match words in any field, only for the user", Arrays.asList(1, 2, 3),
+                ids(songDAO.searchFullText("roc", 1, 0)).stream().sorted().collect(Collectors.toList()));
+        assertEquals("Every word should match", Arrays.asList(1), ids(songDAO.searchFullText("queen rock", 1, 0)));
+        assertEquals("Search should ignore case", Arrays.asList(4), ids(songDAO.searchFullText("QUEEN", 2, 0)));
+        assertEquals("Search without a user should find everyone's songs", Arrays.asList(1, 4),
+                ids(songDAO.searchFullText("queen", 0)).stream().sorted().collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testBestMatchComesFirstAndLimitApplies() {
+        List<Song> results = songDAO.searchFullText("rock", 1, 0);
+        assertEquals("Song matching in title and genre should rank first", 3, results.get(0).getId());
+        assertEquals(1, songDAO.searchFullText("rock", 1, 1).size());
+    }
+
+    @Test
+    public void testIndexFollowsSongChanges() throws SQLException {
+        execute("UPDATE songs SET title = 'Radio Ga Ga' WHERE id = 1");
+        execute("DELETE FROM songs WHERE id = 2");
+        execute("INSERT INTO songs (id, title, artist, user_id) VALUES (5, 'Radioactive', 'Imagine Dragons', 1)");
+
+        assertEquals(Arrays.asList(1, 5),
+                ids(songDAO.searchFullText("radio", 1, 0)).stream().sorted().collect(Collectors.toList()));
+        assertTrue("Old title should be gone", songDAO.searchFullText("bohemian", 1, 0).isEmpty());
+        assertTrue("Deleted song should be gone", songDAO.searchFullText("rocket", 1, 0).isEmpty());
+    }
+
+    @Test
+    public void testQuerySyntaxIsTreatedAsText() {
+        assertTrue(songDAO.searchFullText("   ", 1, 0).isEmpty());
+        assertTrue(songDAO.searchFullText(null, 1, 0).isEmpty());
+        assertEquals(Arrays.asList(3), ids(songDAO.searchFullText("rock AND \"roll", 1, 0)));
+        assertTrue("Punctuation alone should find nothing", songDAO.searchFullText("-", 1, 0).isEmpty());
+        assertEquals("\"a\"\"b\"* \"c\"*", SongDAO.toFullTextQuery(" a\"b  c "));
+    }
+
+    private static List<Integer> ids(List<Song> songs) {
+        return songs.stream().map(Song::getId).collect(Collectors.toList());
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate(sql);
+        }
+    }
+}
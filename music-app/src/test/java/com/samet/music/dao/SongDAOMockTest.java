@@ -12,7 +12,10 @@ import java.sql.Statement;
 import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import org.junit.Before;
@@ -47,6 +50,12 @@ public class SongDAOMockTest {
     @Mock
     private ResultSet mockResultSet;
     
+    @Mock
+    private PreparedStatement mockNameStatement;
+    
+    @Mock
+    private ResultSet mockNameResultSet;
+    
     @Before
     public void setUp() throws Exception {
         // Create a real DAO with the mocked dependencies
@@ -60,6 +69,13 @@ public class SongDAOMockTest {
         when(mockConn.createStatement()).thenReturn(mockStatement);
         when(mockPreparedStatement.executeQuery()).thenReturn(mockResultSet);
         when(mockStatement.executeQuery(anyString())).thenReturn(mockResultSet);
+        
+        // Name keys are looked up by NameDictionary on statements of their own
+        when(mockConn.prepareStatement(argThat((String sql) -> sql.matches("(SELECT id FROM|INSERT INTO) \\w+_names .*"))))
+                .thenReturn(mockNameStatement);
+        when(mockNameStatement.executeQuery()).thenReturn(mockNameResultSet);
+        when(mockNameResultSet.next()).thenReturn(true);
+        when(mockNameResultSet.getInt(1)).thenReturn(1);
     }
     
     private Song createTestSong() {
@@ -136,10 +152,10 @@ public class SongDAOMockTest {
             // Execute method under test
             songDAO.deleteSong("Test Song", "Test Artist", "Test Album");
             
-            // Verify
-            verify(mockPreparedStatement).setString(1, "Test Song");
-            verify(mockPreparedStatement).setString(2, "Test Artist");
-            verify(mockPreparedStatement).setString(3, "Test Album");
+            // Verify: once to read the songs, once to delete them
+            verify(mockPreparedStatement, times(2)).setString(1, "Test Song");
+            verify(mockPreparedStatement, times(2)).setString(2, "Test Artist");
+            verify(mockPreparedStatement, times(2)).setString(3, "Test Album");
             verify(mockPreparedStatement).executeUpdate();
         }
     }
@@ -321,7 +337,8 @@ public class SongDAOMockTest {
             verify(mockPreparedStatement).setInt(5, song.getYear());
             verify(mockPreparedStatement).setInt(6, song.getDuration());
             verify(mockPreparedStatement).setString(7, song.getFilePath());
-            verify(mockPreparedStatement).setInt(8, song.getId());
+            verify(mockPreparedStatement).setObject(8, 1);
+            verify(mockPreparedStatement).setInt(11, song.getId());
             verify(mockPreparedStatement).executeUpdate();
         }
     }
@@ -380,7 +397,8 @@ public class SongDAOMockTest {
             
             // Verify
             assertTrue("Should return true for successful deletion", result);
-            verify(mockPreparedStatement).setInt(1, 1);
+            // Once to read the song, once to delete it
+            verify(mockPreparedStatement, times(2)).setInt(1, 1);
             verify(mockPreparedStatement).executeUpdate();
         }
     }
@@ -399,7 +417,7 @@ public class SongDAOMockTest {
             
             // Verify
             assertFalse("Should return false for failed deletion", result);
-            verify(mockPreparedStatement).setInt(1, 999);
+            verify(mockPreparedStatement, times(2)).setInt(1, 999);
         }
     }
     
@@ -529,9 +547,10 @@ public class SongDAOMockTest {
             verify(mockPreparedStatement).setString(2, "New Artist");
             verify(mockPreparedStatement).setString(3, "New Album");
             verify(mockPreparedStatement).setString(4, "New Genre");
-            verify(mockPreparedStatement).setString(5, "Old Title");
-            verify(mockPreparedStatement).setString(6, "Old Artist");
-            verify(mockPreparedStatement).setString(7, "Old Album");
+            verify(mockPreparedStatement).setObject(5, 1);
+            verify(mockPreparedStatement).setString(8, "Old Title");
+            verify(mockPreparedStatement).setString(9, "Old Artist");
+            verify(mockPreparedStatement).setString(10, "Old Album");
             verify(mockPreparedStatement).executeUpdate();
         }
     }
@@ -590,4 +609,59 @@ public class SongDAOMockTest {
             verify(mockConn).rollback();
         }
     }
-} 
\ No newline at end of file
+    
+    @Test
+    public void testFindByIdsUsesOneQueryPerChunk() throws SQLException {
+        try (MockedStatic<DatabaseUtil> dbUtilMock = Mockito.mockStatic(DatabaseUtil.class)) {
+            dbUtilMock.when(DatabaseUtil::getConnection).thenReturn(mockConn);
+            
+            setupMockConnection();
+            when(mockResultSet.next()).thenReturn(true, false, false);
+            when(mockResultSet.getInt("id")).thenReturn(7);
+            when(mockResultSet.getString("title")).thenReturn("Test Song");
+            
+            // One more ID than fits in a single chunk, plus a duplicate
+            List<Integer> ids = new ArrayList<>();
+            for (int i = 1; i <= SongDAO.ID_CHUNK_SIZE + 1; i++) {
+                ids.add(i);
+            }
+            ids.add(7);
+            
+            // Execute method under test
+            Map<Integer, Song> songs = songDAO.findByIds(ids);
+            
+            // Verify
+            verify(mockConn, times(2)).prepareStatement(startsWith("SELECT * FROM songs WHERE id IN ("));
+            verify(mockPreparedStatement, times(SongDAO.ID_CHUNK_SIZE + 1)).setInt(anyInt(), anyInt());
+            assertEquals("Should return the found song", 1, songs.size());
+            assertEquals("Song should be keyed by ID", "Test Song", songs.get(7).getTitle());
+        }
+    }
+    
+    @Test
+    public void testFindByIdsWithNoIds() {
+        try (MockedStatic<DatabaseUtil> dbUtilMock = Mockito.mockStatic(DatabaseUtil.class)) {
+            // Execute method under test
+            Map<Integer, Song> songs = songDAO.findByIds(Collections.<Integer>emptyList());
+            
+            // Verify
+            assertTrue("Should return an empty map", songs.isEmpty());
+            dbUtilMock.verify(DatabaseUtil::getConnection, never());
+        }
+    }
+    
+    @Test
+    public void testFindByIdsWithSQLException() throws SQLException {
+        try (MockedStatic<DatabaseUtil> dbUtilMock = Mockito.mockStatic(DatabaseUtil.class)) {
+            dbUtilMock.when(DatabaseUtil::getConnection).thenReturn(mockConn);
+            when(mockConn.prepareStatement(anyString())).thenThrow(new SQLException("Test exception"));
+            
+            // Execute method under test
+            Map<Integer, Song> songs = songDAO.findByIds(Arrays.asList(1, 2, 3));
+            
+            // Verify
+            assertTrue("Should return an empty map when SQLException occurs", songs.isEmpty());
+            verify(mockConn).close();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.samet.music.dao;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+
+import com.samet.music.model.Song;
+import com.samet.music.util.DatabaseUtil;
+import com.samet.music.util.SchemaManager;
+
+/**
+ * Test class for SongSearchIndex, built from a migrated temporary database
+ */
+public class SongSearchIndexTest {
+
+    private File dbFile;
+    private MockedStatic<DatabaseUtil> dbUtilMock;
+    private SongSearchIndex index;
+
+    @Before
+    public void setUp() throws Exception {
+        dbFile = File.createTempFile("index-test", ".db");
+        dbFile.deleteOnExit();
+        String url = "jdbc:sqlite:" + dbFile.getAbsolutePath();
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement()) {
+            SchemaManager.migrate(conn);
+            stmt.executeUpdate("INSERT INTO songs (id, title, artist, album, user_id) VALUES " +
+                    "(1, 'Enter Sandman', 'Metallica', 'Metallica', 1), " +
+                    "(2, 'Nothing Else Matters', 'Metallica', 'Metallica', 1), " +
+                    "(3, 'Café del Mar', 'Energy 52', NULL, 1), " +
+                    "(4, 'One', 'Metallica', '...And Justice for All', 2)");
+        }
+
+        dbUtilMock = Mockito.mockStatic(DatabaseUtil.class);
+        dbUtilMock.when(DatabaseUtil::getConnection).thenAnswer(invocation -> DriverManager.getConnection(url));
+        index = new SongSearchIndex();
+    }
+
+    @After
+    public void tearDown() {
+        dbUtilMock.close();
+        dbFile.delete();
+    }
+
+    @Test
+    public void testNothingIsFoundBeforeTheIndexIsBuilt() {
+        assertFalse(index.isReady());
+        assertTrue(index.search(1, "metallica", 10).isEmpty());
+    }
+
+    @Test
+    public void testSubstringsAndTyposAreFound() {
+        assertTrue(index.build());
+
+        assertEquals("Typo should still match", Arrays.asList(1, 2), index.search(1, "Metalica", 10));
+        assertEquals("Inner part of a word should match", Arrays.asList(2), index.search(1, "else matt", 10));
+        assertEquals("Accents should be ignored", Arrays.asList(3), index.search(1, "cafe", 10));
+        assertEquals("Other users' songs should not be found", Arrays.asList(4), index.search(2, "metallica", 10));
+        assertEquals("Search without a user should find everyone's songs", Arrays.asList(1, 2, 4),
+                index.search("metallica", 10));
+        assertTrue("Short words should have to match exactly", index.search(1, "cafe mer", 10).isEmpty());
+        assertEquals("Limit should apply", 1, index.search(1, "metallica", 1).size());
+    }
+
+    @Test
+    public void testExactMatchesRankAboveTypos() throws Exception {
+        assertTrue(index.build());
+        Song sandmen = new Song("Sandmen", "Other", "Other", "Rock", 2000, 100, "p", 1);
+        sandmen.setId(5);
+        index.add(sandmen);
+
+        assertEquals(Arrays.asList(5, 1), index.search(1, "sandmen", 10));
+    }
+
+    @Test
+    public void testIndexFollowsChanges() {
+        assertTrue(index.build());
+
+        Song song = new Song("Master of Puppets", "Metallica", "Master of Puppets", "Metal", 1986, 515, "p", 1);
+        song.setId(6);
+        index.add(song);
+        assertEquals(Collections.singletonList(6), index.search(1, "puppets", 10));
+
+        song.setTitle("Battery");
+        song.setAlbum("Ride the Lightning");
+        song.setUserId(0);
+        index.add(song);
+        assertEquals("Updated song should be found by its new title", Collections.singletonList(6),
+                index.search(1, "battery", 10));
+        assertTrue("Old title should be gone", index.search(1, "puppets", 10).isEmpty());
+
+        index.remove(6);
+        assertTrue(index.search(1, "battery", 10).isEmpty());
+    }
+
+    @Test
+    public void testLegacyWritesAreAppliedSongBySong() throws Exception {
+        assertTrue(index.build());
+        // Name keys cached from another test's database would not match this one
+        NameDictionary.getInstance().clear();
+        SongDAO songDAO = new SongDAO();
+        java.lang.reflect.Field indexField = SongDAO.class.getDeclaredField("songSearchIndex");
+        indexField.setAccessible(true);
+        indexField.set(songDAO, index);
+
+        songDAO.addSong("Fade to Black", "Metallica", "Ride the Lightning", "Metal");
+        assertTrue("Index should not need a rebuild", index.isReady());
+        List<Integer> found = index.search("fade black", 10);
+        assertEquals(1, found.size());
+
+        songDAO.updateSong("Fade to Black", "Metallica", "Ride the Lightning",
+                "Fight Fire with Fire", "Metallica", "Ride the Lightning", "Metal");
+        assertTrue(index.isReady());
+        assertEquals(found, index.search("fight fire", 10));
+        assertTrue(index.search("fade black", 10).isEmpty());
+
+        songDAO.deleteSong("Fight Fire with Fire", "Metallica", "Ride the Lightning");
+        assertTrue(index.isReady());
+        assertTrue(index.search("fight fire", 10).isEmpty());
+    }
+
+    @Test
+    public void testEditDistanceIsBounded() {
+        assertEquals(1, SongSearchIndex.editDistance("metalica", "metallica", 1));
+        assertEquals("Distance over the bound should be cut off", 2, SongSearchIndex.editDistance("abcdef", "uvwxyz", 1));
+        assertEquals("cafe del mar", SongSearchIndex.normalize("  Café  del-Mar! "));
+    }
+}
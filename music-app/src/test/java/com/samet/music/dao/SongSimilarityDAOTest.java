@@ -0,0 +1,138 @@
+package com.samet.music.dao;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+
+import com.samet.music.util.DatabaseUtil;
+import com.samet.music.util.SchemaManager;
+
+/**
+ * Test class for SongSimilarityDAO against a migrated temporary database
+ */
+public class SongSimilarityDAOTest {
+
+    private File dbFile;
+    private String url;
+    private MockedStatic<DatabaseUtil> dbUtilMock;
+    private SongSimilarityDAO similarityDAO;
+
+    @Before
+    public void setUp() throws Exception {
+        dbFile = File.createTempFile("similarity-test", ".db");
+        dbFile.deleteOnExit();
+        url = "jdbc:sqlite:" + dbFile.getAbsolutePath();
+        try (Connection conn = DriverManager.getConnection(url)) {
+            SchemaManager.migrate(conn);
+        }
+
+        dbUtilMock = Mockito.mockStatic(DatabaseUtil.class);
+        dbUtilMock.when(DatabaseUtil::getConnection).thenAnswer(invocation -> DriverManager.getConnection(url));
+        similarityDAO = new SongSimilarityDAO(2);
+    }
+
+    @After
+    public void tearDown() {
+        dbUtilMock.close();
+        dbFile.delete();
+    }
+
+    @Test
+    public void testCoOccurrencesAreSymmetricAndTrimmed() {
+        assertTrue("New index should be empty", similarityDAO.isEmpty());
+
+        assertTrue(similarityDAO.addCoOccurrences(1, Arrays.asList(2, 3), 1.0));
+        assertTrue(similarityDAO.addCoOccurrences(1, Arrays.asList(2), 1.0));
+        assertTrue(similarityDAO.addCoOccurrences(1, Arrays.asList(4), 1.0));
+
+        Map<Integer, Double> neighbours = similarityDAO.getSimilarSongs(1, 10);
+        assertEquals("Neighbour list should be trimmed to the maximum", 2, neighbours.size());
+        assertEquals("Repeated pairs should add up", 2.0, neighbours.get(2), 1e-9);
+        assertEquals("Reverse direction should be stored", 1.0, similarityDAO.getSimilarSongs(4, 10).get(1), 1e-9);
+        assertFalse("Index should no longer be empty", similarityDAO.isEmpty());
+    }
+
+    @Test
+    public void testNegativeDeltaRemovesPairs() {
+        similarityDAO.addCoOccurrences(1, Arrays.asList(2), 1.0);
+        similarityDAO.addCoOccurrences(1, Arrays.asList(2), -1.0);
+
+        assertTrue("Pair with zero score should be removed", similarityDAO.getSimilarSongs(1, 10).isEmpty());
+        assertTrue("Reverse pair should be removed", similarityDAO.getSimilarSongs(2, 10).isEmpty());
+    }
+
+    @Test
+    public void testMergedSimilarSongsSumsScoresAndExcludesSeeds() {
+        Map<Integer, Map<Integer, Double>> neighbours = new HashMap<>();
+        neighbours.put(1, scores(2, 1.0, 5, 3.0));
+        neighbours.put(2, scores(1, 1.0, 6, 2.0));
+        neighbours.put(3, scores(6, 2.0));
+        assertTrue(similarityDAO.replaceNeighbours(neighbours));
+
+        Map<Integer, Double> merged = similarityDAO.getMergedSimilarSongs(Arrays.asList(1, 2, 3), 1, 10);
+
+        assertEquals("Seeds should be excluded", Arrays.asList(6, 5), new ArrayList<>(merged.keySet()));
+        assertEquals("Scores from several seeds should be summed", 4.0, merged.get(6), 1e-9);
+    }
+
+    @Test
+    public void testMergedSimilarSongsExcludesPlayedSongs() throws SQLException {
+        Map<Integer, Map<Integer, Double>> neighbours = new HashMap<>();
+        neighbours.put(1, scores(5, 3.0, 6, 2.0));
+        neighbours.put(2, scores(7, 1.0));
+        assertTrue(similarityDAO.replaceNeighbours(neighbours));
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("INSERT INTO user_song_statistics (user_id, song_id, play_count, favorite) VALUES " +
+                    "(1, 5, 1, 0), (1, 6, 0, 1), (2, 7, 4, 0)");
+        }
+
+        Map<Integer, Double> merged = similarityDAO.getMergedSimilarSongs(Arrays.asList(1, 2), 1, 10);
+
+        assertEquals("Songs the user played should be excluded", Arrays.asList(6, 7), new ArrayList<>(merged.keySet()));
+    }
+
+    @Test
+    public void testBasketsCoverPlaysAndPlaylists() throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("INSERT INTO user_song_statistics (user_id, song_id, play_count, favorite) VALUES " +
+                    "(1, 10, 2, 0), (1, 11, 0, 1), (1, 12, 1, 0)");
+            stmt.executeUpdate("INSERT INTO playlist_songs (playlist_id, song_id, position) VALUES (1, 20, 1), (1, 21, 0)");
+        }
+
+        final List<int[]> items = new ArrayList<>();
+        assertTrue(similarityDAO.forEachBasketItem((basketId, songId) -> items.add(new int[] { basketId, songId })));
+
+        assertEquals("Unplayed favorites are not part of a basket", 4, items.size());
+        assertEquals("User baskets should have even IDs", 2, items.get(0)[0]);
+        assertEquals("Playlist baskets should have odd IDs", 3, items.get(3)[0]);
+        assertEquals("Playlist basket should follow playlist order", Arrays.asList(21, 20),
+                similarityDAO.getPlaylistBasket(1, 10));
+        assertEquals("User basket should hold played songs only", 2, similarityDAO.getUserBasket(1, 10).size());
+    }
+
+    private static Map<Integer, Double> scores(Object... pairs) {
+        Map<Integer, Double> map = new LinkedHashMap<>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            map.put((Integer) pairs[i], (Double) pairs[i + 1]);
+        }
+        return map;
+    }
+}
@@ -5,7 +5,6 @@ import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -23,6 +22,9 @@ import org.mockito.MockedStatic;
 import org.mockito.Mockito;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import com.samet.music.model.SongStatistics;
+import com.samet.music.util.DatabaseUtil;
+
 /**
  * Test class for UserSongStatisticsDAO that mocks database access
  * This approach provides better code coverage without database access issues
@@ -49,7 +51,7 @@ public class UserSongStatisticsDAOMockTest {
     
     @Before
     public void setUp() throws Exception {
-        // We'll create the DAO object in each test since we need to mock DriverManager
+        // We'll create the DAO object in each test since we need to mock DatabaseUtil
         // which requires a MockedStatic resource that must be closed
     }
     
@@ -62,70 +64,10 @@ public class UserSongStatisticsDAOMockTest {
         when(mockStatement.execute(anyString())).thenReturn(true);
     }
     
-    @Test
-    public void testIncrementPlayCount() throws SQLException {
-        try (MockedStatic<DriverManager> driverManagerMock = Mockito.mockStatic(DriverManager.class)) {
-            driverManagerMock.when(() -> DriverManager.getConnection(anyString())).thenReturn(mockConn);
-            
-            setupMockConnection();
-            when(mockPreparedStatement.executeUpdate()).thenReturn(1);
-            
-            // Create DAO instance
-            userSongStatisticsDAO = new UserSongStatisticsDAO();
-            
-            // Execute method under test
-            boolean result = userSongStatisticsDAO.incrementPlayCount(TEST_USER_ID, TEST_SONG_ID);
-            
-            // Verify
-            assertTrue("Should return true for successful increment", result);
-            verify(mockPreparedStatement).setInt(1, TEST_USER_ID);
-            verify(mockPreparedStatement).setInt(2, TEST_SONG_ID);
-            verify(mockPreparedStatement).executeUpdate();
-        }
-    }
-    
-    @Test
-    public void testIncrementPlayCountFailed() throws SQLException {
-        try (MockedStatic<DriverManager> driverManagerMock = Mockito.mockStatic(DriverManager.class)) {
-            driverManagerMock.when(() -> DriverManager.getConnection(anyString())).thenReturn(mockConn);
-            
-            setupMockConnection();
-            when(mockPreparedStatement.executeUpdate()).thenReturn(0); // No rows affected
-            
-            // Create DAO instance
-            userSongStatisticsDAO = new UserSongStatisticsDAO();
-            
-            // Execute method under test
-            boolean result = userSongStatisticsDAO.incrementPlayCount(TEST_USER_ID, TEST_SONG_ID);
-            
-            // Verify
-            assertFalse("Should return false when no rows affected", result);
-        }
-    }
-    
-    @Test
-    public void testIncrementPlayCountException() throws SQLException {
-        try (MockedStatic<DriverManager> driverManagerMock = Mockito.mockStatic(DriverManager.class)) {
-            driverManagerMock.when(() -> DriverManager.getConnection(anyString())).thenReturn(mockConn);
-            
-            setupMockConnection();
-            doThrow(new SQLException("Test exception")).when(mockPreparedStatement).executeUpdate();
-            
-            // Create DAO instance
-            userSongStatisticsDAO = new UserSongStatisticsDAO();
-            
-            // Execute method under test
-            boolean result = userSongStatisticsDAO.incrementPlayCount(TEST_USER_ID, TEST_SONG_ID);
-            
-            // Verify
-            assertFalse("Should return false when an exception occurs", result);
-        }
-    }
-    
     @Test
     public void testSetFavorite() throws SQLException {
-        try (MockedStatic<DriverManager> driverManagerMock = Mockito.mockStatic(DriverManager.class)) {
-            driverManagerMock.when(() -> DriverManager.getConnection(anyString())).thenReturn(mockConn);
+        try (MockedStatic<DatabaseUtil> dbUtilMock = Mockito.mockStatic(DatabaseUtil.class)) {
+            dbUtilMock.when(DatabaseUtil::getConnection).thenReturn(mockConn);
             
             setupMockConnection();
             when(mockPreparedStatement.executeUpdate()).thenReturn(1);
@@ -148,8 +90,8 @@ public class UserSongStatisticsDAOMockTest {
     
     @Test
     public void testSetFavoriteFailed() throws SQLException {
-        try (MockedStatic<DriverManager> driverManagerMock = Mockito.mockStatic(DriverManager.class)) {
-            driverManagerMock.when(() -> DriverManager.getConnection(anyString())).thenReturn(mockConn);
+        try (MockedStatic<DatabaseUtil> dbUtilMock = Mockito.mockStatic(DatabaseUtil.class)) {
+            dbUtilMock.when(DatabaseUtil::getConnection).thenReturn(mockConn);
             
             setupMockConnection();
             when(mockPreparedStatement.executeUpdate()).thenReturn(0); // No rows affected
@@ -167,8 +109,8 @@ public class UserSongStatisticsDAOMockTest {
     
     @Test
     public void testSetFavoriteException() throws SQLException {
-        try (MockedStatic<DriverManager> driverManagerMock = Mockito.mockStatic(DriverManager.class)) {
-            driverManagerMock.when(() -> DriverManager.getConnection(anyString())).thenReturn(mockConn);
+        try (MockedStatic<DatabaseUtil> dbUtilMock = Mockito.mockStatic(DatabaseUtil.class)) {
+            dbUtilMock.when(DatabaseUtil::getConnection).thenReturn(mockConn);
             
             setupMockConnection();
             doThrow(new SQLException("Test exception")).when(mockPreparedStatement).executeUpdate();
@@ -186,8 +128,8 @@ public class UserSongStatisticsDAOMockTest {
     
     @Test
     public void testIsFavoriteTrue() throws SQLException {
-        try (MockedStatic<DriverManager> driverManagerMock = Mockito.mockStatic(DriverManager.class)) {
-            driverManagerMock.when(() -> DriverManager.getConnection(anyString())).thenReturn(mockConn);
+        try (MockedStatic<DatabaseUtil> dbUtilMock = Mockito.mockStatic(DatabaseUtil.class)) {
+            dbUtilMock.when(DatabaseUtil::getConnection).thenReturn(mockConn);
             
             setupMockConnection();
             when(mockResultSet.next()).thenReturn(true);
@@ -208,8 +150,8 @@ public class UserSongStatisticsDAOMockTest {
     
     @Test
     public void testIsFavoriteFalse() throws SQLException {
-        try (MockedStatic<DriverManager> driverManagerMock = Mockito.mockStatic(DriverManager.class)) {
-            driverManagerMock.when(() -> DriverManager.getConnection(anyString())).thenReturn(mockConn);
+        try (MockedStatic<DatabaseUtil> dbUtilMock = Mockito.mockStatic(DatabaseUtil.class)) {
+            dbUtilMock.when(DatabaseUtil::getConnection).thenReturn(mockConn);
             
             setupMockConnection();
             when(mockResultSet.next()).thenReturn(true);
@@ -228,8 +170,8 @@ public class UserSongStatisticsDAOMockTest {
     
     @Test
     public void testIsFavoriteNotFound() throws SQLException {
-        try (MockedStatic<DriverManager> driverManagerMock = Mockito.mockStatic(DriverManager.class)) {
-            driverManagerMock.when(() -> DriverManager.getConnection(anyString())).thenReturn(mockConn);
+        try (MockedStatic<DatabaseUtil> dbUtilMock = Mockito.mockStatic(DatabaseUtil.class)) {
+            dbUtilMock.when(DatabaseUtil::getConnection).thenReturn(mockConn);
             
             setupMockConnection();
             when(mockResultSet.next()).thenReturn(false); // No record found
@@ -247,8 +189,8 @@ public class UserSongStatisticsDAOMockTest {
     
     @Test
     public void testIsFavoriteException() throws SQLException {
-        try (MockedStatic<DriverManager> driverManagerMock = Mockito.mockStatic(DriverManager.class)) {
-            driverManagerMock.when(() -> DriverManager.getConnection(anyString())).thenReturn(mockConn);
+        try (MockedStatic<DatabaseUtil> dbUtilMock = Mockito.mockStatic(DatabaseUtil.class)) {
+            dbUtilMock.when(DatabaseUtil::getConnection).thenReturn(mockConn);
             
             setupMockConnection();
             doThrow(new SQLException("Test exception")).when(mockPreparedStatement).executeQuery();
@@ -266,8 +208,8 @@ public class UserSongStatisticsDAOMockTest {
     
     @Test
     public void testGetPlayCount() throws SQLException {
-        try (MockedStatic<DriverManager> driverManagerMock = Mockito.mockStatic(DriverManager.class)) {
-            driverManagerMock.when(() -> DriverManager.getConnection(anyString())).thenReturn(mockConn);
+        try (MockedStatic<DatabaseUtil> dbUtilMock = Mockito.mockStatic(DatabaseUtil.class)) {
+            dbUtilMock.when(DatabaseUtil::getConnection).thenReturn(mockConn);
             
             setupMockConnection();
             when(mockResultSet.next()).thenReturn(true);
@@ -288,8 +230,8 @@ public class UserSongStatisticsDAOMockTest {
     
     @Test
     public void testGetPlayCountNotFound() throws SQLException {
-        try (MockedStatic<DriverManager> driverManagerMock = Mockito.mockStatic(DriverManager.class)) {
-            driverManagerMock.when(() -> DriverManager.getConnection(anyString())).thenReturn(mockConn);
+        try (MockedStatic<DatabaseUtil> dbUtilMock = Mockito.mockStatic(DatabaseUtil.class)) {
+            dbUtilMock.when(DatabaseUtil::getConnection).thenReturn(mockConn);
             
             setupMockConnection();
             when(mockResultSet.next()).thenReturn(false); // No record found
@@ -307,8 +249,8 @@ public class UserSongStatisticsDAOMockTest {
     
     @Test
     public void testGetPlayCountException() throws SQLException {
-        try (MockedStatic<DriverManager> driverManagerMock = Mockito.mockStatic(DriverManager.class)) {
-            driverManagerMock.when(() -> DriverManager.getConnection(anyString())).thenReturn(mockConn);
+        try (MockedStatic<DatabaseUtil> dbUtilMock = Mockito.mockStatic(DatabaseUtil.class)) {
+            dbUtilMock.when(DatabaseUtil::getConnection).thenReturn(mockConn);
             
             setupMockConnection();
             doThrow(new SQLException("Test exception")).when(mockPreparedStatement).executeQuery();
@@ -326,8 +268,8 @@ public class UserSongStatisticsDAOMockTest {
     
     @Test
     public void testGetMostPlayedSongs() throws SQLException {
-        try (MockedStatic<DriverManager> driverManagerMock = Mockito.mockStatic(DriverManager.class)) {
-            driverManagerMock.when(() -> DriverManager.getConnection(anyString())).thenReturn(mockConn);
+        try (MockedStatic<DatabaseUtil> dbUtilMock = Mockito.mockStatic(DatabaseUtil.class)) {
+            dbUtilMock.when(DatabaseUtil::getConnection).thenReturn(mockConn);
             
             setupMockConnection();
             when(mockResultSet.next()).thenReturn(true, true, true, false); // 3 songs
@@ -353,8 +295,8 @@ public class UserSongStatisticsDAOMockTest {
     
     @Test
     public void testGetMostPlayedSongsEmpty() throws SQLException {
-        try (MockedStatic<DriverManager> driverManagerMock = Mockito.mockStatic(DriverManager.class)) {
-            driverManagerMock.when(() -> DriverManager.getConnection(anyString())).thenReturn(mockConn);
+        try (MockedStatic<DatabaseUtil> dbUtilMock = Mockito.mockStatic(DatabaseUtil.class)) {
+            dbUtilMock.when(DatabaseUtil::getConnection).thenReturn(mockConn);
             
             setupMockConnection();
             when(mockResultSet.next()).thenReturn(false); // No songs
@@ -373,8 +315,8 @@ public class UserSongStatisticsDAOMockTest {
     
     @Test
     public void testGetMostPlayedSongsException() throws SQLException {
-        try (MockedStatic<DriverManager> driverManagerMock = Mockito.mockStatic(DriverManager.class)) {
-            driverManagerMock.when(() -> DriverManager.getConnection(anyString())).thenReturn(mockConn);
+        try (MockedStatic<DatabaseUtil> dbUtilMock = Mockito.mockStatic(DatabaseUtil.class)) {
+            dbUtilMock.when(DatabaseUtil::getConnection).thenReturn(mockConn);
             
             setupMockConnection();
             doThrow(new SQLException("Test exception")).when(mockPreparedStatement).executeQuery();
@@ -393,8 +335,8 @@ public class UserSongStatisticsDAOMockTest {
     
     @Test
     public void testGetFavoriteSongs() throws SQLException {
-        try (MockedStatic<DriverManager> driverManagerMock = Mockito.mockStatic(DriverManager.class)) {
-            driverManagerMock.when(() -> DriverManager.getConnection(anyString())).thenReturn(mockConn);
+        try (MockedStatic<DatabaseUtil> dbUtilMock = Mockito.mockStatic(DatabaseUtil.class)) {
+            dbUtilMock.when(DatabaseUtil::getConnection).thenReturn(mockConn);
             
             setupMockConnection();
             when(mockResultSet.next()).thenReturn(true, true, false); // 2 favorite songs
@@ -418,8 +360,8 @@ public class UserSongStatisticsDAOMockTest {
     
     @Test
     public void testGetFavoriteSongsEmpty() throws SQLException {
-        try (MockedStatic<DriverManager> driverManagerMock = Mockito.mockStatic(DriverManager.class)) {
-            driverManagerMock.when(() -> DriverManager.getConnection(anyString())).thenReturn(mockConn);
+        try (MockedStatic<DatabaseUtil> dbUtilMock = Mockito.mockStatic(DatabaseUtil.class)) {
+            dbUtilMock.when(DatabaseUtil::getConnection).thenReturn(mockConn);
             
             setupMockConnection();
             when(mockResultSet.next()).thenReturn(false); // No favorite songs
@@ -438,8 +380,8 @@ public class UserSongStatisticsDAOMockTest {
     
     @Test
     public void testGetFavoriteSongsException() throws SQLException {
-        try (MockedStatic<DriverManager> driverManagerMock = Mockito.mockStatic(DriverManager.class)) {
-            driverManagerMock.when(() -> DriverManager.getConnection(anyString())).thenReturn(mockConn);
+        try (MockedStatic<DatabaseUtil> dbUtilMock = Mockito.mockStatic(DatabaseUtil.class)) {
+            dbUtilMock.when(DatabaseUtil::getConnection).thenReturn(mockConn);
             
             setupMockConnection();
             doThrow(new SQLException("Test exception")).when(mockPreparedStatement).executeQuery();
@@ -458,8 +400,8 @@ public class UserSongStatisticsDAOMockTest {
     
     @Test
     public void testGetRecentlyPlayedSongs() throws SQLException {
-        try (MockedStatic<DriverManager> driverManagerMock = Mockito.mockStatic(DriverManager.class)) {
-            driverManagerMock.when(() -> DriverManager.getConnection(anyString())).thenReturn(mockConn);
+        try (MockedStatic<DatabaseUtil> dbUtilMock = Mockito.mockStatic(DatabaseUtil.class)) {
+            dbUtilMock.when(DatabaseUtil::getConnection).thenReturn(mockConn);
             
             setupMockConnection();
             when(mockResultSet.next()).thenReturn(true, true, false); // 2 recently played songs
@@ -484,8 +426,8 @@ public class UserSongStatisticsDAOMockTest {
     
     @Test
     public void testGetRecentlyPlayedSongsEmpty() throws SQLException {
-        try (MockedStatic<DriverManager> driverManagerMock = Mockito.mockStatic(DriverManager.class)) {
-            driverManagerMock.when(() -> DriverManager.getConnection(anyString())).thenReturn(mockConn);
+        try (MockedStatic<DatabaseUtil> dbUtilMock = Mockito.mockStatic(DatabaseUtil.class)) {
+            dbUtilMock.when(DatabaseUtil::getConnection).thenReturn(mockConn);
             
             setupMockConnection();
             when(mockResultSet.next()).thenReturn(false); // No recently played songs
@@ -504,8 +446,8 @@ public class UserSongStatisticsDAOMockTest {
     
     @Test
     public void testGetRecentlyPlayedSongsException() throws SQLException {
-        try (MockedStatic<DriverManager> driverManagerMock = Mockito.mockStatic(DriverManager.class)) {
-            driverManagerMock.when(() -> DriverManager.getConnection(anyString())).thenReturn(mockConn);
+        try (MockedStatic<DatabaseUtil> dbUtilMock = Mockito.mockStatic(DatabaseUtil.class)) {
+            dbUtilMock.when(DatabaseUtil::getConnection).thenReturn(mockConn);
             
             setupMockConnection();
             doThrow(new SQLException("Test exception")).when(mockPreparedStatement).executeQuery();
@@ -524,8 +466,8 @@ public class UserSongStatisticsDAOMockTest {
     
     @Test
     public void testGetUserStatistics() throws SQLException {
-        try (MockedStatic<DriverManager> driverManagerMock = Mockito.mockStatic(DriverManager.class)) {
-            driverManagerMock.when(() -> DriverManager.getConnection(anyString())).thenReturn(mockConn);
+        try (MockedStatic<DatabaseUtil> dbUtilMock = Mockito.mockStatic(DatabaseUtil.class)) {
+            dbUtilMock.when(DatabaseUtil::getConnection).thenReturn(mockConn);
             
             setupMockConnection();
             when(mockResultSet.next()).thenReturn(true);
@@ -556,8 +498,8 @@ public class UserSongStatisticsDAOMockTest {
     
     @Test
     public void testGetUserStatisticsNullLastPlayed() throws SQLException {
-        try (MockedStatic<DriverManager> driverManagerMock = Mockito.mockStatic(DriverManager.class)) {
-            driverManagerMock.when(() -> DriverManager.getConnection(anyString())).thenReturn(mockConn);
+        try (MockedStatic<DatabaseUtil> dbUtilMock = Mockito.mockStatic(DatabaseUtil.class)) {
+            dbUtilMock.when(DatabaseUtil::getConnection).thenReturn(mockConn);
             
             setupMockConnection();
             when(mockResultSet.next()).thenReturn(true);
@@ -585,8 +527,8 @@ public class UserSongStatisticsDAOMockTest {
     
     @Test
     public void testGetUserStatisticsNoData() throws SQLException {
-        try (MockedStatic<DriverManager> driverManagerMock = Mockito.mockStatic(DriverManager.class)) {
-            driverManagerMock.when(() -> DriverManager.getConnection(anyString())).thenReturn(mockConn);
+        try (MockedStatic<DatabaseUtil> dbUtilMock = Mockito.mockStatic(DatabaseUtil.class)) {
+            dbUtilMock.when(DatabaseUtil::getConnection).thenReturn(mockConn);
             
             setupMockConnection();
             when(mockResultSet.next()).thenReturn(false); // No data found
@@ -605,8 +547,8 @@ public class UserSongStatisticsDAOMockTest {
     
     @Test
     public void testGetUserStatisticsException() throws SQLException {
-        try (MockedStatic<DriverManager> driverManagerMock = Mockito.mockStatic(DriverManager.class)) {
-            driverManagerMock.when(() -> DriverManager.getConnection(anyString())).thenReturn(mockConn);
+        try (MockedStatic<DatabaseUtil> dbUtilMock = Mockito.mockStatic(DatabaseUtil.class)) {
+            dbUtilMock.when(DatabaseUtil::getConnection).thenReturn(mockConn);
             
             setupMockConnection();
             doThrow(new SQLException("Test exception")).when(mockPreparedStatement).executeQuery();
@@ -622,4 +564,63 @@ public class UserSongStatisticsDAOMockTest {
             assertTrue("Should return empty map when an exception occurs", result.isEmpty());
         }
     }
-} 
\ No newline at end of file
+    
+    @Test
+    public void testGetFavoriteAndMostPlayedSongStatistics() throws SQLException {
+        try (MockedStatic<DatabaseUtil> dbUtilMock = Mockito.mockStatic(DatabaseUtil.class)) {
+            dbUtilMock.when(DatabaseUtil::getConnection).thenReturn(mockConn);
+            
+            setupMockConnection();
+            Timestamp lastPlayed = Timestamp.valueOf(LocalDateTime.now());
+            when(mockResultSet.next()).thenReturn(true, true, false); // 2 songs
+            when(mockResultSet.getInt("id")).thenReturn(10, 20);
+            when(mockResultSet.getString("title")).thenReturn("Song A", "Song B");
+            when(mockResultSet.getInt("play_count")).thenReturn(12, 0);
+            when(mockResultSet.getBoolean("favorite")).thenReturn(false, true);
+            when(mockResultSet.getTimestamp("last_played")).thenReturn(lastPlayed, (Timestamp) null);
+            when(mockResultSet.getBoolean("most_played")).thenReturn(true, false);
+            
+            // Create DAO instance
+            userSongStatisticsDAO = new UserSongStatisticsDAO();
+            
+            // Execute method under test
+            List<SongStatistics> result = userSongStatisticsDAO.getFavoriteAndMostPlayedSongStatistics(TEST_USER_ID, 3);
+            
+            // Verify
+            assertEquals("Should return 2 songs", 2, result.size());
+            assertEquals("First song should be mapped", "Song A", result.get(0).getSong().getTitle());
+            assertEquals("Play count should match", 12, result.get(0).getPlayCount());
+            assertFalse("First song is not a favorite", result.get(0).isFavorite());
+            assertEquals("Last played should match", lastPlayed, result.get(0).getLastPlayed());
+            assertEquals("Second song ID should match", 20, result.get(1).getSong().getId());
+            assertTrue("Second song is a favorite", result.get(1).isFavorite());
+            assertTrue("First song is flagged as most played", result.get(0).isMostPlayed());
+            assertFalse("Second song is only a favorite", result.get(1).isMostPlayed());
+            
+            verify(mockConn).prepareStatement(contains("JOIN songs s ON s.id = st.song_id"));
+            verify(mockPreparedStatement).setInt(1, TEST_USER_ID);
+            verify(mockPreparedStatement).setInt(2, 3); // Most played limit
+            verify(mockPreparedStatement).setInt(3, TEST_USER_ID);
+        }
+    }
+    
+    @Test
+    public void testGetFavoriteAndMostPlayedSongStatisticsException() throws SQLException {
+        try (MockedStatic<DatabaseUtil> dbUtilMock = Mockito.mockStatic(DatabaseUtil.class)) {
+            dbUtilMock.when(DatabaseUtil::getConnection).thenReturn(mockConn);
+            
+            setupMockConnection();
+            doThrow(new SQLException("Test exception")).when(mockPreparedStatement).executeQuery();
+            
+            // Create DAO instance
+            userSongStatisticsDAO = new UserSongStatisticsDAO();
+            
+            // Execute method under test
+            List<SongStatistics> result = userSongStatisticsDAO.getFavoriteAndMostPlayedSongStatistics(TEST_USER_ID, 5);
+            
+            // Verify
+            assertNotNull("Should return non-null list", result);
+            assertTrue("Should return empty list when an exception occurs", result.isEmpty());
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.samet.music.gui;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for AutoCompleter
+ */
+public class AutoCompleterTest {
+
+    private JTextField field;
+
+    @Before
+    public void setUp() throws Exception {
+        SwingUtilities.invokeAndWait(() -> {
+            field = new JTextField();
+            AutoCompleter.install(field, prefix -> prefix.toLowerCase().startsWith("met")
+                    ? Arrays.asList("Metallica", "Metal Church") : Collections.<String>emptyList());
+        });
+    }
+
+    @Test
+    public void testBestCompletionIsFilledInAndSelected() throws Exception {
+        type("met");
+        assertEquals("Known spelling should replace the typed prefix", "Metallica", field.getText());
+        assertEquals("allica", field.getSelectedText());
+
+        // Typing on replaces the selected part
+        type("a");
+        assertEquals("Metallica", field.getText());
+        assertEquals("llica", field.getSelectedText());
+    }
+
+    @Test
+    public void testNothingIsFilledInWithoutAMatchOrWhenDeleting() throws Exception {
+        type("abc");
+        assertEquals("abc", field.getText());
+
+        SwingUtilities.invokeAndWait(() -> field.setText(""));
+        type("met");
+        SwingUtilities.invokeAndWait(() -> field.replaceSelection(""));
+        flush();
+        assertEquals("Backspace should remove the completion", "Met", field.getText());
+    }
+
+    private void type(String text) throws Exception {
+        SwingUtilities.invokeAndWait(() -> field.replaceSelection(text));
+        flush();
+    }
+
+    private static void flush() throws Exception {
+        // Completion runs in a later event
+        SwingUtilities.invokeAndWait(() -> { });
+    }
+}
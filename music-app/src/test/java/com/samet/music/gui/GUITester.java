@@ -7,6 +7,7 @@ import com.samet.music.dao.AlbumDAO;
 import com.samet.music.dao.ArtistDAO;
 import com.samet.music.dao.PlaylistDAO;
 import com.samet.music.dao.SongDAO;
+import com.samet.music.model.Song;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -33,6 +34,12 @@ public class GUITester {
         public boolean addSongCalled = false;
         public boolean deleteSongCalled = false;
         public boolean updateSongCalled = false;
+        public List<String[]> rows = new ArrayList<>();
+        
+        MockSongDAO() {
+            rows.add(new String[]{"Song1", "Artist1", "Album1", "Rock"});
+            rows.add(new String[]{"Song2", "Artist2", "Album2", "Pop"});
+        }
         
         @Override
         public void addSong(String title, String artist, String album, String genre) {
@@ -53,9 +60,21 @@ public class GUITester {
         
         @Override
         public List<String[]> getAllSongs() {
-            List<String[]> songs = new ArrayList<>();
-            songs.add(new String[]{"Song1", "Artist1", "Album1", "Rock"});
-            songs.add(new String[]{"Song2", "Artist2", "Album2", "Pop"});
+            return new ArrayList<>(rows);
+        }
+        
+        @Override
+        public int countSongs() {
+            return rows.size();
+        }
+        
+        @Override
+        public List<Song> findSongPage(int offset, int limit, String sortColumn, boolean ascending) {
+            List<Song> songs = new ArrayList<>();
+            for (int i = offset; i < rows.size() && i < offset + limit; i++) {
+                String[] row = rows.get(i);
+                songs.add(new Song(row[0], row[1], row[2], row[3], 0, 0, null, 1));
+            }
             return songs;
         }
     }
@@ -179,6 +198,21 @@ public class GUITester {
             this.initializeDatabase = false; // Disable database initialization for testing
         }
         
+        @Override
+        protected void execute(SwingWorker<?, ?> worker) {
+            // Run database work right away, so the checks see its result
+            worker.run();
+            try {
+                // process() and done() reach the event dispatch thread through a Swing timer
+                Thread.sleep(100);
+                if (!SwingUtilities.isEventDispatchThread()) {
+                    SwingUtilities.invokeAndWait(() -> { });
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+        
         @Override
         protected void updateStatusBar(String message) {
             updateStatusBarCalled = true;
@@ -288,7 +322,7 @@ public class GUITester {
         System.out.println("Testing Data Loading...");
         
         // Check table models have data
-        DefaultTableModel songsModel = (DefaultTableModel) gui.songsTable.getModel();
+        SongTableModel songsModel = (SongTableModel) gui.songsTable.getModel();
         DefaultTableModel artistsModel = (DefaultTableModel) gui.artistsTable.getModel();
         DefaultTableModel albumsModel = (DefaultTableModel) gui.albumsTable.getModel();
         DefaultTableModel playlistsModel = (DefaultTableModel) gui.playlistsTable.getModel();
@@ -318,7 +352,7 @@ public class GUITester {
         System.out.println("Testing Table Structure...");
         
         // Test song table structure
-        DefaultTableModel songsModel = (DefaultTableModel) gui.songsTable.getModel();
+        SongTableModel songsModel = (SongTableModel) gui.songsTable.getModel();
         boolean songTableStructure = 
             songsModel.getColumnCount() == 4 &&
             songsModel.getColumnName(0).equals("Title") &&
@@ -453,18 +487,19 @@ public class GUITester {
         System.out.println("Testing Button Action Handlers...");
         
         // Setup for testing
-        DefaultTableModel songsModel = (DefaultTableModel) gui.songsTable.getModel();
+        SongTableModel songsModel = (SongTableModel) gui.songsTable.getModel();
         DefaultTableModel artistsModel = (DefaultTableModel) gui.artistsTable.getModel();
         DefaultTableModel albumsModel = (DefaultTableModel) gui.albumsTable.getModel();
         DefaultTableModel playlistsModel = (DefaultTableModel) gui.playlistsTable.getModel();
         
         // Clear tables and add test data
-        songsModel.setRowCount(0);
+        mockSongDAO.rows.clear();
         artistsModel.setRowCount(0);
         albumsModel.setRowCount(0);
         playlistsModel.setRowCount(0);
         
-        songsModel.addRow(new Object[]{"Test Song", "Test Artist", "Test Album", "Rock"});
+        mockSongDAO.rows.add(new String[]{"Test Song", "Test Artist", "Test Album", "Rock"});
+        songsModel.refresh();
         artistsModel.addRow(new Object[]{"Test Artist", "Country", "Genre"});
         albumsModel.addRow(new Object[]{"Test Album", "Test Artist", "2023", "Rock"});
         playlistsModel.addRow(new Object[]{"Test Playlist", "0", "2023-01-01"});
@@ -4,6 +4,8 @@ import java.util.ArrayList;
 import java.util.List;
 import javax.swing.JFrame;
 import javax.swing.JTable;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
 import javax.swing.table.DefaultTableModel;
 
 import com.samet.music.dao.AlbumDAO;
@@ -37,6 +39,21 @@ public class MethodTester {
             this.initializeDatabase = false; // Disable database initialization for testing
         }
         
+        @Override
+        protected void execute(SwingWorker<?, ?> worker) {
+            // Run database work right away, so the checks see its result
+            worker.run();
+            try {
+                // process() and done() reach the event dispatch thread through a Swing timer
+                Thread.sleep(100);
+                if (!SwingUtilities.isEventDispatchThread()) {
+                    SwingUtilities.invokeAndWait(() -> { });
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+        
         @Override
         protected void updateStatusBar(String message) {
             updateStatusBarCalled = true;
@@ -73,9 +90,9 @@ public class MethodTester {
         // Method to prepare test data
         public void prepareTestData() {
             // Set up songs table
-            DefaultTableModel songsModel = (DefaultTableModel) songsTable.getModel();
-            songsModel.setRowCount(0);
-            songsModel.addRow(new Object[]{"Test Song", "Test Artist", "Test Album", "Rock"});
+            // The songs table reads its rows from the database
+            songDAO.addSong("Test Song", "Test Artist", "Test Album", "Rock");
+            ((SongTableModel) songsTable.getModel()).refresh();
             
             // Set up artists table
             DefaultTableModel artistsModel = (DefaultTableModel) artistsTable.getModel();
@@ -151,7 +168,7 @@ public class MethodTester {
                                    gui.btnDeleteSong != null;
             
             // Check table structure
-            DefaultTableModel model = (DefaultTableModel) gui.songsTable.getModel();
+            SongTableModel model = (SongTableModel) gui.songsTable.getModel();
             boolean tableStructureCorrect = model.getColumnCount() == 4 &&
                                             model.getColumnName(0).equals("Title") &&
                                             model.getColumnName(1).equals("Artist") &&
@@ -2,6 +2,7 @@ package com.samet.music.gui;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
@@ -30,8 +31,10 @@ import com.samet.music.dao.AlbumDAO;
 import com.samet.music.dao.ArtistDAO;
 import com.samet.music.dao.PlaylistDAO;
 import com.samet.music.dao.SongDAO;
+import com.samet.music.model.Song;
 import com.samet.music.util.DatabaseUtil;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -98,6 +101,13 @@ public class MusicLibraryGUITest {
         }
         
         // Overrides to make testing easier
+        @Override
+        protected void execute(SwingWorker<?, ?> worker) {
+            // Run database work right away, so its effect is visible when the handler returns
+            worker.run();
+            flushEventQueue();
+        }
+        
         @Override
         protected void updateStatusBar(String message) {
             lastStatusBarMessage = message;
@@ -271,13 +281,12 @@ public class MusicLibraryGUITest {
         };
         
         // Convert arrays to Lists
-        List<String[]> mockSongs = Arrays.asList(mockSongsArray);
         List<String[]> mockArtists = Arrays.asList(mockArtistsArray);
         List<String[]> mockAlbums = Arrays.asList(mockAlbumsArray); 
         List<String[]> mockPlaylists = Arrays.asList(mockPlaylistsArray);
         
         // Configure mocks
-        when(mockSongDAO.getAllSongs()).thenReturn(mockSongs);
+        stubSongs(mockSongsArray);
         when(mockArtistDAO.getAllArtists()).thenReturn(mockArtists);
         when(mockAlbumDAO.getAllAlbums()).thenReturn(mockAlbums);
         when(mockPlaylistDAO.getAllPlaylists()).thenReturn(mockPlaylists);
@@ -286,6 +295,55 @@ public class MusicLibraryGUITest {
         gui = new TestableGUI(mockSongDAO, mockArtistDAO, mockAlbumDAO, mockPlaylistDAO);
     }
     
+    /**
+     * Wait until the results SwingWorkers hand to the event dispatch thread were applied
+     */
+    private static void flushEventQueue() {
+        if (SwingUtilities.isEventDispatchThread()) {
+            return;
+        }
+        try {
+            // process() and done() are delivered through a Swing timer
+            Thread.sleep(100);
+            SwingUtilities.invokeAndWait(() -> { });
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    /**
+     * Make the mocked song DAO serve the given rows to the song table model
+     */
+    private void stubSongs(String[]... rows) {
+        List<Song> songs = new ArrayList<>();
+        for (String[] row : rows) {
+            songs.add(new Song(row[0], row[1], row[2], row[3], 0, 0, null, 1));
+        }
+        when(mockSongDAO.countSongs()).thenReturn(songs.size());
+        when(mockSongDAO.findSongPage(anyInt(), anyInt(), any(), anyBoolean())).thenAnswer(invocation -> {
+            int offset = Math.min(invocation.getArgument(0), songs.size());
+            int limit = invocation.getArgument(1);
+            return new ArrayList<>(songs.subList(offset, Math.min(offset + limit, songs.size())));
+        });
+    }
+    
+    /**
+     * Replace the rows of the song table
+     * @return the song table model
+     */
+    private SongTableModel showSongs(String[]... rows) {
+        stubSongs(rows);
+        SongTableModel model = (SongTableModel) gui.songsTable.getModel();
+        model.refresh();
+        flushEventQueue();
+        // Request the rows, then wait for them to arrive
+        for (int row = 0; row < model.getRowCount(); row++) {
+            model.getValueAt(row, 0);
+        }
+        flushEventQueue();
+        return model;
+    }
+    
     // After each test, close the mocked static
     @AfterEach
     public void tearDown() {
@@ -352,7 +410,7 @@ public class MusicLibraryGUITest {
     @Test
     public void testSongTableStructure() {
         // Test if song table has correct columns
-        DefaultTableModel model = (DefaultTableModel) gui.songsTable.getModel();
+        SongTableModel model = (SongTableModel) gui.songsTable.getModel();
         assertEquals(4, model.getColumnCount());
         assertEquals("Title", model.getColumnName(0));
         assertEquals("Artist", model.getColumnName(1));
@@ -397,15 +455,16 @@ public class MusicLibraryGUITest {
         doNothing().when(mockSongDAO).addSong(anyString(), anyString(), anyString(), anyString());
         
         // Get current row count
-        DefaultTableModel model = (DefaultTableModel) gui.songsTable.getModel();
+        SongTableModel model = (SongTableModel) gui.songsTable.getModel();
         int initialRowCount = model.getRowCount();
         
         // Call method directly (bypassing dialog)
         gui.songDAO.addSong("New Song", "New Artist", "New Album", "New Genre");
         
-        // Add row to table manually for testing
-        ((DefaultTableModel)gui.songsTable.getModel()).addRow(
-            new Object[]{"New Song", "New Artist", "New Album", "New Genre"});
+        // Reload the table as the GUI does after adding
+        showSongs(new String[]{"Song1", "Artist1", "Album1", "Rock"},
+            new String[]{"Song2", "Artist2", "Album2", "Pop"},
+            new String[]{"New Song", "New Artist", "New Album", "New Genre"});
             
         // Verify row was added
         assertEquals(initialRowCount + 1, model.getRowCount());
@@ -490,9 +549,7 @@ public class MusicLibraryGUITest {
     @Test
     public void testEditSong() {
         // Set up the table for editing
-        DefaultTableModel model = (DefaultTableModel) gui.songsTable.getModel();
-        model.setRowCount(0);
-        model.addRow(new Object[]{"Original Song", "Original Artist", "Original Album", "Rock"});
+        SongTableModel model = showSongs(new String[]{"Original Song", "Original Artist", "Original Album", "Rock"});
         
         // Select the first row for editing
         gui.songsTable.setRowSelectionInterval(0, 0);
@@ -509,11 +566,8 @@ public class MusicLibraryGUITest {
         // Verify result
         assertTrue(result);
         
-        // Update the model manually as we're not actually clicking buttons
-        model.setValueAt("Updated Song", 0, 0);
-        model.setValueAt("Updated Artist", 0, 1);
-        model.setValueAt("Updated Album", 0, 2);
-        model.setValueAt("Pop", 0, 3);
+        // Reload the table as the GUI does after updating
+        showSongs(new String[]{"Updated Song", "Updated Artist", "Updated Album", "Pop"});
         
         // Verify table update
         assertEquals("Updated Song", model.getValueAt(0, 0));
@@ -525,9 +579,7 @@ public class MusicLibraryGUITest {
     @Test
     public void testDeleteSong() {
         // Add a song to delete
-        DefaultTableModel model = (DefaultTableModel) gui.songsTable.getModel();
-        model.setRowCount(0);
-        model.addRow(new Object[]{"Song to Delete", "Artist", "Album", "Rock"});
+        SongTableModel model = showSongs(new String[]{"Song to Delete", "Artist", "Album", "Rock"});
         
         // Select the song to delete
         gui.songsTable.setRowSelectionInterval(0, 0);
@@ -541,8 +593,8 @@ public class MusicLibraryGUITest {
         // Call delete method
         gui.songDAO.deleteSong("Song to Delete", "Artist", "Album");
         
-        // Simulate row removal
-        model.removeRow(0);
+        // Reload the table as the GUI does after deleting
+        showSongs();
         
         // Verify row was removed
         assertEquals(0, model.getRowCount());
@@ -660,7 +712,7 @@ public class MusicLibraryGUITest {
     @Test
     public void testTableModelsAreNonEditable() {
         // Get all table models
-        DefaultTableModel songsModel = (DefaultTableModel) gui.songsTable.getModel();
+        SongTableModel songsModel = (SongTableModel) gui.songsTable.getModel();
         DefaultTableModel artistsModel = (DefaultTableModel) gui.artistsTable.getModel();
         DefaultTableModel albumsModel = (DefaultTableModel) gui.albumsTable.getModel();
         DefaultTableModel playlistsModel = (DefaultTableModel) gui.playlistsTable.getModel();
@@ -675,13 +727,11 @@ public class MusicLibraryGUITest {
     @Test
     public void testAddToPlaylist() {
         // Set up the tables for testing
-        DefaultTableModel songsModel = (DefaultTableModel) gui.songsTable.getModel();
         DefaultTableModel playlistsModel = (DefaultTableModel) gui.playlistsTable.getModel();
         
-        songsModel.setRowCount(0);
+        showSongs(new String[]{"Test Song", "Test Artist", "Test Album", "Rock"});
         playlistsModel.setRowCount(0);
         
-        songsModel.addRow(new Object[]{"Test Song", "Test Artist", "Test Album", "Rock"});
         playlistsModel.addRow(new Object[]{"Test Playlist", "0", "2023-01-01"});
         
         // Select the playlist
@@ -980,9 +1030,7 @@ public class MusicLibraryGUITest {
     @Test
     public void testEditSongClickedWithValidInput() {
         // Setup the table with data
-        DefaultTableModel model = (DefaultTableModel) gui.songsTable.getModel();
-        model.setRowCount(0);
-        model.addRow(new Object[]{"Original Song", "Original Artist", "Original Album", "Rock"});
+        showSongs(new String[]{"Original Song", "Original Artist", "Original Album", "Rock"});
         
         // Select the first row
         gui.setSelectedSongRow(0);
@@ -1021,9 +1069,7 @@ public class MusicLibraryGUITest {
     @Test
     public void testEditSongClickedWithUpdateFailure() {
         // Setup the table with data
-        DefaultTableModel model = (DefaultTableModel) gui.songsTable.getModel();
-        model.setRowCount(0);
-        model.addRow(new Object[]{"Original Song", "Original Artist", "Original Album", "Rock"});
+        showSongs(new String[]{"Original Song", "Original Artist", "Original Album", "Rock"});
         
         // Select the first row
         gui.setSelectedSongRow(0);
@@ -1057,9 +1103,7 @@ public class MusicLibraryGUITest {
     @Test
     public void testEditSongClickedWithDatabaseError() {
         // Setup the table with data
-        DefaultTableModel model = (DefaultTableModel) gui.songsTable.getModel();
-        model.setRowCount(0);
-        model.addRow(new Object[]{"Original Song", "Original Artist", "Original Album", "Rock"});
+        showSongs(new String[]{"Original Song", "Original Artist", "Original Album", "Rock"});
         
         // Select the first row
         gui.setSelectedSongRow(0);
@@ -1102,9 +1146,7 @@ public class MusicLibraryGUITest {
     @Test
     public void testDeleteSongClickedWithConfirmation() {
         // Setup the table with data
-        DefaultTableModel model = (DefaultTableModel) gui.songsTable.getModel();
-        model.setRowCount(0);
-        model.addRow(new Object[]{"Song To Delete", "Artist", "Album", "Rock"});
+        showSongs(new String[]{"Song To Delete", "Artist", "Album", "Rock"});
         
         // Select the first row
         gui.setSelectedSongRow(0);
@@ -1128,9 +1170,7 @@ public class MusicLibraryGUITest {
     @Test
     public void testDeleteSongClickedWithCancelation() {
         // Setup the table with data
-        DefaultTableModel model = (DefaultTableModel) gui.songsTable.getModel();
-        model.setRowCount(0);
-        model.addRow(new Object[]{"Song To Delete", "Artist", "Album", "Rock"});
+        showSongs(new String[]{"Song To Delete", "Artist", "Album", "Rock"});
         
         // Select the first row
         gui.setSelectedSongRow(0);
@@ -1148,9 +1188,7 @@ public class MusicLibraryGUITest {
     @Test
     public void testDeleteSongClickedWithDatabaseError() {
         // Setup the table with data
-        DefaultTableModel model = (DefaultTableModel) gui.songsTable.getModel();
-        model.setRowCount(0);
-        model.addRow(new Object[]{"Song To Delete", "Artist", "Album", "Rock"});
+        showSongs(new String[]{"Song To Delete", "Artist", "Album", "Rock"});
         
         // Select the first row
         gui.setSelectedSongRow(0);
@@ -1972,9 +2010,7 @@ public class MusicLibraryGUITest {
         playlistModel.addRow(new Object[]{"Test Playlist", "0", "2023-01-01"});
         
         // Setup the songs table
-        DefaultTableModel songsModel = (DefaultTableModel) gui.songsTable.getModel();
-        songsModel.setRowCount(0);
-        songsModel.addRow(new Object[]{"Test Song", "Test Artist", "Test Album", "Rock"});
+        showSongs(new String[]{"Test Song", "Test Artist", "Test Album", "Rock"});
         
         // Select the playlist
         gui.playlistsTable.setRowSelectionInterval(0, 0);
@@ -2002,8 +2038,7 @@ public class MusicLibraryGUITest {
         playlistModel.addRow(new Object[]{"Test Playlist", "0", "2023-01-01"});
         
         // Clear the songs table
-        DefaultTableModel songsModel = (DefaultTableModel) gui.songsTable.getModel();
-        songsModel.setRowCount(0);
+        showSongs();
         
         // Select the playlist
         gui.playlistsTable.setRowSelectionInterval(0, 0);
@@ -0,0 +1,171 @@
+package com.samet.music.gui;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.samet.music.dao.SongDAO;
+import com.samet.music.dao.SongSearchIndex;
+import com.samet.music.model.Song;
+
+/**
+ * Test class for SongSearch, with a mocked SongDAO and SongSearchIndex.
+ * Workers are collected and run by the test, so it decides when searches finish.
+ */
+public class SongSearchTest {
+
+    private static final int DELAY = 50;
+
+    private SongDAO songDAO;
+    private SongSearchIndex searchIndex;
+    private SongTableModel model;
+    private SongSearch search;
+    private final List<SwingWorker<?, ?>> workers = new ArrayList<>();
+    private final List<String> messages = new ArrayList<>();
+
+    private final Song sandman = song(1, "Enter Sandman", "Metallica", "Rock");
+    private final Song rocket = song(2, "Rocket Man", "Elton John", "Pop");
+    private final Song roll = song(3, "Rock and Roll", "Led Zeppelin", "Rock");
+
+    @Before
+    public void setUp() {
+        songDAO = mock(SongDAO.class);
+        searchIndex = mock(SongSearchIndex.class);
+        when(songDAO.searchFullText(anyString(), anyInt())).thenAnswer(invocation -> new ArrayList<Song>());
+        when(songDAO.searchFullText(eq("ro"), anyInt())).thenAnswer(invocation ->
+                new ArrayList<>(Arrays.asList(sandman, rocket, roll)));
+        model = new SongTableModel(songDAO, 10, 2, workers::add);
+        search = new SongSearch(songDAO, searchIndex, model, workers::add, messages::add, DELAY);
+    }
+
+    @Test
+    public void testKeystrokesAreDebounced() throws Exception {
+        onEventThread(() -> {
+            search.queryChanged("r");
+            search.queryChanged("ro");
+        });
+        assertTrue("Search should wait until typing pauses", workers.isEmpty());
+
+        Thread.sleep(DELAY * 4);
+        onEventThread(() -> { });
+        runWorkers();
+        verify(songDAO, times(1)).searchFullText(anyString(), anyInt());
+        verify(songDAO).searchFullText("ro", SongSearch.RESULT_LIMIT);
+        assertTrue(model.isShowingSearchResults());
+        assertEquals(3, model.getRowCount());
+        assertEquals("3 songs match 'ro'", messages.get(messages.size() - 1));
+    }
+
+    @Test
+    public void testOvertakenSearchIsDropped() throws Exception {
+        searchFor("ro");
+        SwingWorker<?, ?> first = workers.get(0);
+        searchFor("zz");
+        assertTrue("Older search should be cancelled", first.isCancelled());
+
+        runWorkers();
+        assertFalse(search.isSearching());
+        assertEquals("Only the newest search should reach the table", 0, model.getRowCount());
+        assertEquals("0 songs match 'zz'", messages.get(messages.size() - 1));
+    }
+
+    @Test
+    public void testLongerQueryIsFilteredInMemory() throws Exception {
+        searchFor("ro");
+        runWorkers();
+        searchFor("rock an");
+
+        assertTrue("Nothing should be left to read", workers.isEmpty());
+        verify(songDAO, times(1)).searchFullText(anyString(), anyInt());
+        assertEquals(1, model.getRowCount());
+        assertSame(roll, model.getSongAt(0));
+
+        searchFor("ro-");
+        assertEquals("Punctuation should go to the database", 1, workers.size());
+    }
+
+    @Test
+    public void testTypoIndexIsUsedWhenNothingStartsWithTheWords() throws Exception {
+        when(searchIndex.isReady()).thenReturn(true);
+        when(searchIndex.search("metalica", SongSearch.RESULT_LIMIT)).thenReturn(Collections.singletonList(1));
+        Map<Integer, Song> byId = new HashMap<>();
+        byId.put(1, sandman);
+        when(songDAO.findByIds(Collections.singletonList(1))).thenReturn(byId);
+
+        searchFor("  Metalica ");
+        runWorkers();
+        assertSame(sandman, model.getSongAt(0));
+
+        searchFor("metalica x");
+        assertEquals("Typo matches should not be narrowed in memory", 1, workers.size());
+    }
+
+    @Test
+    public void testEmptyQueryShowsAllSongsAgain() throws Exception {
+        searchFor("ro");
+        runWorkers();
+        assertTrue(model.isShowingSearchResults());
+        searchFor(" ");
+
+        assertFalse(model.isShowingSearchResults());
+        assertEquals("Showing all songs", messages.get(messages.size() - 1));
+    }
+
+    @Test
+    public void testMatchingFollowsTheFullTextIndex() {
+        Song song = song(4, "Café del Mar", "Energy 52", null);
+        assertTrue(SongSearch.matches(song, "cafe ener"));
+        assertTrue(SongSearch.matches(song, "52"));
+        assertFalse("Words should match at their start", SongSearch.matches(song, "afe"));
+        assertFalse("Missing fields should not match", SongSearch.matches(song, "null"));
+        assertTrue(SongSearch.narrows("rock", "rock r"));
+        assertFalse(SongSearch.narrows("rock", "roc"));
+    }
+
+    private void searchFor(String query) throws Exception {
+        onEventThread(() -> {
+            search.queryChanged(query);
+            search.searchNow();
+        });
+    }
+
+    private static void onEventThread(Runnable action) throws Exception {
+        SwingUtilities.invokeAndWait(action);
+    }
+
+    /**
+     * Run the collected workers and wait until their results reached the table
+     */
+    private void runWorkers() throws Exception {
+        List<SwingWorker<?, ?>> batch = new ArrayList<>(workers);
+        workers.clear();
+        for (SwingWorker<?, ?> worker : batch) {
+            worker.run();
+        }
+        // done() is delivered on the event dispatch thread a little later
+        long deadline = System.currentTimeMillis() + 5000;
+        while (search.isSearching() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            SwingUtilities.invokeAndWait(() -> { });
+        }
+        SwingUtilities.invokeAndWait(() -> { });
+    }
+
+    private static Song song(int id, String title, String artist, String genre) {
+        Song song = new Song(title, artist, "Album", genre, 2000, 100, null, 1);
+        song.setId(id);
+        return song;
+    }
+}
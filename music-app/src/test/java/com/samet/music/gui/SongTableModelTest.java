@@ -0,0 +1,164 @@
+package com.samet.music.gui;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
+import javax.swing.event.TableModelEvent;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.samet.music.dao.SongDAO;
+import com.samet.music.model.Song;
+
+/**
+ * Test class for SongTableModel, with a mocked SongDAO.
+ * Workers are collected and run by the test, so it decides when background reads finish.
+ */
+public class SongTableModelTest {
+
+    private static final int ROWS = 25;
+
+    private SongDAO songDAO;
+    private SongTableModel model;
+    private final List<SwingWorker<?, ?>> workers = new ArrayList<>();
+    private final List<TableModelEvent> events = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        songDAO = mock(SongDAO.class);
+        when(songDAO.countSongs()).thenReturn(ROWS);
+        when(songDAO.findSongPage(anyInt(), anyInt(), any(), anyBoolean())).thenAnswer(invocation -> {
+            int offset = invocation.getArgument(0);
+            int limit = invocation.getArgument(1);
+            List<Song> songs = new ArrayList<>();
+            for (int i = offset; i < ROWS && i < offset + limit; i++) {
+                songs.add(new Song("Title " + i, "Artist " + i, "Album", "Rock", 2000, 100, null, 1));
+            }
+            return songs;
+        });
+        model = new SongTableModel(songDAO, 10, 2, workers::add);
+        model.addTableModelListener(events::add);
+        model.refresh();
+        runWorkers();
+    }
+
+    @Test
+    public void testOnlyTheCountIsReadUpFront() {
+        assertEquals(ROWS, model.getRowCount());
+        assertEquals(4, model.getColumnCount());
+        assertEquals("Genre", model.getColumnName(3));
+        verify(songDAO, never()).findSongPage(anyInt(), anyInt(), any(), anyBoolean());
+    }
+
+    @Test
+    public void testRowsAreReadInTheBackgroundOnePageAtATime() throws Exception {
+        assertEquals("Row should show as loading until its page arrives", SongTableModel.LOADING, model.getValueAt(0, 0));
+        assertNull(model.getValueAt(0, 1));
+        model.getValueAt(5, 0);
+        assertEquals("A page should be requested once", 1, workers.size());
+
+        events.clear();
+        runWorkers();
+        assertEquals("Title 0", model.getValueAt(0, 0));
+        assertEquals("Artist 9", model.getValueAt(9, 1));
+        assertEquals("Loaded rows should be repainted", 0, events.get(0).getFirstRow());
+        assertEquals(9, events.get(0).getLastRow());
+
+        model.getValueAt(24, 0);
+        runWorkers();
+        assertEquals("Title 24", model.getValueAt(24, 0));
+        assertNull("Rows past the end should be empty", model.getValueAt(25, 0));
+        verify(songDAO).findSongPage(0, 10, null, true);
+        verify(songDAO).findSongPage(20, 10, null, true);
+    }
+
+    @Test
+    public void testLeastRecentlyUsedPageIsDropped() throws Exception {
+        load(0);
+        load(10);
+        model.getValueAt(1, 0);
+        load(20);
+        assertEquals(2, model.getLoadedPageCount());
+
+        assertEquals("Title 2", model.getValueAt(2, 0));
+        assertEquals("Evicted page should be read again", SongTableModel.LOADING, model.getValueAt(11, 0));
+    }
+
+    @Test
+    public void testSortingIsPassedToTheDatabase() throws Exception {
+        load(0);
+        model.toggleSort(1);
+        load(0);
+        model.toggleSort(1);
+        load(0);
+
+        assertEquals(1, model.getSortColumn());
+        assertFalse(model.isAscending());
+        verify(songDAO).findSongPage(0, 10, "artist", true);
+        verify(songDAO).findSongPage(0, 10, "artist", false);
+    }
+
+    @Test
+    public void testReadsStartedBeforeASortAreDropped() throws Exception {
+        model.getValueAt(0, 0);
+        model.toggleSort(0);
+        runWorkers();
+
+        assertEquals(0, model.getLoadedPageCount());
+        assertFalse(model.isLoading());
+    }
+
+    @Test
+    public void testEditsAreAppliedWithoutReloading() throws Exception {
+        load(0);
+        load(10);
+        Song song = model.getSongAt(3);
+
+        model.songUpdated(song, "New", "Artist 3", "Album", "Rock");
+        assertEquals("New", model.getValueAt(3, 0));
+
+        model.songDeleted(model.getSongAt(12));
+        assertEquals(ROWS - 1, model.getRowCount());
+        assertEquals("Pages before the deleted row should stay", "Title 0", model.getValueAt(0, 0));
+        assertEquals(1, model.getLoadedPageCount());
+
+        model.songAdded();
+        assertEquals(ROWS, model.getRowCount());
+        verify(songDAO, times(1)).countSongs();
+    }
+
+    private void load(int row) throws Exception {
+        model.getValueAt(row, 0);
+        runWorkers();
+    }
+
+    /**
+     * Run the collected workers and wait until their results reached the model
+     */
+    private void runWorkers() throws Exception {
+        List<SwingWorker<?, ?>> batch = new ArrayList<>(workers);
+        workers.clear();
+        for (SwingWorker<?, ?> worker : batch) {
+            worker.run();
+        }
+        // done() is delivered on the event dispatch thread a little later
+        long deadline = System.currentTimeMillis() + 5000;
+        boolean pending = true;
+        while (pending && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            SwingUtilities.invokeAndWait(() -> { });
+            pending = false;
+            for (SwingWorker<?, ?> worker : batch) {
+                pending |= worker.getState() != SwingWorker.StateValue.DONE;
+            }
+            pending |= model.isLoading();
+        }
+        SwingUtilities.invokeAndWait(() -> { });
+    }
+}
@@ -6,6 +6,7 @@ import org.junit.Test;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class PlaylistTest {
@@ -200,6 +201,23 @@ public class PlaylistTest {
         assertEquals("1:02:45", playlist.getFormattedTotalDuration());
     }
     
+    @Test
+    public void testSummaryStandsInForUnloadedSongs() {
+        playlist.setSummary(12, 3725);
+        
+        assertFalse(playlist.isSongsLoaded());
+        assertTrue(playlist.getSongs().isEmpty());
+        assertEquals(12, playlist.getSongCount());
+        assertEquals("1:02:05", playlist.getFormattedTotalDuration());
+        
+        Song song = new Song();
+        song.setDuration(60);
+        playlist.setSongs(new ArrayList<>(Arrays.asList(song)));
+        assertTrue("Setting the songs should load them", playlist.isSongsLoaded());
+        assertEquals(1, playlist.getSongCount());
+        assertEquals(60, playlist.getTotalDuration());
+    }
+    
     @Test
     public void testToString() {
         String expected = "Playlist{" +
@@ -0,0 +1,177 @@
+package com.samet.music.service;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.samet.music.dao.UserSongStatisticsDAO;
+
+/**
+ * Test class for CollaborativeFilter and the UserSongMatrix it is built on
+ */
+public class CollaborativeFilterTest {
+
+    private UserSongStatisticsDAO statisticsDAO;
+    private List<int[]> rows;
+
+    @Before
+    public void setUp() {
+        statisticsDAO = mock(UserSongStatisticsDAO.class);
+        rows = new ArrayList<>();
+        // {userId, songId, playCount, favorite}
+        when(statisticsDAO.forEachInteraction(any())).thenAnswer(invocation -> {
+            UserSongStatisticsDAO.InteractionHandler handler = invocation.getArgument(0);
+            for (int[] row : rows) {
+                handler.accept(row[0], row[1], row[2], row[3] == 1);
+            }
+            return true;
+        });
+    }
+
+    private void play(int userId, int songId, int playCount) {
+        rows.add(new int[] { userId, songId, playCount, 0 });
+    }
+
+    @Test
+    public void testMatrixMergesDuplicatesAndBuildsBothViews() {
+        play(2, 10, 1);
+        play(1, 20, 3);
+        play(1, 10, 1);
+        play(1, 20, 0);
+        rows.add(new int[] { 1, 20, 0, 1 });
+        play(3, 30, 0); // no signal, dropped
+
+        UserSongMatrix matrix = UserSongMatrix.load(statisticsDAO);
+
+        assertEquals("Users without signal should be dropped", 2, matrix.getUserCount());
+        assertEquals("Songs without signal should be dropped", 2, matrix.getSongCount());
+        assertEquals("Repeated pairs should be merged", 3, matrix.getInteractionCount());
+
+        int user = matrix.userIndex(1);
+        int song = matrix.songIndex(20);
+        assertEquals("User row should be sorted by song", 10,
+                matrix.songId(matrix.userEntrySong(matrix.userRowStart(user))));
+        assertEquals("Merged weight should include the favorite",
+                UserSongMatrix.weight(3, false) + UserSongMatrix.weight(0, true),
+                matrix.userEntryWeight(matrix.userRowStart(user) + 1), 1e-6);
+        assertEquals("Song view should list the user", user, matrix.songEntryUser(matrix.songRowStart(song)));
+        assertTrue("Unknown user should not be found", matrix.userIndex(3) < 0);
+    }
+
+    @Test
+    public void testRecommendsSongsOfMostSimilarUser() {
+        play(1, 1, 5);
+        play(1, 2, 5);
+        play(2, 1, 5);
+        play(2, 2, 5);
+        play(2, 3, 5); // user 2 is a close match for user 1
+        play(3, 1, 1);
+        play(3, 4, 9); // user 3 overlaps less
+
+        CollaborativeFilter filter = new CollaborativeFilter(statisticsDAO);
+        List<Integer> songIds = filter.recommendSongIds(1, 2);
+
+        assertEquals("Should recommend two songs", Arrays.asList(3, 4), songIds);
+        Map<Integer, Double> neighbours = filter.getNeighbours(1);
+        assertEquals("Closest neighbour should come first", Integer.valueOf(2), neighbours.keySet().iterator().next());
+    }
+
+    @Test
+    public void testJaccardIgnoresPlayCounts() {
+        play(1, 1, 1);
+        play(1, 2, 1);
+        play(2, 1, 50);
+        play(2, 2, 50);
+        play(3, 1, 1);
+        play(3, 5, 1);
+
+        CollaborativeFilter filter = new CollaborativeFilter(statisticsDAO,
+                CollaborativeFilter.Similarity.JACCARD, 10, 60000);
+        Map<Integer, Double> neighbours = filter.getNeighbours(1);
+
+        assertEquals("Identical song sets should have similarity 1", 1.0, neighbours.get(2), 1e-6);
+        assertEquals("One shared song out of three", 1.0 / 3, neighbours.get(3), 1e-6);
+    }
+
+    @Test
+    public void testNeverRecommendsKnownSongsAndFallsBackToPopularity() {
+        play(1, 1, 2);
+        play(2, 2, 1);
+        play(3, 2, 1);
+        play(3, 3, 1);
+
+        CollaborativeFilter filter = new CollaborativeFilter(statisticsDAO);
+
+        assertEquals("Without neighbours the most popular unheard song comes first",
+                Integer.valueOf(2), filter.recommendSongIds(1, 5).get(0));
+        assertFalse("Known songs should never be recommended", filter.recommendSongIds(1, 5).contains(1));
+        assertEquals("New users get songs by popularity", Arrays.asList(2, 1, 3), filter.recommendSongIds(99, 5));
+    }
+
+    @Test
+    public void testBuffersAreClearedBetweenCalls() {
+        play(1, 1, 1);
+        play(1, 2, 1);
+        play(2, 1, 1);
+        play(2, 3, 4);
+        play(3, 2, 2);
+
+        CollaborativeFilter filter = new CollaborativeFilter(statisticsDAO);
+        List<Integer> first = filter.recommendSongIds(2, 5);
+        filter.recommendSongIds(1, 5);
+        filter.recommendSongIds(99, 5);
+
+        assertEquals("Earlier calls should not leak into later ones", first, filter.recommendSongIds(2, 5));
+        assertEquals("New users get songs by popularity", Arrays.asList(2, 3, 1), filter.recommendSongIds(99, 5));
+    }
+
+    @Test
+    public void testMatrixRanksSongsByPopularity() {
+        play(1, 10, 1);
+        play(2, 20, 3);
+        play(3, 30, 1);
+        play(1, 30, 1);
+
+        UserSongMatrix matrix = UserSongMatrix.load(statisticsDAO);
+
+        assertEquals(3, matrix.getPopularSongCount());
+        assertEquals("Highest total should come first", 20, matrix.songId(matrix.popularSong(0)));
+        assertEquals(30, matrix.songId(matrix.popularSong(1)));
+        assertEquals(10, matrix.songId(matrix.popularSong(2)));
+    }
+
+    @Test
+    public void testMatrixAndNeighboursAreCachedUntilInvalidated() {
+        play(1, 1, 1);
+        play(2, 1, 1);
+        play(2, 2, 1);
+
+        CollaborativeFilter filter = new CollaborativeFilter(statisticsDAO);
+        filter.recommendSongIds(1, 5);
+        filter.recommendSongIds(1, 5);
+        filter.getNeighbours(2);
+        verify(statisticsDAO, times(1)).forEachInteraction(any());
+
+        filter.invalidate();
+        filter.recommendSongIds(1, 5);
+        verify(statisticsDAO, times(2)).forEachInteraction(any());
+    }
+
+    @Test
+    public void testTopKReturnsHighestScoresInOrder() {
+        float[] scores = { 0.5f, 3f, 0f, 2f, 1f, -1f };
+        int[] candidates = { 0, 1, 2, 3, 4, 5 };
+
+        int[] best = CollaborativeFilter.topK(candidates, candidates.length, scores, 3);
+
+        assertArrayEquals("Should keep the three best positive scores", new int[] { 1, 3, 4 }, best);
+    }
+}
@@ -13,9 +13,12 @@ import com.samet.music.dao.SongDAO;
 import com.samet.music.dao.UserSongStatisticsDAO;
 import com.samet.music.dao.AlbumDAO;
 import com.samet.music.dao.ArtistDAO;
+import com.samet.music.dao.PlayRollupDAO;
 import com.samet.music.model.Song;
+import com.samet.music.model.SongStatistics;
 import com.samet.music.model.User;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.*;
 
@@ -37,6 +40,9 @@ public class MusicStatisticsServiceTest {
     @Mock
     private ArtistDAO artistDAO;
     
+    @Mock
+    private PlayRollupDAO playRollupDAO;
+    
     private MusicStatisticsService musicStatisticsService;
     
     private final int TEST_USER_ID = 1;
@@ -66,6 +72,14 @@ public class MusicStatisticsServiceTest {
             userSongStatisticsDAOField.set(musicStatisticsService, userSongStatisticsDAO);
             albumDAOField.set(musicStatisticsService, albumDAO);
             artistDAOField.set(musicStatisticsService, artistDAO);
+            
+            java.lang.reflect.Field collaborativeFilterField = MusicStatisticsService.class.getDeclaredField("collaborativeFilter");
+            collaborativeFilterField.setAccessible(true);
+            collaborativeFilterField.set(musicStatisticsService, new CollaborativeFilter(userSongStatisticsDAO));
+            
+            java.lang.reflect.Field playRollupDAOField = MusicStatisticsService.class.getDeclaredField("playRollupDAO");
+            playRollupDAOField.setAccessible(true);
+            playRollupDAOField.set(musicStatisticsService, playRollupDAO);
                 } catch (Exception e) {
             fail("Failed to set up test: " + e.getMessage());
             }
@@ -79,9 +93,6 @@ public class MusicStatisticsServiceTest {
         basicStats.put("total_plays", 100);
         basicStats.put("average_daily_plays", 5);
         
-        List<Integer> favoriteSongIds = Arrays.asList(1, 2, 3);
-        List<Integer> mostPlayedIds = Arrays.asList(2, 3, 4);
-        
         Song song1 = new Song("Song 1", "Artist A", "Album X", "Rock", 2020, 180, "path1", userId);
         song1.setId(1);
         
@@ -94,19 +105,13 @@ public class MusicStatisticsServiceTest {
         Song song4 = new Song("Song 4", "Artist D", "Album W", "Electronic", 2022, 195, "path4", userId);
         song4.setId(4);
         
-        // Configure mocks
+        // Configure mocks: favorites 1, 2, 3 and most played 2, 3, 4, ordered by play count
         Mockito.when(userSongStatisticsDAO.getUserStatistics(userId)).thenReturn(basicStats);
-        Mockito.when(userSongStatisticsDAO.getFavoriteSongs(userId)).thenReturn(favoriteSongIds);
-        Mockito.when(userSongStatisticsDAO.getMostPlayedSongs(userId, 3)).thenReturn(mostPlayedIds);
-        
-        Mockito.when(songDAO.findById(1)).thenReturn(Optional.of(song1));
-        Mockito.when(songDAO.findById(2)).thenReturn(Optional.of(song2));
-        Mockito.when(songDAO.findById(3)).thenReturn(Optional.of(song3));
-        Mockito.when(songDAO.findById(4)).thenReturn(Optional.of(song4));
-        
-        Mockito.when(userSongStatisticsDAO.getPlayCount(userId, 2)).thenReturn(25);
-        Mockito.when(userSongStatisticsDAO.getPlayCount(userId, 3)).thenReturn(18);
-        Mockito.when(userSongStatisticsDAO.getPlayCount(userId, 4)).thenReturn(10);
+        Mockito.when(userSongStatisticsDAO.getFavoriteAndMostPlayedSongStatistics(userId, 3)).thenReturn(Arrays.asList(
+                new SongStatistics(song2, 25, true, null, true),
+                new SongStatistics(song3, 18, true, null, true),
+                new SongStatistics(song4, 10, false, null, true),
+                new SongStatistics(song1, 0, true, null, false)));
         
         // Execute the method
         Map<String, Object> summary = musicStatisticsService.getUserListeningSummary(userId);
@@ -120,7 +125,7 @@ public class MusicStatisticsServiceTest {
         List<Map<String, Object>> topFavorites = (List<Map<String, Object>>) summary.get("top_favorites");
         assertNotNull("Top favorites should not be null", topFavorites);
         assertEquals("Should have 3 top favorites", 3, topFavorites.size());
-        assertEquals("First favorite should be Song 1", "Song 1", topFavorites.get(0).get("title"));
+        assertEquals("First favorite should be the most played favorite", "Song 2", topFavorites.get(0).get("title"));
         
         @SuppressWarnings("unchecked")
         List<Map<String, Object>> topPlayed = (List<Map<String, Object>>) summary.get("top_played");
@@ -137,26 +142,54 @@ public class MusicStatisticsServiceTest {
     
     @Test
     public void testGetListeningTrendReport() {
-        // Test for method getListeningTrendReport
-        Map<String, Object> report = musicStatisticsService.getListeningTrendReport(TEST_USER_ID, TEST_START_DATE, TEST_END_DATE);
+        LocalDateTime start = LocalDateTime.of(2024, 3, 1, 0, 0);
+        LocalDateTime end = LocalDateTime.of(2024, 3, 3, 23, 59);
+        long firstDay = LocalDate.of(2024, 3, 1).toEpochDay();
+        Map<Long, Integer> days = new LinkedHashMap<>();
+        days.put(firstDay, 2);
+        days.put(firstDay + 2, 3);
+        Map<String, Integer> genres = new LinkedHashMap<>();
+        genres.put("Rock", 3);
+        genres.put("Pop", 2);
+        Mockito.when(playRollupDAO.getDailyPlayCounts(TEST_USER_ID, firstDay, firstDay + 2)).thenReturn(days);
+        Mockito.when(playRollupDAO.getGenrePlayCounts(TEST_USER_ID, firstDay, firstDay + 2)).thenReturn(genres);
+        
+        Map<String, Object> report = musicStatisticsService.getListeningTrendReport(TEST_USER_ID, start, end);
         
         // Assert the report is not null and contains the expected keys
         assertNotNull("Report should not be null", report);
-        assertTrue("Report should contain daily activity", report.containsKey("daily_activity"));
-        assertTrue("Report should contain genre distribution", report.containsKey("genre_distribution"));
+        assertEquals("Report should count all plays", 5, report.get("total_plays"));
         
         // Check daily activity data
         @SuppressWarnings("unchecked")
         Map<String, Integer> dailyActivity = (Map<String, Integer>) report.get("daily_activity");
-        assertNotNull("Daily activity should not be null", dailyActivity);
+        assertEquals("Every day of the period should be listed", 3, dailyActivity.size());
+        assertEquals(Integer.valueOf(2), dailyActivity.get("2024-03-01"));
+        assertEquals("Days without plays should be zero", Integer.valueOf(0), dailyActivity.get("2024-03-02"));
+        assertEquals(Integer.valueOf(3), dailyActivity.get("2024-03-03"));
         
         // Check genre distribution
         @SuppressWarnings("unchecked")
         Map<String, Double> genreDistribution = (Map<String, Double>) report.get("genre_distribution");
-        assertNotNull("Genre distribution should not be null", genreDistribution);
-        assertTrue("Genre distribution should include Rock", genreDistribution.containsKey("Rock"));
-        assertTrue("Genre distribution should include Pop", genreDistribution.containsKey("Pop"));
-        assertTrue("Genre distribution should include Electronic", genreDistribution.containsKey("Electronic"));
+        assertEquals("Rock should have 60% of the plays", 60.0, genreDistribution.get("Rock"), 0.001);
+        assertEquals("Pop should have 40% of the plays", 40.0, genreDistribution.get("Pop"), 0.001);
+        Mockito.verify(playRollupDAO).catchUp();
+    }
+    
+    @Test
+    public void testGetListeningTrendReport_LongPeriodIsCapped() {
+        long lastDay = TEST_END_DATE.toLocalDate().toEpochDay();
+        Mockito.when(playRollupDAO.getDailyPlayCounts(TEST_USER_ID, lastDay - 366, lastDay))
+                .thenReturn(new LinkedHashMap<>());
+        
+        Map<String, Object> report = musicStatisticsService.getListeningTrendReport(
+                TEST_USER_ID, TEST_END_DATE.minusYears(5), TEST_END_DATE);
+        
+        @SuppressWarnings("unchecked")
+        Map<String, Integer> dailyActivity = (Map<String, Integer>) report.get("daily_activity");
+        assertEquals("Report should cover at most a year", 367, dailyActivity.size());
+        assertEquals(0, report.get("total_plays"));
+        assertTrue("No plays, no genres", ((Map<?, ?>) report.get("genre_distribution")).isEmpty());
     }
     
     @Test
@@ -166,19 +199,12 @@ public class MusicStatisticsServiceTest {
         Song song2 = new Song(2, "Song 2", "Artist 2", "Album 2", "Pop", 2015, 210, "path2", 1, null);
         Song song3 = new Song(3, "Song 3", "Artist 3", "Album 3", "Rock", 1990, 240, "path3", 1, null);
         
-        // Mock userSongStatisticsDAO response
-        Mockito.when(userSongStatisticsDAO.getFavoriteSongs(TEST_USER_ID))
-               .thenReturn(Arrays.asList(1, 2));
-        Mockito.when(userSongStatisticsDAO.getMostPlayedSongs(TEST_USER_ID, 10))
-               .thenReturn(Arrays.asList(1, 2, 3));
-        Mockito.when(userSongStatisticsDAO.getPlayCount(TEST_USER_ID, 1)).thenReturn(10);
-        Mockito.when(userSongStatisticsDAO.getPlayCount(TEST_USER_ID, 2)).thenReturn(8);
-        Mockito.when(userSongStatisticsDAO.getPlayCount(TEST_USER_ID, 3)).thenReturn(5);
-        
-        // Mock songDAO responses
-        Mockito.when(songDAO.findById(1)).thenReturn(Optional.of(song1));
-        Mockito.when(songDAO.findById(2)).thenReturn(Optional.of(song2));
-        Mockito.when(songDAO.findById(3)).thenReturn(Optional.of(song3));
+        // Mock userSongStatisticsDAO response: favorites 1, 2 and most played 1, 2, 3
+        Mockito.when(userSongStatisticsDAO.getFavoriteAndMostPlayedSongStatistics(TEST_USER_ID, 10))
+               .thenReturn(Arrays.asList(
+                       new SongStatistics(song1, 10, true, null, true),
+                       new SongStatistics(song2, 8, true, null, true),
+                       new SongStatistics(song3, 5, false, null, true)));
         
         // Get the music taste profile
         Map<String, Object> profile = musicStatisticsService.getMusicTasteProfile(TEST_USER_ID);
@@ -205,9 +231,7 @@ public class MusicStatisticsServiceTest {
     @Test
     public void testGetMusicTasteProfileWithEmptyData() {
         // Mock empty data
-        Mockito.when(userSongStatisticsDAO.getFavoriteSongs(TEST_USER_ID))
-               .thenReturn(Arrays.asList());
-        Mockito.when(userSongStatisticsDAO.getMostPlayedSongs(TEST_USER_ID, 10))
+        Mockito.when(userSongStatisticsDAO.getFavoriteAndMostPlayedSongStatistics(TEST_USER_ID, 10))
                .thenReturn(Arrays.asList());
         
         // Get the music taste profile
@@ -227,13 +251,16 @@ public class MusicStatisticsServiceTest {
         Song song2 = new Song(2, "Song 2", "Artist 2", "Album 2", "Pop", 2015, 210, "path2", 1, null);
         Song song3 = new Song(3, "Song 3", "Artist 3", "Album 3", "Rock", 1990, 240, "path3", 1, null);
         
-        // Mock songDAO.findAll() to return a list of songs
-        Mockito.when(songDAO.findAll()).thenReturn(Arrays.asList(song1, song2, song3));
-        
-        // Mock userSongStatisticsDAO.getPlayCount to simulate user already played song1
-        Mockito.when(userSongStatisticsDAO.getPlayCount(TEST_USER_ID, 1)).thenReturn(5);  // Already played
-        Mockito.when(userSongStatisticsDAO.getPlayCount(TEST_USER_ID, 2)).thenReturn(0);  // Never played
-        Mockito.when(userSongStatisticsDAO.getPlayCount(TEST_USER_ID, 3)).thenReturn(0);  // Never played
+        // The user played song 1; user 2 played songs 1 and 2, user 3 played song 3
+        Mockito.when(userSongStatisticsDAO.forEachInteraction(Mockito.any())).thenAnswer(invocation -> {
+            UserSongStatisticsDAO.InteractionHandler handler = invocation.getArgument(0);
+            handler.accept(TEST_USER_ID, 1, 5, false);
+            handler.accept(2, 1, 3, false);
+            handler.accept(2, 2, 4, true);
+            handler.accept(3, 3, 1, false);
+            return true;
+        });
+        stubFindByIds(song1, song2, song3);
         
         // Get recommendations with limit of 2
         List<Song> recommendations = musicStatisticsService.getSimilarUserRecommendations(TEST_USER_ID, 2);
@@ -245,42 +272,65 @@ public class MusicStatisticsServiceTest {
         for (Song song : recommendations) {
             assertNotEquals("Recommendations should not include song 1", 1, song.getId());
         }
+        assertEquals("Similar user's song should come first", 2, recommendations.get(0).getId());
     }
     
     @Test
     public void testGetTimeOfDayListeningHabits() {
+        int[] hours = new int[24];
+        hours[8] = 1;
+        hours[14] = 1;
+        hours[20] = 1;
+        hours[23] = 1;
+        Mockito.when(playRollupDAO.getHourOfDayPlayCounts(TEST_USER_ID)).thenReturn(hours);
+        
         // Test the time of day listening habits
         Map<String, Integer> timeDistribution = musicStatisticsService.getTimeOfDayListeningHabits(TEST_USER_ID);
         
         // Verify the distribution
         assertNotNull("Time distribution should not be null", timeDistribution);
-        assertTrue("Should include morning data", timeDistribution.containsKey("Morning (6AM-12PM)"));
-        assertTrue("Should include afternoon data", timeDistribution.containsKey("Afternoon (12PM-6PM)"));
-        assertTrue("Should include evening data", timeDistribution.containsKey("Evening (6PM-12AM)"));
-        assertTrue("Should include night data", timeDistribution.containsKey("Night (12AM-6AM)"));
+        assertEquals("Should include morning data", Integer.valueOf(25), timeDistribution.get("Morning (6AM-12PM)"));
+        assertEquals("Should include afternoon data", Integer.valueOf(25), timeDistribution.get("Afternoon (12PM-6PM)"));
+        assertEquals("Should include evening data", Integer.valueOf(50), timeDistribution.get("Evening (6PM-12AM)"));
+        assertEquals("Should include night data", Integer.valueOf(0), timeDistribution.get("Night (12AM-6AM)"));
         
         // Calculate total to ensure percentages add up to 100%
         int total = timeDistribution.values().stream().mapToInt(Integer::intValue).sum();
         assertEquals("Total distribution should be 100%", 100, total);
     }
     
+    @Test
+    public void testGetTimeOfDayListeningHabits_PercentagesAlwaysAddUp() {
+        int[] hours = new int[24];
+        hours[1] = 1;
+        hours[7] = 1;
+        hours[13] = 1;
+        Mockito.when(playRollupDAO.getHourOfDayPlayCounts(TEST_USER_ID)).thenReturn(hours);
+        
+        Map<String, Integer> timeDistribution = musicStatisticsService.getTimeOfDayListeningHabits(TEST_USER_ID);
+        
+        int total = timeDistribution.values().stream().mapToInt(Integer::intValue).sum();
+        assertEquals("Thirds should still add up to 100%", 100, total);
+        assertEquals("Evening has no plays", Integer.valueOf(0), timeDistribution.get("Evening (6PM-12AM)"));
+    }
+    
     @Test
     public void testGetDayOfWeekListeningActivity() {
+        // Monday first
+        Mockito.when(playRollupDAO.getWeekdayPlayCounts(TEST_USER_ID)).thenReturn(new int[] {4, 0, 0, 0, 2, 0, 0});
+        
         // Test the day of week listening activity
         Map<String, Integer> dayDistribution = musicStatisticsService.getDayOfWeekListeningActivity(TEST_USER_ID);
         
         // Verify the distribution
         assertNotNull("Day distribution should not be null", dayDistribution);
         
-        // Check that all days of the week are included
+        // Check that all days of the week are included, Monday first
         String[] daysOfWeek = {"Monday", "Tuesday", "Wednesday", "Thursday", "Friday", "Saturday", "Sunday"};
-        for (String day : daysOfWeek) {
-            assertTrue("Should include " + day + " data", dayDistribution.containsKey(day));
-        }
-        
-        // Calculate total to check data consistency
-        int total = dayDistribution.values().stream().mapToInt(Integer::intValue).sum();
-        assertEquals("Total distribution percentage should be 130% (all days add up)", 130, total);
+        assertEquals(Arrays.asList(daysOfWeek), new ArrayList<>(dayDistribution.keySet()));
+        assertEquals(Integer.valueOf(4), dayDistribution.get("Monday"));
+        assertEquals(Integer.valueOf(2), dayDistribution.get("Friday"));
+        assertEquals(Integer.valueOf(0), dayDistribution.get("Sunday"));
     }
     
     @Test
@@ -297,9 +347,7 @@ public class MusicStatisticsServiceTest {
                .thenReturn(Arrays.asList(1, 3));
         
         // Mock songDAO responses
-        Mockito.when(songDAO.findById(1)).thenReturn(Optional.of(song1));
-        Mockito.when(songDAO.findById(2)).thenReturn(Optional.of(song2));
-        Mockito.when(songDAO.findById(3)).thenReturn(Optional.of(song3));
+        stubFindByIds(song1, song2, song3);
         
         // Get the average duration
         int averageDuration = musicStatisticsService.getAverageSongDurationPreference(TEST_USER_ID);
@@ -322,4 +370,23 @@ public class MusicStatisticsServiceTest {
         // With no data, should return 0
         assertEquals("Average duration should be 0 with no data", 0, averageDuration);
     }
-} 
\ No newline at end of file
+
+    /**
+     * Stubs SongDAO.findByIds to resolve IDs against the given songs
+     */
+    private void stubFindByIds(Song... songs) {
+        Map<Integer, Song> catalog = new HashMap<>();
+        for (Song song : songs) {
+            catalog.put(song.getId(), song);
+        }
+        Mockito.when(songDAO.findByIds(Mockito.anyCollection())).thenAnswer(invocation -> {
+            Map<Integer, Song> found = new HashMap<>();
+            for (Object id : (Collection<?>) invocation.getArgument(0)) {
+                if (catalog.containsKey(id)) {
+                    found.put((Integer) id, catalog.get(id));
+                }
+            }
+            return found;
+        });
+    }
+}
@@ -0,0 +1,109 @@
+package com.samet.music.service;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.samet.music.dao.PlaylistDAO;
+import com.samet.music.dao.SongDAO;
+import com.samet.music.model.PlaylistAddResult;
+import com.samet.music.model.PlaylistAddResult.Outcome;
+import com.samet.music.model.Song;
+
+/**
+ * Test class for PlaylistExporter, reading the exported files back with PlaylistImporter
+ */
+public class PlaylistExporterTest {
+
+    private PlaylistDAO playlistDAO;
+    private SongDAO songDAO;
+    private List<Song> songs;
+    private PlaylistExporter exporter;
+
+    @Before
+    public void setUp() {
+        playlistDAO = mock(PlaylistDAO.class);
+        songDAO = mock(SongDAO.class);
+        songs = Arrays.asList(
+                PlaylistImporterTest.song(1, "One", "Metallica", "/music/one.mp3"),
+                PlaylistImporterTest.song(2, "Hello, \"World\"", "The Band", null),
+                PlaylistImporterTest.song(3, "Untitled", null, null));
+        when(playlistDAO.streamSongs(9)).thenAnswer(invocation -> songs.stream());
+        when(playlistDAO.getOwnerId(10)).thenReturn(1);
+        when(songDAO.streamByUserId(1)).thenAnswer(invocation -> songs.stream());
+        exporter = new PlaylistExporter(playlistDAO);
+    }
+
+    @Test
+    public void testM3uExport() throws IOException {
+        StringWriter out = new StringWriter();
+        assertEquals(3, exporter.exportTo(9, out, PlaylistFormat.M3U));
+        assertEquals("#EXTM3U\n" +
+                "#EXTINF:100,Metallica - One\n" +
+                "/music/one.mp3\n" +
+                "#EXTINF:100,The Band - Hello, \"World\"\n" +
+                "The Band - Hello, \"World\"\n" +
+                "#EXTINF:100,Untitled\n" +
+                "Untitled\n", out.toString());
+    }
+
+    @Test
+    public void testPlsExport() throws IOException {
+        StringWriter out = new StringWriter();
+        exporter.exportTo(9, out, PlaylistFormat.PLS);
+        assertEquals("[playlist]\n" +
+                "File1=/music/one.mp3\n" +
+                "Title1=Metallica - One\n" +
+                "Length1=100\n" +
+                "Title2=The Band - Hello, \"World\"\n" +
+                "Length2=100\n" +
+                "Title3=Untitled\n" +
+                "Length3=100\n" +
+                "NumberOfEntries=3\n" +
+                "Version=2\n", out.toString());
+    }
+
+    @Test
+    public void testCsvExport() throws IOException {
+        StringWriter out = new StringWriter();
+        exporter.exportTo(9, out, PlaylistFormat.CSV);
+        assertEquals(PlaylistExporter.CSV_HEADER + "\n" +
+                "One,Metallica,Album,Genre,2000,100,/music/one.mp3\n" +
+                "\"Hello, \"\"World\"\"\",The Band,Album,Genre,2000,100,\n" +
+                "Untitled,,Album,Genre,2000,100,\n", out.toString());
+    }
+
+    @Test
+    public void testEveryFormatImportsBack() throws IOException {
+        List<List<Integer>> imported = new ArrayList<>();
+        when(playlistDAO.appendSongs(anyInt(), anyList())).thenAnswer(invocation -> {
+            List<Integer> songIds = invocation.getArgument(1);
+            imported.add(new ArrayList<>(songIds));
+            PlaylistAddResult result = new PlaylistAddResult();
+            songIds.forEach(songId -> result.put(songId, Outcome.ADDED));
+            return result;
+        });
+        PlaylistImporter importer = new PlaylistImporter(playlistDAO, songDAO);
+
+        for (PlaylistFormat format : PlaylistFormat.values()) {
+            imported.clear();
+            StringWriter out = new StringWriter();
+            exporter.exportTo(9, out, format);
+            PlaylistImporter.Result result = importer.importFrom(10, new StringReader(out.toString()), format);
+
+            assertEquals(format + " should import every song", 0, result.getUnresolved());
+            assertEquals(format + " should keep the order", Arrays.asList(Arrays.asList(1, 2, 3)), imported);
+        }
+    }
+}
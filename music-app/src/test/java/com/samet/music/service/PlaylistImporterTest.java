@@ -0,0 +1,182 @@
+package com.samet.music.service;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.samet.music.dao.PlaylistDAO;
+import com.samet.music.dao.SongDAO;
+import com.samet.music.model.PlaylistAddResult;
+import com.samet.music.model.PlaylistAddResult.Outcome;
+import com.samet.music.model.Song;
+
+/**
+ * Test class for PlaylistImporter, with a mocked SongDAO and PlaylistDAO
+ */
+public class PlaylistImporterTest {
+
+    private SongDAO songDAO;
+    private PlaylistDAO playlistDAO;
+    private List<Song> library;
+    private List<List<Integer>> batches;
+    private PlaylistImporter importer;
+
+    @Before
+    public void setUp() {
+        songDAO = mock(SongDAO.class);
+        playlistDAO = mock(PlaylistDAO.class);
+        library = new ArrayList<>(Arrays.asList(
+                song(1, "One", "Metallica", "/music/one.mp3"),
+                song(2, "Yesterday", "The Beatles", null),
+                song(3, "Yesterday", "Other Band", null),
+                song(4, "Hey Jude", "The Beatles", "C:\\music\\jude.mp3")));
+        batches = new ArrayList<>();
+        when(playlistDAO.getOwnerId(9)).thenReturn(1);
+        when(songDAO.streamByUserId(1)).thenAnswer(invocation -> library.stream());
+        when(playlistDAO.appendSongs(anyInt(), anyList())).thenAnswer(invocation -> {
+            List<Integer> songIds = invocation.getArgument(1);
+            batches.add(new ArrayList<>(songIds));
+            PlaylistAddResult result = new PlaylistAddResult();
+            for (Integer songId : songIds) {
+                result.put(songId, Outcome.ADDED);
+            }
+            return result;
+        });
+        importer = new PlaylistImporter(playlistDAO, songDAO);
+    }
+
+    @Test
+    public void testM3uEntriesMatchByPathThenTitleAndArtist() throws IOException {
+        String m3u = "\uFEFF#EXTM3U\n" +
+                "#EXTINF:300,Someone - Renamed\n" +
+                "/music/one.mp3\n" +
+                "#EXTINF:125,the beatles - YESTERDAY\n" +
+                "moved/yesterday.mp3\n" +
+                "\n" +
+                "C:/music/jude.mp3\n" +
+                "#EXTINF:10,Nobody - Nothing\n" +
+                "nothing.mp3\n";
+
+        PlaylistImporter.Result result = importer.importFrom(9, new StringReader(m3u), PlaylistFormat.M3U);
+
+        assertEquals(Arrays.asList(Arrays.asList(1, 2, 4)), batches);
+        assertEquals(4, result.getEntries());
+        assertEquals(3, result.getAdded());
+        assertEquals(1, result.getUnresolved());
+        assertEquals(Arrays.asList("nothing.mp3"), result.getUnresolvedEntries());
+        verify(playlistDAO).appendSongs(eq(9), anyList());
+    }
+
+    @Test
+    public void testPlsEntries() throws IOException {
+        String pls = "[playlist]\n" +
+                "File1=/music/one.mp3\n" +
+                "Title1=Metallica - One\n" +
+                "Length1=300\n" +
+                "Title2=The Beatles - Hey Jude\n" +
+                "File3=unknown.mp3\n" +
+                "Title3=Yesterday\n" +
+                "NumberOfEntries=3\n" +
+                "Version=2\n";
+
+        PlaylistImporter.Result result = importer.importFrom(9, new StringReader(pls), PlaylistFormat.PLS);
+
+        assertEquals(Arrays.asList(Arrays.asList(1, 4)), batches);
+        assertEquals("A title shared by two songs should not match without an artist", 1, result.getUnresolved());
+    }
+
+    @Test
+    public void testCsvEntriesWithQuotedFields() throws IOException {
+        library.add(song(5, "Hello, \"World\"", "Multi\nLine", null));
+        String csv = "Title,Artist,Album,file_path\r\n" +
+                "\"Hello, \"\"World\"\"\",\"Multi\nLine\",X,\r\n" +
+                "Ignored,Ignored,,/music/one.mp3\r\n" +
+                "\r\n" +
+                "Hey Jude,The Beatles\r\n";
+
+        PlaylistImporter.Result result = importer.importFrom(9, new StringReader(csv), PlaylistFormat.CSV);
+
+        assertEquals(Arrays.asList(Arrays.asList(5, 1, 4)), batches);
+        assertEquals(3, result.getEntries());
+    }
+
+    @Test(expected = IOException.class)
+    public void testCsvNeedsAHeader() throws IOException {
+        importer.importFrom(9, new StringReader("a,b\n1,2\n"), PlaylistFormat.CSV);
+    }
+
+    @Test
+    public void testEntriesAreAppendedInBatches() throws IOException {
+        StringBuilder m3u = new StringBuilder("#EXTM3U\n");
+        int entries = PlaylistImporter.BATCH_SIZE * 2 + 500;
+        for (int i = 1; i <= entries; i++) {
+            library.add(song(100 + i, "Song " + i, "Artist", "/bulk/" + i + ".mp3"));
+            m3u.append("/bulk/").append(i).append(".mp3\n");
+        }
+        doAnswer(invocation -> {
+            List<Integer> songIds = invocation.getArgument(1);
+            batches.add(new ArrayList<>(songIds));
+            PlaylistAddResult result = new PlaylistAddResult();
+            for (Integer songId : songIds) {
+                result.put(songId, songId == 101 ? Outcome.ALREADY_IN_PLAYLIST : Outcome.ADDED);
+            }
+            return result;
+        }).when(playlistDAO).appendSongs(anyInt(), anyList());
+
+        PlaylistImporter.Result result = importer.importFrom(9, new StringReader(m3u.toString()), PlaylistFormat.M3U);
+
+        assertEquals(3, batches.size());
+        assertEquals(PlaylistImporter.BATCH_SIZE, batches.get(0).size());
+        assertEquals(500, batches.get(2).size());
+        assertEquals(entries - 1, result.getAdded());
+        assertEquals(1, result.getSkipped());
+        verify(songDAO, times(1)).streamByUserId(1);
+    }
+
+    @Test
+    public void testEntriesMatchTheOwnersSongsOnly() throws IOException {
+        // User 2 has their own copy of "One" and owns playlist 20
+        when(playlistDAO.getOwnerId(20)).thenReturn(2);
+        when(songDAO.streamByUserId(2)).thenAnswer(invocation ->
+                Stream.of(song(50, "One", "Metallica", "/home/two/one.mp3")));
+        String m3u = "#EXTINF:300,Metallica - One\n/somewhere/else.mp3\n#EXTINF:10,The Beatles - Hey Jude\nx.mp3\n";
+
+        PlaylistImporter.Result result = importer.importFrom(20, new StringReader(m3u), PlaylistFormat.M3U);
+        assertEquals(Arrays.asList(Arrays.asList(50)), batches);
+        assertEquals("Another user's song should not match", 1, result.getUnresolved());
+
+        batches.clear();
+        importer.importFrom(9, new StringReader(m3u), PlaylistFormat.M3U);
+        assertEquals(Arrays.asList(Arrays.asList(1, 4)), batches);
+    }
+
+    @Test
+    public void testFormatFromFileName() {
+        assertEquals(PlaylistFormat.M3U, PlaylistFormat.forFileName("mix.M3U8"));
+        assertEquals(PlaylistFormat.PLS, PlaylistFormat.forFileName("/tmp/mix.pls"));
+        assertEquals(PlaylistFormat.CSV, PlaylistFormat.forFileName("mix.csv"));
+        try {
+            PlaylistFormat.forFileName("mix.txt");
+            fail("Unknown extensions should be rejected");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+    }
+
+    static Song song(int id, String title, String artist, String filePath) {
+        Song song = new Song(title, artist, "Album", "Genre", 2000, 100, filePath, 1);
+        song.setId(id);
+        return song;
+    }
+}
@@ -4,6 +4,7 @@ import static org.junit.Assert.*;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
+import org.mockito.MockedStatic;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 
@@ -11,10 +12,14 @@ import com.samet.music.dao.SongDAO;
 import com.samet.music.dao.UserSongStatisticsDAO;
 import com.samet.music.dao.AlbumDAO;
 import com.samet.music.dao.ArtistDAO;
+import com.samet.music.dao.SongSimilarityDAO;
 import com.samet.music.model.Song;
+import com.samet.music.model.SongStatistics;
 import com.samet.music.model.Album;
 import com.samet.music.model.User;
+import com.samet.music.util.DatabaseUtil;
 
+import java.sql.SQLException;
 import java.util.*;
 
 /**
@@ -328,9 +333,7 @@ public class RecommendationServiceTest {
         
         Mockito.when(userSongStatisticsDAO.getFavoriteSongs(1)).thenReturn(favoriteIds);
         Mockito.when(userSongStatisticsDAO.getRecentlyPlayedSongs(1, 5)).thenReturn(recentIds);
-        Mockito.when(songDAO.findById(1)).thenReturn(Optional.of(favoriteSong1));
-        Mockito.when(songDAO.findById(2)).thenReturn(Optional.of(favoriteSong2));
-        Mockito.when(songDAO.findById(3)).thenReturn(Optional.of(recentSong));
+        stubFindByIds(favoriteSong1, favoriteSong2, recentSong);
         Mockito.when(songDAO.findAll()).thenReturn(allSongs);
         
         // Execute
@@ -448,21 +451,13 @@ public class RecommendationServiceTest {
         recSong2.setId(5);
         
         // Mock data
-        Map<String, Object> userStats = new HashMap<>();
-        userStats.put("total_plays", 10);
-        
-        List<Integer> mostPlayedIds = Arrays.asList(1, 2);
-        List<Integer> favoriteIds = Collections.singletonList(3);
+        List<SongStatistics> listened = Arrays.asList(
+                new SongStatistics(playedSong1, 5, false, null, true),
+                new SongStatistics(playedSong2, 3, false, null, true),
+                new SongStatistics(favoriteSong, 0, true, null, false));
         List<Song> allSongs = Arrays.asList(playedSong1, playedSong2, favoriteSong, recSong1, recSong2);
         
-        Mockito.when(userSongStatisticsDAO.getUserStatistics(1)).thenReturn(userStats);
-        Mockito.when(userSongStatisticsDAO.getMostPlayedSongs(1, 5)).thenReturn(mostPlayedIds);
-        Mockito.when(userSongStatisticsDAO.getFavoriteSongs(1)).thenReturn(favoriteIds);
-        Mockito.when(userSongStatisticsDAO.getPlayCount(1, 1)).thenReturn(5);
-        Mockito.when(userSongStatisticsDAO.getPlayCount(1, 2)).thenReturn(3);
-        Mockito.when(songDAO.findById(1)).thenReturn(Optional.of(playedSong1));
-        Mockito.when(songDAO.findById(2)).thenReturn(Optional.of(playedSong2));
-        Mockito.when(songDAO.findById(3)).thenReturn(Optional.of(favoriteSong));
+        Mockito.when(userSongStatisticsDAO.getFavoriteAndMostPlayedSongStatistics(1, 5)).thenReturn(listened);
         Mockito.when(songDAO.findAll()).thenReturn(allSongs);
         
         // Execute
@@ -475,6 +470,8 @@ public class RecommendationServiceTest {
             recommendations.stream().anyMatch(s -> s.getArtist().equals("Artist A")));
         assertTrue("Should recommend songs from favorite artists", 
             recommendations.stream().anyMatch(s -> s.getArtist().equals("Artist C")));
+        Mockito.verify(userSongStatisticsDAO, Mockito.never()).getPlayCount(Mockito.anyInt(), Mockito.anyInt());
+        Mockito.verify(songDAO, Mockito.never()).findByIds(Mockito.any());
     }
     
     @Test
@@ -483,11 +480,11 @@ public class RecommendationServiceTest {
         User user = new User();
         user.setId(1);
         
-        // Mock empty play history
-        Map<String, Object> userStats = new HashMap<>();
-        userStats.put("total_plays", 0);
-        
-        Mockito.when(userSongStatisticsDAO.getUserStatistics(1)).thenReturn(userStats);
+        // Mock empty play history: a favorite that was never played
+        Song favoriteSong = new Song("Favorite", "Artist C", "Album Z", "Jazz", 2022, 200, "path3", 1);
+        favoriteSong.setId(3);
+        Mockito.when(userSongStatisticsDAO.getFavoriteAndMostPlayedSongStatistics(1, 5))
+            .thenReturn(Collections.singletonList(new SongStatistics(favoriteSong, 0, true, null, true)));
         
         // Execute
         List<Song> recommendations = recommendationService.getMostLikelyToEnjoySongs(user, 5);
@@ -585,21 +582,6 @@ public class RecommendationServiceTest {
         assertNotNull(result);
     }
 
-    @Test
-    public void testStoreSongRecommendations_SQLException() throws Exception {
-        RecommendationService service = new RecommendationService();
-        Song song = new Song("Test", "Artist", "Album", "Genre", 2020, 180, "path", 1);
-        song.setId(1);
-        java.lang.reflect.Method m = RecommendationService.class.getDeclaredMethod("storeSongRecommendations", int.class, List.class);
-        m.setAccessible(true);
-        try {
-            m.invoke(service, 1, List.of(song));
-        } catch (Exception e) {
-            // Hata fırlatılırsa test başarısız olmasın
-            assertTrue(e.getCause() instanceof java.sql.SQLException || e.getCause() instanceof RuntimeException);
-        }
-    }
-
     @Test
     public void testStoreArtistRecommendations_SQLException() throws Exception {
         RecommendationService service = new RecommendationService();
@@ -654,4 +636,71 @@ public class RecommendationServiceTest {
         assertEquals(1, result.size());
         assertEquals("Stored", result.get(0).getTitle());
     }
-} 
\ No newline at end of file
+
+    @Test
+    public void testGetSongRecommendations_MergesNeighbourListsOfListenedSongs() throws Exception {
+        User user = new User();
+        user.setId(1);
+        Song ownSong = new Song("Own", "Artist", "Album", "Rock", 2020, 180, "path", 1);
+        ownSong.setId(3);
+        Song recSong1 = new Song("Rec 1", "Artist", "Album", "Rock", 2021, 200, "path2", 2);
+        recSong1.setId(4);
+        Song recSong2 = new Song("Rec 2", "Artist", "Album", "Jazz", 2021, 200, "path3", 2);
+        recSong2.setId(5);
+        
+        SongSimilarityDAO similarityDAO = Mockito.mock(SongSimilarityDAO.class);
+        SongSimilarityIndex similarityIndex = Mockito.mock(SongSimilarityIndex.class);
+        Mockito.when(similarityIndex.getSimilarityDAO()).thenReturn(similarityDAO);
+        Map<Integer, Double> merged = new LinkedHashMap<>();
+        merged.put(5, 4.0);
+        merged.put(3, 3.0);
+        merged.put(4, 2.0);
+        Mockito.when(similarityDAO.getMergedSimilarSongs(Mockito.anyCollection(), Mockito.anyInt(), Mockito.anyInt())).thenReturn(merged);
+        Mockito.when(userSongStatisticsDAO.getFavoriteSongs(1)).thenReturn(List.of(1));
+        Mockito.when(userSongStatisticsDAO.getMostPlayedSongs(1, 10)).thenReturn(List.of(2, 1));
+        Mockito.when(userSongStatisticsDAO.getRecentlyPlayedSongs(1, 10)).thenReturn(List.of(2));
+        stubFindByIds(ownSong, recSong1, recSong2);
+        
+        RecommendationService service = new RecommendationService();
+        for (String name : new String[] { "songDAO", "userSongStatisticsDAO" }) {
+            java.lang.reflect.Field field = RecommendationService.class.getDeclaredField(name);
+            field.setAccessible(true);
+            field.set(service, name.equals("songDAO") ? songDAO : userSongStatisticsDAO);
+        }
+        java.lang.reflect.Field indexField = RecommendationService.class.getDeclaredField("songSimilarityIndex");
+        indexField.setAccessible(true);
+        indexField.set(service, similarityIndex);
+        
+        List<Song> result;
+        try (MockedStatic<DatabaseUtil> dbUtilMock = Mockito.mockStatic(DatabaseUtil.class)) {
+            java.sql.Connection brokenConn = Mockito.mock(java.sql.Connection.class);
+            Mockito.when(brokenConn.prepareStatement(Mockito.anyString())).thenThrow(new SQLException("no database"));
+            dbUtilMock.when(DatabaseUtil::getConnection).thenReturn(brokenConn);
+            result = service.getSongRecommendations(user, 5);
+        }
+        
+        assertEquals("Own songs should be skipped, order kept", Arrays.asList(recSong2, recSong1), result);
+        Mockito.verify(similarityIndex).ensurePopulated();
+        Mockito.verify(similarityDAO).getMergedSimilarSongs(Mockito.eq(new LinkedHashSet<>(Arrays.asList(1, 2))), Mockito.eq(1), Mockito.anyInt());
+        Mockito.verify(songDAO, Mockito.never()).findAll();
+    }
+
+    /**
+     * Stubs SongDAO.findByIds to resolve IDs against the given songs
+     */
+    private void stubFindByIds(Song... songs) {
+        Map<Integer, Song> catalog = new HashMap<>();
+        for (Song song : songs) {
+            catalog.put(song.getId(), song);
+        }
+        Mockito.when(songDAO.findByIds(Mockito.anyCollection())).thenAnswer(invocation -> {
+            Map<Integer, Song> found = new HashMap<>();
+            for (Object id : (Collection<?>) invocation.getArgument(0)) {
+                if (catalog.containsKey(id)) {
+                    found.put((Integer) id, catalog.get(id));
+                }
+            }
+            return found;
+        });
+    }
+}
@@ -0,0 +1,99 @@
+package com.samet.music.service;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.samet.music.dao.SongSimilarityDAO;
+
+/**
+ * Test class for SongSimilarityIndex
+ */
+public class SongSimilarityIndexTest {
+
+    private SongSimilarityDAO similarityDAO;
+    private List<int[]> basketItems;
+    private Map<Integer, Map<Integer, Double>> written;
+    private SongSimilarityIndex index;
+
+    @Before
+    public void setUp() {
+        similarityDAO = mock(SongSimilarityDAO.class);
+        basketItems = new ArrayList<>();
+        written = new HashMap<>();
+        when(similarityDAO.getMaxNeighbours()).thenReturn(2);
+        when(similarityDAO.forEachBasketItem(any())).thenAnswer(invocation -> {
+            SongSimilarityDAO.BasketHandler handler = invocation.getArgument(0);
+            for (int[] item : basketItems) {
+                handler.accept(item[0], item[1]);
+            }
+            return true;
+        });
+        when(similarityDAO.replaceNeighbours(anyMap())).thenAnswer(invocation -> {
+            Map<Integer, Map<Integer, Double>> neighbours = invocation.getArgument(0);
+            written.putAll(neighbours);
+            return true;
+        });
+        index = new SongSimilarityIndex(similarityDAO);
+    }
+
+    private void basket(int basketId, int... songIds) {
+        for (int songId : songIds) {
+            basketItems.add(new int[] { basketId, songId });
+        }
+    }
+
+    @Test
+    public void testRebuildKeepsMostFrequentCoOccurrences() {
+        basket(2, 1, 2, 3);
+        basket(4, 1, 2);
+        basket(3, 1, 2, 4);
+        basket(5, 3, 4);
+
+        assertTrue(index.rebuild());
+
+        assertEquals("Song 2 shares three baskets with song 1", 3.0, written.get(1).get(2), 1e-9);
+        assertEquals("Neighbour lists should be capped", 2, written.get(1).size());
+        assertEquals("Best neighbour should come first", Integer.valueOf(1), written.get(2).keySet().iterator().next());
+        assertFalse("A song is never its own neighbour", written.get(3).containsKey(3));
+    }
+
+    @Test
+    public void testEnsurePopulatedRebuildsOnlyAnEmptyIndexOnce() {
+        when(similarityDAO.isEmpty()).thenReturn(true);
+
+        index.ensurePopulated();
+        index.ensurePopulated();
+
+        verify(similarityDAO, times(1)).forEachBasketItem(any());
+
+        SongSimilarityIndex filled = new SongSimilarityIndex(similarityDAO);
+        when(similarityDAO.isEmpty()).thenReturn(false);
+        filled.ensurePopulated();
+        verify(similarityDAO, times(1)).forEachBasketItem(any());
+    }
+
+    @Test
+    public void testIncrementalUpdatesPairWithTheBasket() {
+        when(similarityDAO.getUserBasket(1, SongSimilarityIndex.MAX_BASKET_PAIRS)).thenReturn(Arrays.asList(5, 6));
+        when(similarityDAO.getPlaylistBasket(7, SongSimilarityIndex.MAX_BASKET_PAIRS)).thenReturn(Arrays.asList(8));
+
+        index.recordFirstPlay(1, 5);
+        index.recordPlaylistAdd(7, 9);
+        index.recordPlaylistRemove(7, 10);
+
+        verify(similarityDAO).addCoOccurrences(5, Arrays.asList(5, 6), 1.0);
+        verify(similarityDAO).addCoOccurrences(9, Arrays.asList(8), 1.0);
+        verify(similarityDAO).addCoOccurrences(10, Arrays.asList(8), -1.0);
+    }
+}
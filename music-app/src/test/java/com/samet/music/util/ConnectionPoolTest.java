@@ -0,0 +1,110 @@
+package com.samet.music.util;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for ConnectionPool
+ */
+public class ConnectionPoolTest {
+
+    private File dbFile;
+    private ConnectionPool pool;
+
+    @Before
+    public void setUp() throws Exception {
+        dbFile = File.createTempFile("pool-test", ".db");
+        dbFile.deleteOnExit();
+        pool = new ConnectionPool("jdbc:sqlite:" + dbFile.getAbsolutePath(), 2, 200, 0);
+    }
+
+    @After
+    public void tearDown() {
+        pool.close();
+        dbFile.delete();
+    }
+
+    @Test
+    public void testClosedConnectionIsReused() throws SQLException {
+        try (Connection conn = pool.borrow();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE t (id INTEGER)");
+        }
+        try (Connection conn = pool.borrow()) {
+            assertFalse("Borrowed connection should be open", conn.isClosed());
+        }
+
+        Map<String, Object> metrics = pool.getMetrics();
+        assertEquals("Only one physical connection should be opened", 1L, metrics.get("connections_created"));
+        assertEquals("Both borrows should be counted", 2L, metrics.get("borrow_count"));
+        assertEquals("Connection should be back in the pool", 1, metrics.get("idle"));
+    }
+
+    @Test
+    public void testReturnedConnectionCannotBeUsed() throws SQLException {
+        Connection conn = pool.borrow();
+        conn.close();
+
+        assertTrue("Returned connection should report closed", conn.isClosed());
+        try {
+            conn.createStatement();
+            fail("Using a returned connection should fail");
+        } catch (SQLException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testBorrowTimesOutWhenExhausted() throws SQLException {
+        Connection first = pool.borrow();
+        Connection second = pool.borrow();
+        try {
+            pool.borrow();
+            fail("Third borrow should time out on a pool of two");
+        } catch (SQLException e) {
+            assertEquals("Timeout should be counted", 1L, pool.getMetrics().get("borrow_timeouts"));
+        } finally {
+            first.close();
+            second.close();
+        }
+    }
+
+    @Test
+    public void testOpenTransactionIsRolledBackOnReturn() throws SQLException {
+        try (Connection conn = pool.borrow();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE t (id INTEGER)");
+        }
+
+        Connection conn = pool.borrow();
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("INSERT INTO t VALUES (1)");
+        }
+        conn.close();
+
+        try (Connection reused = pool.borrow();
+             Statement stmt = reused.createStatement()) {
+            assertTrue("Pooled connection should be back in auto-commit mode", reused.getAutoCommit());
+            try (java.sql.ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM t")) {
+                assertTrue(rs.next());
+                assertEquals("Uncommitted insert should have been rolled back", 0, rs.getInt(1));
+            }
+        }
+    }
+
+    @Test(expected = SQLException.class)
+    public void testBorrowAfterCloseFails() throws SQLException {
+        pool.close();
+        pool.borrow();
+    }
+}
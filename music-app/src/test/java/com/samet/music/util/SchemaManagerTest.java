@@ -0,0 +1,120 @@
+package com.samet.music.util;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for SchemaManager
+ */
+public class SchemaManagerTest {
+
+    private File dbFile;
+    private Connection conn;
+
+    @Before
+    public void setUp() throws Exception {
+        dbFile = File.createTempFile("schema-test", ".db");
+        dbFile.deleteOnExit();
+        conn = DriverManager.getConnection("jdbc:sqlite:" + dbFile.getAbsolutePath());
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        conn.close();
+        dbFile.delete();
+    }
+
+    @Test
+    public void testMigrateNewDatabase() throws SQLException {
+        assertEquals("New database should start at version 0", 0, SchemaManager.getVersion(conn));
+
+        int version = SchemaManager.migrate(conn);
+
+        assertEquals("Should migrate to the latest version", SchemaManager.getLatestVersion(), version);
+        assertEquals("Version should be stored in the database", version, SchemaManager.getVersion(conn));
+        assertTrue("songs table should exist", exists("table", "songs"));
+        assertTrue("user_song_statistics table should exist", exists("table", "user_song_statistics"));
+        assertTrue("Play count index should exist", exists("index", "idx_stats_user_play_count"));
+        assertTrue("Playlist position index should exist", exists("index", "idx_playlist_songs_position"));
+        assertTrue("song_similarity table should exist", exists("table", "song_similarity"));
+        assertTrue("play_events table should exist", exists("table", "play_events"));
+        assertTrue("Play history index should exist", exists("index", "idx_play_events_user_time"));
+        assertTrue("Daily listening rollup should exist", exists("table", "play_rollup_day"));
+        assertTrue("Rollup watermark should exist", exists("table", "play_rollup_state"));
+        assertTrue("Artist registry should exist", exists("table", "artist_registry"));
+        assertTrue("Full-text song index should exist", exists("table", "songs_fts"));
+        assertTrue("Artist key index should exist", exists("index", "idx_songs_artist_id"));
+        assertTrue("Playlist listing index should exist", exists("index", "idx_playlists_user_created"));
+    }
+
+    @Test
+    public void testNameKeysFollowNameColumns() throws SQLException {
+        SchemaManager.migrate(conn);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("INSERT INTO songs (id, title, artist, album, genre) VALUES " +
+                    "(1, 'One', 'Metallica', 'Justice', 'Metal'), (2, 'Run', ' Metallica ', '', NULL)");
+            stmt.executeUpdate("INSERT INTO albums (id, title, artist, genre) VALUES (1, 'Justice', 'Metallica', 'Metal')");
+
+            assertEquals("Same trimmed name should get the same key", 1,
+                    count(stmt, "SELECT COUNT(DISTINCT artist_id) FROM songs"));
+            assertEquals(count(stmt, "SELECT artist_id FROM songs WHERE id = 1"),
+                    count(stmt, "SELECT artist_id FROM albums WHERE id = 1"));
+            assertEquals("Blank names should have no key", 0,
+                    count(stmt, "SELECT COUNT(*) FROM songs WHERE id = 2 AND (album_id IS NOT NULL OR genre_id IS NOT NULL)"));
+
+            stmt.executeUpdate("UPDATE songs SET genre = 'Thrash' WHERE id = 2");
+            assertEquals("Updated name should get its own key", 2,
+                    count(stmt, "SELECT COUNT(DISTINCT genre_id) FROM songs"));
+            assertEquals("Thrash", string(stmt, "SELECT g.name FROM songs s JOIN genre_names g ON g.id = s.genre_id WHERE s.id = 2"));
+
+            // Keys written with the names, as the DAOs do, are left alone
+            stmt.executeUpdate("INSERT INTO songs (id, title, artist, artist_id) VALUES (3, 'Bound', 'Megadeth', 42)");
+            assertEquals(42, count(stmt, "SELECT artist_id FROM songs WHERE id = 3"));
+            stmt.executeUpdate("UPDATE songs SET artist = 'Slayer', artist_id = 43 WHERE id = 3");
+            assertEquals(43, count(stmt, "SELECT artist_id FROM songs WHERE id = 3"));
+        }
+    }
+
+    @Test
+    public void testMigrateIsIdempotent() throws SQLException {
+        int first = SchemaManager.migrate(conn);
+        int second = SchemaManager.migrate(conn);
+
+        assertEquals("Second run should not change the version", first, second);
+        assertTrue("Auto-commit should be restored", conn.getAutoCommit());
+    }
+
+    private static int count(Statement stmt, String sql) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.next() ? rs.getInt(1) : -1;
+        }
+    }
+
+    private static String string(Statement stmt, String sql) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.next() ? rs.getString(1) : null;
+        }
+    }
+
+    private boolean exists(String type, String name) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT 1 FROM sqlite_master WHERE type = ? AND name = ?")) {
+            pstmt.setString(1, type);
+            pstmt.setString(2, name);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+}
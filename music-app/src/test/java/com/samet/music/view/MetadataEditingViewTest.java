@@ -15,6 +15,7 @@ import org.junit.Test;
 
 import com.samet.music.controller.SongController;
 import com.samet.music.controller.UserController;
+import com.samet.music.dao.CompletionIndex;
 import com.samet.music.model.Song;
 import com.samet.music.model.User;
 
@@ -233,6 +234,33 @@ public class MetadataEditingViewTest {
         assertEquals("Doğru artist adı ile güncellenmeli", "New Artist", songController.getLastUpdatedArtist());
     }
     
+    @Test
+    public void testEditArtistUsesSuggestedName() {
+        // Test şarkıları ve bilinen artist adları
+        List<Song> testSongs = createTestSongs();
+        songController.setUserSongs(testSongs);
+        songController.setUpdateResult(true);
+        songController.setCompletions(java.util.Arrays.asList("Metallica", "Metal Church"));
+        
+        // Kullanıcı girdisini simüle et - yarım ad, sonra ilk öneri
+        String input = "1\nTest Song 1\nmetal\n1\n";
+        System.setIn(new ByteArrayInputStream(input.getBytes()));
+        
+        metadataEditingView = new MetadataEditingView(
+                new Scanner(System.in),
+                userController,
+                songController);
+                
+        // Test
+        metadataEditingView.display();
+        
+        // Doğrulama
+        String output = outContent.toString();
+        assertTrue("Öneriler gösterilmeli", output.contains("2. Metal Church"));
+        assertEquals("Seçilen öneri ile güncellenmeli", "Metallica", songController.getLastUpdatedArtist());
+        assertEquals("Artist alanı için öneri istenmeli", CompletionIndex.Field.ARTIST, songController.getLastCompletionField());
+    }
+    
     @Test
     public void testEditArtistFailure() {
         // Test şarkıları
@@ -649,10 +677,27 @@ public class MetadataEditingViewTest {
         private String lastUpdatedGenre;
         private int lastUpdatedYear;
         
+        private List<String> completions = new ArrayList<>();
+        private CompletionIndex.Field lastCompletionField;
+        
         public TestSongController() {
             super(null);
         }
         
+        @Override
+        public List<String> getCompletions(CompletionIndex.Field field, String prefix) {
+            lastCompletionField = field;
+            return completions;
+        }
+        
+        public void setCompletions(List<String> completions) {
+            this.completions = completions;
+        }
+        
+        public CompletionIndex.Field getLastCompletionField() {
+            return lastCompletionField;
+        }
+        
         @Override
         public List<Song> getUserSongs() {
             if (throwException) {
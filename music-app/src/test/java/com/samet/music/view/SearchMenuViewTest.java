@@ -17,6 +17,7 @@ import com.samet.music.controller.PlaylistController;
 import com.samet.music.controller.SongController;
 import com.samet.music.controller.UserController;
 import com.samet.music.model.Playlist;
+import com.samet.music.model.PlaylistAddResult;
 import com.samet.music.model.Song;
 import com.samet.music.model.User;
 
@@ -192,7 +193,9 @@ public class SearchMenuViewTest {
         String output = outputStream.toString();
         assertTrue("Playlist'e ekleme başlığı gösterilmeli", output.contains("ADD TO PLAYLIST"));
         assertTrue("Playlist listesi gösterilmeli", output.contains("Test Playlist"));
-        assertTrue("Başarı mesajı gösterilmeli", output.contains("Added"));
+        assertTrue("Başarı mesajı gösterilmeli", output.contains("Added 1 song(s)"));
+        // Tüm şarkılar tek çağrıda eklenmeli
+        assertEquals(1, playlistController.addedSongIds.size());
     }
     
     /**
@@ -628,6 +631,7 @@ public class SearchMenuViewTest {
     private class MockPlaylistController extends PlaylistController {
         private List<Playlist> userPlaylists = new ArrayList<>();
         private boolean createPlaylistSuccess = true;
+        private final List<Integer> addedSongIds = new ArrayList<>();
         
         public MockPlaylistController() {
             super(null);
@@ -662,5 +666,15 @@ public class SearchMenuViewTest {
         public boolean addSongToPlaylist(int playlistId, int songId) {
             return true;
         }
+        
+        @Override
+        public PlaylistAddResult addSongsToPlaylist(int playlistId, List<Integer> songIds) {
+            addedSongIds.addAll(songIds);
+            PlaylistAddResult result = new PlaylistAddResult();
+            for (Integer songId : songIds) {
+                result.put(songId, PlaylistAddResult.Outcome.ADDED);
+            }
+            return result;
+        }
     }
 }
\ No newline at end of file